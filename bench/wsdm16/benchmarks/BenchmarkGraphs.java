@@ -0,0 +1,67 @@
+package wsdm16.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.GraphGenerator.GraphType;
+import wsdm16.graphutils.SymmetricBatchGraph;
+
+/**
+ * The synthetic inputs of the benchmarks: random graphs of {@link GraphGenerator} with a fixed seed, stored as
+ * BVGraphs and loaded in memory, so that they allow random access and lightweight copies, as the graphs given to
+ * the samplers.
+ *
+ * BenchmarkGraphs.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class BenchmarkGraphs {
+    public static final long SEED = 42;
+    private static final long MEMORY = 256L << 20;
+
+    /**
+     * Generates a random graph.
+     *
+     * @param family
+     *            one of {@link GraphType#GNM}, {@link GraphType#CHUNG_LU}, {@link GraphType#RMAT} and
+     *            {@link GraphType#BARABASI_ALBERT}
+     * @param n
+     *            the number of nodes, rounded up to a power of 2 for R-MAT
+     * @param degree
+     *            the average degree
+     * @return
+     * @throws IOException
+     */
+    public static ImmutableGraph load(GraphType family, int n, int degree) throws IOException {
+	long m = (long) n * degree / 2;
+	SymmetricBatchGraph H;
+	switch (family) {
+	case GNM:
+	    H = GraphGenerator.erdosRenyiGraph(n, m, SEED, -1, MEMORY);
+	    break;
+	case CHUNG_LU:
+	    H = GraphGenerator.chungLuGraph(n, m, 2.5, SEED, -1, MEMORY);
+	    break;
+	case RMAT:
+	    H = GraphGenerator.rmatGraph(32 - Integer.numberOfLeadingZeros(n - 1), m, 0.57, 0.19, 0.19, SEED, -1, MEMORY);
+	    break;
+	case BARABASI_ALBERT:
+	    H = GraphGenerator.barabasiAlbertGraph(n, Math.max(1, degree / 2), SEED, -1, MEMORY);
+	    break;
+	default:
+	    throw new IllegalArgumentException("No random graphs of type " + family);
+	}
+	File basename = File.createTempFile("benchmark-" + family.toString().toLowerCase(), "");
+	try {
+	    BVGraph.store(H, basename.getPath(), -1, 1, -1, -1, 0, H.numPartitions(), null);
+	    return ImmutableGraph.load(basename.getPath());
+	} finally {
+	    for (String extension : new String[] { "", BVGraph.GRAPH_EXTENSION, BVGraph.OFFSETS_EXTENSION,
+		    BVGraph.PROPERTIES_EXTENSION })
+		new File(basename.getPath() + extension).delete();
+	}
+    }
+}
@@ -0,0 +1,205 @@
+package wsdm16.benchmarks;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator.GraphType;
+import wsdm16.motifs.colorcoding.BaseColorCoding;
+import wsdm16.motifs.colorcoding.BaseColorCoding.IColorCodingSampler;
+import wsdm16.motifs.colorcoding.CC2;
+import wsdm16.motifs.colorcoding.ColoredTreeletColorCoding;
+
+/**
+ * Benchmarks of the phases of color coding, for {@link ColoredTreeletColorCoding} ("treelet") and {@link CC2}
+ * ("alon"), on the random graphs of {@link BenchmarkGraphs}:
+ * <ul>
+ * <li>run: filling the tables of treelet counts, from a fresh colored instance at each invocation; the seconds
+ * spent on the table of each size are reported as the secondary results sliceN, summed over the iteration, next to
+ * the number of runs;
+ * <li>buildStructures: building the distributions for sampling treelets of size k;
+ * <li>sample: drawing a treelet occurrence (use JMH's -t option for concurrent samplers).
+ * </ul>
+ * The parameters can be restricted with -p, e.g.
+ *
+ * <pre>
+ * ant bench
+ * java -jar benchmarks.jar ColorCodingBenchmark.run -p family=RMAT -p k=5 -prof gc
+ * </pre>
+ *
+ * {@link #main(String[])} runs all the benchmarks with the GC profiler, which reports the allocation rate.
+ *
+ * ColorCodingBenchmark.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ColorCodingBenchmark {
+    public static final long SEED = 42;
+
+    @State(Scope.Benchmark)
+    public static class Input {
+	@Param({ "GNM", "CHUNG_LU", "RMAT", "BARABASI_ALBERT" })
+	public GraphType family;
+	@Param({ "10000" })
+	public int nodes;
+	@Param({ "10" })
+	public int degree;
+	@Param({ "4", "5" })
+	public int k;
+	@Param({ "1", "4" })
+	public int threads;
+	@Param({ "treelet", "alon" })
+	public String algorithm;
+
+	ImmutableGraph G;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+	    G = BenchmarkGraphs.load(family, nodes, degree);
+	}
+
+	BaseColorCoding colorCoding() {
+	    BaseColorCoding C = algorithm.equals("alon") ? new CC2(G, k) : new ColoredTreeletColorCoding(G, k);
+	    C.color(SEED);
+	    return C;
+	}
+    }
+
+    /** A colored instance with empty tables, renewed at each invocation, since the tables are filled once */
+    @State(Scope.Thread)
+    public static class Colored {
+	BaseColorCoding C;
+
+	@Setup(Level.Invocation)
+	public void setup(Input input) {
+	    C = input.colorCoding();
+	}
+    }
+
+    /** An instance with filled tables */
+    @State(Scope.Benchmark)
+    public static class Filled {
+	BaseColorCoding C;
+
+	@Setup(Level.Trial)
+	public void setup(Input input) throws InterruptedException {
+	    C = input.colorCoding();
+	    C.run(input.threads);
+	    C.buildStructures(input.k);
+	}
+    }
+
+    @State(Scope.Thread)
+    public static class Sampler {
+	IColorCodingSampler sampler;
+
+	@Setup(Level.Trial)
+	public void setup(Input input, Filled filled) {
+	    sampler = filled.C.newSampler(input.k);
+	}
+    }
+
+    /** The time spent on the table of each size, summed over the runs of an iteration */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class SliceTimes {
+	private final double[] seconds = new double[10];
+	public long runs;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+	    Arrays.fill(seconds, 0);
+	    runs = 0;
+	}
+
+	void add(BaseColorCoding C, int k) {
+	    for (int size = 1; size <= k; size++)
+		seconds[size] += C.getSliceNanos(size) / 1E9;
+	    runs++;
+	}
+
+	public double slice1() {
+	    return seconds[1];
+	}
+
+	public double slice2() {
+	    return seconds[2];
+	}
+
+	public double slice3() {
+	    return seconds[3];
+	}
+
+	public double slice4() {
+	    return seconds[4];
+	}
+
+	public double slice5() {
+	    return seconds[5];
+	}
+
+	public double slice6() {
+	    return seconds[6];
+	}
+
+	public double slice7() {
+	    return seconds[7];
+	}
+
+	public double slice8() {
+	    return seconds[8];
+	}
+
+	public double slice9() {
+	    return seconds[9];
+	}
+    }
+
+    @Benchmark
+    public BaseColorCoding run(Input input, Colored colored, SliceTimes times) throws InterruptedException {
+	colored.C.run(input.threads);
+	times.add(colored.C, input.k);
+	return colored.C;
+    }
+
+    @Benchmark
+    public BaseColorCoding buildStructures(Input input, Filled filled) {
+	filled.C.buildStructures(input.k);
+	return filled.C;
+    }
+
+    @Benchmark
+    public List<Integer> sample(Sampler sampler) {
+	return sampler.sampler.sample();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+	new Runner(new OptionsBuilder().include(ColorCodingBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class)
+		.build()).run();
+    }
+}
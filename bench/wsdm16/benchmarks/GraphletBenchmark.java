@@ -0,0 +1,313 @@
+package wsdm16.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator.GraphType;
+import wsdm16.motifs.BaseGraphIsomorphisms;
+import wsdm16.motifs.CompactGraphlet;
+import wsdm16.motifs.EagerGraphIsomorphisms;
+import wsdm16.motifs.Graphlet;
+import wsdm16.motifs.LazyGraphIsomorphisms;
+import wsdm16.motifs.NeighborhoodIndex;
+import wsdm16.motifs.SpanningTrees;
+
+/**
+ * Microbenchmarks of the work done on each sample by the samplers, on a pool of connected node sets of size k of a
+ * random graph of {@link BenchmarkGraphs}:
+ * <ul>
+ * <li>newGraphlet, newCompactGraphlet: building a {@link Graphlet} and a {@link CompactGraphlet} (the latter is what
+ * {@link wsdm16.motifs.colorcoding.ColorCodingSampler} uses), on the plain host graph or on its
+ * {@link NeighborhoodIndex};
+ * <li>asGraph, compactAsGraph: extracting the induced subgraph;
+ * <li>lazySignature, eagerSignature: {@link BaseGraphIsomorphisms#long_signature(ImmutableGraph)}, or its variant on
+ * the adjacency mask, for {@link LazyGraphIsomorphisms} and {@link EagerGraphIsomorphisms}. With a warm cache the
+ * isomorphism classes of the pool are known in advance; with a cold cache every signature is computed by a new
+ * instance, built within the operation, which pays the permutations of the class for the lazy version, and the
+ * enumeration of all the classes for the eager one. Since the eager version enumerates all the graphs on k nodes, it
+ * stops at k={@value #EAGER_MAX_K};
+ * <li>kirchhoff: {@link SpanningTrees#KirchhoffCount(ImmutableGraph, long[][])} with scratch space.
+ * </ul>
+ * Watch gc.alloc.rate.norm (bytes per operation) of the GC profiler to catch regressions in the allocations of the
+ * per-sample path:
+ *
+ * <pre>
+ * ant bench
+ * java -jar benchmarks.jar GraphletBenchmark -prof gc
+ * </pre>
+ *
+ * GraphletBenchmark.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class GraphletBenchmark {
+    /** The number of occurrences in a pool (a power of 2) */
+    public static final int POOL = 256;
+    public static final int MAX_K = 9;
+    /** The largest k for which {@link EagerGraphIsomorphisms} can be built in reasonable time */
+    public static final int EAGER_MAX_K = 7;
+
+    /**
+     * Returns random connected sets of nodes, each grown from a random node by adding a random neighbor of a random
+     * node of the set.
+     *
+     * @param G
+     *            a symmetric graph
+     * @param k
+     * @param howMany
+     * @param seed
+     * @return
+     */
+    static int[][] connectedSets(ImmutableGraph G, int k, int howMany, long seed) {
+	Random random = new Random(seed);
+	int[][] sets = new int[howMany][];
+	int[] set = new int[k];
+	for (int s = 0; s < howMany;) {
+	    set[0] = random.nextInt(G.numNodes());
+	    int size = 1;
+	    for (int attempts = 0; size < k && attempts < 100 * k; attempts++) {
+		int u = set[random.nextInt(size)];
+		int d = G.outdegree(u);
+		if (d == 0)
+		    break;
+		int v = G.successorArray(u)[random.nextInt(d)];
+		boolean found = false;
+		for (int i = 0; i < size && !found; i++)
+		    found = set[i] == v;
+		if (!found)
+		    set[size++] = v;
+	    }
+	    if (size == k)
+		sets[s++] = set.clone();
+	}
+	return sets;
+    }
+
+    /** A pool of occurrences of size k and their induced subgraphs */
+    static class Occurrences {
+	final int[][] nodes;
+	final CompactGraphlet[] compact;
+	final ImmutableGraph[] graphs;
+	final long[] masks;
+
+	Occurrences(ImmutableGraph G, int k) {
+	    nodes = connectedSets(G, k, POOL, BenchmarkGraphs.SEED);
+	    compact = new CompactGraphlet[POOL];
+	    graphs = new ImmutableGraph[POOL];
+	    masks = new long[POOL];
+	    for (int i = 0; i < POOL; i++) {
+		compact[i] = new CompactGraphlet(G, nodes[i]);
+		graphs[i] = compact[i].asGraph();
+		masks[i] = compact[i].adjacencyMask();
+	    }
+	}
+    }
+
+    @State(Scope.Benchmark)
+    public static class Host {
+	@Param({ "CHUNG_LU" })
+	public GraphType family;
+	@Param({ "10000" })
+	public int nodes;
+	@Param({ "10" })
+	public int degree;
+
+	ImmutableGraph G;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+	    G = BenchmarkGraphs.load(family, nodes, degree);
+	}
+    }
+
+    @State(Scope.Benchmark)
+    public static class Graphlets {
+	@Param({ "3", "4", "5", "6", "7", "8", "9" })
+	public int k;
+	/** Whether the host graph is the graph itself or its {@link NeighborhoodIndex} */
+	@Param({ "graph", "index" })
+	public String host;
+
+	ImmutableGraph G;
+	Occurrences occurrences;
+	List<List<Integer>> lists;
+	Graphlet[] graphlets;
+	CompactGraphlet[] compact;
+
+	@Setup(Level.Trial)
+	public void setup(Host input) {
+	    G = host.equals("index") ? new NeighborhoodIndex(input.G) : input.G;
+	    occurrences = new Occurrences(input.G, k);
+	    lists = new ArrayList<>(POOL);
+	    graphlets = new Graphlet[POOL];
+	    compact = new CompactGraphlet[POOL];
+	    for (int i = 0; i < POOL; i++) {
+		Integer[] boxed = new Integer[k];
+		for (int j = 0; j < k; j++)
+		    boxed[j] = occurrences.nodes[i][j];
+		lists.add(Arrays.asList(boxed));
+		graphlets[i] = new Graphlet(G, lists.get(i));
+		compact[i] = new CompactGraphlet(G, occurrences.nodes[i]);
+	    }
+	}
+    }
+
+    /** The induced subgraphs of a pool of occurrences, which do not depend on how the host graph is accessed */
+    @State(Scope.Benchmark)
+    public static class Subgraphs {
+	@Param({ "3", "4", "5", "6", "7", "8", "9" })
+	public int k;
+
+	Occurrences occurrences;
+
+	@Setup(Level.Trial)
+	public void setup(Host host) {
+	    occurrences = new Occurrences(host.G, k);
+	}
+    }
+
+    @State(Scope.Benchmark)
+    public static abstract class Signatures {
+	/** Whether signatures are computed from the graphs or from their adjacency masks */
+	@Param({ "graph", "mask" })
+	public String input;
+	@Param({ "warm", "cold" })
+	public String cache;
+
+	Occurrences occurrences;
+	BaseGraphIsomorphisms isomorphisms;
+
+	abstract int k();
+
+	abstract BaseGraphIsomorphisms newIsomorphisms();
+
+	@Setup(Level.Trial)
+	public void setup(Host host) {
+	    occurrences = new Occurrences(host.G, k());
+	    if (cache.equals("warm")) {
+		isomorphisms = newIsomorphisms();
+		for (long mask : occurrences.masks)
+		    isomorphisms.long_signature(mask);
+	    }
+	}
+
+	/** The signature of the i-th occurrence; with a cold cache, the new instance is built within the call */
+	long signature(int i) {
+	    BaseGraphIsomorphisms I = cache.equals("cold") ? newIsomorphisms() : isomorphisms;
+	    return input.equals("mask") ? I.long_signature(occurrences.masks[i]) : I.long_signature(occurrences.graphs[i]);
+	}
+    }
+
+    @State(Scope.Benchmark)
+    public static class LazySignatures extends Signatures {
+	@Param({ "3", "4", "5", "6", "7", "8", "9" })
+	public int k;
+
+	@Override
+	int k() {
+	    return k;
+	}
+
+	@Override
+	BaseGraphIsomorphisms newIsomorphisms() {
+	    return new LazyGraphIsomorphisms(k);
+	}
+    }
+
+    @State(Scope.Benchmark)
+    public static class EagerSignatures extends Signatures {
+	@Param({ "3", "4", "5", "6", "7" })
+	public int k;
+
+	@Override
+	int k() {
+	    return k;
+	}
+
+	@Override
+	BaseGraphIsomorphisms newIsomorphisms() {
+	    if (k > EAGER_MAX_K)
+		throw new IllegalArgumentException(
+			"Eager isomorphisms enumerate all the graphs on k nodes: k must be at most " + EAGER_MAX_K);
+	    return new EagerGraphIsomorphisms(k);
+	}
+    }
+
+    /** The position of a thread in the pool, and its scratch space */
+    @State(Scope.Thread)
+    public static class Cursor {
+	int i;
+	final long[][] laplacian = new long[MAX_K - 1][MAX_K - 1];
+
+	int next() {
+	    return i = (i + 1) & (POOL - 1);
+	}
+    }
+
+    @Benchmark
+    public Graphlet newGraphlet(Graphlets graphlets, Cursor cursor) {
+	return new Graphlet(graphlets.G, graphlets.lists.get(cursor.next()));
+    }
+
+    @Benchmark
+    public CompactGraphlet newCompactGraphlet(Graphlets graphlets, Cursor cursor) {
+	return new CompactGraphlet(graphlets.G, graphlets.occurrences.nodes[cursor.next()]);
+    }
+
+    @Benchmark
+    public ImmutableGraph asGraph(Graphlets graphlets, Cursor cursor) {
+	return graphlets.graphlets[cursor.next()].asGraph();
+    }
+
+    @Benchmark
+    public ImmutableGraph compactAsGraph(Graphlets graphlets, Cursor cursor) {
+	return graphlets.compact[cursor.next()].asGraph();
+    }
+
+    @Benchmark
+    public long lazySignature(LazySignatures signatures, Cursor cursor) {
+	return signatures.signature(cursor.next());
+    }
+
+    @Benchmark
+    public long eagerSignature(EagerSignatures signatures, Cursor cursor) {
+	return signatures.signature(cursor.next());
+    }
+
+    @Benchmark
+    public long kirchhoff(Subgraphs subgraphs, Cursor cursor) {
+	return SpanningTrees.KirchhoffCount(subgraphs.occurrences.graphs[cursor.next()], cursor.laplacian);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+	new Runner(new OptionsBuilder().include(GraphletBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class)
+		.build()).run();
+    }
+}
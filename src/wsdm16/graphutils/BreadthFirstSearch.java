@@ -4,21 +4,25 @@
  */
 package wsdm16.graphutils;
 
+import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PrintStream;
 import java.io.Serializable;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -31,7 +35,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.LoggerFactory;
 
 import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ASCIIGraph;
 import it.unimi.dsi.webgraph.ImmutableGraph;
@@ -231,6 +235,179 @@ public class BreadthFirstSearch {
 
     }
 
+    /**
+     * The state of a visit, reusable by any number of consecutive visits (of possibly different graphs) from the same
+     * thread: each visit only touches the nodes it reaches, hence its cost does not depend on the size of the graph.
+     * A node is reached by the current visit iff its stamp is the generation of the visit; the reached nodes are
+     * kept in visit order in a single array, which is also the queue of the visit, the frontier being the nodes
+     * between two positions.
+     * 
+     * BreadthFirstSearch.java - created on 19 ott 2026
+     * 
+     * @author anon
+     */
+    public static final class Context {
+	private int[] stamp = new int[0]; // stamp[v] == generation iff v has been reached
+	private int[] distance = new int[0];
+	private int[] queue = new int[0]; // the reached nodes, in visit order
+	private int generation = 0;
+	private int reached;
+	private int reachedDistance;
+	private long processedArcs;
+	private VisitTerminatingCondition terminatingCondition;
+
+	/**
+	 * Makes room for visits of graphs with the given number of nodes.
+	 * 
+	 * @param numNodes
+	 */
+	private void ensureCapacity(int numNodes) {
+	    if (stamp.length < numNodes) {
+		int size = Math.max(numNodes, (int) Math.min(Integer.MAX_VALUE - 8, 2L * stamp.length));
+		stamp = new int[size];
+		distance = new int[size];
+		queue = new int[size];
+		generation = 0;
+	    }
+	    if (++generation == 0) { // the stamps have wrapped around
+		Arrays.fill(stamp, 0);
+		generation = 1;
+	    }
+	}
+
+	/**
+	 * Visits G from a source, stopping at the given distance or as soon as the given number of nodes has been
+	 * reached.
+	 * 
+	 * @param G
+	 * @param source
+	 * @param maxDistance
+	 * @param maxNodes
+	 * @return the number of nodes reached
+	 */
+	public int search(ImmutableGraph G, int source, int maxDistance, int maxNodes) {
+	    ensureCapacity(G.numNodes());
+	    final int[] stamp = this.stamp, distance = this.distance, queue = this.queue;
+	    final int generation = this.generation;
+	    stamp[source] = generation;
+	    distance[source] = 0;
+	    queue[0] = source;
+	    int reached = 1;
+	    int head = 0, levelEnd = 1; // the frontier is queue[head..levelEnd)
+	    int currentDistance = 0;
+	    long processedArcs = 0;
+	    while (currentDistance < maxDistance && reached < maxNodes && head < levelEnd) {
+		while (reached < maxNodes && head < levelEnd) {
+		    int u = queue[head++];
+		    LazyIntIterator neighs = G.successors(u);
+		    int deg = G.outdegree(u);
+		    processedArcs += deg;
+		    while (reached < maxNodes && deg-- != 0) {
+			int w = neighs.nextInt();
+			if (stamp[w] != generation) { // w has never been seen before
+			    stamp[w] = generation;
+			    distance[w] = currentDistance + 1;
+			    queue[reached++] = w;
+			}
+		    }
+		}
+		if (reached < maxNodes && reached > levelEnd) // if there is still something to explore, we can increase the distance
+		    currentDistance++;
+		head = levelEnd;
+		levelEnd = reached;
+	    }
+	    if (head == levelEnd)
+		terminatingCondition = VisitTerminatingCondition.FRONTIER_EMTPY;
+	    else if (reached == maxNodes)
+		terminatingCondition = VisitTerminatingCondition.MAX_NODES_REACHED;
+	    else
+		terminatingCondition = VisitTerminatingCondition.MAX_DISTANCE_REACHED;
+	    this.reached = reached;
+	    this.reachedDistance = currentDistance;
+	    this.processedArcs = processedArcs;
+	    return reached;
+	}
+
+	/**
+	 * Returns the number of nodes reached by the last visit.
+	 * 
+	 * @return
+	 */
+	public int reached() {
+	    return reached;
+	}
+
+	/**
+	 * Returns the i-th node reached by the last visit, the source being the 0-th.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public int node(int i) {
+	    return queue[i];
+	}
+
+	/**
+	 * Returns whether the last visit reached a node.
+	 * 
+	 * @param v
+	 * @return
+	 */
+	public boolean isReached(int v) {
+	    return v < stamp.length && stamp[v] == generation;
+	}
+
+	/**
+	 * Returns the distance of a node from the source of the last visit, or -1 if it was not reached.
+	 * 
+	 * @param v
+	 * @return
+	 */
+	public int distance(int v) {
+	    return isReached(v) ? distance[v] : -1;
+	}
+
+	/**
+	 * Returns the distance of the last frontier fully explored by the last visit.
+	 * 
+	 * @return
+	 */
+	public int reachedDistance() {
+	    return reachedDistance;
+	}
+
+	/**
+	 * Returns the number of arcs scanned by the last visit.
+	 * 
+	 * @return
+	 */
+	public long processedArcs() {
+	    return processedArcs;
+	}
+
+	/**
+	 * Returns why the last visit stopped.
+	 * 
+	 * @return
+	 */
+	public VisitTerminatingCondition terminatingCondition() {
+	    return terminatingCondition;
+	}
+    }
+
+    /** The context of the visits of each thread, used by {@link #count()} and {@link #visit()} */
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
+    /**
+     * Returns the visit context of the current thread. It is reused by all the visits of the thread, hence the
+     * results of a visit are only valid until the next one.
+     * 
+     * @return
+     */
+    public static Context context() {
+	return CONTEXT.get();
+    }
+
     public BreadthFirstSearch(ImmutableGraph G, int source) {
 	this(G, source, Integer.MAX_VALUE);
     }
@@ -258,50 +435,29 @@ public class BreadthFirstSearch {
      * @return a {@link Result} object containing the result of the visit.
      */
     public Result count() {
+	return count(context());
+    }
+
+    /**
+     * Counts the number of reachable nodes as {@link #count()}, using the given context.
+     * 
+     * @param context
+     * @return a {@link Result} object containing the result of the visit.
+     */
+    public Result count(Context context) {
 	long startTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-	IntArrayFIFOQueue lastFrontier = new IntArrayFIFOQueue();
-	lastFrontier.enqueue(source);
-	BitSet visited = new BitSet();
-	visited.set(source);
-	int currentDistance = 0;
-	long processedArcs = 0;
-	while (currentDistance < maxDistance && visited.cardinality() < maxNodes && !lastFrontier.isEmpty()) {
-	    IntArrayFIFOQueue nextFrontier = new IntArrayFIFOQueue();
-	    while (visited.cardinality() < maxNodes && !lastFrontier.isEmpty()) {
-		Integer u = lastFrontier.dequeueInt();
-		LazyIntIterator neighs = G.successors(u);
-		int deg = G.outdegree(u);
-		processedArcs += deg;
-		while (visited.cardinality() < maxNodes && deg-- != 0) {
-		    Integer w = neighs.nextInt();
-		    if (!visited.get(w)) { // w has never been seen before
-			visited.set(w);
-			nextFrontier.enqueue(w.intValue());
-		    }
-		}
-	    }
-	    if (visited.cardinality() < maxNodes && !nextFrontier.isEmpty()) // if there is still something to explore, we can increase the distance
-		currentDistance++;
-	    lastFrontier = nextFrontier;
-	}
+	context.search(G, source, maxDistance, maxNodes);
 	long stopTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-	VisitTerminatingCondition cond;
-	if (lastFrontier.isEmpty())
-	    cond = VisitTerminatingCondition.FRONTIER_EMTPY;
-	else if (visited.cardinality() == maxNodes)
-	    cond = VisitTerminatingCondition.MAX_NODES_REACHED;
-	else
-	    cond = VisitTerminatingCondition.MAX_DISTANCE_REACHED;
 	return new Result()
 		.setElapsedSeconds((double) (stopTime - startTime) / 1E9)
 		.setSourceNode(source)
 		.setDistanceMap(null)
 		.setMaxNodes(maxNodes)
-		.setReachedNodes(visited.cardinality())
+		.setReachedNodes(context.reached())
 		.setMaxDistance(maxDistance)
-		.setReachedDistance(currentDistance)
-		.setProcessedArcs(processedArcs)
-		.setTerminatingCondition(cond);
+		.setReachedDistance(context.reachedDistance())
+		.setProcessedArcs(context.processedArcs())
+		.setTerminatingCondition(context.terminatingCondition());
     }
 
     /**
@@ -310,80 +466,74 @@ public class BreadthFirstSearch {
      * @return a {@link Result} object containing the result of the visit.
      */
     public Result visit() {
+	return visit(context());
+    }
+
+    /**
+     * Performs the visit as {@link #visit()}, using the given context.
+     * 
+     * @param context
+     * @return a {@link Result} object containing the result of the visit.
+     */
+    public Result visit(Context context) {
 	long startTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-	Map<Integer, Integer> distanceMap = new Int2IntOpenHashMap();
-	distanceMap.put(source, 0);
-	IntArrayFIFOQueue lastFrontier = new IntArrayFIFOQueue(); // nodes visited in the last iteration
-	lastFrontier.enqueue(source);
-	BitSet visited = new BitSet();
-	visited.set(source);
-	int currentDistance = 0;
-	long processedArcs = 0;
-	while (currentDistance < maxDistance && visited.cardinality() < maxNodes && !lastFrontier.isEmpty()) {
-	    IntArrayFIFOQueue nextFrontier = new IntArrayFIFOQueue();
-	    while (visited.cardinality() < maxNodes && !lastFrontier.isEmpty()) {
-		Integer u = lastFrontier.dequeueInt();
-		LazyIntIterator neighs = G.successors(u);
-		int deg = G.outdegree(u);
-		processedArcs += deg;
-		while (visited.cardinality() < maxNodes && deg-- != 0) {
-		    Integer w = neighs.nextInt();
-		    if (!visited.get(w)) { // w has never been seen before
-			visited.set(w);
-			distanceMap.put(w, currentDistance + 1);
-			nextFrontier.enqueue(w.intValue());
-		    }
-		}
-	    }
-	    if (visited.cardinality() < maxNodes && !nextFrontier.isEmpty()) // if there is still something to explore, we can increase the distance
-		currentDistance++;
-	    lastFrontier = nextFrontier;
+	int reached = context.search(G, source, maxDistance, maxNodes);
+	Int2IntOpenHashMap distanceMap = new Int2IntOpenHashMap(reached);
+	for (int i = 0; i < reached; i++) {
+	    int v = context.node(i);
+	    distanceMap.put(v, context.distance(v));
 	}
 	long stopTime = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
-	VisitTerminatingCondition cond;
-	if (lastFrontier.isEmpty())
-	    cond = VisitTerminatingCondition.FRONTIER_EMTPY;
-	else if (visited.cardinality() == maxNodes)
-	    cond = VisitTerminatingCondition.MAX_NODES_REACHED;
-	else
-	    cond = VisitTerminatingCondition.MAX_DISTANCE_REACHED;
 	return new Result()
 		.setElapsedSeconds((double) (stopTime - startTime) / 1E9)
 		.setSourceNode(source)
 		.setDistanceMap(distanceMap)
-		.setReachedNodes(visited.cardinality())
+		.setReachedNodes(reached)
 		.setMaxDistance(maxDistance)
-		.setReachedDistance(currentDistance)
-		.setProcessedArcs(processedArcs)
-		.setTerminatingCondition(cond);
+		.setReachedDistance(context.reachedDistance())
+		.setProcessedArcs(context.processedArcs())
+		.setTerminatingCondition(context.terminatingCondition());
     }
 
     /**
-     * Performs multiple breadth-first searches in parallel.
+     * Performs multiple breadth-first searches in parallel. If an output file is given, the results are encoded by
+     * the visiting threads and written by a dedicated thread with a {@link VisitResultWriter}, as soon as they
+     * arrive, to that file or (with oneFilePerNode) to a file per source, named after the output file followed by
+     * "-node=" and the source; they can be read back with a {@link VisitResultReader}. If writing fails, the visits
+     * are stopped and the failure is thrown once the threads are done.
      * 
      * @param numThreads
      * @param oneFilePerNode
      * @param outFile
+     *            the output file, or null to return the results
      * @param maxQueuedResults
-     * @return
+     *            the maximum number of results waiting to be written
+     * @return the results, or an empty list if they were written to outFile
      * @throws IOException
      * @throws InterruptedException
      */
     public List<Pair<Integer, BreadthFirstSearch.Result>> multiThreadedVisit(int numThreads, boolean oneFilePerNode,
 	    String outFile, int maxQueuedResults) throws IOException, InterruptedException {
-	final ConcurrentLinkedQueue<Integer> nodeQueue = new ConcurrentLinkedQueue<>();
+	final int[] sources = new int[sourceList.size()];
+	for (int i = 0; i < sources.length; i++)
+	    sources[i] = sourceList.get(i);
+	final AtomicInteger nextSource = new AtomicInteger();
 	final LinkedBlockingQueue<Thread> doneQueue = new LinkedBlockingQueue<>();
 	List<Pair<Integer, BreadthFirstSearch.Result>> outputList = new ArrayList<Pair<Integer, BreadthFirstSearch.Result>>();
 	final LinkedBlockingQueue<Pair<Integer, BreadthFirstSearch.Result>> resultQueue = new LinkedBlockingQueue<>(
-		outFile == null ? sourceList.size() : maxQueuedResults);
+		outFile == null ? Math.max(1, sources.length) : 1);
+	final LinkedBlockingQueue<Pair<Integer, byte[]>> recordQueue = new LinkedBlockingQueue<>(
+		Math.max(1, maxQueuedResults));
+	final AtomicReference<Exception> writerError = new AtomicReference<>();
 	ProgressLogger mainLogger = new ProgressLogger(LoggerFactory.getLogger("SOLVER"));
 
 	/**
-	 * The control loop in each thread. This object polls the input node list for new source nodes, invokes the
-	 * visit, and puts the result back into a queue.
+	 * The control loop in each thread. This object takes the next source node, invokes the visit with the
+	 * context of the thread, and puts the result (or its encoding, if results are written) into a queue.
 	 */
 	class ParallelBFSWorker implements Runnable {
 	    private final ImmutableGraph Gview;
+	    private final Context context = new Context();
 
 	    public ParallelBFSWorker() {
 		super();
@@ -391,55 +541,65 @@ public class BreadthFirstSearch {
 	    }
 
 	    public void run() {
-		Integer v;
-		while ((v = nodeQueue.poll()) != null) {
-		    BreadthFirstSearch.Result out = new BreadthFirstSearch(Gview, v, maxDistance).visit();
+		int i;
+		while (writerError.get() == null && (i = nextSource.getAndIncrement()) < sources.length) {
+		    int v = sources[i];
 		    try {
-			resultQueue.put(new ImmutablePair<Integer, BreadthFirstSearch.Result>(v, out));
+			if (outFile == null)
+			    resultQueue.put(new ImmutablePair<Integer, BreadthFirstSearch.Result>(v,
+				    new BreadthFirstSearch(Gview, v, maxDistance).visit(context)));
+			else {
+			    context.search(Gview, v, maxDistance, Integer.MAX_VALUE);
+			    recordQueue.put(new ImmutablePair<Integer, byte[]>(v, VisitResultWriter.encode(v, context)));
+			}
 		    } catch (InterruptedException e) {
+			if (writerError.get() != null) // interrupted by the failing writer
+			    break;
 			e.printStackTrace();
 		    }
 		}
-		try {
-		    doneQueue.put(Thread.currentThread());
-		} catch (InterruptedException e) {
-		    e.printStackTrace();
-		}
+		doneQueue.add(Thread.currentThread());
 	    }
 	}
 	mainLogger.start();
-	Iterator<Integer> nodeItr = sourceList.iterator();
-	while (nodeItr.hasNext())
-	    nodeQueue.add(nodeItr.next());
 	Thread[] runners = new Thread[numThreads];
 	/* Create, start, and join threads */
 	for (int i = 0; i < numThreads; i++) {
 	    runners[i] = new Thread(new ParallelBFSWorker());
 	    // mainLogger.logger().info("Thread " + i + " started");
 	}
-	for (int i = 0; i < numThreads; i++)
-	    runners[i].start();
-	if (outFile != null) { // writes out a pair as soon as it arrives
-	    if (oneFilePerNode) {
-		for (int i = 0; i < sourceList.size(); i++) {
-		    Pair<Integer, BreadthFirstSearch.Result> p = resultQueue.take();
-		    FileOutputStream fos = new FileOutputStream(outFile + "-node=" + p.getLeft());
-		    ObjectOutputStream oos = new ObjectOutputStream(fos);
-		    oos.writeObject(p);
-		    oos.close();
-		    fos.close();
-		}
-	    } else {
-		FileOutputStream fos = new FileOutputStream(outFile);
-		ObjectOutputStream oos = new ObjectOutputStream(fos);
-		for (int i = 0; i < sourceList.size(); i++) {
-		    Pair<Integer, BreadthFirstSearch.Result> p = resultQueue.take();
-		    oos.writeObject(p);
+	Thread writer = null;
+	if (outFile != null) { // writes out a record as soon as it arrives
+	    // the single output file is opened here, so that failing to open it stops everything before it starts
+	    final VisitResultWriter single = oneFilePerNode ? null : new VisitResultWriter(outFile);
+	    writer = new Thread(() -> {
+		try {
+		    if (oneFilePerNode) {
+			// the files are written one at a time, hence they share a buffer; larger records are written directly
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			for (int i = 0; i < sources.length; i++) {
+			    Pair<Integer, byte[]> p = recordQueue.take();
+			    try (VisitResultWriter out = new VisitResultWriter(outFile + "-node=" + p.getLeft(), buffer)) {
+				out.write(p.getRight());
+			    }
+			}
+		    } else {
+			try (VisitResultWriter out = single) {
+			    for (int i = 0; i < sources.length; i++)
+				out.write(recordQueue.take().getRight());
+			}
+		    }
+		} catch (IOException | InterruptedException | RuntimeException e) {
+		    // stop the workers, which would otherwise block forever on the full queue
+		    writerError.set(e);
+		    for (Thread runner : runners)
+			runner.interrupt();
 		}
-		oos.close();
-		fos.close();
-	    }
+	    }, "writer");
+	    writer.start();
 	}
+	for (int i = 0; i < numThreads; i++)
+	    runners[i].start();
 	for (int i = 0; i < numThreads; i++) { // wait for threads to finish
 	    try {
 		Thread joining = doneQueue.take();
@@ -449,6 +609,15 @@ public class BreadthFirstSearch {
 		e.printStackTrace();
 	    }
 	}
+	if (writer != null)
+	    writer.join();
+	Exception e = writerError.get();
+	if (e instanceof IOException)
+	    throw (IOException) e;
+	if (e instanceof RuntimeException)
+	    throw (RuntimeException) e;
+	if (e != null)
+	    throw new IOException("The writer was interrupted", e);
 	if (outFile == null) { // return the actual result
 	    outputList = new LinkedList<>();
 	    resultQueue.drainTo(outputList);
@@ -467,16 +636,24 @@ public class BreadthFirstSearch {
 	GraphFormat format = null;
 	List<Integer> sources = new ArrayList<Integer>();
 	boolean oneFilePerNode = false;
+	boolean directionOptimizing = false;
+	boolean ballSizes = false;
 	Options options = new Options();
 	options.addOption("F", "input-file-webgraph", true, "basename of the file, stored in Webgraph's BVGraph format");
 	options.addOption("A", "input-file-ascii", true, "basename of the graph, stored in Webgraph's ASCII format");
 	options.addOption("d", "max-distance", true, "max depth of the BFS visit");
 	options.addOption("q", "max-queued-results", true, "max queued results for the multithreaded visit.");
-	options.addOption("o", "output-file", true, "store output into this file");
+	options.addOption("o", "output-file", true, "store output into this file (visit results in the format of VisitResultWriter)");
 	options.addOption("t", "threads", true, "number of concurrent threads (default = 1)");
 	options.addOption("v", "verbose", true, "verbose level; 0 = no output (default), 1 = basic output");
 	options.addOption("r", "reverse", false, "reverse (= transpose) the input graph");
 	options.addOption("i", "individual", false, "save output on a file per each node");
+	options.addOption("B", "ball-sizes", false,
+		"visit from 64 sources at a time, and print for each source the number of nodes within each distance"
+			+ " (to the output file, if given) instead of the visit results");
+	options.addOption("D", "direction-optimizing", false,
+		"visit a symmetric graph from each source with all the threads, switching between top-down and bottom-up steps;"
+			+ " with -o, the distances from each source are saved as binary ints to a file per node");
 	CommandLineParser parser = new PosixParser();
 	try {
 	    CommandLine cmd = parser.parse(options, args);
@@ -490,6 +667,8 @@ public class BreadthFirstSearch {
 	    maxQueuedResults = cmd.hasOption("q") ? Integer.parseInt(cmd.getOptionValue("q")) : numThreads;
 	    transpose = cmd.hasOption("r");
 	    oneFilePerNode = cmd.hasOption("i");
+	    directionOptimizing = cmd.hasOption("D");
+	    ballSizes = cmd.hasOption("B");
 	} catch (ParseException e) {
 	    System.err.println(e.toString());
 	    System.exit(1);
@@ -526,6 +705,52 @@ public class BreadthFirstSearch {
 	    sources.add(v);
 	}
 	stdin.close();
+	if (ballSizes) { // batches of sources, visited together
+	    long start = System.nanoTime();
+	    CSRGraph snapshot = new CSRGraph(G, numThreads);
+	    int[] sourceArray = new int[sources.size()];
+	    for (int i = 0; i < sourceArray.length; i++)
+		sourceArray[i] = sources.get(i);
+	    int[][] balls = new MultiSourceBreadthFirstSearch(snapshot).ballSizes(sourceArray, maxDistance, numThreads);
+	    PrintStream out = outputFile == null ? System.out
+		    : new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+	    StringBuilder line = new StringBuilder();
+	    for (int i = 0; i < sourceArray.length; i++) {
+		line.setLength(0);
+		line.append(sourceArray[i]).append('\t');
+		for (int d = 0; d < balls[i].length; d++)
+		    line.append(d == 0 ? "" : " ").append(balls[i][d]);
+		out.println(line);
+	    }
+	    out.flush();
+	    if (out != System.out)
+		out.close();
+	    if (verboseLevel > 0)
+		System.out.println("Elapsed in MAIN: " + (double) (System.nanoTime() - start) / 1E9);
+	    return;
+	}
+	if (directionOptimizing) { // each visit is parallel
+	    long start = System.nanoTime();
+	    ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(G, numThreads);
+	    if (verboseLevel > 0)
+		System.out.println("Snapshot taken in " + (double) (System.nanoTime() - start) / 1E9);
+	    for (int v : sources) {
+		long visitStart = System.nanoTime();
+		int[] distances = bfs.distances(v, maxDistance);
+		double elapsed = (double) (System.nanoTime() - visitStart) / 1E9;
+		int reached = 0;
+		for (int d : distances)
+		    if (d >= 0)
+			reached++;
+		if (outputFile != null)
+		    BinIO.storeInts(distances, outputFile + "-node=" + v);
+		System.out.println(v + "  " + reached + "  " + bfs.getEccentricity() + "  " + elapsed);
+		if (verboseLevel > 0)
+		    System.out.println("Arcs scanned: " + bfs.getProcessedArcs() + ", bottom-up levels: " + bfs.getBottomUpSteps()
+			    + " of " + bfs.getEccentricity());
+	    }
+	    return;
+	}
 	// do a parallel visit
 	numThreads = Math.min(sources.size(), numThreads);
 	long start = System.nanoTime();
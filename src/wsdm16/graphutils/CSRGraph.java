@@ -0,0 +1,130 @@
+package wsdm16.graphutils;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.NodeIterator;
+
+/**
+ * An immutable in-memory snapshot of a graph in compressed sparse row (CSR) format: the successor lists of all the
+ * nodes one after the other in a single array, and the position of the first successor of each node in another.
+ * Offsets are ints, hence the graph can have at most about 2^31 arcs. The arrays are exposed, so that visits scan
+ * successor lists without allocating (see {@link ParallelBreadthFirstSearch} and
+ * {@link MultiSourceBreadthFirstSearch}).
+ *
+ * CSRGraph.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class CSRGraph {
+    private final int n;
+    private final int[] offsets; // the successors of u are successors[offsets[u]], ..., successors[offsets[u+1]-1]
+    private final int[] successors;
+
+    /**
+     * Constructor. Takes a snapshot of the graph, with numThreads threads if the graph is random access.
+     *
+     * @param G
+     * @param numThreads
+     *            the number of threads, or -1 to use all available cores
+     * @throws IllegalArgumentException
+     *             if G has too many arcs for a snapshot
+     * @throws RuntimeException
+     *             if a copying thread fails, or if the copy is interrupted
+     */
+    public CSRGraph(ImmutableGraph G, int numThreads) {
+	if (numThreads == -1)
+	    numThreads = Runtime.getRuntime().availableProcessors();
+	this.n = G.numNodes();
+	this.offsets = new int[n + 1];
+	long m = 0;
+	IntIterator degrees = G.outdegrees();
+	for (int u = 0; u < n; u++) {
+	    m += degrees.nextInt();
+	    if (m > Integer.MAX_VALUE - 8)
+		throw new IllegalArgumentException("The graph has too many arcs for a snapshot");
+	    offsets[u + 1] = (int) m;
+	}
+	this.successors = new int[(int) m];
+	if (G.randomAccess() && numThreads > 1) {
+	    Thread[] threads = new Thread[numThreads];
+	    Throwable[] errors = new Throwable[numThreads];
+	    for (int t = 0; t < numThreads; t++) {
+		final ImmutableGraph H = G.copy();
+		final int from = (int) ((long) n * t / numThreads), to = (int) ((long) n * (t + 1) / numThreads);
+		final int id = t;
+		threads[t] = new Thread(() -> {
+		    try {
+			for (int u = from; u < to; u++)
+			    System.arraycopy(H.successorArray(u), 0, successors, offsets[u], offsets[u + 1] - offsets[u]);
+		    } catch (RuntimeException | Error e) {
+			errors[id] = e;
+		    }
+		});
+		threads[t].start();
+	    }
+	    try {
+		for (Thread t : threads)
+		    t.join();
+	    } catch (InterruptedException e) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException(e);
+	    }
+	    for (Throwable e : errors) {
+		if (e instanceof Error)
+		    throw (Error) e;
+		if (e != null)
+		    throw (RuntimeException) e;
+	    }
+	} else {
+	    NodeIterator itr = G.nodeIterator();
+	    for (int i = 0; i < n; i++) {
+		int u = itr.nextInt();
+		System.arraycopy(itr.successorArray(), 0, successors, offsets[u], itr.outdegree());
+	    }
+	}
+    }
+
+    public int numNodes() {
+	return n;
+    }
+
+    public long numArcs() {
+	return offsets[n];
+    }
+
+    public int outdegree(int u) {
+	return offsets[u + 1] - offsets[u];
+    }
+
+    /**
+     * Returns the position of the first successor of u in {@link #getSuccessors()}; the successors of u end at the
+     * position of u+1.
+     *
+     * @param u
+     *            a node, or the number of nodes
+     * @return
+     */
+    public int getOffset(int u) {
+	return offsets[u];
+    }
+
+    /**
+     * Returns the array holding the successor lists of all the nodes, one after the other. The array is not copied
+     * and must not be modified.
+     *
+     * @return
+     */
+    public int[] getSuccessors() {
+	return successors;
+    }
+
+    /**
+     * Returns the array of the positions of the first successor of each node, followed by the number of arcs. The
+     * array is not copied and must not be modified.
+     *
+     * @return
+     */
+    public int[] getOffsets() {
+	return offsets;
+    }
+}
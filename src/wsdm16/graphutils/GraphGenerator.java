@@ -1,14 +1,31 @@
 package wsdm16.graphutils;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+
+import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.BVGraph;
 import it.unimi.dsi.webgraph.ImmutableGraph;
 import it.unimi.dsi.webgraph.Transform;
 
 /**
  * A generator of common graphs such as stars, trees, circles and more.
  * 
+ * Large random graphs (G(n,m), Chung-Lu, R-MAT and Barabasi-Albert) are generated as symmetric, loop-free
+ * {@link SymmetricBatchGraph}s, with several threads and a bounded amount of memory, and can be stored in BVGraph
+ * format by {@link #main(String[])}. Their random choices are drawn from a counter-based generator, i.e. a hash of
+ * the seed and of the index of the choice, hence a graph depends only on its seed, and not on the number of
+ * threads.
+ * 
  * @author anon
  */
 public class GraphGenerator {
@@ -17,7 +34,7 @@ public class GraphGenerator {
      * The available types of graph.
      */
     public enum GraphType {
-	GNP, GNM, CIRCLE, STAR, TREE, CLIQUE;
+	GNP, GNM, CIRCLE, STAR, TREE, CLIQUE, CHUNG_LU, RMAT, BARABASI_ALBERT;
     }
 
     /**
@@ -254,4 +271,266 @@ public class GraphGenerator {
 	return MG.immutableView();
     }
 
+    /*
+     * Large random graphs.
+     */
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /** The SplitMix64 finalizer */
+    private static long mix(long z) {
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the i-th random long for a seed (SplitMix64). Distinct values of i, e.g. thread or trial numbers, give
+     * independent seeds for other generators.
+     *
+     * @param seed
+     * @param i
+     * @return
+     */
+    public static long random(long seed, long i) {
+	return mix(mix(seed) + i * GOLDEN_GAMMA);
+    }
+
+    /** A random int in [0, bound) */
+    private static int nextInt(long random, int bound) {
+	return (int) (((random >>> 32) * bound) >>> 32);
+    }
+
+    /** A random double in [0, 1) */
+    private static double nextDouble(long random) {
+	return (random >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Generates a symmetric Erdos-Renyi graph with n nodes and m edges, drawn independently; loops and repeated
+     * edges are dropped, hence the graph has slightly less than m edges (2m arcs).
+     * 
+     * @param n
+     * @param m
+     *            the number of edges drawn
+     * @param seed
+     * @param numThreads
+     *            the number of threads, or -1 to use all available cores
+     * @param memoryBudget
+     *            the number of bytes of the batches of edges (see {@link SymmetricBatchGraph})
+     * @return
+     * @throws IOException
+     */
+    public static SymmetricBatchGraph erdosRenyiGraph(int n, long m, long seed, int numThreads, long memoryBudget)
+	    throws IOException {
+	return new SymmetricBatchGraph(n, (thread, threads, sink) -> {
+	    for (long e = m * thread / threads, end = m * (thread + 1) / threads; e < end; e++)
+		sink.add(nextInt(random(seed, 2 * e), n), nextInt(random(seed, 2 * e + 1), n));
+	}, memoryBudget, numThreads, null);
+    }
+
+    /**
+     * Generates a symmetric Chung-Lu graph with n nodes and m edges, whose expected degrees follow a power law: the
+     * weight of node i is (i+1)^(-1/(exponent-1)), and both endpoints of each edge are drawn with probability
+     * proportional to their weights. Hence the nodes are sorted by decreasing expected degree. Loops and repeated
+     * edges are dropped.
+     * 
+     * @param n
+     * @param m
+     *            the number of edges drawn
+     * @param exponent
+     *            the exponent of the power law of the degrees, larger than 2
+     * @param seed
+     * @param numThreads
+     *            the number of threads, or -1 to use all available cores
+     * @param memoryBudget
+     *            the number of bytes of the batches of edges (see {@link SymmetricBatchGraph})
+     * @return
+     * @throws IOException
+     */
+    public static SymmetricBatchGraph chungLuGraph(int n, long m, double exponent, long seed, int numThreads,
+	    long memoryBudget) throws IOException {
+	if (exponent <= 1)
+	    throw new IllegalArgumentException("The exponent must be larger than 1");
+	final double[] cumulative = new double[n]; // of the weights
+	double total = 0;
+	for (int i = 0; i < n; i++)
+	    cumulative[i] = total += Math.pow(i + 1, -1 / (exponent - 1));
+	final double sum = total;
+	return new SymmetricBatchGraph(n, (thread, threads, sink) -> {
+	    for (long e = m * thread / threads, end = m * (thread + 1) / threads; e < end; e++) {
+		int u = Arrays.binarySearch(cumulative, nextDouble(random(seed, 2 * e)) * sum);
+		int v = Arrays.binarySearch(cumulative, nextDouble(random(seed, 2 * e + 1)) * sum);
+		sink.add(Math.min(n - 1, u < 0 ? -u - 1 : u), Math.min(n - 1, v < 0 ? -v - 1 : v));
+	    }
+	}, memoryBudget, numThreads, null);
+    }
+
+    /**
+     * Generates a symmetric R-MAT graph (Chakrabarti, Zhan and Faloutsos, SDM 2004) with 2^scale nodes and m edges:
+     * each edge picks a quadrant of the adjacency matrix with probabilities a, b, c and 1-a-b-c, recursively, for
+     * each bit of its endpoints. The node ids are then scrambled by a bijection depending on the seed, as in the
+     * Graph500 benchmark, so that the degree does not depend on the id. Loops and repeated edges are dropped.
+     * 
+     * @param scale
+     *            the logarithm of the number of nodes, at most 30 (node ids are ints)
+     * @param m
+     *            the number of edges drawn
+     * @param a
+     * @param b
+     * @param c
+     * @param seed
+     * @param numThreads
+     *            the number of threads, or -1 to use all available cores
+     * @param memoryBudget
+     *            the number of bytes of the batches of edges (see {@link SymmetricBatchGraph})
+     * @return
+     * @throws IOException
+     */
+    public static SymmetricBatchGraph rmatGraph(int scale, long m, double a, double b, double c, long seed,
+	    int numThreads, long memoryBudget) throws IOException {
+	if (scale < 1 || scale > 30)
+	    throw new IllegalArgumentException("The scale must be between 1 and 30");
+	final long mask = (1L << scale) - 1;
+	final long mul1 = mix(seed ^ 1) | 1, mul2 = mix(seed ^ 2) | 1; // odd, hence invertible modulo 2^scale
+	return new SymmetricBatchGraph(1 << scale, (thread, threads, sink) -> {
+	    for (long e = m * thread / threads, end = m * (thread + 1) / threads; e < end; e++) {
+		long u = 0, v = 0;
+		for (int bit = 0; bit < scale; bit++) {
+		    double r = nextDouble(random(seed, e * 32 + bit));
+		    if (r >= a + b + c) {
+			u |= 1L << bit;
+			v |= 1L << bit;
+		    } else if (r >= a + b)
+			u |= 1L << bit;
+		    else if (r >= a)
+			v |= 1L << bit;
+		}
+		sink.add(scramble(u, mask, scale, mul1, mul2), scramble(v, mask, scale, mul1, mul2));
+	    }
+	}, memoryBudget, numThreads, null);
+    }
+
+    /** A bijection of [0, mask] that does not fix 0, the largest hub */
+    private static int scramble(long x, long mask, int scale, long mul1, long mul2) {
+	x = (x * mul1 + mul2) & mask;
+	x ^= x >>> (scale + 1) / 2;
+	x = (x * mul2) & mask;
+	return (int) x;
+    }
+
+    /**
+     * Generates a symmetric Barabasi-Albert graph with n nodes, where each node links to d nodes chosen by
+     * preferential attachment. The graph is the one of the algorithm of Batagelj and Brandes (Phys. Rev. E 71,
+     * 2005), where the endpoints of the edges are listed one after the other, and the target of the edge at position
+     * 2i+1 is the node at a uniformly random position before it. As suggested by Sanders and Schulz ("Scalable
+     * generation of scale-free graphs", IPL 2016), the random position is a hash of 2i+1, hence the node at any
+     * position can be found by following random positions back to an even one, in 2 steps on average, and
+     * the edges can be generated independently. Loops and repeated edges are dropped.
+     * 
+     * @param n
+     * @param d
+     *            the number of edges of each new node
+     * @param seed
+     * @param numThreads
+     *            the number of threads, or -1 to use all available cores
+     * @param memoryBudget
+     *            the number of bytes of the batches of edges (see {@link SymmetricBatchGraph})
+     * @return
+     * @throws IOException
+     */
+    public static SymmetricBatchGraph barabasiAlbertGraph(int n, int d, long seed, int numThreads, long memoryBudget)
+	    throws IOException {
+	final long m = (long) n * d;
+	return new SymmetricBatchGraph(n, (thread, threads, sink) -> {
+	    for (long e = m * thread / threads, end = m * (thread + 1) / threads; e < end; e++) {
+		long position = 2 * e + 1;
+		while ((position & 1) == 1)
+		    position = (random(seed, position) >>> 1) % position;
+		sink.add((int) (e / d), (int) (position / 2 / d));
+	    }
+	}, memoryBudget, numThreads, null);
+    }
+
+    /**
+     * Generates a large random graph, and stores it in BVGraph format.
+     * 
+     * @param args
+     */
+    public static void main(String[] args) {
+	GraphType type = null;
+	int n = 0, d = 0, numThreads = Runtime.getRuntime().availableProcessors();
+	long m = 0, seed = 0, memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+	double exponent = 2.5, a = 0.57, b = 0.19, c = 0.19;
+	String basename = null;
+	Options options = new Options();
+	options.addOption("g", "graph", true, "type of graph: gnm, chung_lu, rmat or barabasi_albert");
+	options.addOption("n", "nodes", true, "number of nodes (for rmat, the logarithm of the number of nodes, at most 30)");
+	options.addOption("m", "edges", true, "number of edges drawn (gnm, chung_lu and rmat)");
+	options.addOption("d", "degree", true, "number of edges of each new node (barabasi_albert)");
+	options.addOption("x", "exponent", true, "exponent of the power law of the degrees (chung_lu, default 2.5)");
+	options.addOption("p", "probabilities", true,
+		"comma-separated probabilities a,b,c of the quadrants (rmat, default 0.57,0.19,0.19)");
+	options.addOption("s", "seed", true, "seed (default 0)");
+	options.addOption("t", "threads", true, "number of threads (default = number of cores)");
+	options.addOption("M", "memory", true, "memory for the batches of edges, in MB (default = 1/4 of the heap)");
+	options.addOption("o", "output", true, "basename of the BVGraph to store");
+	CommandLineParser parser = new PosixParser();
+	try {
+	    CommandLine cmd = parser.parse(options, args);
+	    type = cmd.hasOption("g") ? GraphType.valueOf(cmd.getOptionValue("g").toUpperCase()) : type;
+	    n = cmd.hasOption("n") ? Integer.parseInt(cmd.getOptionValue("n")) : n;
+	    m = cmd.hasOption("m") ? Long.parseLong(cmd.getOptionValue("m")) : m;
+	    d = cmd.hasOption("d") ? Integer.parseInt(cmd.getOptionValue("d")) : d;
+	    exponent = cmd.hasOption("x") ? Double.parseDouble(cmd.getOptionValue("x")) : exponent;
+	    if (cmd.hasOption("p")) {
+		String[] p = cmd.getOptionValue("p").split(",");
+		a = Double.parseDouble(p[0]);
+		b = Double.parseDouble(p[1]);
+		c = Double.parseDouble(p[2]);
+	    }
+	    seed = cmd.hasOption("s") ? Long.parseLong(cmd.getOptionValue("s")) : seed;
+	    numThreads = cmd.hasOption("t") ? Integer.parseInt(cmd.getOptionValue("t")) : numThreads;
+	    memoryBudget = cmd.hasOption("M") ? Long.parseLong(cmd.getOptionValue("M")) << 20 : memoryBudget;
+	    basename = cmd.hasOption("o") ? cmd.getOptionValue("o") : basename;
+	} catch (ParseException | IllegalArgumentException e) {
+	    System.err.println(e.toString());
+	    System.exit(1);
+	}
+	if (type == null || basename == null) {
+	    HelpFormatter formatter = new HelpFormatter();
+	    formatter.setWidth(120);
+	    formatter.printHelp(GraphGenerator.class.getName() + " -g type -n nodes (-m edges|-d degree) -o basename [options]",
+		    options);
+	    System.exit(0);
+	}
+	ProgressLogger pl = new ProgressLogger();
+	try {
+	    long start = System.nanoTime();
+	    SymmetricBatchGraph G;
+	    switch (type) {
+	    case GNM:
+		G = erdosRenyiGraph(n, m, seed, numThreads, memoryBudget);
+		break;
+	    case CHUNG_LU:
+		G = chungLuGraph(n, m, exponent, seed, numThreads, memoryBudget);
+		break;
+	    case RMAT:
+		G = rmatGraph(n, m, a, b, c, seed, numThreads, memoryBudget);
+		break;
+	    case BARABASI_ALBERT:
+		G = barabasiAlbertGraph(n, d, seed, numThreads, memoryBudget);
+		break;
+	    default:
+		throw new IllegalArgumentException("Graphs of type " + type + " are not generated out of core");
+	    }
+	    pl.logger().info("Edges generated and sorted in " + G.numRuns() + " runs, in "
+		    + (System.nanoTime() - start) / 1E9 + " seconds.");
+	    BVGraph.store(G, basename, -1, 1, -1, -1, 0, numThreads, pl);
+	    pl.logger().info("Graph stored in " + (System.nanoTime() - start) / 1E9 + " seconds. Basename: " + basename);
+	} catch (IOException e) {
+	    e.printStackTrace();
+	}
+    }
+
 }
@@ -0,0 +1,156 @@
+package wsdm16.graphutils;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Breadth-first searches from up to 64 sources at once (MS-BFS: Then et al., "The more the merrier: efficient
+ * multi-source graph traversal", VLDB 2014). Bit i of a long stands for the i-th source of a batch: for each node,
+ * seen holds the sources that have reached it and visit the sources whose frontier contains it, hence a single
+ * scan of a successor list advances the visits of all the sources that share it. Only the sizes of the balls
+ * around the sources are computed, i.e. the number of nodes within each distance, rather than the distance of
+ * every node.
+ *
+ * Batches are independent, and are taken by the threads from a shared counter; each thread allocates its three
+ * bitmask arrays once.
+ *
+ * MultiSourceBreadthFirstSearch.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class MultiSourceBreadthFirstSearch {
+    /** Sources visited together */
+    public static final int BATCH = 64;
+
+    private final CSRGraph G;
+    private final int n;
+
+    public MultiSourceBreadthFirstSearch(CSRGraph G) {
+	this.G = G;
+	this.n = G.numNodes();
+    }
+
+    /**
+     * Computes the sizes of the balls around a batch of sources.
+     *
+     * @param sources
+     * @param from
+     *            the first source of the batch
+     * @param to
+     *            the source after the last one of the batch, at most {@link #BATCH} after from
+     * @param maxDistance
+     * @param seen
+     *            an array of n longs, not necessarily clear
+     * @param visit
+     *            ditto
+     * @param visitNext
+     *            ditto
+     * @param balls
+     *            for each source, the ball sizes are stored in balls[source]
+     */
+    private void batch(int[] sources, int from, int to, int maxDistance, long[] seen, long[] visit, long[] visitNext,
+	    int[][] balls) {
+	final int[] offsets = G.getOffsets(), successors = G.getSuccessors();
+	int size = to - from;
+	Arrays.fill(seen, 0);
+	Arrays.fill(visit, 0);
+	Arrays.fill(visitNext, 0);
+	IntArrayList[] ball = new IntArrayList[size];
+	for (int i = 0; i < size; i++) {
+	    int s = sources[from + i];
+	    seen[s] |= 1L << i;
+	    visit[s] |= 1L << i;
+	    ball[i] = new IntArrayList();
+	    ball[i].add(1);
+	}
+	int[] reached = new int[size]; // the nodes at the current distance from each source
+
+	for (int distance = 1; distance <= maxDistance; distance++) {
+	    // expand the frontiers
+	    boolean any = false;
+	    for (int v = 0; v < n; v++) {
+		long f = visit[v];
+		if (f == 0)
+		    continue;
+		for (int j = offsets[v], end = offsets[v + 1]; j < end; j++) {
+		    int w = successors[j];
+		    long d = f & ~seen[w];
+		    if (d != 0) {
+			visitNext[w] |= d;
+			seen[w] |= d;
+			any = true;
+		    }
+		}
+	    }
+	    if (!any)
+		break;
+	    // the next frontiers become the current ones, and are counted
+	    long[] t = visit;
+	    visit = visitNext;
+	    visitNext = t;
+	    Arrays.fill(reached, 0);
+	    for (int v = 0; v < n; v++) {
+		visitNext[v] = 0;
+		for (long f = visit[v]; f != 0; f &= f - 1)
+		    reached[Long.numberOfTrailingZeros(f)]++;
+	    }
+	    for (int i = 0; i < size; i++)
+		if (reached[i] > 0)
+		    ball[i].add(ball[i].getInt(ball[i].size() - 1) + reached[i]);
+	}
+	for (int i = 0; i < size; i++)
+	    balls[from + i] = ball[i].toIntArray();
+    }
+
+    /**
+     * Computes, for each source, the number of nodes within each distance from it.
+     *
+     * @param sources
+     * @param maxDistance
+     * @param numThreads
+     * @return for each source s, an array whose d-th entry is the number of nodes at distance at most d from s, up
+     *         to the eccentricity of s (or maxDistance)
+     * @throws RuntimeException
+     *             if a thread fails, or if the visits are interrupted
+     */
+    public int[][] ballSizes(int[] sources, int maxDistance, int numThreads) {
+	int[][] balls = new int[sources.length][];
+	int numBatches = (sources.length + BATCH - 1) / BATCH;
+	numThreads = Math.max(1, Math.min(numThreads, numBatches));
+	AtomicInteger nextBatch = new AtomicInteger();
+	Thread[] threads = new Thread[numThreads];
+	Throwable[] errors = new Throwable[numThreads];
+	for (int t = 0; t < numThreads; t++) {
+	    final int id = t;
+	    threads[t] = new Thread(() -> {
+		try {
+		    long[] seen = new long[n], visit = new long[n], visitNext = new long[n];
+		    for (int b; (b = nextBatch.getAndIncrement()) < numBatches;)
+			batch(sources, b * BATCH, Math.min((b + 1) * BATCH, sources.length), maxDistance, seen, visit, visitNext, balls);
+		} catch (RuntimeException | Error e) {
+		    errors[id] = e;
+		    // the other threads take no more batches
+		    nextBatch.set(numBatches);
+		}
+	    }, "msbfs" + t);
+	    threads[t].start();
+	}
+	try {
+	    for (Thread t : threads)
+		t.join();
+	} catch (InterruptedException e) {
+	    nextBatch.set(numBatches);
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException(e);
+	}
+	for (Throwable e : errors) {
+	    if (e instanceof Error)
+		throw (Error) e;
+	    if (e != null)
+		throw (RuntimeException) e;
+	}
+	return balls;
+    }
+}
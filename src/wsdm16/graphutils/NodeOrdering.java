@@ -0,0 +1,182 @@
+package wsdm16.graphutils;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+/**
+ * Orderings of the nodes of a graph that improve the locality of the visits of its successor lists: once the
+ * graph is relabeled, the nodes that are accessed together have close ids, hence close entries in any array
+ * indexed by node. All the orderings are returned as permutations, where perm[v] is the new id of node v, as
+ * expected by {@link it.unimi.dsi.webgraph.Transform#map(it.unimi.dsi.webgraph.ImmutableGraph, int[])}.
+ *
+ * NodeOrdering.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class NodeOrdering {
+
+    public enum Ordering {
+	/** By decreasing degree, so that hubs come first */
+	DEGREE,
+	/** In breadth-first order, visiting each component from its largest hub */
+	BFS,
+	/** Reverse Cuthill-McKee, which keeps neighbors close by visiting each component breadth-first from a
+	 * low-degree node, taking the successors of each node by increasing degree */
+	RCM
+    }
+
+    /**
+     * Computes an ordering of the nodes of a graph.
+     *
+     * @param ordering
+     * @param G
+     * @return the permutation from the ids of G to the new ones
+     */
+    public static int[] compute(Ordering ordering, CSRGraph G) {
+	switch (ordering) {
+	case DEGREE:
+	    return degreeDescending(G);
+	case BFS:
+	    return breadthFirst(G);
+	case RCM:
+	    return reverseCuthillMcKee(G);
+	default:
+	    throw new IllegalArgumentException(ordering.toString());
+	}
+    }
+
+    /**
+     * Returns the nodes of a graph sorted by degree, ties broken by id.
+     *
+     * @param G
+     * @param descending
+     * @return
+     */
+    private static int[] sortByDegree(CSRGraph G, boolean descending) {
+	int n = G.numNodes();
+	long[] keys = new long[n];
+	for (int v = 0; v < n; v++)
+	    keys[v] = (long) (descending ? Integer.MAX_VALUE - G.outdegree(v) : G.outdegree(v)) << 32 | v;
+	LongArrays.radixSort(keys);
+	int[] nodes = new int[n];
+	for (int i = 0; i < n; i++)
+	    nodes[i] = (int) keys[i];
+	return nodes;
+    }
+
+    /**
+     * Numbers the nodes by decreasing degree.
+     *
+     * @param G
+     * @return the permutation from the ids of G to the new ones
+     */
+    public static int[] degreeDescending(CSRGraph G) {
+	return invert(sortByDegree(G, true));
+    }
+
+    /**
+     * Numbers the nodes in the order of breadth-first visits, each started from the unvisited node of largest
+     * degree.
+     *
+     * @param G
+     *            a symmetric graph
+     * @return the permutation from the ids of G to the new ones
+     */
+    public static int[] breadthFirst(CSRGraph G) {
+	return invert(visit(G, sortByDegree(G, true), false));
+    }
+
+    /**
+     * Numbers the nodes in reverse Cuthill-McKee order. The visit of each component starts from its unvisited node
+     * of smallest degree.
+     *
+     * @param G
+     *            a symmetric graph
+     * @return the permutation from the ids of G to the new ones
+     */
+    public static int[] reverseCuthillMcKee(CSRGraph G) {
+	int[] order = visit(G, sortByDegree(G, false), true);
+	IntArrays.reverse(order);
+	return invert(order);
+    }
+
+    /**
+     * Visits a graph breadth-first, starting from the first unvisited node in the given order.
+     *
+     * @param G
+     * @param starts
+     *            all the nodes, in the order in which they are tried as sources
+     * @param byDegree
+     *            whether the unvisited successors of each node are enqueued by increasing degree
+     * @return the nodes in the order of the visit
+     */
+    private static int[] visit(CSRGraph G, int[] starts, boolean byDegree) {
+	final int n = G.numNodes();
+	final int[] offsets = G.getOffsets(), successors = G.getSuccessors();
+	int[] queue = new int[n];
+	boolean[] visited = new boolean[n];
+	long[] keys = LongArrays.EMPTY_ARRAY;
+	int head = 0, tail = 0;
+	for (int s : starts) {
+	    if (visited[s])
+		continue;
+	    visited[s] = true;
+	    queue[tail++] = s;
+	    while (head < tail) {
+		int u = queue[head++];
+		int first = tail;
+		for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+		    int w = successors[j];
+		    if (!visited[w]) {
+			visited[w] = true;
+			queue[tail++] = w;
+		    }
+		}
+		if (byDegree && tail - first > 1) { // by degree, then by id
+		    keys = LongArrays.grow(keys, tail - first);
+		    for (int i = first; i < tail; i++)
+			keys[i - first] = (long) G.outdegree(queue[i]) << 32 | queue[i];
+		    Arrays.sort(keys, 0, tail - first);
+		    for (int i = first; i < tail; i++)
+			queue[i] = (int) keys[i - first];
+		}
+	    }
+	}
+	return queue;
+    }
+
+    /**
+     * Inverts a permutation.
+     *
+     * @param perm
+     * @return the permutation q such that q[perm[i]] = i
+     */
+    public static int[] invert(int[] perm) {
+	int[] inverse = new int[perm.length];
+	for (int i = 0; i < perm.length; i++)
+	    inverse[perm[i]] = i;
+	return inverse;
+    }
+
+    /**
+     * Returns the bandwidth of a graph under a permutation of its nodes, i.e. the largest difference between the
+     * new ids of the endpoints of an arc.
+     *
+     * @param G
+     * @param perm
+     *            a permutation of the nodes, or null for the identity
+     * @return
+     */
+    public static int bandwidth(CSRGraph G, int[] perm) {
+	final int[] offsets = G.getOffsets(), successors = G.getSuccessors();
+	int bandwidth = 0;
+	for (int u = 0; u < G.numNodes(); u++)
+	    for (int j = offsets[u]; j < offsets[u + 1]; j++) {
+		int w = successors[j];
+		bandwidth = Math.max(bandwidth, perm == null ? Math.abs(u - w) : Math.abs(perm[u] - perm[w]));
+	    }
+	return bandwidth;
+    }
+}
@@ -0,0 +1,362 @@
+package wsdm16.graphutils;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+
+/**
+ * Parallel breadth-first search of a symmetric graph, computing the distances of all the nodes from a source.
+ * The visit is level-synchronous: the threads expand the current frontier together, and then meet to build the
+ * next one. Each level is expanded either top-down, scanning the successors of the frontier nodes and claiming
+ * the unvisited ones, or bottom-up, scanning the unvisited nodes for a neighbor in the frontier and stopping at
+ * the first one (Beamer, Asanovic and Patterson, "Direction-optimizing breadth-first search", SC 2012). The visit
+ * switches to bottom-up when the arcs out of the frontier are more than 1/{@value #ALPHA} of the arcs out of the
+ * unvisited nodes, and back to top-down when the frontier shrinks below 1/{@value #BETA} of the nodes.
+ *
+ * The visit works on a {@link CSRGraph} snapshot of the graph.
+ * The frontier is an array of nodes for top-down steps, and a bitmap for bottom-up steps. Threads take chunks of
+ * the frontier (top-down) or of the nodes (bottom-up) from a shared counter, so that hubs do not stall a level.
+ *
+ * ParallelBreadthFirstSearch.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class ParallelBreadthFirstSearch {
+    /** Go bottom-up when the frontier has more than 1/ALPHA of the unexplored arcs */
+    public static final int ALPHA = 14;
+    /** Go back top-down when the frontier shrinks below 1/BETA of the nodes */
+    public static final int BETA = 24;
+    /** Frontier positions (top-down) or nodes (bottom-up) taken by a thread at a time; a multiple of 64 */
+    private static final int CHUNK = 1024;
+
+    private final int n;
+    private final int words; // of the bitmaps over the nodes
+    private final int[] offsets; // the successors of u are successors[offsets[u]], ..., successors[offsets[u+1]-1]
+    private final int[] successors;
+    private final int numThreads;
+
+    // statistics of the last visit
+    private int eccentricity, bottomUpSteps;
+    private long processedArcs;
+
+    /**
+     * Constructor. Takes a snapshot of the graph, with numThreads threads if the graph is random access.
+     *
+     * @param G
+     *            a symmetric graph
+     * @param numThreads
+     *            the number of threads of the visits, or -1 to use all available cores
+     * @throws IllegalArgumentException
+     *             if G has too many arcs for a snapshot
+     */
+    public ParallelBreadthFirstSearch(ImmutableGraph G, int numThreads) {
+	this(new CSRGraph(G, numThreads), numThreads);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param G
+     *            a snapshot of a symmetric graph
+     * @param numThreads
+     *            the number of threads of the visits, or -1 to use all available cores
+     */
+    public ParallelBreadthFirstSearch(CSRGraph G, int numThreads) {
+	if (numThreads == -1)
+	    numThreads = Runtime.getRuntime().availableProcessors();
+	this.numThreads = numThreads;
+	this.n = G.numNodes();
+	this.words = (n + 63) >>> 6;
+	this.offsets = G.getOffsets();
+	this.successors = G.getSuccessors();
+    }
+
+    /**
+     * Computes the distances of all the nodes from a source.
+     *
+     * @param source
+     * @return the distance of each node, or -1 for the nodes that cannot be reached
+     */
+    public int[] distances(int source) {
+	return distances(source, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes the distances from a source of the nodes within the given distance.
+     *
+     * @param source
+     * @param maxDistance
+     * @return the distance of each node, or -1 for the nodes that are farther than maxDistance or cannot be reached
+     * @throws RuntimeException
+     *             if a thread of the visit fails, or if the visit is interrupted
+     */
+    public int[] distances(int source, int maxDistance) {
+	Visit visit = new Visit(source, maxDistance);
+	Thread[] threads = new Thread[numThreads];
+	for (int t = 0; t < numThreads; t++) {
+	    final int id = t;
+	    threads[t] = new Thread(() -> visit.run(id), "bfs" + t);
+	    threads[t].start();
+	}
+	try {
+	    for (Thread t : threads)
+		t.join();
+	} catch (InterruptedException e) {
+	    for (Thread t : threads)
+		t.interrupt();
+	    Thread.currentThread().interrupt();
+	    throw new RuntimeException(e);
+	}
+	Throwable error = visit.error;
+	if (error instanceof Error)
+	    throw (Error) error;
+	if (error instanceof RuntimeException)
+	    throw (RuntimeException) error;
+	if (error != null)
+	    throw new RuntimeException(error);
+	eccentricity = visit.level;
+	bottomUpSteps = visit.bottomUpSteps;
+	processedArcs = visit.processedArcs;
+	return visit.distance;
+    }
+
+    /**
+     * The state of a visit, shared by the threads.
+     */
+    private final class Visit {
+	final int[] distance = new int[n];
+	final AtomicLongArray visited = new AtomicLongArray(words);
+	AtomicLongArray frontierBits = new AtomicLongArray(words), nextBits = new AtomicLongArray(words);
+	int[] frontier = new int[Math.max(n, 1)], next = new int[Math.max(n, 1)];
+	int frontierSize, nextSize;
+	int level; // of the frontier
+	final int maxDistance;
+	boolean bottomUp, nextBottomUp, done;
+	long unexploredArcs; // out of the unvisited nodes
+	int bottomUpSteps;
+	long processedArcs;
+	final AtomicInteger cursor = new AtomicInteger(); // the next chunk
+	// what each thread found in the current step
+	final IntArrayList[] found = new IntArrayList[numThreads];
+	final long[] foundArcs = new long[numThreads], scannedArcs = new long[numThreads];
+	final int[] position = new int[numThreads]; // where the nodes found by each thread go in the next frontier
+	final CyclicBarrier expanded = new CyclicBarrier(numThreads, this::plan);
+	final CyclicBarrier copied = new CyclicBarrier(numThreads, this::advance);
+	volatile Throwable error; // the first failure of a thread, if any
+	final AtomicInteger running = new AtomicInteger(numThreads);
+
+	Visit(int source, int maxDistance) {
+	    Arrays.fill(distance, -1);
+	    distance[source] = 0;
+	    visited.set(source >>> 6, 1L << source);
+	    frontier[0] = source;
+	    frontierSize = 1;
+	    this.maxDistance = maxDistance;
+	    unexploredArcs = offsets[n] - (offsets[source + 1] - offsets[source]);
+	    done = maxDistance <= 0;
+	    for (int t = 0; t < numThreads; t++)
+		found[t] = new IntArrayList();
+	}
+
+	void run(int t) {
+	    try {
+		while (!done) {
+		    if (bottomUp)
+			bottomUpStep(t);
+		    else
+			topDownStep(t);
+		    expanded.await();
+		    copy(t);
+		    copied.await();
+		}
+	    } catch (Throwable e) {
+		// the other threads see a broken barrier, hence only the first cause is recorded
+		boolean first;
+		synchronized (this) {
+		    first = error == null && !(e instanceof BrokenBarrierException);
+		    if (first)
+			error = e;
+		}
+		// break the barriers until the other threads have left, as some may reach them after a reset
+		if (first)
+		    while (running.get() > 1) {
+			expanded.reset();
+			copied.reset();
+			Thread.yield();
+		    }
+	    } finally {
+		running.decrementAndGet();
+	    }
+	}
+
+	/**
+	 * Claims the unvisited successors of the frontier nodes.
+	 */
+	void topDownStep(int t) {
+	    IntArrayList found = this.found[t];
+	    found.clear();
+	    long arcs = 0, scanned = 0;
+	    int d = level + 1;
+	    int chunks = (int) ((frontierSize + (long) CHUNK - 1) / CHUNK);
+	    for (int c; (c = cursor.getAndIncrement()) < chunks;) {
+		for (int i = c * CHUNK, end = Math.min(i + CHUNK, frontierSize); i < end; i++) {
+		    int u = frontier[i];
+		    int from = offsets[u], to = offsets[u + 1];
+		    scanned += to - from;
+		    for (int j = from; j < to; j++) {
+			int w = successors[j];
+			long bit = 1L << w;
+			long old = visited.get(w >>> 6);
+			while ((old & bit) == 0 && !visited.compareAndSet(w >>> 6, old, old | bit))
+			    old = visited.get(w >>> 6);
+			if ((old & bit) == 0) { // claimed by this thread
+			    distance[w] = d;
+			    found.add(w);
+			    arcs += offsets[w + 1] - offsets[w];
+			}
+		    }
+		}
+	    }
+	    foundArcs[t] = arcs;
+	    scannedArcs[t] = scanned;
+	}
+
+	/**
+	 * Looks for a neighbor in the frontier of each unvisited node. Threads take chunks of whole words of the
+	 * bitmaps, hence they write disjoint words.
+	 */
+	void bottomUpStep(int t) {
+	    IntArrayList found = this.found[t];
+	    found.clear();
+	    long arcs = 0, scanned = 0;
+	    int d = level + 1;
+	    int chunks = (int) ((n + (long) CHUNK - 1) / CHUNK);
+	    for (int c; (c = cursor.getAndIncrement()) < chunks;) {
+		for (int word = c * (CHUNK / 64), end = Math.min(word + CHUNK / 64, words); word < end; word++) {
+		    long seen = visited.get(word), nextWord = 0;
+		    for (long unseen = ~seen; unseen != 0; unseen &= unseen - 1) {
+			int v = (word << 6) | Long.numberOfTrailingZeros(unseen);
+			if (v >= n)
+			    break;
+			for (int j = offsets[v], to = offsets[v + 1]; j < to; j++) {
+			    scanned++;
+			    int w = successors[j];
+			    if ((frontierBits.get(w >>> 6) & (1L << w)) != 0) {
+				distance[v] = d;
+				nextWord |= 1L << v;
+				found.add(v);
+				arcs += to - offsets[v];
+				break;
+			    }
+			}
+		    }
+		    nextBits.set(word, nextWord);
+		    if (nextWord != 0)
+			visited.set(word, seen | nextWord);
+		}
+	    }
+	    foundArcs[t] = arcs;
+	    scannedArcs[t] = scanned;
+	}
+
+	/**
+	 * Run by the last thread to complete an expansion: sizes the next frontier, and chooses the direction of
+	 * the next step.
+	 */
+	void plan() {
+	    nextSize = 0;
+	    long arcs = 0;
+	    for (int t = 0; t < numThreads; t++) {
+		position[t] = nextSize;
+		nextSize += found[t].size();
+		arcs += foundArcs[t];
+		processedArcs += scannedArcs[t];
+	    }
+	    unexploredArcs -= arcs;
+	    if (bottomUp) {
+		bottomUpSteps++;
+		nextBottomUp = nextSize >= n / BETA || nextSize >= frontierSize;
+	    } else
+		nextBottomUp = arcs > unexploredArcs / ALPHA;
+	}
+
+	/**
+	 * Moves the nodes found by a thread to the next frontier, in the form needed by the next step.
+	 */
+	void copy(int t) {
+	    IntArrayList found = this.found[t];
+	    if (!nextBottomUp)
+		System.arraycopy(found.elements(), 0, next, position[t], found.size());
+	    else if (!bottomUp) // the bitmaps are clear
+		for (int i = 0; i < found.size(); i++) {
+		    int v = found.getInt(i);
+		    long bit = 1L << v;
+		    nextBits.getAndAccumulate(v >>> 6, bit, (a, b) -> a | b);
+		}
+	    if (bottomUp && !nextBottomUp) // clear the bitmaps for the next bottom-up step
+		for (int word = (int) ((long) words * t / numThreads), end = (int) ((long) words * (t + 1) / numThreads); word < end; word++) {
+		    frontierBits.set(word, 0);
+		    nextBits.set(word, 0);
+		}
+	}
+
+	/**
+	 * Run by the last thread to complete the copy: makes the next frontier the current one.
+	 */
+	void advance() {
+	    int[] a = frontier;
+	    frontier = next;
+	    next = a;
+	    AtomicLongArray b = frontierBits;
+	    frontierBits = nextBits;
+	    nextBits = b;
+	    if (nextSize > 0)
+		level++;
+	    frontierSize = nextSize;
+	    bottomUp = nextBottomUp;
+	    cursor.set(0);
+	    done = nextSize == 0 || level >= maxDistance;
+	}
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return
+     */
+    public int numNodes() {
+	return n;
+    }
+
+    /**
+     * Returns the largest distance from the source found by the last visit.
+     *
+     * @return
+     */
+    public int getEccentricity() {
+	return eccentricity;
+    }
+
+    /**
+     * Returns the number of levels of the last visit that were expanded bottom-up.
+     *
+     * @return
+     */
+    public int getBottomUpSteps() {
+	return bottomUpSteps;
+    }
+
+    /**
+     * Returns the number of arcs scanned by the last visit.
+     *
+     * @return
+     */
+    public long getProcessedArcs() {
+	return processedArcs;
+    }
+}
@@ -0,0 +1,517 @@
+package wsdm16.graphutils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongHeapSemiIndirectPriorityQueue;
+import it.unimi.dsi.io.InputBitStream;
+import it.unimi.dsi.io.OutputBitStream;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.ImmutableSequentialGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.LazyIntIterators;
+import it.unimi.dsi.webgraph.NodeIterator;
+
+/**
+ * The symmetric, loop-free version of a graph, built out of core with a bounded amount of memory, in the spirit
+ * of WebGraph's batch graphs (see {@link it.unimi.dsi.webgraph.Transform#symmetrizeOffline(ImmutableGraph, int)}).
+ *
+ * The arcs are read by several threads, each scanning a range of nodes of the original graph. Each thread puts
+ * every arc (u,v), with u != v, and its reverse (v,u) as longs into its own batch; when the batch is full, it is
+ * sorted, duplicates are removed, and it is written to temporary files as sorted runs, one per partition of the
+ * nodes. The graph is then read by merging the runs of each partition, dropping the arcs that appear in more than
+ * one run. Since the partitions can be merged independently, {@link #splitNodeIterators(int)} with as many
+ * iterators as partitions lets {@link it.unimi.dsi.webgraph.BVGraph#store(ImmutableGraph, CharSequence, int, int,
+ * int, int, int, int, ProgressLogger)} compress the partitions in parallel.
+ *
+ * The arcs can also come from any {@link EdgeSource} run by the threads, e.g. a random graph generator (see
+ * {@link GraphGenerator}).
+ *
+ * Runs are gap-coded with Elias delta codes, as in WebGraph; the temporary files are deleted on exit. Since reading
+ * the graph keeps a file open for each run, the runs of a partition are merged in passes after the build whenever
+ * they are more than {@value #MAX_OPEN_RUNS} over all the partitions, hence the number of open files is bounded by
+ * the maximum of {@value #MAX_OPEN_RUNS} and twice the number of partitions.
+ *
+ * SymmetricBatchGraph.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class SymmetricBatchGraph extends ImmutableSequentialGraph {
+    private static final int MIN_BATCH_SIZE = 1 << 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Maximum number of runs of all the partitions together, above which the runs of a partition are merged */
+    public static final int MAX_OPEN_RUNS = 256;
+
+    private final int n;
+    private final int numThreads;
+    private final int[] bound; // partition p holds the nodes bound[p], ..., bound[p+1]-1
+    private final List<List<File>> runs; // the runs of each partition
+    private final List<List<Long>> runSizes; // the number of arcs of each run
+
+    /**
+     * Receives the edges produced by a thread.
+     */
+    public interface EdgeSink {
+	void add(int u, int v) throws IOException;
+    }
+
+    /**
+     * Produces the edges of a graph with several threads. Each edge can be given in either direction, and
+     * duplicates and loops are allowed (and dropped).
+     */
+    public interface EdgeSource {
+	/**
+	 * Produces the share of the edges of a thread.
+	 *
+	 * @param thread
+	 *            the index of the calling thread
+	 * @param numThreads
+	 *            the number of threads
+	 * @param sink
+	 *            receives the edges of the calling thread
+	 * @throws IOException
+	 */
+	void edges(int thread, int numThreads, EdgeSink sink) throws IOException;
+    }
+
+    private SymmetricBatchGraph(int n, int numThreads) {
+	this.n = n;
+	this.numThreads = numThreads == -1 ? Runtime.getRuntime().availableProcessors() : numThreads;
+	int partitions = Math.max(1, Math.min(this.numThreads, n));
+	this.bound = new int[partitions + 1];
+	for (int p = 0; p <= partitions; p++)
+	    bound[p] = (int) ((long) n * p / partitions);
+	this.runs = new ArrayList<>();
+	this.runSizes = new ArrayList<>();
+	for (int p = 0; p < partitions; p++) {
+	    runs.add(new ArrayList<>());
+	    runSizes.add(new ArrayList<>());
+	}
+    }
+
+    /**
+     * Builds the symmetric, loop-free version of a graph.
+     *
+     * @param G
+     * @param memoryBudget
+     *            the number of bytes to use for the batches of all the threads together
+     * @param numThreads
+     *            the number of threads, and of partitions of the nodes; -1 to use all available cores
+     * @param tempDir
+     *            the directory for the temporary files, or null for the default one
+     * @param pl
+     *            a progress logger, or null
+     * @throws IOException
+     */
+    public SymmetricBatchGraph(ImmutableGraph G, long memoryBudget, int numThreads, File tempDir, ProgressLogger pl)
+	    throws IOException {
+	this(G.numNodes(), numThreads);
+	if (pl != null) {
+	    pl.itemsName = "nodes";
+	    pl.expectedUpdates = n;
+	    pl.start("Sorting arc batches with " + this.numThreads + " threads...");
+	}
+	final NodeIterator[] iterators = n == 0 ? new NodeIterator[this.numThreads]
+		: G.splitNodeIterators(this.numThreads);
+	build((thread, threads, sink) -> {
+	    NodeIterator itr = iterators[thread];
+	    if (itr == null)
+		return;
+	    int scanned = 0;
+	    while (itr.hasNext()) {
+		int u = itr.nextInt();
+		int[] succ = itr.successorArray();
+		for (int j = 0, d = itr.outdegree(); j < d; j++)
+		    sink.add(u, succ[j]);
+		if (pl != null && ++scanned == 1000) {
+		    synchronized (pl) {
+			pl.update(scanned);
+		    }
+		    scanned = 0;
+		}
+	    }
+	}, memoryBudget, tempDir);
+	if (pl != null) {
+	    pl.done();
+	    pl.logger().info("Created " + numRuns() + " runs in " + numPartitions() + " partitions.");
+	}
+    }
+
+    /**
+     * Builds a symmetric, loop-free graph out of the edges produced in parallel by a source.
+     *
+     * @param n
+     *            the number of nodes
+     * @param source
+     * @param memoryBudget
+     *            the number of bytes to use for the batches of all the threads together
+     * @param numThreads
+     *            the number of threads, and of partitions of the nodes; -1 to use all available cores
+     * @param tempDir
+     *            the directory for the temporary files, or null for the default one
+     * @throws IOException
+     */
+    public SymmetricBatchGraph(int n, EdgeSource source, long memoryBudget, int numThreads, File tempDir)
+	    throws IOException {
+	this(n, numThreads);
+	build(source, memoryBudget, tempDir);
+    }
+
+    /**
+     * The batch of a thread, spilled to runs when full.
+     */
+    private final class Batch implements EdgeSink {
+	private final long[] batch;
+	private final File tempDir;
+	private int size;
+
+	Batch(int capacity, File tempDir) {
+	    this.batch = new long[capacity];
+	    this.tempDir = tempDir;
+	}
+
+	@Override
+	public void add(int u, int v) throws IOException {
+	    if (u == v)
+		return;
+	    if (size == batch.length) {
+		spill(batch, size, tempDir);
+		size = 0;
+	    }
+	    batch[size++] = (long) u << 32 | v;
+	    batch[size++] = (long) v << 32 | u;
+	}
+
+	void flush() throws IOException {
+	    if (size > 0)
+		spill(batch, size, tempDir);
+	    size = 0;
+	}
+    }
+
+    /**
+     * Runs the source with a thread per partition, each with its own batch.
+     */
+    private void build(EdgeSource source, long memoryBudget, File tempDir) throws IOException {
+	long batchSize = Math.max(MIN_BATCH_SIZE, memoryBudget / Long.BYTES / numThreads);
+	final int capacity = (int) Math.min(batchSize, Integer.MAX_VALUE - 8) & ~1; // arcs come in pairs
+	runInParallel(numThreads, "batch", thread -> {
+	    Batch batch = new Batch(capacity, tempDir);
+	    source.edges(thread, numThreads, batch);
+	    batch.flush();
+	});
+	// bound the fan-in of the merges, which keep all their runs open
+	final int maxRuns = Math.max(2, MAX_OPEN_RUNS / numPartitions());
+	runInParallel(numPartitions(), "merge", p -> mergeRuns(p, maxRuns, tempDir));
+    }
+
+    /**
+     * Merges the runs of a partition in passes, maxRuns at a time, until they are at most maxRuns.
+     */
+    private void mergeRuns(int p, int maxRuns, File tempDir) throws IOException {
+	List<File> files = runs.get(p);
+	List<Long> sizes = runSizes.get(p);
+	while (files.size() > maxRuns) {
+	    List<File> mergedFiles = new ArrayList<>();
+	    List<Long> mergedSizes = new ArrayList<>();
+	    for (int i = 0; i < files.size(); i += maxRuns) {
+		int j = Math.min(i + maxRuns, files.size());
+		if (j - i == 1) { // nothing to merge it with
+		    mergedFiles.add(files.get(i));
+		    mergedSizes.add(sizes.get(i));
+		    continue;
+		}
+		RunIterator itr = new RunIterator(p, files.subList(i, j), sizes.subList(i, j));
+		try (RunWriter out = new RunWriter(p, tempDir)) {
+		    while (itr.hasNext()) {
+			int u = itr.nextInt();
+			int[] succ = itr.successorArray();
+			for (int k = 0, d = itr.outdegree(); k < d; k++)
+			    out.write(u, succ[k]);
+		    }
+		    mergedFiles.add(out.file);
+		    mergedSizes.add(out.size);
+		}
+		for (File file : files.subList(i, j))
+		    file.delete();
+	    }
+	    files = mergedFiles;
+	    sizes = mergedSizes;
+	}
+	// each thread sets the runs of its own partition
+	synchronized (runs) {
+	    runs.set(p, files);
+	    runSizes.set(p, sizes);
+	}
+    }
+
+    /**
+     * A task run by each of several threads.
+     */
+    private interface Task {
+	void run(int thread) throws IOException;
+    }
+
+    /**
+     * Runs a task with the given number of threads, and rethrows the first failure of a thread (I/O or not) once
+     * they are all over.
+     */
+    private static void runInParallel(int numThreads, String name, Task task) throws IOException {
+	final Throwable[] exception = new Throwable[1];
+	Thread[] threads = new Thread[numThreads];
+	for (int t = 0; t < numThreads; t++) {
+	    final int thread = t;
+	    threads[t] = new Thread(() -> {
+		try {
+		    task.run(thread);
+		} catch (IOException | RuntimeException | Error e) {
+		    synchronized (exception) {
+			if (exception[0] == null)
+			    exception[0] = e;
+		    }
+		}
+	    }, name + t);
+	    threads[t].start();
+	}
+	try {
+	    for (Thread t : threads)
+		t.join();
+	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new InterruptedIOException("Interrupted while waiting for the " + name + " threads");
+	}
+	if (exception[0] instanceof IOException)
+	    throw (IOException) exception[0];
+	if (exception[0] instanceof RuntimeException)
+	    throw (RuntimeException) exception[0];
+	if (exception[0] instanceof Error)
+	    throw (Error) exception[0];
+    }
+
+    /**
+     * Sorts a batch of arcs, removes its duplicates, and writes it as a run for each partition.
+     */
+    private void spill(long[] batch, int size, File tempDir) throws IOException {
+	LongArrays.radixSort(batch, 0, size);
+	int distinct = 0;
+	for (int i = 0; i < size; i++)
+	    if (distinct == 0 || batch[i] != batch[distinct - 1])
+		batch[distinct++] = batch[i];
+	int from = 0;
+	for (int p = 0; p < bound.length - 1 && from < distinct; p++) {
+	    int to = from;
+	    while (to < distinct && (int) (batch[to] >>> 32) < bound[p + 1])
+		to++;
+	    if (to == from)
+		continue;
+	    try (RunWriter out = new RunWriter(p, tempDir)) {
+		for (int i = from; i < to; i++)
+		    out.write((int) (batch[i] >>> 32), (int) batch[i]);
+		synchronized (runs) {
+		    runs.get(p).add(out.file);
+		    runSizes.get(p).add(out.size);
+		}
+	    }
+	    from = to;
+	}
+    }
+
+    /**
+     * Writes a run of a partition, out of its arcs in increasing order.
+     */
+    private final class RunWriter implements Closeable {
+	final File file;
+	private final OutputBitStream out;
+	private int prevU, prevV = -1; // the last arc written
+	long size; // the number of arcs written
+
+	RunWriter(int p, File tempDir) throws IOException {
+	    file = File.createTempFile(SymmetricBatchGraph.class.getSimpleName(), "-p" + p + ".run", tempDir);
+	    file.deleteOnExit();
+	    out = new OutputBitStream(file, BUFFER_SIZE);
+	    prevU = bound[p];
+	}
+
+	void write(int u, int v) throws IOException {
+	    out.writeDelta(u - prevU);
+	    out.writeDelta(u == prevU ? v - prevV - 1 : v);
+	    prevU = u;
+	    prevV = v;
+	    size++;
+	}
+
+	@Override
+	public void close() throws IOException {
+	    out.close();
+	}
+    }
+
+    /**
+     * Iterates over the nodes of a range of partitions, merging their runs (or some of the runs of a partition).
+     */
+    private final class RunIterator extends NodeIterator {
+	private final int from, to; // the first node, and the node after the last one
+	private final int[] prevU, prevV; // the last arc read from each run
+	private final long[] remaining; // the arcs still to be read from each run
+	private final long[] head; // the first unmerged arc of each run
+	private final InputBitStream[] in;
+	private final LongHeapSemiIndirectPriorityQueue queue;
+	private int curr;
+	private int outdegree;
+	private int[] successors = IntArrays.EMPTY_ARRAY;
+
+	RunIterator(int fromPartition, int toPartition) {
+	    this(fromPartition, toPartition, null, null);
+	}
+
+	RunIterator(int p, List<File> files, List<Long> sizes) {
+	    this(p, p + 1, files, sizes);
+	}
+
+	/**
+	 * Merges the given runs of fromPartition, if files is not null, and all the runs of the range otherwise.
+	 */
+	private RunIterator(int fromPartition, int toPartition, List<File> files, List<Long> sizes) {
+	    this.from = bound[fromPartition];
+	    this.curr = from - 1;
+	    this.to = bound[toPartition];
+	    int numRuns = 0;
+	    for (int p = fromPartition; p < toPartition; p++)
+		numRuns += (files == null ? runs.get(p) : files).size();
+	    prevU = new int[numRuns];
+	    prevV = new int[numRuns];
+	    remaining = new long[numRuns];
+	    head = new long[numRuns];
+	    in = new InputBitStream[numRuns];
+	    queue = new LongHeapSemiIndirectPriorityQueue(head, numRuns);
+	    try {
+		for (int p = fromPartition, r = 0; p < toPartition; p++) {
+		    List<File> runFiles = files == null ? runs.get(p) : files;
+		    List<Long> runArcs = files == null ? runSizes.get(p) : sizes;
+		    for (int i = 0; i < runFiles.size(); i++, r++) {
+			in[r] = new InputBitStream(runFiles.get(i), BUFFER_SIZE);
+			prevU[r] = bound[p];
+			prevV[r] = -1;
+			remaining[r] = runArcs.get(i);
+			read(r);
+			queue.enqueue(r);
+		    }
+		}
+	    } catch (IOException e) {
+		throw new RuntimeException(e);
+	    }
+	}
+
+	private void read(int r) throws IOException {
+	    int u = prevU[r] + in[r].readDelta();
+	    int v = u == prevU[r] ? prevV[r] + 1 + in[r].readDelta() : in[r].readDelta();
+	    prevU[r] = u;
+	    prevV[r] = v;
+	    head[r] = (long) u << 32 | v;
+	    remaining[r]--;
+	}
+
+	@Override
+	public boolean hasNext() {
+	    return curr + 1 < to;
+	}
+
+	@Override
+	public int nextInt() {
+	    if (!hasNext())
+		throw new NoSuchElementException();
+	    curr++;
+	    outdegree = 0;
+	    try {
+		while (!queue.isEmpty() && (int) (head[queue.first()] >>> 32) == curr) {
+		    int r = queue.first();
+		    int v = (int) head[r];
+		    if (outdegree == 0 || successors[outdegree - 1] != v) { // the arc may be in several runs
+			successors = IntArrays.grow(successors, outdegree + 1);
+			successors[outdegree++] = v;
+		    }
+		    if (remaining[r] == 0) {
+			queue.dequeue();
+			in[r].close();
+		    } else {
+			read(r);
+			queue.changed();
+		    }
+		}
+	    } catch (IOException e) {
+		throw new RuntimeException(e);
+	    }
+	    return curr;
+	}
+
+	@Override
+	public int outdegree() {
+	    if (curr < from)
+		throw new IllegalStateException();
+	    return outdegree;
+	}
+
+	@Override
+	public int[] successorArray() {
+	    return successors;
+	}
+
+	@Override
+	public LazyIntIterator successors() {
+	    return LazyIntIterators.wrap(successors, outdegree);
+	}
+    }
+
+    @Override
+    public int numNodes() {
+	return n;
+    }
+
+    @Override
+    public NodeIterator nodeIterator() {
+	return new RunIterator(0, bound.length - 1);
+    }
+
+    /**
+     * Returns an iterator for each partition, if as many are requested, or a single one over all the nodes
+     * otherwise.
+     */
+    @Override
+    public NodeIterator[] splitNodeIterators(int howMany) {
+	if (howMany != bound.length - 1)
+	    return super.splitNodeIterators(howMany);
+	NodeIterator[] iterators = new NodeIterator[howMany];
+	for (int p = 0; p < howMany; p++)
+	    iterators[p] = new RunIterator(p, p + 1);
+	return iterators;
+    }
+
+    /**
+     * Returns the number of sorted runs written to disk.
+     *
+     * @return
+     */
+    public int numRuns() {
+	int numRuns = 0;
+	for (List<File> r : runs)
+	    numRuns += r.size();
+	return numRuns;
+    }
+
+    /**
+     * Returns the number of partitions of the nodes, i.e. the number of iterators that can be merged in parallel.
+     *
+     * @return
+     */
+    public int numPartitions() {
+	return bound.length - 1;
+    }
+}
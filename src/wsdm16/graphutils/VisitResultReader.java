@@ -0,0 +1,202 @@
+package wsdm16.graphutils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import wsdm16.graphutils.BreadthFirstSearch.VisitTerminatingCondition;
+
+/**
+ * Streams back the results written by {@link VisitResultWriter}, one record at a time: the file is read in order
+ * through a large buffer, hence it can be much larger than the memory. The nodes and distances of the current
+ * record are decoded into arrays that are reused by the next one.
+ *
+ * <pre>
+ * try (VisitResultReader reader = new VisitResultReader(filename)) {
+ *     while (reader.next())
+ *         for (int i = 0; i &lt; reader.size(); i++)
+ *             ... reader.source(), reader.node(i), reader.distance(i) ...
+ * }
+ * </pre>
+ *
+ * VisitResultReader.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class VisitResultReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final VisitTerminatingCondition[] CONDITIONS = VisitTerminatingCondition.values();
+
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean eof = false;
+
+    // the current record
+    private int source = -1, size, reachedDistance;
+    private VisitTerminatingCondition terminatingCondition;
+    private long processedArcs;
+    private int[] nodes = new int[16], distances = new int[16];
+
+    /**
+     * Constructor.
+     *
+     * @param filename
+     *            a file written by {@link VisitResultWriter}
+     * @throws IOException
+     *             if the file cannot be read, or it was not written by {@link VisitResultWriter}
+     */
+    public VisitResultReader(String filename) throws IOException {
+	channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+	buffer.flip();
+	if (!fill(Integer.BYTES) || buffer.getInt() != VisitResultWriter.MAGIC) {
+	    channel.close();
+	    throw new IOException(filename + " is not a file of visit results");
+	}
+    }
+
+    /**
+     * Makes sure that the buffer holds at least the given number of bytes, reading and growing it if needed.
+     *
+     * @param bytes
+     * @return false if the file ends before
+     * @throws IOException
+     */
+    private boolean fill(int bytes) throws IOException {
+	if (buffer.remaining() >= bytes)
+	    return true;
+	if (bytes > buffer.capacity()) {
+	    ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+	    larger.put(buffer);
+	    buffer = larger;
+	} else
+	    buffer.compact();
+	while (buffer.position() < bytes && !eof)
+	    eof = channel.read(buffer) < 0;
+	buffer.flip();
+	return buffer.remaining() >= bytes;
+    }
+
+    private long readVarint() throws IOException {
+	long x = 0;
+	for (int shift = 0;; shift += 7) {
+	    if (!fill(1))
+		throw new EOFException("Truncated record");
+	    byte b = buffer.get();
+	    x |= (long) (b & 0x7F) << shift;
+	    if (b >= 0)
+		return x;
+	}
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false if there are no more records
+     * @throws IOException
+     *             if the file is truncated
+     */
+    public boolean next() throws IOException {
+	if (!fill(1))
+	    return false;
+	int length = (int) readVarint();
+	if (!fill(length))
+	    throw new EOFException("Truncated record");
+	int end = buffer.position() + length;
+	source = (int) readVarint();
+	size = (int) readVarint();
+	reachedDistance = (int) readVarint();
+	terminatingCondition = CONDITIONS[(int) readVarint()];
+	processedArcs = readVarint();
+	if (nodes.length < size) {
+	    nodes = new int[Math.max(size, 2 * nodes.length)];
+	    distances = new int[nodes.length];
+	}
+	int previous = 0;
+	for (int i = 0; i < size; i++)
+	    nodes[i] = previous += (int) readVarint();
+	for (int i = 0; i < size; i++)
+	    distances[i] = (int) readVarint();
+	if (buffer.position() != end)
+	    throw new IOException("Corrupted record for source " + source);
+	return true;
+    }
+
+    /**
+     * Returns the source of the current record.
+     *
+     * @return
+     */
+    public int source() {
+	return source;
+    }
+
+    /**
+     * Returns the number of nodes reached by the visit of the current record.
+     *
+     * @return
+     */
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Returns the i-th smallest node reached by the visit of the current record.
+     *
+     * @param i
+     * @return
+     */
+    public int node(int i) {
+	return nodes[i];
+    }
+
+    /**
+     * Returns the distance of {@link #node(int) node(i)} from the source.
+     *
+     * @param i
+     * @return
+     */
+    public int distance(int i) {
+	return distances[i];
+    }
+
+    public int reachedDistance() {
+	return reachedDistance;
+    }
+
+    public VisitTerminatingCondition terminatingCondition() {
+	return terminatingCondition;
+    }
+
+    public long processedArcs() {
+	return processedArcs;
+    }
+
+    /**
+     * Returns the current record as a {@link BreadthFirstSearch.Result}, with its distance map. The elapsed time is
+     * not stored, and is set to 0.
+     *
+     * @return
+     */
+    public BreadthFirstSearch.Result result() {
+	Int2IntOpenHashMap distanceMap = new Int2IntOpenHashMap(size);
+	for (int i = 0; i < size; i++)
+	    distanceMap.put(nodes[i], distances[i]);
+	return new BreadthFirstSearch.Result()
+		.setSourceNode(source)
+		.setDistanceMap(distanceMap)
+		.setReachedNodes(size)
+		.setReachedDistance(reachedDistance)
+		.setProcessedArcs(processedArcs)
+		.setTerminatingCondition(terminatingCondition);
+    }
+
+    @Override
+    public void close() throws IOException {
+	channel.close();
+    }
+}
@@ -0,0 +1,154 @@
+package wsdm16.graphutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+
+/**
+ * Writes the results of breadth-first searches in a compact binary format, read back by
+ * {@link VisitResultReader}. The file starts with the int {@link #MAGIC}, followed by one record per visit:
+ * <ul>
+ * <li>the length in bytes of the rest of the record;
+ * <li>the source, the number r of nodes reached, the distance reached, the terminating condition (as its ordinal)
+ * and the number of arcs processed;
+ * <li>the column of the r nodes reached, sorted, as the first node followed by the gaps between consecutive nodes;
+ * <li>the column of their distances, in the same order.
+ * </ul>
+ * All the numbers after the magic are in variable-length (varint) encoding, 7 bits per byte, least significant
+ * first, so that the gaps and the distances take about one byte each.
+ *
+ * Records are encoded by {@link #encode(int, BreadthFirstSearch.Context)}, in the thread that made the visit, and
+ * the writer only copies them into a large direct buffer written through a {@link FileChannel}.
+ *
+ * VisitResultWriter.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class VisitResultWriter implements Closeable {
+    public static final int MAGIC = 0x42465231; // "BFR1"
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long records = 0;
+
+    /**
+     * Constructor. Creates (or truncates) the file, and writes its header.
+     *
+     * @param filename
+     * @throws IOException
+     */
+    public VisitResultWriter(String filename) throws IOException {
+	this(filename, ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+
+    /**
+     * Constructor. Creates (or truncates) the file, and writes its header, buffering the records in the given buffer.
+     * Once this writer is closed, the buffer can be passed to the next one, so that writing many small files does
+     * not allocate a buffer for each of them.
+     *
+     * @param filename
+     * @param buffer
+     *            a buffer of at least 4 bytes, whose content is discarded
+     * @throws IOException
+     */
+    public VisitResultWriter(String filename, ByteBuffer buffer) throws IOException {
+	if (buffer.capacity() < Integer.BYTES)
+	    throw new IllegalArgumentException("The buffer cannot hold the header");
+	this.buffer = buffer;
+	buffer.clear();
+	channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING);
+	buffer.putInt(MAGIC);
+    }
+
+    static void writeVarint(ByteArrayList out, long x) {
+	while ((x & ~0x7FL) != 0) {
+	    out.add((byte) ((x & 0x7F) | 0x80));
+	    x >>>= 7;
+	}
+	out.add((byte) x);
+    }
+
+    /**
+     * Encodes the result of the last visit of a context as a record.
+     *
+     * @param source
+     *            the source of the visit
+     * @param context
+     * @return the record, including its length
+     */
+    public static byte[] encode(int source, BreadthFirstSearch.Context context) {
+	int reached = context.reached();
+	int[] nodes = new int[reached];
+	for (int i = 0; i < reached; i++)
+	    nodes[i] = context.node(i);
+	Arrays.sort(nodes);
+	ByteArrayList body = new ByteArrayList(16 + 2 * reached);
+	writeVarint(body, source);
+	writeVarint(body, reached);
+	writeVarint(body, context.reachedDistance());
+	writeVarint(body, context.terminatingCondition().ordinal());
+	writeVarint(body, context.processedArcs());
+	int previous = 0;
+	for (int v : nodes) {
+	    writeVarint(body, v - previous);
+	    previous = v;
+	}
+	for (int v : nodes)
+	    writeVarint(body, context.distance(v));
+	ByteArrayList record = new ByteArrayList(body.size() + 5);
+	writeVarint(record, body.size());
+	record.addElements(record.size(), body.elements(), 0, body.size());
+	return record.toByteArray();
+    }
+
+    private void flush() throws IOException {
+	buffer.flip();
+	while (buffer.hasRemaining())
+	    channel.write(buffer);
+	buffer.clear();
+    }
+
+    /**
+     * Appends a record, as returned by {@link #encode(int, BreadthFirstSearch.Context)}.
+     *
+     * @param record
+     * @throws IOException
+     */
+    public void write(byte[] record) throws IOException {
+	if (record.length > buffer.remaining()) {
+	    flush();
+	    if (record.length > buffer.capacity()) { // write it directly
+		ByteBuffer wrapped = ByteBuffer.wrap(record);
+		while (wrapped.hasRemaining())
+		    channel.write(wrapped);
+		records++;
+		return;
+	    }
+	}
+	buffer.put(record);
+	records++;
+    }
+
+    /**
+     * Returns the number of records written so far.
+     *
+     * @return
+     */
+    public long size() {
+	return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+	flush();
+	channel.close();
+    }
+}
@@ -0,0 +1,309 @@
+package wsdm16.graphutils.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import wsdm16.graphutils.BreadthFirstSearch;
+import wsdm16.graphutils.BreadthFirstSearch.Context;
+import wsdm16.graphutils.BreadthFirstSearch.VisitTerminatingCondition;
+import wsdm16.graphutils.CSRGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.MultiSourceBreadthFirstSearch;
+import wsdm16.graphutils.ParallelBreadthFirstSearch;
+import wsdm16.graphutils.Transform;
+import wsdm16.graphutils.VisitResultReader;
+
+public class TestBreadthFirstSearch {
+
+    /** The distances of the nodes reached by a plain visit, in the same order as the one of BreadthFirstSearch */
+    private static Map<Integer, Integer> reference(ImmutableGraph G, int source, int maxDistance, int maxNodes) {
+	Map<Integer, Integer> distance = new HashMap<>();
+	ArrayDeque<Integer> queue = new ArrayDeque<>();
+	distance.put(source, 0);
+	queue.add(source);
+	while (!queue.isEmpty() && distance.size() < maxNodes) {
+	    int u = queue.poll();
+	    if (distance.get(u) == maxDistance)
+		break;
+	    LazyIntIterator succ = G.successors(u);
+	    for (int d = G.outdegree(u); d > 0 && distance.size() < maxNodes; d--) {
+		int w = succ.nextInt();
+		if (!distance.containsKey(w)) {
+		    distance.put(w, distance.get(u) + 1);
+		    queue.add(w);
+		}
+	    }
+	}
+	return distance;
+    }
+
+    @Test
+    public void testContext() {
+	Random r = new Random(0);
+	// one context for visits of graphs of different sizes
+	Context context = new Context();
+	for (int n : new int[] { 200, 10, 1000, 50 }) {
+	    ImmutableGraph G = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, n)).immutableView();
+	    for (int i = 0; i < 20; i++) {
+		int source = r.nextInt(n);
+		int maxDistance = r.nextBoolean() ? Integer.MAX_VALUE : r.nextInt(5);
+		int maxNodes = r.nextBoolean() ? Integer.MAX_VALUE : 1 + r.nextInt(20);
+		Map<Integer, Integer> expected = reference(G, source, maxDistance, maxNodes);
+		int reached = context.search(G, source, maxDistance, maxNodes);
+		assertEquals(expected.size(), reached);
+		for (int j = 0; j < reached; j++)
+		    assertEquals(expected.get(context.node(j)).intValue(), context.distance(context.node(j)));
+		for (int v = 0; v < n; v++)
+		    assertEquals(expected.containsKey(v), context.isReached(v));
+		assertEquals(-1, context.distance(n));
+		if (reached == maxNodes)
+		    assertEquals(VisitTerminatingCondition.MAX_NODES_REACHED, context.terminatingCondition());
+
+		// the results are those of a visit through the thread context
+		BreadthFirstSearch.Result result = new BreadthFirstSearch(G, source, maxDistance).setMaxNodes(maxNodes).visit();
+		assertEquals(expected, result.getDistanceMap());
+		assertEquals(context.terminatingCondition(), result.getTerminatingCondition());
+		assertEquals(context.reachedDistance(), result.getReachedDistance());
+		assertEquals(reached, new BreadthFirstSearch(G, source, maxDistance).setMaxNodes(maxNodes).count().getReachedNodes());
+	    }
+	}
+    }
+
+    @Test
+    public void testTerminatingConditions() {
+	ImmutableGraph G = Transform.symmetrize(GraphGenerator.circleGraph(10)).immutableView();
+	BreadthFirstSearch.Result result = new BreadthFirstSearch(G, 0).count();
+	assertEquals(10, result.getReachedNodes());
+	assertEquals(5, result.getReachedDistance());
+	assertEquals(VisitTerminatingCondition.FRONTIER_EMTPY, result.getTerminatingCondition());
+	result = new BreadthFirstSearch(G, 0, 2).count();
+	assertEquals(5, result.getReachedNodes());
+	assertEquals(VisitTerminatingCondition.MAX_DISTANCE_REACHED, result.getTerminatingCondition());
+	result = new BreadthFirstSearch(G, 0).setMaxNodes(1).count();
+	assertEquals(1, result.getReachedNodes());
+	assertEquals(VisitTerminatingCondition.MAX_NODES_REACHED, result.getTerminatingCondition());
+    }
+
+    @Test
+    public void testMultiThreadedVisit() throws Exception {
+	int n = 300;
+	ImmutableGraph G = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, n)).immutableView();
+	List<Integer> sources = new ArrayList<>();
+	for (int v = 0; v < n; v++)
+	    sources.add(v);
+	List<Pair<Integer, BreadthFirstSearch.Result>> results = new BreadthFirstSearch(G, sources, 3)
+		.multiThreadedVisit(3, false, null, 0);
+	assertEquals(n, results.size());
+	boolean[] seen = new boolean[n];
+	for (Pair<Integer, BreadthFirstSearch.Result> p : results) {
+	    assertFalse(seen[p.getLeft()]);
+	    seen[p.getLeft()] = true;
+	    assertEquals(reference(G, p.getLeft(), 3, Integer.MAX_VALUE), p.getRight().getDistanceMap());
+	}
+	for (boolean b : seen)
+	    assertTrue(b);
+    }
+
+    @Test
+    public void testVisitResultFiles() throws Exception {
+	int n = 300;
+	ImmutableGraph G = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 2 * n)).immutableView();
+	List<Integer> sources = new ArrayList<>();
+	for (int v = 0; v < n; v += 3)
+	    sources.add(v);
+	File out = File.createTempFile("bfs", ".results");
+	out.deleteOnExit();
+	for (int maxDistance : new int[] { Integer.MAX_VALUE, 2 }) {
+	    // a queue shorter than the results, so that the writer blocks the workers
+	    assertTrue(new BreadthFirstSearch(G, sources, maxDistance).multiThreadedVisit(3, false, out.getPath(), 2)
+		    .isEmpty());
+	    boolean[] seen = new boolean[n];
+	    int records = 0;
+	    try (VisitResultReader reader = new VisitResultReader(out.getPath())) {
+		while (reader.next()) {
+		    records++;
+		    int source = reader.source();
+		    assertFalse(seen[source]);
+		    seen[source] = true;
+		    Map<Integer, Integer> expected = reference(G, source, maxDistance, Integer.MAX_VALUE);
+		    assertEquals(expected.size(), reader.size());
+		    for (int i = 0; i < reader.size(); i++) {
+			if (i > 0)
+			    assertTrue(reader.node(i - 1) < reader.node(i));
+			assertEquals(expected.get(reader.node(i)).intValue(), reader.distance(i));
+		    }
+		    BreadthFirstSearch.Result result = reader.result();
+		    assertEquals(expected, result.getDistanceMap());
+		    BreadthFirstSearch.Result visit = new BreadthFirstSearch(G, source, maxDistance).count();
+		    assertEquals(visit.getReachedDistance(), result.getReachedDistance());
+		    assertEquals(visit.getTerminatingCondition(), result.getTerminatingCondition());
+		    assertEquals(visit.getProcessedArcs(), result.getProcessedArcs());
+		}
+	    }
+	    assertEquals(sources.size(), records);
+	}
+	// one file per node
+	new BreadthFirstSearch(G, sources.subList(0, 3)).multiThreadedVisit(2, true, out.getPath(), 1);
+	for (int source : sources.subList(0, 3)) {
+	    File file = new File(out.getPath() + "-node=" + source);
+	    try (VisitResultReader reader = new VisitResultReader(file.getPath())) {
+		assertTrue(reader.next());
+		assertEquals(source, reader.source());
+		assertEquals(reference(G, source, Integer.MAX_VALUE, Integer.MAX_VALUE), reader.result().getDistanceMap());
+		assertFalse(reader.next());
+	    }
+	    file.delete();
+	}
+    }
+
+    @Test
+    public void testUnwritableResults() throws Exception {
+	int n = 300;
+	ImmutableGraph G = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 2 * n)).immutableView();
+	List<Integer> sources = new ArrayList<>();
+	for (int v = 0; v < n; v += 3)
+	    sources.add(v);
+	File file = File.createTempFile("bfs", "");
+	file.deleteOnExit();
+	String out = new File(file, "results").getPath(); // below a plain file
+	for (boolean oneFilePerNode : new boolean[] { false, true }) {
+	    try {
+		// a queue shorter than the results, which nobody empties once the writer fails
+		new BreadthFirstSearch(G, sources).multiThreadedVisit(3, oneFilePerNode, out, 1);
+		fail("The results were written below a file");
+	    } catch (IOException e) {
+	    }
+	}
+    }
+
+    @Test
+    public void testDirectionOptimizing() {
+	ImmutableGraph[] graphs = new ImmutableGraph[] {
+		Transform.symmetrize(GraphGenerator.erdosRenyiGraph(5000, 20000)).immutableView(), // mostly bottom-up
+		Transform.symmetrize(GraphGenerator.erdosRenyiGraph(3000, 1500)).immutableView(), // many components
+		Transform.symmetrize(GraphGenerator.circleGraph(1000)).immutableView(), // top-down only
+		Transform.symmetrize(GraphGenerator.starGraph(200)).immutableView() };
+	Random r = new Random(0);
+	for (ImmutableGraph G : graphs)
+	    for (int numThreads = 1; numThreads <= 4; numThreads++) {
+		ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(G, numThreads);
+		for (int i = 0; i < 3; i++) {
+		    int source = r.nextInt(G.numNodes());
+		    int maxDistance = i == 2 ? 3 : Integer.MAX_VALUE;
+		    Map<Integer, Integer> expected = reference(G, source, maxDistance, Integer.MAX_VALUE);
+		    int[] distances = bfs.distances(source, maxDistance);
+		    int eccentricity = 0;
+		    for (int v = 0; v < G.numNodes(); v++) {
+			Integer d = expected.get(v);
+			assertEquals(d == null ? -1 : d.intValue(), distances[v]);
+			eccentricity = Math.max(eccentricity, distances[v]);
+		    }
+		    assertEquals(eccentricity, bfs.getEccentricity());
+		}
+	    }
+	// the giant component of a dense graph is visited bottom-up
+	ParallelBreadthFirstSearch bfs = new ParallelBreadthFirstSearch(graphs[0], 2);
+	bfs.distances(0);
+	assertTrue(bfs.getBottomUpSteps() > 0);
+	assertTrue(bfs.getProcessedArcs() < graphs[0].numArcs());
+    }
+
+    @Test
+    public void testBallSizes() {
+	Random r = new Random(0);
+	// a directed graph, with small components
+	ImmutableGraph G = GraphGenerator.erdosRenyiGraph(2000, 2500);
+	CSRGraph snapshot = new CSRGraph(G, 2);
+	for (int u = 0; u < G.numNodes(); u++)
+	    assertArrayEquals(java.util.Arrays.copyOf(G.successorArray(u), G.outdegree(u)), java.util.Arrays.copyOfRange(
+		    snapshot.getSuccessors(), snapshot.getOffset(u), snapshot.getOffset(u + 1)));
+	// more than two batches, with repeated sources
+	int[] sources = new int[150];
+	for (int i = 0; i < sources.length; i++)
+	    sources[i] = i % 100 == 99 ? sources[0] : r.nextInt(G.numNodes());
+	for (int maxDistance : new int[] { Integer.MAX_VALUE, 2 })
+	    for (int numThreads = 1; numThreads <= 3; numThreads++) {
+		int[][] balls = new MultiSourceBreadthFirstSearch(snapshot).ballSizes(sources, maxDistance, numThreads);
+		for (int i = 0; i < sources.length; i++) {
+		    Map<Integer, Integer> expected = reference(G, sources[i], maxDistance, Integer.MAX_VALUE);
+		    int eccentricity = 0;
+		    for (int d : expected.values())
+			eccentricity = Math.max(eccentricity, d);
+		    assertEquals(eccentricity + 1, balls[i].length);
+		    for (int d = 0; d <= eccentricity; d++) {
+			int within = 0;
+			for (int e : expected.values())
+			    if (e <= d)
+				within++;
+			assertEquals(within, balls[i][d]);
+		    }
+		}
+	    }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testBallSizesFailure() {
+	CSRGraph snapshot = new CSRGraph(GraphGenerator.erdosRenyiGraph(2000, 2500), 1);
+	// the second batch has a source out of the graph
+	int[] sources = new int[150];
+	sources[100] = snapshot.numNodes();
+	new MultiSourceBreadthFirstSearch(snapshot).ballSizes(sources, Integer.MAX_VALUE, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSnapshotFailure() {
+	ImmutableGraph G = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(2000, 4000)).immutableView();
+	// the successors of a node in the range of the last thread cannot be read
+	ImmutableGraph failing = new ImmutableGraph() {
+	    @Override
+	    public int numNodes() {
+		return G.numNodes();
+	    }
+
+	    @Override
+	    public long numArcs() {
+		return G.numArcs();
+	    }
+
+	    @Override
+	    public boolean randomAccess() {
+		return true;
+	    }
+
+	    @Override
+	    public int outdegree(int u) {
+		return G.outdegree(u);
+	    }
+
+	    @Override
+	    public int[] successorArray(int u) {
+		if (u == 1500)
+		    throw new IllegalStateException();
+		return G.successorArray(u);
+	    }
+
+	    @Override
+	    public ImmutableGraph copy() {
+		return this;
+	    }
+	};
+	new CSRGraph(failing, 2);
+    }
+}
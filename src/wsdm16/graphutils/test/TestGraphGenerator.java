@@ -1,11 +1,81 @@
 package wsdm16.graphutils.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
 import it.unimi.dsi.webgraph.ImmutableGraph;
 import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.SymmetricBatchGraph;
+import wsdm16.graphutils.Transform;
 
 public class TestGraphGenerator {
 
+    private interface Generator {
+	SymmetricBatchGraph generate(long seed, int numThreads) throws Exception;
+    }
+
+    /** Checks that a generated graph is symmetric, loop-free and reproducible, and returns its degrees */
+    private static int[] check(Generator generator, int n, long maxEdges) throws Exception {
+	ImmutableGraph G = new ArrayListMutableGraph(generator.generate(42, 1)).immutableView();
+	assertEquals(n, G.numNodes());
+	assertTrue(G.numArcs() <= 2 * maxEdges);
+	assertEquals(G, Transform.symmetrize(G).immutableView());
+	assertEquals(G, Transform.removeSelfLoops(G));
+	// the same with more threads and smaller batches, but not with another seed
+	assertEquals(G, new ArrayListMutableGraph(generator.generate(42, 3)).immutableView());
+	assertFalse(G.equals(new ArrayListMutableGraph(generator.generate(43, 2)).immutableView()));
+	int[] degree = new int[n];
+	for (int u = 0; u < n; u++)
+	    degree[u] = G.outdegree(u);
+	return degree;
+    }
+
+    private static int max(int[] a) {
+	int max = 0;
+	for (int x : a)
+	    max = Math.max(max, x);
+	return max;
+    }
+
+    @Test
+    public void testLargeRandomGraphs() throws Exception {
+	int n = 1 << 12;
+	long m = 8 * n;
+	int[] degree = check((seed, t) -> GraphGenerator.erdosRenyiGraph(n, m, seed, t, 0), n, m);
+	long arcs = 0;
+	for (int x : degree)
+	    arcs += x;
+	assertTrue(arcs > 2 * m * 0.99); // few repeated edges
+	assertTrue(max(degree) < 50);
+
+	degree = check((seed, t) -> GraphGenerator.chungLuGraph(n, m, 2.5, seed, t, 0), n, m);
+	assertTrue(max(degree) > 20 * 16);
+	assertEquals(max(degree), degree[0]);
+
+	degree = check((seed, t) -> GraphGenerator.rmatGraph(12, m, 0.57, 0.19, 0.19, seed, t, 0), n, m);
+	assertTrue(max(degree) > 10 * 16);
+	assertTrue(degree[0] < max(degree)); // the ids are scrambled
+
+	degree = check((seed, t) -> GraphGenerator.barabasiAlbertGraph(n, 4, seed, t, 1 << 12), n, 4L * n);
+	assertTrue(max(degree) > 10 * 8);
+	int isolated = 0;
+	for (int x : degree)
+	    if (x == 0)
+		isolated++;
+	assertEquals(0, isolated);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRmatScale() throws Exception {
+	// 2^31 nodes do not fit in an int
+	GraphGenerator.rmatGraph(31, 1, 0.57, 0.19, 0.19, 0, 1, 0);
+    }
+
     public static void main(String[] args) {
 	ImmutableGraph G;
 	
@@ -0,0 +1,73 @@
+package wsdm16.graphutils.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.CSRGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.NodeOrdering;
+import wsdm16.graphutils.NodeOrdering.Ordering;
+import wsdm16.graphutils.Transform;
+
+public class TestNodeOrdering {
+
+    private static void assertPermutation(int[] perm) {
+	boolean[] seen = new boolean[perm.length];
+	for (int v : perm) {
+	    assertTrue(!seen[v]);
+	    seen[v] = true;
+	}
+    }
+
+    @Test
+    public void test() {
+	// a path, with shuffled ids, plus a few isolated nodes and a separate triangle
+	int n = 1000;
+	int[] shuffle = new int[n];
+	for (int i = 0; i < n; i++)
+	    shuffle[i] = i;
+	IntArrays.shuffle(shuffle, new Random(0));
+	ArrayListMutableGraph M = new ArrayListMutableGraph(n + 13);
+	for (int i = 0; i < n - 1; i++) {
+	    M.addArc(shuffle[i], shuffle[i + 1]);
+	    M.addArc(shuffle[i + 1], shuffle[i]);
+	}
+	for (int i = 0; i < 3; i++)
+	    for (int j = 0; j < 3; j++)
+		if (i != j)
+		    M.addArc(n + 10 + i, n + 10 + j);
+	CSRGraph G = new CSRGraph(M.immutableView(), 1);
+	assertTrue(NodeOrdering.bandwidth(G, null) > 100);
+	for (Ordering ordering : Ordering.values()) {
+	    int[] perm = NodeOrdering.compute(ordering, G);
+	    assertPermutation(perm);
+	    if (ordering != Ordering.DEGREE)
+		assertTrue(ordering.toString(), NodeOrdering.bandwidth(G, perm) <= 2);
+	}
+	// reverse Cuthill-McKee visits the isolated nodes, then the path from an end, and numbers them last
+	int[] perm = NodeOrdering.reverseCuthillMcKee(G);
+	for (int i = 0; i < n - 1; i++)
+	    assertEquals(1, Math.abs(perm[shuffle[i]] - perm[shuffle[i + 1]]));
+	assertEquals(n + 2, Math.max(perm[shuffle[0]], perm[shuffle[n - 1]]));
+	CSRGraph relabeled = new CSRGraph(it.unimi.dsi.webgraph.Transform.map(M.immutableView(), perm), 1);
+	assertEquals(NodeOrdering.bandwidth(G, perm), NodeOrdering.bandwidth(relabeled, null));
+
+	// degrees are non-increasing along the new ids
+	ImmutableGraph H = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(500, 2000)).immutableView();
+	G = new CSRGraph(H, 1);
+	perm = NodeOrdering.degreeDescending(G);
+	assertPermutation(perm);
+	int[] inverse = NodeOrdering.invert(perm);
+	for (int i = 1; i < inverse.length; i++)
+	    assertTrue(G.outdegree(inverse[i - 1]) >= G.outdegree(inverse[i]));
+	for (int v = 0; v < perm.length; v++)
+	    assertEquals(v, inverse[perm[v]]);
+    }
+}
@@ -0,0 +1,100 @@
+package wsdm16.graphutils.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.NodeIterator;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.SymmetricBatchGraph;
+import wsdm16.graphutils.Transform;
+
+public class TestSymmetricBatchGraph {
+
+    private static void assertSameNodes(ImmutableGraph expected, NodeIterator itr, int from, int to) {
+	for (int u = from; u < to; u++) {
+	    assertEquals(u, itr.nextInt());
+	    assertArrayEquals(Arrays.copyOf(expected.successorArray(u), expected.outdegree(u)),
+		    Arrays.copyOf(itr.successorArray(), itr.outdegree()));
+	}
+	assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void test() throws Exception {
+	// a directed graph with self-loops and reciprocal arcs
+	ArrayListMutableGraph M = new ArrayListMutableGraph(GraphGenerator.erdosRenyiGraph(3000, 6000));
+	for (int u = 0; u < 3000; u += 7)
+	    try {
+		M.addArc(u, u);
+	    } catch (IllegalArgumentException e) {} // already a loop
+	ImmutableGraph G = M.immutableView();
+	ImmutableGraph expected = Transform.symmetrize(Transform.removeSelfLoops(G)).immutableView();
+	for (int numThreads = 1; numThreads <= 3; numThreads++) {
+	    // the smallest batches, hence the same arc is in many runs
+	    SymmetricBatchGraph H = new SymmetricBatchGraph(G, 0, numThreads, null, null);
+	    assertEquals(G.numNodes(), H.numNodes());
+	    assertSameNodes(expected, H.nodeIterator(), 0, G.numNodes());
+	    NodeIterator[] split = H.splitNodeIterators(H.numPartitions());
+	    for (int p = 0, from = 0; p < split.length; p++) {
+		int to = (int) ((long) G.numNodes() * (p + 1) / split.length);
+		assertSameNodes(expected, split[p], from, to);
+		from = to;
+	    }
+	    // compressed in parallel
+	    File basename = File.createTempFile("symmetric", "");
+	    BVGraph.store(H, basename.getPath(), -1, 1, -1, -1, 0, numThreads, null);
+	    ImmutableGraph stored = ImmutableGraph.load(basename.getPath());
+	    assertEquals(expected, stored);
+	    for (String extension : new String[] { "", ".graph", ".offsets", ".properties" })
+		new File(basename.getPath() + extension).delete();
+	}
+    }
+
+    @Test
+    public void testManyRuns() throws Exception {
+	// dense random edges in the smallest batches, hence hundreds of runs per partition
+	int n = 200, edges = 50000;
+	boolean[][] arc = new boolean[n][n];
+	for (int thread = 0; thread < 3; thread++) {
+	    Random r = new Random(thread);
+	    for (int i = 0; i < edges; i++) {
+		int u = r.nextInt(n), v = r.nextInt(n);
+		arc[u][v] = arc[v][u] = u != v;
+	    }
+	}
+	ArrayListMutableGraph M = new ArrayListMutableGraph(n);
+	for (int u = 0; u < n; u++)
+	    for (int v = 0; v < n; v++)
+		if (arc[u][v])
+		    M.addArc(u, v);
+	SymmetricBatchGraph H = new SymmetricBatchGraph(n, (thread, threads, sink) -> {
+	    Random r = new Random(thread);
+	    for (int i = 0; i < edges; i++)
+		sink.add(r.nextInt(n), r.nextInt(n));
+	}, 0, 3, null);
+	assertTrue(H.numRuns() <= SymmetricBatchGraph.MAX_OPEN_RUNS);
+	assertSameNodes(M.immutableView(), H.nodeIterator(), 0, n);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailingSource() throws Exception {
+	// one of the threads fails without an I/O error
+	new SymmetricBatchGraph(100, (thread, threads, sink) -> {
+	    if (thread == 1)
+		throw new IllegalStateException();
+	    for (int u = thread; u < 100; u += threads)
+		sink.add(u, (u + 1) % 100);
+	}, 0, 2, null);
+    }
+}
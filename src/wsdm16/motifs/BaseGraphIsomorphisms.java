@@ -20,12 +20,23 @@ public abstract class BaseGraphIsomorphisms
 		bits_per_graph = n*(n-1)/2; 
 	}
 
-	/** Returns the representant for G. The implementation must be thread safe.
+	/** Returns the representant for the graph encoded by b (see {@link #toBitSet(ImmutableGraph)}).
+	 *  The implementation must be thread safe.
+	 *  
+	 * @param b
+	 * @return
+	 */
+	protected abstract BitSet getRepresentantBitSet(BitSet b);
+
+	/** Returns the representant for G. Thread safe.
 	 *  
 	 * @param G
 	 * @return
 	 */
-	protected abstract BitSet getRepresentantBitSet(ImmutableGraph G);
+	protected BitSet getRepresentantBitSet(ImmutableGraph G)
+	{
+		return getRepresentantBitSet(toBitSet(G));
+	}
 	
 	protected ImmutableGraph getRepresentant(ImmutableGraph G)
 	{
@@ -127,4 +138,23 @@ public abstract class BaseGraphIsomorphisms
 
 		return (sig.length!=0)?sig[0]:0;
 	}
+
+	/** Returns the long signature (see {@link #long_signature(ImmutableGraph)}) of the graph whose lower
+	 * triangular adjacency matrix is given as a bitmask, as returned by {@link CompactGraphlet#adjacencyMask()}.
+	 * This avoids building the graph altogether.
+	 * Thread safe.
+	 * 
+	 * @param adjacency
+	 * @return The graph signature
+	 */
+	public long long_signature(long adjacency)
+	{
+		if(bits_per_graph>64)
+			throw new UnsupportedOperationException("Signature does not fit in 64 bits");
+		
+		BitSet b = getRepresentantBitSet(BitSet.valueOf(new long[] {adjacency}));
+		long[] sig = b.toLongArray();
+
+		return (sig.length!=0)?sig[0]:0;
+	}
 }
\ No newline at end of file
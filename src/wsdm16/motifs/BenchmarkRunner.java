@@ -0,0 +1,419 @@
+package wsdm16.motifs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.motifs.colorcoding.BaseColorCoding;
+import wsdm16.motifs.colorcoding.CC2;
+import wsdm16.motifs.colorcoding.ColorCodingSampler;
+import wsdm16.motifs.colorcoding.ColoredTreeletColorCoding;
+import wsdm16.motifs.randomwalks.RandomWalkSampler;
+
+/**
+ * Runs the samplers on the same graph with fixed seeds, and measures for each trial the wall time of each phase, the
+ * peak heap, the samples per second and the error of the estimated graphlet frequencies with respect to the exact
+ * ones, counted beforehand by {@link ExhaustiveSampler}. The trials are written as JSON or CSV.
+ *
+ * The synopsis is: java wsdm16.motifs.BenchmarkRunner -b GRAPH -k GRAPHLET_SIZE -n SAMPLES -t WALK_LENGTH -o FILE
+ *
+ * The samplers are "cc" (colored treelets), "alon" (Alon's color coding), "rw" (random walks with self-loops, as the
+ * default mode of {@link RandomWalkSampler}) and "exhaustive". Trial i of every sampler (counting the warmup trials)
+ * uses the i-th seed derived from the given one by {@link GraphGenerator#random(long, long)}, and the samplers derive
+ * the seeds of their threads in the same way, hence the trials are independent, and runs with the same options and
+ * a single thread take the same random walks, and the same colorings and random streams for color coding. The
+ * samples of color coding also depend on the iteration order of its tables, which are hashed by reference, hence
+ * they differ slightly across runs.
+ *
+ * BenchmarkRunner.java - created on 19 ott 2026
+ *
+ * @author anon
+ */
+public class BenchmarkRunner {
+
+	public enum Sampler {
+		CC, ALON, RW, EXHAUSTIVE
+	}
+
+	/** The phases of all the samplers, in the order of the CSV columns */
+	public static final String[] PHASES = { "color", "tables", "structures", "index", "sampling", "enumeration" };
+
+	/** The measures of a trial */
+	public static class Trial {
+		public final Sampler sampler;
+		public final int trial;
+		public final long seed;
+		/** Wall time of each phase, in seconds */
+		public final Map<String, Double> phases = new LinkedHashMap<>();
+		/** Number of samples, or of subgraphs enumerated by the exhaustive sampler */
+		public long samples;
+		/** Number of treelets rejected by color coding */
+		public long rejected;
+		public double samplesPerSecond;
+		/** The largest heap occupation during the trial, in bytes, including the graph */
+		public long peakHeap;
+		/** Total variation distance between the estimated and the exact frequencies */
+		public double tvDistance = Double.NaN;
+		/** Largest absolute error of an estimated frequency */
+		public double maxError = Double.NaN;
+		Long2LongOpenHashMap counts;
+
+		Trial(Sampler sampler, int trial, long seed) {
+			this.sampler = sampler;
+			this.trial = trial;
+			this.seed = seed;
+		}
+
+		/**
+		 * Records the end of a phase.
+		 *
+		 * @param phase
+		 * @param start
+		 *            the start of the phase, as given by {@link System#nanoTime()}
+		 * @return the end of the phase
+		 */
+		long phase(String phase, long start) {
+			long end = System.nanoTime();
+			phases.put(phase, (end - start) / 1E9);
+			return end;
+		}
+
+		public double total() {
+			double total = 0;
+			for (double seconds : phases.values())
+				total += seconds;
+			return total;
+		}
+	}
+
+	private final ImmutableGraph G;
+	private final int k, numSamples, numSteps, numThreads;
+	private final boolean smart;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param G
+	 *            a symmetric, loop-free, random-access graph
+	 * @param k
+	 *            graphlet size
+	 * @param numSamples
+	 *            number of samples of each trial
+	 * @param numSteps
+	 *            number of steps per sample of the random walks
+	 * @param smart
+	 *            whether the random walks reweight transitions
+	 * @param numThreads
+	 */
+	public BenchmarkRunner(ImmutableGraph G, int k, int numSamples, int numSteps, boolean smart, int numThreads) {
+		this.G = G;
+		this.k = k;
+		this.numSamples = numSamples;
+		this.numSteps = numSteps;
+		this.smart = smart;
+		this.numThreads = numThreads;
+	}
+
+	private static void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				pool.resetPeakUsage();
+	}
+
+	private static long peakHeap() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		return peak;
+	}
+
+	/**
+	 * Counts all the graphlets of size k.
+	 *
+	 * @return the number of occurrences of each graphlet, by signature
+	 */
+	public Long2LongOpenHashMap exactCounts() {
+		return ExhaustiveSampler.count(new NeighborhoodIndex(G, numThreads), k, Math.max(2, numThreads), -1);
+	}
+
+	/**
+	 * Runs a trial of a sampler.
+	 *
+	 * @param sampler
+	 * @param trial
+	 * @param seed
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public Trial run(Sampler sampler, int trial, long seed) throws InterruptedException {
+		Trial t = new Trial(sampler, trial, seed);
+		System.gc();
+		resetPeakHeap();
+		long start = System.nanoTime();
+		switch (sampler) {
+		case CC:
+		case ALON:
+			BaseColorCoding C = sampler == Sampler.ALON ? new CC2(G, k) : new ColoredTreeletColorCoding(G, k);
+			C.color(seed);
+			start = t.phase("color", start);
+			C.run(numThreads);
+			start = t.phase("tables", start);
+			C.buildStructures(k);
+			start = t.phase("structures", start);
+			ColorCodingSampler S = new ColorCodingSampler(k, numSamples);
+			t.counts = S.sample(C, numThreads, seed);
+			t.phase("sampling", start);
+			t.rejected = S.getRejected();
+			break;
+		case RW:
+			NeighborhoodIndex W = new NeighborhoodIndex(G, numThreads);
+			start = t.phase("index", start);
+			t.counts = RandomWalkSampler.sample(W, k, numSamples, numSteps, smart, numThreads, seed,
+					new LazyGraphIsomorphisms(k));
+			t.phase("sampling", start);
+			break;
+		case EXHAUSTIVE:
+			W = new NeighborhoodIndex(G, numThreads);
+			start = t.phase("index", start);
+			t.counts = ExhaustiveSampler.count(W, k, Math.max(2, numThreads), -1);
+			t.phase("enumeration", start);
+			break;
+		}
+		t.peakHeap = peakHeap();
+		for (long c : t.counts.values())
+			t.samples += c;
+		t.samplesPerSecond = t.samples / t.phases.get(sampler == Sampler.EXHAUSTIVE ? "enumeration" : "sampling");
+		return t;
+	}
+
+	/**
+	 * Compares the frequencies of the graphlets sampled in a trial with the exact ones.
+	 *
+	 * @param t
+	 * @param exact
+	 *            the exact number of occurrences of each graphlet, by signature
+	 */
+	public static void compare(Trial t, Long2LongOpenHashMap exact) {
+		double total = 0;
+		for (long c : exact.values())
+			total += c;
+		LongOpenHashSet signatures = new LongOpenHashSet(exact.keySet());
+		signatures.addAll(t.counts.keySet());
+		double tv = 0, max = 0;
+		for (long s : signatures) {
+			double error = Math.abs((double) t.counts.get(s) / t.samples - exact.get(s) / total);
+			tv += error;
+			max = Math.max(max, error);
+		}
+		t.tvDistance = tv / 2;
+		t.maxError = max;
+	}
+
+	private static String json(double x) {
+		return Double.isNaN(x) || Double.isInfinite(x) ? "null" : String.format(Locale.ROOT, "%.6g", x);
+	}
+
+	private static String csv(double x) {
+		return Double.isNaN(x) || Double.isInfinite(x) ? "" : String.format(Locale.ROOT, "%.6g", x);
+	}
+
+	private static String quote(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * Writes the trials as a JSON object, with the parameters of the run and the array of the trials.
+	 *
+	 * @param out
+	 * @param basename
+	 * @param trials
+	 */
+	public void writeJSON(PrintStream out, String basename, List<Trial> trials) {
+		out.println("{");
+		out.println("  \"graph\": " + quote(basename) + ", \"nodes\": " + G.numNodes() + ", \"edges\": "
+				+ G.numArcs() / 2 + ",");
+		out.println("  \"k\": " + k + ", \"samples\": " + numSamples + ", \"steps\": " + numSteps + ", \"smart\": "
+				+ smart + ", \"threads\": " + numThreads + ",");
+		out.println("  \"trials\": [");
+		for (int i = 0; i < trials.size(); i++) {
+			Trial t = trials.get(i);
+			StringBuilder phases = new StringBuilder();
+			for (Map.Entry<String, Double> e : t.phases.entrySet())
+				phases.append(phases.length() == 0 ? "" : ", ").append(quote(e.getKey())).append(": ")
+						.append(json(e.getValue()));
+			out.println("    { \"sampler\": " + quote(t.sampler.toString().toLowerCase()) + ", \"trial\": " + t.trial
+					+ ", \"seed\": " + t.seed + ", \"phases\": { " + phases + " }, \"total\": " + json(t.total())
+					+ ", \"samples\": " + t.samples + ", \"rejected\": " + t.rejected + ", \"samplesPerSecond\": "
+					+ json(t.samplesPerSecond) + ", \"peakHeap\": " + t.peakHeap + ", \"tvDistance\": "
+					+ json(t.tvDistance) + ", \"maxError\": " + json(t.maxError) + " }"
+					+ (i < trials.size() - 1 ? "," : ""));
+		}
+		out.println("  ]");
+		out.println("}");
+	}
+
+	/**
+	 * Writes the trials as CSV, one line per trial and one column per phase, empty if the sampler does not have it.
+	 *
+	 * @param out
+	 * @param basename
+	 * @param trials
+	 */
+	public void writeCSV(PrintStream out, String basename, List<Trial> trials) {
+		StringBuilder header = new StringBuilder("graph,k,samples,steps,threads,sampler,trial,seed");
+		for (String phase : PHASES)
+			header.append(',').append(phase);
+		out.println(header.append(",total,sampled,rejected,samples_per_second,peak_heap,tv_distance,max_error"));
+		for (Trial t : trials) {
+			StringBuilder line = new StringBuilder();
+			line.append(basename.contains(",") ? quote(basename) : basename).append(',').append(k).append(',')
+					.append(numSamples).append(',').append(numSteps).append(',').append(numThreads).append(',')
+					.append(t.sampler.toString().toLowerCase()).append(',').append(t.trial).append(',').append(t.seed);
+			for (String phase : PHASES)
+				line.append(',').append(t.phases.containsKey(phase) ? csv(t.phases.get(phase)) : "");
+			line.append(',').append(csv(t.total())).append(',').append(t.samples).append(',').append(t.rejected)
+					.append(',').append(csv(t.samplesPerSecond)).append(',').append(t.peakHeap).append(',')
+					.append(csv(t.tvDistance)).append(',').append(csv(t.maxError));
+			out.println(line);
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		String basename = null, outFile = null, format = "json";
+		String samplers = "cc,alon,rw,exhaustive";
+		int k = -1;
+		int numSamples = 10000;
+		int numSteps = 1000;
+		int numThreads = 1;
+		int numTrials = 5, numWarmup = 1;
+		long seed = 0;
+		boolean smart = false, exact = true;
+		// 1. PARSE THE COMMAND LINE OPTIONS
+		Options options = new Options();
+		options.addOption("b", true, "basename of the host graph (stored in WebGraph format)");
+		options.addOption("k", true, "graphlet size (number of nodes)");
+		options.addOption("n", true, "number of samples to take in each trial (default: 10000)");
+		options.addOption("t", true, "number of steps per sample of the random walks (default: 1000)");
+		options.addOption("m", false, "smart random walks -- reweight transitions to converge faster");
+		options.addOption("p", true, "number of threads to run in parallel or -1 to use all available cores");
+		options.addOption("S", true, "comma-separated samplers among cc, alon, rw and exhaustive (default: all)");
+		options.addOption("r", true, "number of trials of each sampler (default: 5)");
+		options.addOption("w", true, "number of warmup trials of each sampler, not reported (default: 1)");
+		options.addOption("s", true, "seed from which the seeds of the trials are derived (default: 0)");
+		options.addOption("x", false, "do not count the graphlets exactly, hence do not report the errors");
+		options.addOption("f", true, "output format: json (default) or csv");
+		options.addOption("o", true, "write the results to this file instead of the standard output");
+		CommandLineParser parser = new PosixParser();
+		try {
+			CommandLine cmd = parser.parse(options, args);
+			basename = cmd.hasOption("b") ? cmd.getOptionValue("b") : basename;
+			k = cmd.hasOption("k") ? Integer.parseInt(cmd.getOptionValue("k")) : k;
+			numSamples = cmd.hasOption("n") ? Integer.parseInt(cmd.getOptionValue("n")) : numSamples;
+			numSteps = cmd.hasOption("t") ? Integer.parseInt(cmd.getOptionValue("t")) : numSteps;
+			smart = cmd.hasOption("m");
+			numThreads = cmd.hasOption("p") ? Integer.parseInt(cmd.getOptionValue("p")) : numThreads;
+			if (numThreads == -1)
+				numThreads = Runtime.getRuntime().availableProcessors();
+			samplers = cmd.hasOption("S") ? cmd.getOptionValue("S") : samplers;
+			numTrials = cmd.hasOption("r") ? Integer.parseInt(cmd.getOptionValue("r")) : numTrials;
+			numWarmup = cmd.hasOption("w") ? Integer.parseInt(cmd.getOptionValue("w")) : numWarmup;
+			seed = cmd.hasOption("s") ? Long.parseLong(cmd.getOptionValue("s")) : seed;
+			exact = !cmd.hasOption("x");
+			format = cmd.hasOption("f") ? cmd.getOptionValue("f") : format;
+			outFile = cmd.hasOption("o") ? cmd.getOptionValue("o") : outFile;
+		} catch (ParseException e) {
+			System.err.println(e.toString());
+		}
+		if (basename == null || k < 0) {
+			HelpFormatter formatter = new HelpFormatter();
+			formatter.setWidth(120);
+			formatter.printHelp(BenchmarkRunner.class.getSimpleName() + " -b basename -k size [options] ...",
+					options);
+			System.exit(0);
+		}
+		List<Sampler> which = new ArrayList<>();
+		for (String s : samplers.split(","))
+			which.add(Sampler.valueOf(s.trim().toUpperCase()));
+		if (!format.equals("json") && !format.equals("csv"))
+			throw new IllegalArgumentException("Unknown output format: " + format);
+
+		// 2. READ THE GRAPH
+		ProgressLogger pl = new ProgressLogger();
+		ImmutableGraph G = null;
+		try {
+			G = ImmutableGraph.load(basename);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		pl.logger().info("Graph " + basename + " has " + G.numNodes() + " nodes and " + G.numArcs() / 2
+				+ " undirected edges.");
+		BenchmarkRunner runner = new BenchmarkRunner(G, k, numSamples, numSteps, smart, numThreads);
+
+		// 3. RUN THE TRIALS
+		Long2LongOpenHashMap counts = null;
+		if (exact) {
+			long start = System.nanoTime();
+			counts = runner.exactCounts();
+			pl.logger().info("Exact counts of " + counts.size() + " graphlets in " + (System.nanoTime() - start) / 1E9
+					+ " seconds");
+		}
+		List<Trial> trials = new ArrayList<>();
+		for (Sampler sampler : which) {
+			SummaryStatistics time = new SummaryStatistics(), speed = new SummaryStatistics(),
+					error = new SummaryStatistics();
+			for (int i = 0; i < numWarmup + numTrials; i++) {
+				Trial t = runner.run(sampler, i - numWarmup, GraphGenerator.random(seed, i));
+				if (counts != null)
+					compare(t, counts);
+				if (i < numWarmup)
+					continue;
+				trials.add(t);
+				time.addValue(t.total());
+				speed.addValue(t.samplesPerSecond);
+				error.addValue(t.tvDistance);
+			}
+			pl.logger().info(String.format(Locale.ROOT,
+					"%s: %.3f s (sd %.3f), %.1f samples/s (sd %.1f), total variation distance %.4f (sd %.4f)",
+					sampler.toString().toLowerCase(), time.getMean(), time.getStandardDeviation(), speed.getMean(),
+					speed.getStandardDeviation(), error.getMean(), error.getStandardDeviation()));
+		}
+
+		// 4. WRITE THE RESULTS
+		PrintStream out = System.out;
+		try {
+			if (outFile != null)
+				out = new PrintStream(outFile);
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		}
+		if (format.equals("csv"))
+			runner.writeCSV(out, basename, trials);
+		else
+			runner.writeJSON(out, basename, trials);
+		if (out != System.out)
+			out.close();
+	}
+}
@@ -0,0 +1,401 @@
+package wsdm16.motifs;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+
+/**
+ * A graphlet (connected induced subgraph) of a graph of fixed size, stored with primitive arrays. This is a
+ * lightweight alternative to {@link Graphlet} for the sampling hot paths: the vertices are kept in a sorted
+ * int[k], and the induced subgraph is kept as one bitmask of neighbors per vertex, computed by intersecting
+ * the (sorted) successor lists of the host graph with the vertex set. If the host graph is a
+ * {@link NeighborhoodIndex}, its successor lists are used in place and its hub tables answer the queries on
+ * high-degree nodes. Once built, {@link #isConnected()},
+ * {@link #removableNodes()} and {@link #switchableNodes(int, int[])} do not allocate.
+ * As for {@link Graphlet}, it is your responsibility to pass a symmetric host graph.
+ *
+ * Vertices are referred to by their index in the sorted vertex set; the index of a host-graph node can be
+ * obtained with {@link #indexOf(int)}.
+ *
+ * @author anon
+ */
+public class CompactGraphlet {
+
+	/** Above this ratio between a successor list and the graphlet size, a binary search is used instead of a merge. */
+	private static final int GALLOP_RATIO = 8;
+
+	private final ImmutableGraph G;
+	private final NeighborhoodIndex index; // G itself, if it is an index
+	private final int k;
+	private final int[] nodes; // sorted
+	private final int[][] succ; // successors of each node
+	private final int[] from; // the successors of nodes[i] start at succ[i][from[i]]
+	private final int[] deg; // outdegree of each node
+	private final long[] rows; // rows[i] has bit j set iff nodes[i] and nodes[j] are adjacent
+	private final int[] cursors; // scratch space for the merges in switchableNodes
+
+	/**
+	 * Constructor.
+	 *
+	 * @param g
+	 *            the host graph
+	 * @param nodes
+	 *            vertices of the graphlet (at most 64). The array is copied, not referenced.
+	 */
+	public CompactGraphlet(ImmutableGraph g, int[] nodes) throws ArrayIndexOutOfBoundsException {
+		if (nodes.length > Long.SIZE)
+			throw new IllegalArgumentException("A compact graphlet can have at most " + Long.SIZE + " nodes");
+		G = g;
+		index = g instanceof NeighborhoodIndex ? (NeighborhoodIndex) g : null;
+		k = nodes.length;
+		this.nodes = nodes.clone();
+		Arrays.sort(this.nodes);
+		for (int u : this.nodes)
+			checkNode(u);
+		succ = new int[k][];
+		from = new int[k];
+		deg = new int[k];
+		rows = new long[k];
+		cursors = new int[k];
+		for (int i = 0; i < k; i++)
+			loadNode(i);
+		for (int i = 0; i < k; i++)
+			computeRow(i);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param g
+	 *            the host graph
+	 * @param nodes
+	 *            vertices of the graphlet
+	 */
+	public CompactGraphlet(ImmutableGraph g, Collection<Integer> nodes) throws ArrayIndexOutOfBoundsException {
+		this(g, toArray(nodes));
+	}
+
+	/**
+	 * Copy constructor.
+	 *
+	 * @param copy
+	 */
+	public CompactGraphlet(CompactGraphlet copy) {
+		G = copy.G;
+		index = copy.index;
+		k = copy.k;
+		nodes = copy.nodes.clone();
+		succ = copy.succ.clone();
+		from = copy.from.clone();
+		deg = copy.deg.clone();
+		rows = copy.rows.clone();
+		cursors = new int[k];
+	}
+
+	private static int[] toArray(Collection<Integer> nodes) {
+		int[] a = new int[nodes.size()];
+		int i = 0;
+		for (int u : nodes)
+			a[i++] = u;
+		return a;
+	}
+
+	/**
+	 * Checks if a node is in the host graph. If the node is not in the range 0,...,n-1 then an exception is thrown.
+	 *
+	 * @param u
+	 * @throws ArrayIndexOutOfBoundsException
+	 */
+	private void checkNode(int u) throws ArrayIndexOutOfBoundsException {
+		if (u < 0 || u >= G.numNodes())
+			throw new ArrayIndexOutOfBoundsException("Node " + u + " is out of range.");
+	}
+
+	private void loadNode(int i) {
+		deg[i] = G.outdegree(nodes[i]);
+		if (index != null) { // no need to copy the successors
+			succ[i] = index.getSuccessors();
+			from[i] = index.getOffset(nodes[i]);
+		} else {
+			succ[i] = G.successorArray(nodes[i]);
+			from[i] = 0;
+		}
+	}
+
+	/**
+	 * Computes the neighbors of nodes[i] within the graphlet, by intersecting its successor list with the vertex
+	 * set, and stores them in rows (symmetrically, so that an arc in either direction counts as an edge).
+	 *
+	 * @param i
+	 */
+	private void computeRow(int i) {
+		int[] s = succ[i];
+		int d = from[i] + deg[i];
+		if (deg[i] > GALLOP_RATIO * k) {
+			for (int j = 0; j < k; j++)
+				if (j != i && (index != null ? index.isArc(nodes[i], nodes[j])
+						: NeighborhoodIndex.gallop(s, from[i], d, nodes[j]) >= 0))
+					link(i, j);
+		} else {
+			int a = from[i], b = 0;
+			while (a < d && b < k) {
+				if (s[a] < nodes[b])
+					a++;
+				else if (s[a] > nodes[b])
+					b++;
+				else {
+					if (b != i)
+						link(i, b);
+					a++;
+					b++;
+				}
+			}
+		}
+	}
+
+	private void link(int i, int j) {
+		rows[i] |= 1L << j;
+		rows[j] |= 1L << i;
+	}
+
+	/**
+	 * Returns the number of nodes in the graphlet.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return k;
+	}
+
+	/**
+	 * Returns the node of the host graph with the given index.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int getNode(int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * Return the nodes of the graphlet, sorted. The array is not copied and must not be modified.
+	 *
+	 * @return the nodes of the host graph which form the graphlet.
+	 */
+	public int[] getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the index of a node of the host graph in the graphlet.
+	 *
+	 * @param u
+	 * @return the index of u, or a negative value if u is not in the graphlet.
+	 */
+	public int indexOf(int u) {
+		return Arrays.binarySearch(nodes, u);
+	}
+
+	/**
+	 * Returns the neighbors of the i-th node in the graphlet.
+	 *
+	 * @param i
+	 * @return a bitmask having bit j set iff the i-th and the j-th node are adjacent.
+	 */
+	public long neighborMask(int i) {
+		return rows[i];
+	}
+
+	/**
+	 * Returns the adjacency matrix of the graphlet as a bitmask. The bits from the least significant to the
+	 * most significant correspond to the elements of the lower triangular adjacency matrix (excluding the
+	 * diagonal), i.e., the pair (i,j) with j &lt; i is the bit i*(i-1)/2+j. This is the layout used by
+	 * {@link BaseGraphIsomorphisms#long_signature(long)}.
+	 *
+	 * @return the adjacency bitmask
+	 * @throws UnsupportedOperationException if the graphlet has more than 11 nodes
+	 */
+	public long adjacencyMask() {
+		if (k * (k - 1) / 2 > Long.SIZE)
+			throw new UnsupportedOperationException("Adjacency matrix does not fit in 64 bits");
+		long mask = 0;
+		for (int i = 1; i < k; i++)
+			mask |= (rows[i] & ((1L << i) - 1)) << (i * (i - 1) / 2);
+		return mask;
+	}
+
+	/**
+	 * Checks if the graphlet is indeed connected.
+	 *
+	 * @return
+	 */
+	public boolean isConnected() {
+		return k == 0 || reach(0, 1L) == all();
+	}
+
+	/**
+	 * Returns the nodes that can be removed (one at a time) without disconnecting the graphlet.
+	 *
+	 * @return a bitmask having bit i set iff the i-th node is removable.
+	 */
+	public long removableNodes() {
+		long removables = 0;
+		long all = all();
+		for (int i = 0; i < k; i++) {
+			long rest = all & ~(1L << i);
+			if (rest == 0 || reach(1L << i, Long.lowestOneBit(rest)) == rest)
+				removables |= 1L << i;
+		}
+		return removables;
+	}
+
+	/**
+	 * Computes the nodes that can be switched with a node of the graphlet, that is, the nodes v of the host graph
+	 * outside the graphlet such that replacing the i-th node with v gives again a connected graphlet. For a
+	 * removable node these are all the neighbors of the rest of the graphlet, as in
+	 * {@link Graphlet#switchableNodes()}; for a non-removable node, v must be adjacent to every connected
+	 * component left by the removal.
+	 *
+	 * @param i
+	 *            the index of the node to be replaced
+	 * @param out
+	 *            where the switchable nodes are written, in increasing order. It must be large enough to hold the
+	 *            neighbors of the other k-1 nodes.
+	 * @return the number of switchable nodes written to out
+	 */
+	public int switchableNodes(int i, int[] out) {
+		long rest = all() & ~(1L << i);
+		if (rest == 0)
+			return 0;
+		boolean removable = reach(1L << i, Long.lowestOneBit(rest)) == rest;
+		int count = 0;
+		for (int j = 0; j < k; j++)
+			cursors[j] = from[j];
+		while (true) {
+			// find the smallest node not yet consumed among the successors of the other nodes
+			int v = Integer.MAX_VALUE;
+			for (int j = 0; j < k; j++)
+				if (j != i && cursors[j] < from[j] + deg[j] && succ[j][cursors[j]] < v)
+					v = succ[j][cursors[j]];
+			if (v == Integer.MAX_VALUE)
+				return count;
+			// consume it, remembering which nodes of the graphlet it is adjacent to
+			long adj = 0;
+			for (int j = 0; j < k; j++)
+				if (j != i && cursors[j] < from[j] + deg[j] && succ[j][cursors[j]] == v) {
+					adj |= 1L << j;
+					cursors[j]++;
+				}
+			if (indexOf(v) >= 0)
+				continue;
+			if (removable || reach(1L << i, adj) == rest)
+				out[count++] = v;
+		}
+	}
+
+	/**
+	 * Replaces the i-th node of the graphlet with v. Since nodes are kept sorted, this may change the index of
+	 * the other nodes.
+	 *
+	 * @param i
+	 *            the index of the node to be removed
+	 * @param v
+	 *            the node to be added. It must not be in the graphlet.
+	 * @return the index of v in the graphlet
+	 */
+	public int replaceNode(int i, int v) {
+		checkNode(v);
+		// remove i from the rows, compacting the indices above it
+		for (int j = 0; j < k; j++)
+			rows[j] = dropBit(rows[j], i);
+		System.arraycopy(nodes, i + 1, nodes, i, k - 1 - i);
+		System.arraycopy(succ, i + 1, succ, i, k - 1 - i);
+		System.arraycopy(from, i + 1, from, i, k - 1 - i);
+		System.arraycopy(deg, i + 1, deg, i, k - 1 - i);
+		System.arraycopy(rows, i + 1, rows, i, k - 1 - i);
+		// insert v in its sorted position, making room in the rows
+		int p = -Arrays.binarySearch(nodes, 0, k - 1, v) - 1;
+		System.arraycopy(nodes, p, nodes, p + 1, k - 1 - p);
+		System.arraycopy(succ, p, succ, p + 1, k - 1 - p);
+		System.arraycopy(from, p, from, p + 1, k - 1 - p);
+		System.arraycopy(deg, p, deg, p + 1, k - 1 - p);
+		System.arraycopy(rows, p, rows, p + 1, k - 1 - p);
+		for (int j = 0; j < k; j++)
+			rows[j] = insertBit(rows[j], p);
+		nodes[p] = v;
+		rows[p] = 0;
+		loadNode(p);
+		computeRow(p);
+		return p;
+	}
+
+	private static long dropBit(long x, int i) {
+		long low = x & ((1L << i) - 1);
+		return low | ((x >>> 1) & ~((1L << i) - 1));
+	}
+
+	private static long insertBit(long x, int i) {
+		long low = x & ((1L << i) - 1);
+		return low | ((x & ~((1L << i) - 1)) << 1);
+	}
+
+	/**
+	 * Returns the graphlet as a new graph. The indices of the nodes will be in the range 0, ..., size-1, following
+	 * the order of {@link #getNodes()}.
+	 *
+	 * @return the graphlet graph
+	 */
+	public ImmutableGraph asGraph() {
+		ArrayListMutableGraph h = new ArrayListMutableGraph(k);
+		for (int i = 0; i < k; i++)
+			for (long r = rows[i]; r != 0; r &= r - 1)
+				h.addArc(i, Long.numberOfTrailingZeros(r));
+		return h.immutableView();
+	}
+
+	/**
+	 * Returns this graphlet as a {@link Graphlet}.
+	 *
+	 * @return
+	 */
+	public Graphlet toGraphlet() {
+		Integer[] boxed = new Integer[k];
+		for (int i = 0; i < k; i++)
+			boxed[i] = nodes[i];
+		return new Graphlet(G, Arrays.asList(boxed));
+	}
+
+	/**
+	 * Return the host graph.
+	 *
+	 * @return the host graph of the graphlet.
+	 */
+	public ImmutableGraph getG() {
+		return G;
+	}
+
+	private long all() {
+		return k == Long.SIZE ? ~0L : (1L << k) - 1;
+	}
+
+	/**
+	 * Visits the graphlet starting from a set of nodes, ignoring the nodes in excluded.
+	 *
+	 * @return the set of reached nodes
+	 */
+	private long reach(long excluded, long start) {
+		long reached = start & ~excluded;
+		long frontier = reached;
+		while (frontier != 0) {
+			int j = Long.numberOfTrailingZeros(frontier);
+			frontier &= frontier - 1;
+			long next = rows[j] & ~reached & ~excluded;
+			reached |= next;
+			frontier |= next;
+		}
+		return reached;
+	}
+
+}
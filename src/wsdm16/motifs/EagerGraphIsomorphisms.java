@@ -49,7 +49,7 @@ public class EagerGraphIsomorphisms extends BaseGraphIsomorphisms
 				
 			ImmutableGraph G = fromBitSet(b, 0);
 
-			if(new BreadthFirstSearch(G, 0).count().getReachedNodes()!=n)
+			if(BreadthFirstSearch.context().search(G, 0, Integer.MAX_VALUE, Integer.MAX_VALUE)!=n)
 				continue;
 			
 			if(representant_map.containsKey(b))
@@ -77,9 +77,8 @@ public class EagerGraphIsomorphisms extends BaseGraphIsomorphisms
 		}
 	}
 			
-	protected BitSet getRepresentantBitSet(ImmutableGraph G)
+	protected BitSet getRepresentantBitSet(BitSet b)
 	{
-		BitSet b = toBitSet(G);
 		return representant_map.get(b);
 	}
 	
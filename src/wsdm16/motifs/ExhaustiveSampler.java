@@ -1,9 +1,11 @@
 package wsdm16.motifs;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -11,13 +13,12 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ImmutableGraph;
 import it.unimi.dsi.webgraph.Transform;
 
-import wsdm16.motifs.ImmutableGraphWrapper;
-
 /**
  * An exhaustive based sampler for graphlets in a graph.
  * 
@@ -30,6 +31,73 @@ import wsdm16.motifs.ImmutableGraphWrapper;
  */
 public class ExhaustiveSampler {
 
+	/** Counts the signatures of the subgraphs handed to one worker. */
+	private static class SignatureCounter implements ParallelSubgraphEnumerator.SubgraphConsumer {
+		final BaseGraphIsomorphisms isomorphisms;
+		final Long2LongOpenHashMap counts = new Long2LongOpenHashMap();
+
+		SignatureCounter(BaseGraphIsomorphisms isomorphisms) {
+			this.isomorphisms = isomorphisms;
+		}
+
+		@Override
+		public void accept(int[] nodes, long adjacency) {
+			counts.addTo(isomorphisms.long_signature(adjacency), 1);
+		}
+	}
+
+	/** Number of subgraphs held by the ring buffer of each enumerator thread */
+	private static final int RING_CAPACITY = 1 << 16;
+
+	/**
+	 * Drains the ring buffers whose index is congruent to id modulo numWorkers, until all of them are closed
+	 * and empty. If the signatures fail, the failure is recorded and the flag shared by the ring buffers is set,
+	 * so that the enumerators do not wait forever for this worker.
+	 */
+	private static class SignatureWorker implements Runnable {
+		final int id, numWorkers;
+		final List<SubgraphRingBuffer> rings;
+		final AtomicBoolean done, failed;
+		final AtomicReference<Throwable> failure;
+		final SignatureCounter counter;
+
+		SignatureWorker(int id, int numWorkers, List<SubgraphRingBuffer> rings, AtomicBoolean done,
+				AtomicBoolean failed, AtomicReference<Throwable> failure, BaseGraphIsomorphisms isomorphisms) {
+			this.id = id;
+			this.numWorkers = numWorkers;
+			this.rings = rings;
+			this.done = done;
+			this.failed = failed;
+			this.failure = failure;
+			this.counter = new SignatureCounter(isomorphisms);
+		}
+
+		@Override
+		public void run() {
+			try {
+				drain();
+			} catch (RuntimeException | Error e) {
+				failure.compareAndSet(null, e);
+				failed.set(true);
+			}
+		}
+
+		private void drain() {
+			while (!failed.get()) {
+				// read before draining: once done is set, all the rings are registered and closed
+				boolean finished = done.get();
+				int drained = 0;
+				for (int i = id; i < rings.size(); i += numWorkers)
+					drained += Math.max(0, rings.get(i).drainTo(counter, 4096));
+				if (drained == 0) {
+					if (finished)
+						return;
+					Thread.yield();
+				}
+			}
+		}
+	}
+
 	public static void main(String[] args) {
 		String basename = null;
 		int k = -1;
@@ -42,7 +110,7 @@ public class ExhaustiveSampler {
 				"basename of the host graph (stored in WebGraph format)");
 		options.addOption("k", true, "graphlet size (number of nodes)");
 		options.addOption("n", true, "stop at a given number of samples");
-		options.addOption("t", false, "use multithreading");
+		options.addOption("t", false, "use multithreading (all the available cores, instead of one enumerator and one signature thread)");
 		CommandLineParser parser = new PosixParser();
 		try {
 			CommandLine cmd = parser.parse(options, args);
@@ -87,49 +155,13 @@ public class ExhaustiveSampler {
 				+ " nodes and " + G.numArcs() / 2 + " undirected edges.");
 		pl.logger().info("Sampling...");
 
-		// pl.logger().info("Precomputing isomorphisms...");
-		BaseGraphIsomorphisms isomorphisms = new LazyGraphIsomorphisms(k); // new
-																		   // EagerGraphIsomorphisms(k);
-
 		// 3. SAMPLE
-		ImmutableGraphWrapper W = new ImmutableGraphWrapper(G, 100);
-		Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
-		SubgraphEnumerator enumerator = new SubgraphEnumerator(G, k);
+		int cores = mt ? Runtime.getRuntime().availableProcessors() : 2;
+		NeighborhoodIndex W = new NeighborhoodIndex(G, mt ? -1 : 1);
+		Long2LongOpenHashMap hashCount = count(W, k, cores, n < Double.POSITIVE_INFINITY ? n.longValue() : -1);
 		double count = 0;
-		int batchsize = 1000000;
-		Set<Graphlet> grlts = new HashSet<>(batchsize);
-		while (true && count < n) {
-			Graphlet H = enumerator.nextSubgraph();
-			H.setGraphWrapper(W);
-			if (H != null)
-				grlts.add(H);
-			if (H == null || grlts.size() >= batchsize) {
-				long[] sigs = null;
-				if (mt)
-					sigs = grlts.parallelStream().map(Graphlet::asGraph)
-						.mapToLong(isomorphisms::long_signature).toArray();
-				else
-					sigs = grlts.stream().map(Graphlet::asGraph).mapToLong(isomorphisms::long_signature).toArray();
-				for (long s : sigs)
-					hashCount.addTo(s, 1);
-				count += grlts.size();
-				grlts.clear();
-			}
-			if (H == null)
-				break;
-		}
-		if (!grlts.isEmpty()) { // there might still be graphlets to be processed
-			long[] sigs = null;
-			if (mt)
-				sigs = grlts.parallelStream().map(Graphlet::asGraph)
-					.mapToLong(isomorphisms::long_signature).toArray();
-			else
-				sigs = grlts.stream().map(Graphlet::asGraph).mapToLong(isomorphisms::long_signature).toArray();
-			for (long s : sigs)
-				hashCount.addTo(s, 1);
-			count += grlts.size();
-			grlts.clear();
-		}
+		for (long c : hashCount.values())
+			count += c;
 		pl.logger().info("Done");
 
 		System.out.println("== SAMPLES FOLLOW ==");
@@ -139,4 +171,75 @@ public class ExhaustiveSampler {
 					+ e.getValue() * 100.0 / count + "%)");
 
 	}
+
+	/**
+	 * Counts the occurrences of the graphlets of size k, by signature.
+	 * 
+	 * @param W
+	 *            the index of a symmetric, loop-free graph
+	 * @param k
+	 *            graphlet size
+	 * @param cores
+	 *            number of threads: half of them enumerate the subgraphs, the others compute their signatures
+	 * @param maxSubgraphs
+	 *            stop after this many subgraphs, or -1 to enumerate them all
+	 * @return the number of occurrences of each graphlet, by signature
+	 * @throws RuntimeException
+	 *             the failure of a signature worker, which stops the enumeration
+	 */
+	public static Long2LongOpenHashMap count(NeighborhoodIndex W, int k, int cores, long maxSubgraphs) {
+		BaseGraphIsomorphisms isomorphisms = new LazyGraphIsomorphisms(k); // new
+																		   // EagerGraphIsomorphisms(k);
+
+		// enumerator threads push the subgraphs into bounded ring buffers (one each), and signature workers
+		// drain them into their own histograms
+		int numEnumerators = Math.max(1, cores / 2);
+		int numWorkers = Math.max(1, cores - numEnumerators);
+		ParallelSubgraphEnumerator enumerator = new ParallelSubgraphEnumerator(W, k);
+		if (maxSubgraphs >= 0)
+			enumerator.setMaxSubgraphs(maxSubgraphs);
+
+		List<SubgraphRingBuffer> rings = new CopyOnWriteArrayList<>();
+		AtomicBoolean done = new AtomicBoolean(false), failed = new AtomicBoolean(false);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		SignatureWorker[] workers = new SignatureWorker[numWorkers];
+		Thread[] threads = new Thread[numWorkers];
+		for (int i = 0; i < numWorkers; i++) {
+			workers[i] = new SignatureWorker(i, numWorkers, rings, done, failed, failure, isomorphisms);
+			threads[i] = new Thread(workers[i], "signature-worker" + i);
+			threads[i].start();
+		}
+
+		try {
+			enumerator.enumerate(numEnumerators, () -> {
+				SubgraphRingBuffer ring = new SubgraphRingBuffer(k, RING_CAPACITY, failed);
+				rings.add(ring);
+				return ring;
+			});
+		} catch (RuntimeException e) {
+			if (!failed.get()) // otherwise, the enumerators just stopped because of the failure of a worker
+				throw e;
+		} finally {
+			for (SubgraphRingBuffer ring : rings)
+				ring.close();
+			done.set(true);
+		}
+
+		Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
+		try {
+			for (int i = 0; i < numWorkers; i++) {
+				threads[i].join();
+				for (Long2LongMap.Entry e : workers[i].counter.counts.long2LongEntrySet())
+					hashCount.addTo(e.getLongKey(), e.getLongValue());
+			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		Throwable e = failure.get();
+		if (e instanceof Error)
+			throw (Error) e;
+		if (e != null)
+			throw (RuntimeException) e;
+		return hashCount;
+	}
 }
@@ -1,5 +1,6 @@
 package wsdm16.motifs;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 
@@ -10,6 +11,7 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 
+import it.unimi.dsi.fastutil.io.BinIO;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ASCIIGraph;
 import it.unimi.dsi.webgraph.BVGraph;
@@ -18,8 +20,13 @@ import it.unimi.dsi.webgraph.LazyIntIterator;
 import it.unimi.dsi.webgraph.NodeIterator;
 import it.unimi.dsi.webgraph.Transform;
 import it.unimi.dsi.webgraph.algo.ConnectedComponents;
+import wsdm16.graphutils.CSRGraph;
+import wsdm16.graphutils.NodeOrdering;
+import wsdm16.graphutils.SymmetricBatchGraph;
 
 public class GraphCleanup {
+	/** The extension of the file of the permutation applied by a reordering */
+	public static final String PERMUTATION_EXTENSION = ".perm";
 
 	public static void main(String[] args) {
 		String basename = null;
@@ -27,6 +34,9 @@ public class GraphCleanup {
 		String outBasename = null;
 		boolean ascii = false;
 		boolean escape = false;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+		NodeOrdering.Ordering ordering = null;
 		Options options = new Options();
 		options.addOption("b", true,
 				"basename of the host graph (stored in WebGraph format)");
@@ -35,6 +45,13 @@ public class GraphCleanup {
 		options.addOption("O", true, "output graph file basename");
 		options.addOption("a", false, "store in ASCII format");
 		options.addOption("e", false, "store in ESCAPE format (note: this does NOT clean, only convert)");
+		options.addOption("t", true, "number of threads (default = number of cores)");
+		options.addOption("m", true,
+				"memory for the batches of arcs sorted in parallel, in MB (default = 1/4 of the heap)");
+		options.addOption("r", true, "relabel the nodes of the clean graph for locality: degree (by decreasing degree), "
+				+ "bfs (breadth-first from the hubs) or rcm (reverse Cuthill-McKee); the new id of each node of the "
+				+ "input graph (-1 for the nodes outside the largest component, with -c) is saved as binary ints to "
+				+ "basename" + PERMUTATION_EXTENSION + "; not with -e");
 
 		CommandLineParser parser = new PosixParser();
 
@@ -46,7 +63,14 @@ public class GraphCleanup {
 					: basename + "-clean";
 			ascii = cmd.hasOption("a");
 			escape = cmd.hasOption("e");
-		} catch (ParseException e) {
+			numThreads = cmd.hasOption("t") ? Integer.parseInt(cmd.getOptionValue("t")) : numThreads;
+			memoryBudget = cmd.hasOption("m") ? Long.parseLong(cmd.getOptionValue("m")) << 20 : memoryBudget;
+			ordering = cmd.hasOption("r") ? NodeOrdering.Ordering.valueOf(cmd.getOptionValue("r").toUpperCase()) : ordering;
+			if (escape && ordering != null) {
+				System.err.println("Option -r cannot be used with -e, which only converts the graph");
+				System.exit(1);
+			}
+		} catch (ParseException | IllegalArgumentException e) {
 			e.printStackTrace();
 			return;
 		}
@@ -70,14 +94,59 @@ public class GraphCleanup {
 		}
 		pl.logger().info("Graph loaded.");
 
+		String symmetricBasename = null;
 		if (!escape) {
-			G = wsdm16.graphutils.Transform.removeSelfLoops(G);
-			G = Transform.symmetrize(G);
+			try {
+				// sorted in batches and merged from disk, without loops
+				G = new SymmetricBatchGraph(G, memoryBudget, numThreads, null, pl);
+				if (largestCC) { // random access is needed
+					symmetricBasename = outBasename + "-symmetric";
+					BVGraph.store(G, symmetricBasename, -1, 1, -1, -1, 0, numThreads, pl);
+					G = ImmutableGraph.load(symmetricBasename, pl);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
 		}
 
+		int[] componentMap = null; // the id of each node in the largest component, or -1
 		if (largestCC) {
 			pl.logger().info("Saving only the largest connected component.");
-			G = ConnectedComponents.getLargestComponent(G, 0, pl);
+			// as in ConnectedComponents.getLargestComponent, but keeping the renumbering for the permutation
+			ConnectedComponents components = ConnectedComponents.compute(G, numThreads, pl);
+			int[] sizes = components.computeSizes();
+			int largest = 0;
+			for (int c = 1; c < sizes.length; c++)
+				if (sizes[c] > sizes[largest])
+					largest = c;
+			componentMap = components.component;
+			for (int u = 0, next = 0; u < componentMap.length; u++)
+				componentMap[u] = componentMap[u] == largest ? next++ : -1;
+			G = Transform.map(G, componentMap, pl);
+		}
+
+		if (ordering != null) {
+			pl.logger().info("Relabeling the nodes (" + ordering.toString().toLowerCase() + " order).");
+			try {
+				CSRGraph snapshot = new CSRGraph(G, numThreads);
+				int[] perm = NodeOrdering.compute(ordering, snapshot);
+				pl.logger().info("Bandwidth: " + NodeOrdering.bandwidth(snapshot, null) + " before, "
+						+ NodeOrdering.bandwidth(snapshot, perm) + " after.");
+				snapshot = null;
+				if (componentMap == null)
+					BinIO.storeInts(perm, outBasename + PERMUTATION_EXTENSION);
+				else { // from the ids of the input graph
+					int[] inputPerm = new int[componentMap.length];
+					for (int u = 0; u < componentMap.length; u++)
+						inputPerm[u] = componentMap[u] == -1 ? -1 : perm[componentMap[u]];
+					BinIO.storeInts(inputPerm, outBasename + PERMUTATION_EXTENSION);
+				}
+				G = Transform.mapOffline(G, perm, (int) Math.min(memoryBudget / 8, Integer.MAX_VALUE - 8), null, pl);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return;
+			}
 		}
 
 		try {
@@ -108,7 +177,7 @@ public class GraphCleanup {
 				}
 				writer.close();
 			} else {
-				BVGraph.store(G, outBasename, -1, 1, -1, -1, 0, pl);
+				BVGraph.store(G, outBasename, -1, 1, -1, -1, 0, numThreads, pl);
 				pl.logger().info("Writing graph in BVGraph format. Basename: "
 						+ outBasename);
 			}
@@ -117,6 +186,10 @@ public class GraphCleanup {
 			return;
 		}
 
+		if (symmetricBasename != null)
+			for (String extension : new String[] { BVGraph.GRAPH_EXTENSION, BVGraph.OFFSETS_EXTENSION,
+					BVGraph.PROPERTIES_EXTENSION })
+				new File(symmetricBasename + extension).delete();
 		pl.logger().info("Done.");
 	}
 
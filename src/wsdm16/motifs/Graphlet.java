@@ -25,7 +25,7 @@ import wsdm16.graphutils.BreadthFirstSearch;
 public class Graphlet {
 
 	private ImmutableGraph G;
-	private ImmutableGraphWrapper W = null;
+	private NeighborhoodIndex W = null;
 	private Set<Integer> nodes;
 	private Set<Integer> neighbors;
 	private boolean upToDate;
@@ -50,6 +50,8 @@ public class Graphlet {
 	public Graphlet(ImmutableGraph g, Collection<Integer> nodes)
 			throws ArrayIndexOutOfBoundsException {
 		G = g;
+		if (g instanceof NeighborhoodIndex)
+			W = (NeighborhoodIndex) g;
 		setNodes(nodes);
 		for (int u : this.nodes)
 			checkNode(u);
@@ -58,11 +60,12 @@ public class Graphlet {
 	}
 
 	/**
-	 * Sets the graph wrapper, which should speed up {@link Graphlet#asGraph()}
+	 * Sets the neighborhood index of the host graph, which should speed up {@link Graphlet#asGraph()}. This is
+	 * done automatically if the host graph is itself a {@link NeighborhoodIndex}.
 	 * 
 	 * @param W
 	 */
-	public void setGraphWrapper(ImmutableGraphWrapper W) {
+	public void setNeighborhoodIndex(NeighborhoodIndex W) {
 		this.W = W;
 	}
 
@@ -165,8 +168,7 @@ public class Graphlet {
 	 * @return
 	 */
 	public boolean isConnected() {
-		if (new BreadthFirstSearch(asGraph(), 0).count()
-				.getReachedNodes() == size())
+		if (BreadthFirstSearch.context().search(asGraph(), 0, Integer.MAX_VALUE, Integer.MAX_VALUE) == size())
 			return true;
 		else
 			return false;
@@ -230,8 +232,8 @@ public class Graphlet {
 												 // count CC size via BFS
 			ArrayListMutableGraph F = new ArrayListMutableGraph(H);
 			F.removeNode(i);
-			if (new BreadthFirstSearch(F.immutableView(), 0).count()
-					.getReachedNodes() == F.numNodes()) // still connected!
+			if (BreadthFirstSearch.context().search(F.immutableView(), 0, Integer.MAX_VALUE, Integer.MAX_VALUE)
+					== F.numNodes()) // still connected!
 				rn.add(a.getInt(i));
 		}
 		return rn;
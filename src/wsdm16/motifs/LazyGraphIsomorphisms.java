@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.concurrent.ConcurrentHashMap;
 
-import it.unimi.dsi.webgraph.ImmutableGraph;
 import wsdm16.graphutils.PermutationGenerator;
 
 public class LazyGraphIsomorphisms extends BaseGraphIsomorphisms
@@ -16,10 +15,8 @@ public class LazyGraphIsomorphisms extends BaseGraphIsomorphisms
 		super(n);
 	}
 	
-	protected BitSet getRepresentantBitSet(ImmutableGraph G)
+	protected BitSet getRepresentantBitSet(BitSet b)
 	{
-		BitSet b = toBitSet(G);
-	
 		BitSet repr = representant_map.getOrDefault(b, null);
 		if(repr!=null)
 			return repr;
@@ -0,0 +1,304 @@
+package wsdm16.motifs;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.NodeIterator;
+
+/**
+ * An in-memory snapshot of a graph in compressed sparse row (CSR) format, with sorted successor lists, that
+ * answers arc-existence queries quickly. Queries on low-degree nodes use a galloping search on the successor list,
+ * while the nodes of degree larger than a threshold ("hubs") get their own open-addressing hash table.
+ * Everything is stored in primitive arrays.
+ *
+ * Since it is immutable, the index is itself a random-access {@link ImmutableGraph} that can be shared by multiple
+ * threads: {@link #copy()} returns the object itself. Iterating over the successors of a node through
+ * {@link #getSuccessors()} and {@link #getOffset(int)} does not allocate.
+ *
+ * @author anon
+ */
+public class NeighborhoodIndex extends ImmutableGraph {
+
+	private static final int EMPTY = -1;
+
+	private final int n;
+	private final int[] offsets; // successors of u are in targets[offsets[u]], ..., targets[offsets[u+1]-1]
+	private final int[] targets;
+	private final int hubThreshold;
+	private final int[] hubs; // sorted ids of the nodes with outdegree > hubThreshold
+	private final int[] hubStart; // the hash table of hubs[h] is hubTable[hubStart[h]], ..., hubTable[hubStart[h+1]-1]
+	private final int[] hubTable;
+
+	public NeighborhoodIndex(ImmutableGraph G) {
+		this(G, 1);
+	}
+
+	public NeighborhoodIndex(ImmutableGraph G, int numThreads) {
+		this(G, numThreads, 100);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param G
+	 *            the graph. If it is random access, the index is built with numThreads threads.
+	 * @param numThreads
+	 *            number of threads to use, or -1 to use all available cores
+	 * @param hubThreshold
+	 *            nodes of outdegree larger than this get a hash table
+	 */
+	public NeighborhoodIndex(ImmutableGraph G, int numThreads, int hubThreshold) {
+		if (numThreads == -1)
+			numThreads = Runtime.getRuntime().availableProcessors();
+		if (!G.randomAccess())
+			numThreads = 1;
+		this.n = G.numNodes();
+		this.hubThreshold = hubThreshold;
+		this.offsets = new int[n + 1];
+
+		// 1. compute outdegrees and offsets
+		if (numThreads > 1)
+			runInParallel(G, numThreads, (H, from, to) -> {
+				for (int u = from; u < to; u++)
+					offsets[u + 1] = H.outdegree(u);
+			});
+		else {
+			NodeIterator itr = G.nodeIterator();
+			for (int i = 0; i < n; i++) {
+				int u = itr.nextInt();
+				offsets[u + 1] = itr.outdegree();
+			}
+		}
+		IntArrayList hubList = new IntArrayList();
+		IntArrayList hubStartList = new IntArrayList();
+		int tableSize = 0;
+		for (int u = 0; u < n; u++) {
+			int d = offsets[u + 1];
+			if (d > hubThreshold) {
+				hubList.add(u);
+				hubStartList.add(tableSize);
+				tableSize += HashCommon.arraySize(d, .5f);
+				if (tableSize < 0)
+					throw new IllegalArgumentException("Hub tables do not fit in memory");
+			}
+			if (offsets[u + 1] > Integer.MAX_VALUE - 8 - offsets[u])
+				throw new IllegalArgumentException("Graph has too many arcs to be indexed");
+			offsets[u + 1] += offsets[u];
+		}
+		hubStartList.add(tableSize);
+		hubs = hubList.toIntArray();
+		hubStart = hubStartList.toIntArray();
+		hubTable = new int[tableSize];
+		Arrays.fill(hubTable, EMPTY);
+		targets = new int[offsets[n]];
+
+		// 2. copy (and sort, if needed) the successor lists, and fill the hub tables
+		if (numThreads > 1)
+			runInParallel(G, numThreads, (H, from, to) -> {
+				for (int u = from; u < to; u++)
+					fill(u, H.successors(u));
+			});
+		else {
+			NodeIterator itr = G.nodeIterator();
+			for (int i = 0; i < n; i++) {
+				int u = itr.nextInt();
+				fill(u, itr.successors());
+			}
+		}
+	}
+
+	private interface RangeTask {
+		void run(ImmutableGraph H, int from, int to);
+	}
+
+	/**
+	 * Splits the nodes into ranges of roughly the same number of arcs (or nodes, if the offsets are not known yet)
+	 * and runs the task on each of them, on a separate copy of G. The first failure of a task is rethrown once all
+	 * the threads are over.
+	 */
+	private void runInParallel(ImmutableGraph G, int numThreads, RangeTask task) {
+		Thread[] threads = new Thread[numThreads];
+		Throwable[] errors = new Throwable[numThreads];
+		long arcs = offsets[n];
+		int from = 0;
+		for (int t = 0; t < numThreads; t++) {
+			int to = from;
+			if (t == numThreads - 1)
+				to = n;
+			else if (arcs > 0)
+				while (to < n && offsets[to] < arcs * (t + 1) / numThreads)
+					to++;
+			else
+				to = (int) ((long) n * (t + 1) / numThreads);
+			final int a = from, b = to, id = t;
+			// Iterators on G are not thread safe, but concurrent access to different copies is.
+			final ImmutableGraph H = G.copy();
+			threads[t] = new Thread(() -> {
+				try {
+					task.run(H, a, b);
+				} catch (RuntimeException | Error e) {
+					errors[id] = e;
+				}
+			}, "neighborhood-index-thread" + t);
+			threads[t].start();
+			from = to;
+		}
+		try {
+			for (Thread t : threads)
+				t.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		for (Throwable e : errors) {
+			if (e instanceof Error)
+				throw (Error) e;
+			if (e != null)
+				throw (RuntimeException) e;
+		}
+	}
+
+	private void fill(int u, LazyIntIterator succ) {
+		int from = offsets[u], to = offsets[u + 1];
+		boolean sorted = true;
+		for (int i = from; i < to; i++) {
+			targets[i] = succ.nextInt();
+			sorted &= i == from || targets[i - 1] <= targets[i];
+		}
+		if (!sorted)
+			Arrays.sort(targets, from, to);
+		if (to - from > hubThreshold) {
+			int h = Arrays.binarySearch(hubs, u);
+			int start = hubStart[h], mask = hubStart[h + 1] - start - 1;
+			for (int i = from; i < to; i++) {
+				int pos = HashCommon.mix(targets[i]) & mask;
+				while (hubTable[start + pos] != EMPTY && hubTable[start + pos] != targets[i])
+					pos = (pos + 1) & mask;
+				hubTable[start + pos] = targets[i];
+			}
+		}
+	}
+
+	/**
+	 * Check if v is an out-neighbor of u.
+	 *
+	 * @param u
+	 * @param v
+	 * @return
+	 */
+	public boolean isArc(int u, int v) {
+		int from = offsets[u], to = offsets[u + 1];
+		if (to - from > hubThreshold) {
+			int h = Arrays.binarySearch(hubs, u);
+			int start = hubStart[h], mask = hubStart[h + 1] - start - 1;
+			int pos = HashCommon.mix(v) & mask;
+			int w;
+			while ((w = hubTable[start + pos]) != EMPTY) {
+				if (w == v)
+					return true;
+				pos = (pos + 1) & mask;
+			}
+			return false;
+		}
+		return gallop(targets, from, to, v) >= 0;
+	}
+
+	/**
+	 * Check if u and v are neighbors.
+	 *
+	 * @param u
+	 * @param v
+	 * @return
+	 */
+	public boolean areNeighbors(int u, int v) {
+		if (outdegree(u) <= outdegree(v))
+			return isArc(u, v) || isArc(v, u);
+		return isArc(v, u) || isArc(u, v);
+	}
+
+	/**
+	 * Galloping (exponential) search of key in the sorted range a[from], ..., a[to-1].
+	 *
+	 * @return the index of key, or a negative value if key is not in the range.
+	 */
+	public static int gallop(int[] a, int from, int to, int key) {
+		int bound = 1;
+		while (from + bound < to && a[from + bound] < key)
+			bound <<= 1;
+		return Arrays.binarySearch(a, from + (bound >>> 1), Math.min(from + bound + 1, to), key);
+	}
+
+	/**
+	 * Returns the array holding the successor lists of all the nodes, one after the other. The array is not copied
+	 * and must not be modified.
+	 *
+	 * @return
+	 */
+	public int[] getSuccessors() {
+		return targets;
+	}
+
+	/**
+	 * Returns the position of the first successor of u in {@link #getSuccessors()}. The successors of u follow it,
+	 * sorted, and are exactly {@link #outdegree(int)} many.
+	 *
+	 * @param u
+	 * @return
+	 */
+	public int getOffset(int u) {
+		return offsets[u];
+	}
+
+	@Override
+	public int numNodes() {
+		return n;
+	}
+
+	@Override
+	public long numArcs() {
+		return offsets[n];
+	}
+
+	@Override
+	public int outdegree(int u) {
+		return offsets[u + 1] - offsets[u];
+	}
+
+	@Override
+	public int[] successorArray(int u) {
+		return Arrays.copyOfRange(targets, offsets[u], offsets[u + 1]);
+	}
+
+	@Override
+	public LazyIntIterator successors(int u) {
+		return new LazyIntIterator() {
+			private int pos = offsets[u];
+			private final int end = offsets[u + 1];
+
+			@Override
+			public int nextInt() {
+				return pos < end ? targets[pos++] : -1;
+			}
+
+			@Override
+			public int skip(int k) {
+				int skipped = Math.min(k, end - pos);
+				pos += skipped;
+				return skipped;
+			}
+		};
+	}
+
+	@Override
+	public boolean randomAccess() {
+		return true;
+	}
+
+	@Override
+	public NeighborhoodIndex copy() {
+		return this;
+	}
+
+}
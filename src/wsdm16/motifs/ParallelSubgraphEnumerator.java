@@ -0,0 +1,330 @@
+package wsdm16.motifs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/** Enumerates all the connected subgraphs of G of size K with the ESU algorithm, using multiple threads.
+ * Each distinct subgraph is delivered exactly once to a {@link SubgraphConsumer}, as an array of nodes along with
+ * its adjacency matrix, without constructing any {@link Graphlet}.
+ *
+ * See: S. Wernicke, "Efficient detection of network motifs", IEEE/ACM TCBB 3(4), 2006.
+ *
+ * Each subgraph is enumerated from its smallest node (the root). Roots are partitioned across the threads of a
+ * {@link ForkJoinPool}; roots with many neighbors are further split on their first level of extensions, so that
+ * a single hub does not end up on a single thread. Each thread works on its own reusable stacks, hence the
+ * enumeration does not allocate.
+ *
+ * @author anon
+ *
+ */
+public class ParallelSubgraphEnumerator
+{
+	/** Receives the enumerated subgraphs. Each thread has its own consumer, hence implementations need not be
+	 * thread safe.
+	 */
+	public interface SubgraphConsumer
+	{
+		/**
+		 * @param nodes The nodes of the subgraph. The array is reused and is only valid during the call.
+		 * @param adjacency The lower triangular adjacency matrix of the subgraph, in the layout of
+		 * {@link CompactGraphlet#adjacencyMask()}, w.r.t. the order of the nodes in the array. It is 0 if K>11.
+		 */
+		public void accept(int[] nodes, long adjacency);
+	}
+
+	/** Number of roots visited by a single task, unless some of them are hubs */
+	private static final int ROOTS_PER_TASK = 256;
+
+	private final NeighborhoodIndex G;
+	private final int K;
+	private final int[] succ;
+	private int hubThreshold = 1000;
+	private long maxSubgraphs = Long.MAX_VALUE;
+
+	private AtomicLong enumerated;
+	private volatile boolean stop;
+	private ThreadLocal<State> states;
+
+	/** Creates an object that enumerates all the connected subgraphs of G of size K
+	 *
+	 * @param G The host graph, undirected (reciprocated edges) and loop-free
+	 * @param K The size of the returned subgraphs
+	 */
+	public ParallelSubgraphEnumerator(NeighborhoodIndex G, int K)
+	{
+		this.G = G;
+		this.K = K;
+		this.succ = G.getSuccessors();
+	}
+
+	/** Sets the degree above which the subgraphs rooted at a node are enumerated by multiple tasks.
+	 *
+	 * @param hubThreshold
+	 * @return this object
+	 */
+	public ParallelSubgraphEnumerator setHubThreshold(int hubThreshold)
+	{
+		this.hubThreshold = hubThreshold;
+		return this;
+	}
+
+	/** Stops the enumeration after (roughly) the given number of subgraphs. The threads check the limit
+	 * periodically, hence a few more subgraphs might be delivered.
+	 *
+	 * @param maxSubgraphs
+	 * @return this object
+	 */
+	public ParallelSubgraphEnumerator setMaxSubgraphs(long maxSubgraphs)
+	{
+		this.maxSubgraphs = maxSubgraphs;
+		return this;
+	}
+
+	/** Enumerates all the subgraphs.
+	 *
+	 * @param numThreads The number of threads, or -1 to use all available cores
+	 * @param consumers Creates the consumer of each thread
+	 * @return The consumers that were created, so that their results can be merged
+	 */
+	public <C extends SubgraphConsumer> List<C> enumerate(int numThreads, Supplier<C> consumers)
+	{
+		if(numThreads==-1)
+			numThreads = Runtime.getRuntime().availableProcessors();
+
+		ConcurrentLinkedQueue<C> created = new ConcurrentLinkedQueue<>();
+		enumerated = new AtomicLong(0);
+		stop = false;
+		states = ThreadLocal.withInitial(() -> {
+			C consumer = consumers.get();
+			created.add(consumer);
+			return new State(consumer);
+		});
+
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try
+		{
+			pool.invoke(new RootsTask(0, G.numNodes()));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		states = null;
+		return new ArrayList<>(created);
+	}
+
+	/** Returns the number of subgraphs delivered by the last enumeration.
+	 *
+	 * @return
+	 */
+	public long getEnumerated()
+	{
+		return enumerated.get();
+	}
+
+	/** The reusable stacks of a single thread.
+	 */
+	private class State
+	{
+		final SubgraphConsumer consumer;
+		final int[] sub = new int[K]; // the current subgraph
+		final long[] adjacency = new long[K+1]; // adjacency[l] is the adjacency matrix of sub[0], ..., sub[l-1]
+		final int[] closedNeighborhood = new int[G.numNodes()]; // how many nodes of sub are in the closed neighborhood of each node
+		int[] ext = new int[16]; // the extension sets of all the levels, one after the other
+		long delivered = 0; // not yet added to enumerated
+
+		State(SubgraphConsumer consumer)
+		{
+			this.consumer = consumer;
+		}
+
+		/** Adds w to the current subgraph as its l-th node. */
+		void push(int l, int w)
+		{
+			sub[l] = w;
+			long a = adjacency[l];
+			if(K<=11)
+				for(int j=0; j<l; j++)
+					if(G.isArc(w, sub[j]))
+						a |= 1L << (l*(l-1)/2 + j);
+			adjacency[l+1] = a;
+
+			closedNeighborhood[w]++;
+			for(int i=G.getOffset(w), end=i+G.outdegree(w); i<end; i++)
+				closedNeighborhood[succ[i]]++;
+		}
+
+		/** Removes w, the last node of the current subgraph. */
+		void pop(int w)
+		{
+			closedNeighborhood[w]--;
+			for(int i=G.getOffset(w), end=i+G.outdegree(w); i<end; i++)
+				closedNeighborhood[succ[i]]--;
+		}
+
+		/** Makes sure ext can hold the given number of elements. */
+		void ensureCapacity(int size)
+		{
+			if(size>ext.length)
+				ext = Arrays.copyOf(ext, Math.max(size, 2*ext.length));
+		}
+
+		/** Enumerates the subgraphs rooted at root whose second node is the i-th larger neighbor of root,
+		 * for i in [from, to).
+		 */
+		void enumerateFromRoot(int root, int from, int to)
+		{
+			if(K==1)
+			{
+				deliver(root, 0);
+				return;
+			}
+
+			push(0, root);
+			// the initial extension: the neighbors of root larger than root
+			int d = G.outdegree(root);
+			ensureCapacity(d);
+			int size = 0;
+			for(int i=G.getOffset(root), end=i+d; i<end; i++)
+				if(succ[i]>root)
+					ext[size++] = succ[i];
+
+			extend(root, 1, 0, size, from, Math.min(size, to));
+			pop(root);
+		}
+
+		/** The ESU recursion. The extension set of this level is ext[start], ..., ext[end-1], of which only
+		 * the elements in [start+from, start+to) are processed.
+		 */
+		void extend(int root, int l, int start, int end, int from, int to)
+		{
+			for(int i=start+from; i<start+to && !stop; i++)
+			{
+				int w = ext[i];
+				if(l+1==K)
+				{
+					sub[l] = w;
+					long a = adjacency[l];
+					if(K<=11)
+						for(int j=0; j<l; j++)
+							if(G.isArc(w, sub[j]))
+								a |= 1L << (l*(l-1)/2 + j);
+					deliver(w, a);
+					continue;
+				}
+
+				// the next extension: the remaining ones, plus the exclusive neighbors of w larger than root
+				int d = G.outdegree(w);
+				ensureCapacity(end + (end-i-1) + d);
+				int nextStart = end;
+				int nextEnd = nextStart;
+				for(int j=i+1; j<end; j++)
+					ext[nextEnd++] = ext[j];
+				for(int j=G.getOffset(w), last=j+d; j<last; j++)
+				{
+					int u = succ[j];
+					if(u>root && closedNeighborhood[u]==0)
+						ext[nextEnd++] = u;
+				}
+
+				push(l, w);
+				extend(root, l+1, nextStart, nextEnd, 0, nextEnd-nextStart);
+				pop(w);
+			}
+		}
+
+		void deliver(int last, long adjacency)
+		{
+			sub[K-1] = last;
+			consumer.accept(sub, adjacency);
+			if(++delivered==1024)
+			{
+				if(enumerated.addAndGet(delivered)>=maxSubgraphs)
+					stop = true;
+				delivered = 0;
+			}
+		}
+
+		void flush()
+		{
+			if(enumerated.addAndGet(delivered)>=maxSubgraphs)
+				stop = true;
+			delivered = 0;
+		}
+	}
+
+	/** Enumerates the subgraphs rooted at the nodes in [from, to).
+	 */
+	private class RootsTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+
+		RootsTask(int from, int to)
+		{
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(to-from>ROOTS_PER_TASK)
+			{
+				int mid = (from+to) >>> 1;
+				invokeAll(new RootsTask(from, mid), new RootsTask(mid, to));
+				return;
+			}
+
+			List<HubTask> hubTasks = new ArrayList<>();
+			State state = states.get();
+			for(int root=from; root<to && !stop; root++)
+			{
+				int d = G.outdegree(root);
+				if(d>hubThreshold && K>2)
+				{
+					// split the first level of extensions into chunks; each chunk has to rebuild the state of
+					// the root, hence there should not be too many of them
+					int chunks = Math.min(d/hubThreshold+1, 4*getPool().getParallelism());
+					for(int c=0; c<chunks; c++)
+						hubTasks.add(new HubTask(root, (int)((long)d*c/chunks), (int)((long)d*(c+1)/chunks)));
+				}
+				else
+					state.enumerateFromRoot(root, 0, Integer.MAX_VALUE);
+			}
+			state.flush();
+			invokeAll(hubTasks);
+		}
+	}
+
+	/** Enumerates the subgraphs rooted at root whose second node is the i-th larger neighbor of root,
+	 * for i in [from, to).
+	 */
+	private class HubTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final int root, from, to;
+
+		HubTask(int root, int from, int to)
+		{
+			this.root = root;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			State state = states.get();
+			state.enumerateFromRoot(root, from, to);
+			state.flush();
+		}
+	}
+}
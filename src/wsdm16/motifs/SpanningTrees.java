@@ -6,38 +6,210 @@ import org.apache.commons.math3.linear.RealMatrix;
 
 import it.unimi.dsi.webgraph.ImmutableGraph;
 import it.unimi.dsi.webgraph.LazyIntIterator;
+import wsdm16.graphutils.BreadthFirstSearch;
 
 public class SpanningTrees 
 {
 	/** Computes the number of spanning trees of G using Kirchhoff's theorem
 	 * @see: https://en.wikipedia.org/wiki/Kirchhoff%27s_theorem
 	 * 
+	 * Trees, cycles and cliques are recognized from their degree sequence and answered in closed form.
+	 * Any other graph is handled by an exact fraction-free (Bareiss) determinant of the reduced Laplacian.
+	 *
 	 * @param G An undirected (reciprocated edges), loop-free graph
 	 * @return The number of spanning trees of G
 	 */
 	public static long KirchhoffCount(ImmutableGraph G)
 	{
 		int n = G.numNodes();
-		
+		if(n<=1)
+			return 1;
+
+		return KirchhoffCount(G, new long[n-1][n-1]);
+	}
+
+	/** Same as {@link #KirchhoffCount(ImmutableGraph)}, but uses the given matrix as scratch space
+	 * for the determinant, so that repeated calls do not allocate.
+	 *
+	 * @param G An undirected (reciprocated edges), loop-free graph
+	 * @param scratch A matrix of size at least (n-1)x(n-1), where n is the number of nodes of G. Its content is overwritten.
+	 * @return The number of spanning trees of G
+	 */
+	public static long KirchhoffCount(ImmutableGraph G, long[][] scratch)
+	{
+		int n = G.numNodes();
+		if(n<=2)
+			return (n==2 && G.outdegree(0)==0)?0:1;
+
+		long arcs = G.numArcs();
+		boolean regular2 = true;
+		for(int u=0; u<n; u++)
+		{
+			int d = G.outdegree(u);
+			if(d==0)
+				return 0; //Disconnected
+			regular2 &= (d==2);
+		}
+
+		if(arcs==2L*(n-1)) //n-1 edges: a tree if connected, a forest otherwise
+			return isConnected(G)?1:0;
+		if(regular2 && arcs==2L*n) //2-regular: a cycle if connected, a union of cycles otherwise
+			return isConnected(G)?n:0;
+		if(arcs==(long)n*(n-1)) //A clique: Cayley's formula
+		{
+			try
+			{
+				return pow(n, n-2);
+			}
+			catch(ArithmeticException e)
+			{
+				//n^(n-2) does not fit in a long (n >= 18)
+				return KirchhoffCountLU(G);
+			}
+		}
+
+		//The Laplacian matrix of G with the last row/column removed
+		int m = n-1;
+		for(int u=0; u<m; u++)
+		{
+			long[] row = scratch[u];
+			for(int v=0; v<m; v++)
+				row[v] = 0;
+
+			row[u] = G.outdegree(u);
+
+			LazyIntIterator it = G.successors(u);
+			for(int d = G.outdegree(u); d>0; d--)
+			{
+				int v = it.nextInt();
+
+				if(v!=m)
+					row[v] = -1;
+			}
+		}
+
+		try
+		{
+			return bareissDeterminant(scratch, m);
+		}
+		catch(ArithmeticException e)
+		{
+			//Intermediate values do not fit in a long (only possible for large graphs)
+			return KirchhoffCountLU(G);
+		}
+	}
+
+	/** Computes the number of spanning trees of G using Kirchhoff's theorem and a floating-point LU decomposition.
+	 * This is slower and less precise than {@link #KirchhoffCount(ImmutableGraph)}, but never overflows.
+	 *
+	 * @param G An undirected (reciprocated edges), loop-free graph
+	 * @return The number of spanning trees of G
+	 */
+	public static long KirchhoffCountLU(ImmutableGraph G)
+	{
+		int n = G.numNodes();
+
 		//The Laplacian matrix of G with the last row/column removed
 		RealMatrix L = new Array2DRowRealMatrix(n-1,n-1);
-		
+
 		for(int u=0; u<n-1; u++)
 		{
 			L.setEntry(u, u, G.outdegree(u));
-			
+
 			LazyIntIterator it = G.successors(u);
 			for(int d = G.outdegree(u); d>0; d--)
 			{
 				int v = it.nextInt();
-				
+
 				if(v!=n-1)
 					L.setEntry(u, v, -1);
 			}
 		}
 
 		//System.err.println(L.toString());
-		
+
 		return Math.round(new LUDecomposition(L).getDeterminant());
 	}
+
+	/** Computes the determinant of the top-left m x m submatrix of M with the fraction-free Bareiss algorithm.
+	 * All the divisions are exact, hence the result is exact as long as no intermediate value overflows.
+	 * M is overwritten.
+	 *
+	 * @param M The matrix
+	 * @param m The size of the submatrix
+	 * @return The determinant
+	 * @throws ArithmeticException if an intermediate value overflows a long
+	 */
+	static long bareissDeterminant(long[][] M, int m) throws ArithmeticException
+	{
+		long sign = 1;
+		long prev = 1;
+		for(int p=0; p<m-1; p++)
+		{
+			if(M[p][p]==0) //Pivoting: swap with a row having a non-zero entry in column p
+			{
+				int r = p+1;
+				while(r<m && M[r][p]==0)
+					r++;
+
+				if(r==m)
+					return 0;
+
+				long[] tmp = M[p];
+				M[p] = M[r];
+				M[r] = tmp;
+				sign = -sign;
+			}
+
+			long pivot = M[p][p];
+			for(int i=p+1; i<m; i++)
+			{
+				long[] row = M[i];
+				long rp = row[p];
+				for(int j=p+1; j<m; j++)
+					row[j] = Math.subtractExact(Math.multiplyExact(row[j], pivot), Math.multiplyExact(rp, M[p][j])) / prev;
+			}
+			prev = pivot;
+		}
+
+		return sign*M[m-1][m-1];
+	}
+
+	/** Checks whether G is connected with a visit that does not allocate for graphs of up to 64 nodes.
+	 */
+	private static boolean isConnected(ImmutableGraph G)
+	{
+		int n = G.numNodes();
+		if(n>64)
+			return BreadthFirstSearch.context().search(G, 0, Integer.MAX_VALUE, Integer.MAX_VALUE)==n;
+
+		long reached = 1L;
+		long frontier = 1L;
+		while(frontier!=0)
+		{
+			int u = Long.numberOfTrailingZeros(frontier);
+			frontier &= frontier-1;
+
+			LazyIntIterator it = G.successors(u);
+			for(int d = G.outdegree(u); d>0; d--)
+			{
+				long bit = 1L << it.nextInt();
+				if((reached & bit)==0)
+				{
+					reached |= bit;
+					frontier |= bit;
+				}
+			}
+		}
+
+		return Long.bitCount(reached)==n;
+	}
+
+	private static long pow(long b, int e)
+	{
+		long r = 1;
+		for(; e>0; e--)
+			r = Math.multiplyExact(r, b);
+		return r;
+	}
 }
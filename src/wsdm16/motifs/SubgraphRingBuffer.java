@@ -0,0 +1,138 @@
+package wsdm16.motifs;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A bounded single-producer single-consumer queue of subgraphs of size K, each stored as K nodes and an
+ * adjacency matrix in preallocated primitive arrays. The producer publishes its subgraphs in small batches,
+ * hence a subgraph might not be visible to the consumer until {@link #flush()} or {@link #close()} is called.
+ *
+ * Both {@link #put(int[], long)} and {@link #drainTo(ParallelSubgraphEnumerator.SubgraphConsumer, int)} never
+ * allocate: a full queue makes the producer wait, an empty one makes the consumer return immediately.
+ *
+ * Queues can share a failure flag, which is set when a consumer dies: the producers of the full queues then throw
+ * instead of waiting forever, and the consumers stop draining.
+ *
+ * @author anon
+ *
+ */
+public class SubgraphRingBuffer implements ParallelSubgraphEnumerator.SubgraphConsumer
+{
+	/** Number of subgraphs put by the producer before making them visible to the consumer */
+	private static final int BATCH = 64;
+
+	private final int K;
+	private final int mask;
+	private final int[] nodes; // the nodes of the subgraph in slot i are nodes[i*K], ..., nodes[i*K+K-1]
+	private final long[] adjacency;
+
+	private final AtomicLong head = new AtomicLong(); // subgraphs published by the producer
+	private final AtomicLong tail = new AtomicLong(); // subgraphs consumed by the consumer
+	private volatile boolean closed = false;
+	private final AtomicBoolean failed;
+
+	// producer side
+	private long localHead = 0;
+	private long cachedTail = 0;
+
+	// consumer side
+	private final int[] sub;
+
+	/**
+	 * @param K The size of the subgraphs
+	 * @param capacity The maximum number of subgraphs in the queue, rounded up to a power of 2
+	 */
+	public SubgraphRingBuffer(int K, int capacity)
+	{
+		this(K, capacity, new AtomicBoolean());
+	}
+
+	/**
+	 * @param K The size of the subgraphs
+	 * @param capacity The maximum number of subgraphs in the queue, rounded up to a power of 2
+	 * @param failed A flag set when a consumer has failed, possibly shared with other queues
+	 */
+	public SubgraphRingBuffer(int K, int capacity, AtomicBoolean failed)
+	{
+		this.failed = failed;
+		int size = Integer.highestOneBit(Math.max(capacity, 2*BATCH)-1) << 1;
+		this.K = K;
+		this.mask = size-1;
+		this.nodes = new int[size*K];
+		this.adjacency = new long[size];
+		this.sub = new int[K];
+	}
+
+	/** Adds a subgraph to the queue, waiting until there is room for it. Must be called by the producer only.
+	 *
+	 * @param sub The nodes of the subgraph, which are copied
+	 * @param adjacency Its adjacency matrix
+	 * @throws IllegalStateException If the queue is full and a consumer has failed
+	 */
+	public void put(int[] sub, long adjacency)
+	{
+		if(localHead-cachedTail>mask)
+		{
+			flush();
+			while(localHead-(cachedTail = tail.get())>mask)
+			{
+				if(failed.get())
+					throw new IllegalStateException("A consumer of the subgraphs has failed");
+				Thread.yield();
+			}
+		}
+		int slot = (int)localHead & mask;
+		System.arraycopy(sub, 0, nodes, slot*K, K);
+		this.adjacency[slot] = adjacency;
+		if((++localHead & (BATCH-1))==0)
+			head.lazySet(localHead);
+	}
+
+	@Override
+	public void accept(int[] nodes, long adjacency)
+	{
+		put(nodes, adjacency);
+	}
+
+	/** Makes all the subgraphs put so far visible to the consumer. Must be called by the producer only.
+	 */
+	public void flush()
+	{
+		head.lazySet(localHead);
+	}
+
+	/** Flushes the queue and signals that no more subgraphs will be put.
+	 */
+	public void close()
+	{
+		head.set(localHead);
+		closed = true;
+	}
+
+	/** Removes up to max subgraphs from the queue and hands them to c. Must be called by the consumer only.
+	 *
+	 * @param c
+	 * @param max
+	 * @return The number of subgraphs removed, or -1 if the queue is closed and empty, or a consumer has failed
+	 */
+	public int drainTo(ParallelSubgraphEnumerator.SubgraphConsumer c, int max)
+	{
+		if(failed.get())
+			return -1;
+		boolean wasClosed = closed; // read before head, so that no subgraph is missed
+		long t = tail.get();
+		long available = head.get()-t;
+		if(available==0)
+			return wasClosed ? -1 : 0;
+
+		int count = (int)Math.min(available, max);
+		for(int i=0; i<count; i++)
+		{
+			int slot = (int)(t+i) & mask;
+			System.arraycopy(nodes, slot*K, sub, 0, K);
+			c.accept(sub, adjacency[slot]);
+		}
+		tail.lazySet(t+count);
+		return count;
+	}
+}
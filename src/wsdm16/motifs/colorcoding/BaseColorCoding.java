@@ -11,6 +11,14 @@ public abstract class BaseColorCoding {
 
 	public abstract IColorCodingSampler newSampler(int size);
 
+	/** Returns a sampler as {@link #newSampler(int)}, whose random choices are determined by the seed
+	 * 
+	 * @param size
+	 * @param seed
+	 * @return
+	 */
+	public abstract IColorCodingSampler newSampler(int size, long seed);
+
 	public abstract void printStats();
 
 	public abstract void buildStructures(int size);
@@ -23,6 +31,8 @@ public abstract class BaseColorCoding {
 
 	protected int k;
 	protected int colors[];
+	/** The time spent by the last run filling the table of each size */
+	protected final long sliceNanos[];
 
 	public BaseColorCoding(ImmutableGraph G, int k)
 	{
@@ -33,6 +43,7 @@ public abstract class BaseColorCoding {
 		this.k = k;
 		
 		colors = new int[G.numNodes()];
+		sliceNanos = new long[k+1];
 	}
 
 	/** Colors the vertices of G with the colors {0, 1, ..., k-1}
@@ -40,12 +51,33 @@ public abstract class BaseColorCoding {
 	 */
 	public void color()
 	{
-		Random r = new Random(); //FIXME: Quality?
-		
+		color(new Random()); //FIXME: Quality?
+	}
+
+	/** Colors the vertices of G as {@link #color()}, reproducibly
+	 * 
+	 * @param seed
+	 */
+	public void color(long seed)
+	{
+		color(new Random(seed));
+	}
+
+	private void color(Random r)
+	{
 		for(int i=G.numNodes()-1; i>=0; i--)
 			colors[i] = r.nextInt(k);
 	}
 
+	/**
+	 * 
+	 * @param size
+	 * @return the nanoseconds spent by the last {@link #run(int)} filling the table of treelets of the given size
+	 */
+	public long getSliceNanos(int size) {
+		return sliceNanos[size];
+	}
+
 	/**
 	 * 
 	 * @param u A vertex
@@ -233,11 +233,11 @@ public class CC2 extends BaseColorCoding
 		private int size;
 		private RandomGenerator random;
 		
-		public Sampler(ImmutableGraph graph, int size)
+		public Sampler(ImmutableGraph graph, int size, RandomGenerator random)
 		{
 			this.graph = graph.copy();
 			this.size = size;
-			this.random = new Well19937c();
+			this.random = random;
 		}
 		
 		@Override
@@ -350,7 +350,11 @@ public class CC2 extends BaseColorCoding
 	public void run(int no_threads) throws InterruptedException
 	{
 		for(int j=1; j<=k; j++)
+		{
+			long start = System.nanoTime();
 			slices[j].run(no_threads);
+			sliceNanos[j] = System.nanoTime() - start;
+		}
 	}
 	
 	public void buildStructures()
@@ -382,8 +386,14 @@ public class CC2 extends BaseColorCoding
 */
 	
 	@Override
-	public IColorCodingSampler newSampler(int size) 
+	public IColorCodingSampler newSampler(int size)
+	{
+		return new Sampler(G, size, new Well19937c());
+	}
+
+	@Override
+	public IColorCodingSampler newSampler(int size, long seed)
 	{
-		return new Sampler(G, size);
+		return new Sampler(G, size, new Well19937c(seed));
 	}
 }
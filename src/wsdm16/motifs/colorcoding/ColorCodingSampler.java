@@ -24,8 +24,9 @@ import it.unimi.dsi.fastutil.longs.Long2LongMap.FastEntrySet;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
 import wsdm16.motifs.BaseGraphIsomorphisms;
-import wsdm16.motifs.Graphlet;
+import wsdm16.motifs.CompactGraphlet;
 import wsdm16.motifs.LazyGraphIsomorphisms;
 import wsdm16.motifs.SpanningTrees;
 import wsdm16.motifs.colorcoding.BaseColorCoding.IColorCodingSampler;
@@ -45,6 +46,23 @@ public class ColorCodingSampler
 	BaseGraphIsomorphisms isomorphisms;
 	int numSamples = -1;
 	int k = -1;
+	int rejected;
+
+	public ColorCodingSampler()
+	{
+	}
+
+	/**
+	 * 
+	 * @param k graphlet size (number of nodes)
+	 * @param numSamples number of samples to take
+	 */
+	public ColorCodingSampler(int k, int numSamples)
+	{
+		this.k = k;
+		this.numSamples = numSamples;
+		isomorphisms = new LazyGraphIsomorphisms(k);
+	}
 
     public static void main(String[] args) throws InterruptedException
     {
@@ -57,6 +75,7 @@ public class ColorCodingSampler
 		int numThreads=-1;
 		int verboseLevel = 0;
 		boolean alon = false;
+		Long seed = null;
 		// 1. PARSE THE COMMAND LINE OPTIONS
 		Options options = new Options();
 		options.addOption("a", false, "use Alon's color coding");
@@ -64,6 +83,7 @@ public class ColorCodingSampler
 		options.addOption("k", true, "graphlet size (number of nodes)");
 		options.addOption("n", true, "number of samples to take");
 		options.addOption("p", true, "number of threads to run in parallel or -1 to use all available cores");
+		options.addOption("s", true, "seed of the random choices (coloring and sampling)");
 
 		options.addOption(
 			"T",
@@ -80,6 +100,7 @@ public class ColorCodingSampler
 		    basenameT = cmd.hasOption("T") ? cmd.getOptionValue("T") : basenameT;
 		    verboseLevel = cmd.hasOption("v") ? Integer.parseInt(cmd.getOptionValue("v")) : verboseLevel;
 		    alon = cmd.hasOption("a");
+		    seed = cmd.hasOption("s") ? Long.valueOf(cmd.getOptionValue("s")) : seed;
 		} catch (ParseException e) {
 		    System.err.println(e.toString());
 		}
@@ -125,10 +146,14 @@ public class ColorCodingSampler
 
 		pl.logger().info("Coloring...");
 
-		C.color();
+		if(seed != null)
+			C.color(seed);
+		else
+			C.color();
 		
 		pl.logger().info("Filling tables using "+ numThreads +" threads...");
 		
+		long buildStart = System.nanoTime();
 		try
 		{
 			C.run(numThreads);
@@ -138,6 +163,7 @@ public class ColorCodingSampler
 			e1.printStackTrace();
 			System.exit(1);
 		}
+		pl.logger().info("Tables filled in " + (System.nanoTime() - buildStart) / 1E9 + " seconds");
 
 		pl.logger().info("Heap used: " + Runtime.getRuntime().totalMemory() + " max: "+ Runtime.getRuntime().maxMemory());
 
@@ -150,16 +176,47 @@ public class ColorCodingSampler
 		
 		pl.logger().info("Sampling...");
 		 
-		spanning_trees = new ConcurrentHashMap<>(numThreads);
 		long start = new Date().getTime();
 
+		Long2LongOpenHashMap hashCount = sample(C, numThreads, seed != null ? seed : System.nanoTime());
+
+		double duration = (new Date().getTime() - start)/1000.0;
+		
+		pl.logger().info("Done");
+		pl.logger().info("Heap used: " + Runtime.getRuntime().totalMemory() + " max: "+ Runtime.getRuntime().maxMemory());
+		
+		pl.logger().info("Sampled " + numSamples + " motif occurrences in " + duration + " seconds ("+ new DecimalFormat("#.##").format(numSamples/duration) + "occ/s))");
+		pl.logger().info("Sampled " + (numSamples + rejected) + " treelet occurrences in " + duration + " seconds ("+ new DecimalFormat("#.##").format((numSamples+rejected)/duration) + "occ/s))");
+		pl.logger().info("Rejected " + rejected + " treelets (" + new DecimalFormat("#.##").format(100*((double)rejected)/(numSamples+rejected)) + "%)");
+		
+		System.out.println("== SAMPLES FOLLOW ==");
+		for(Map.Entry<Long, Long> e : hashCount.entrySet())
+			System.out.println(e.getKey() + ": " + e.getValue() + " ("+ e.getValue()*100.0/numSamples +"%)");
+
+    }
+    
+    /** Takes numSamples graphlet occurrences, rejecting the sampled treelets so that each occurrence has the same
+     * probability of being taken.
+     * 
+     * @param C a color coding whose structures for treelets of size k have been built
+     * @param numThreads
+     * @param seed seed of the random choices of the samplers and of the rejection, from which the seeds of the
+     * threads are derived with {@link GraphGenerator#random(long, long)}
+     * @return the number of samples of each graphlet, by signature
+     * @throws InterruptedException
+     */
+    public Long2LongOpenHashMap sample(BaseColorCoding C, int numThreads, long seed) throws InterruptedException
+    {
+		samplesTaken = new AtomicInteger(0);
+		spanning_trees = new ConcurrentHashMap<>(numThreads);
+
 		List<Thread> threads = new ArrayList<>();
 		List<SamplerRunnable> runnables = new ArrayList<>();
 		for(int i=0; i<numThreads; i++)
 		{
-			IColorCodingSampler sampler = C.newSampler(k);
+			IColorCodingSampler sampler = C.newSampler(k, GraphGenerator.random(seed, 2*i));
 
-			SamplerRunnable sr = new SamplerRunnable(sampler);
+			SamplerRunnable sr = new SamplerRunnable(sampler, new Well19937c(GraphGenerator.random(seed, 2*i + 1)));
 			Thread t = new Thread(sr);
 			runnables.add(sr);
 			threads.add(t);
@@ -169,9 +226,8 @@ public class ColorCodingSampler
 		for(Thread t : threads)
 			t.join();
 
-		pl.logger().info("Merging results");
-
-		int accepted=0, rejected=0;
+		int accepted=0;
+		rejected=0;
 		Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
 		for(SamplerRunnable sr : runnables)
 		{
@@ -183,22 +239,18 @@ public class ColorCodingSampler
 		}
 
 		assert(accepted==numSamples);
-		
-		double duration = (new Date().getTime() - start)/1000.0;
-		
-		pl.logger().info("Done");
-		pl.logger().info("Heap used: " + Runtime.getRuntime().totalMemory() + " max: "+ Runtime.getRuntime().maxMemory());
-		
-		pl.logger().info("Sampled " + numSamples + " motif occurrences in " + duration + " seconds ("+ new DecimalFormat("#.##").format(numSamples/duration) + "occ/s))");
-		pl.logger().info("Sampled " + (numSamples + rejected) + " treelet occurrences in " + duration + " seconds ("+ new DecimalFormat("#.##").format((numSamples+rejected)/duration) + "occ/s))");
-		pl.logger().info("Rejected " + rejected + " treelets (" + new DecimalFormat("#.##").format(100*((double)rejected)/(numSamples+rejected)) + "%)");
-		
-		System.out.println("== SAMPLES FOLLOW ==");
-		for(Map.Entry<Long, Long> e : hashCount.entrySet())
-			System.out.println(e.getKey() + ": " + e.getValue() + " ("+ e.getValue()*100.0/numSamples +"%)");
-
+		return hashCount;
     }
-    
+
+    /**
+     * 
+     * @return the number of treelets rejected by the last {@link #sample(BaseColorCoding, int, long)}
+     */
+    public int getRejected()
+    {
+		return rejected;
+	}
+
     private class SamplerRunnable implements Runnable
     {
     	IColorCodingSampler sampler;
@@ -207,14 +259,16 @@ public class ColorCodingSampler
     	private RandomGenerator random;
 		private Long2LongOpenHashMap hashCount;
 		private ImmutableGraph graph;
+		private long[][] laplacian;
 		
-    	public SamplerRunnable(IColorCodingSampler sampler)
+    	public SamplerRunnable(IColorCodingSampler sampler, RandomGenerator random)
     	{
     		this.sampler = sampler;
     		rejected = 0;
-    		random = new Well19937c();
+    		this.random = random;
     		hashCount = new Long2LongOpenHashMap();
     		graph = sampler.getGraph();
+    		laplacian = new long[k][k];
     	}
 
     	public int getAccepted() 
@@ -247,15 +301,12 @@ public class ColorCodingSampler
 		    		List<Integer> L= sampler.sample();
 		    		assert(L.size() == k);
 	
-		    		Graphlet occ = new Graphlet(graph, L);
+		    		CompactGraphlet occ = new CompactGraphlet(graph, L);
 		    		assert(occ.isConnected());
 	
 		    		assert(occ.size()==k);
-		    
-		    		ImmutableGraph H = occ.asGraph();
-		    		assert(H.numNodes()==k);
 		    		
-					long hash = isomorphisms.long_signature(H);
+					long hash = isomorphisms.long_signature(occ.adjacencyMask());
 		    		
 					
 		    		Long boxedSt = spanning_trees.getOrDefault(hash, null);
@@ -264,7 +315,9 @@ public class ColorCodingSampler
 		    			st = boxedSt.longValue(); //Unbox
 		    		else
 		    		{
-		        		st = SpanningTrees.KirchhoffCount(H);
+		    			ImmutableGraph H = occ.asGraph();
+		    			assert(H.numNodes()==k);
+		        		st = SpanningTrees.KirchhoffCount(H, laplacian);
 		        		assert(st>0);
 		        		spanning_trees.putIfAbsent(hash, st);
 		    		}
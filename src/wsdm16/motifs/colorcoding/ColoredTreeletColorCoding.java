@@ -252,11 +252,11 @@ public class ColoredTreeletColorCoding extends BaseColorCoding
 		private int size;
 		private BitsStreamGenerator random;
 		
-		public Sampler(ImmutableGraph graph, int size)
+		public Sampler(ImmutableGraph graph, int size, BitsStreamGenerator random)
 		{
 			this.graph = graph.copy();
 			this.size = size;
-			this.random = new Well19937c();
+			this.random = random;
 		}
 		
 		@Override
@@ -378,7 +378,11 @@ public class ColoredTreeletColorCoding extends BaseColorCoding
 	public void run(int no_threads) throws InterruptedException
 	{
 		for(int j=1; j<=k; j++)
+		{
+			long start = System.nanoTime();
 			slices[j].run(no_threads);
+			sliceNanos[j] = System.nanoTime() - start;
+		}
 	}
 	
 	@Override
@@ -409,6 +413,12 @@ public class ColoredTreeletColorCoding extends BaseColorCoding
 	@Override
 	public IColorCodingSampler newSampler(int size)
 	{
-		return new Sampler(G, size);
+		return new Sampler(G, size, new Well19937c());
+	}
+
+	@Override
+	public IColorCodingSampler newSampler(int size, long seed)
+	{
+		return new Sampler(G, size, new Well19937c(seed));
 	}
 }
@@ -0,0 +1,272 @@
+package wsdm16.motifs.randomwalks;
+
+import org.apache.commons.math3.random.Well19937c;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.motifs.BaseGraphIsomorphisms;
+import wsdm16.motifs.CompactGraphlet;
+
+/**
+ * Takes samples from a few long random walks (chains) run in lockstep, instead of restarting a walk of fixed
+ * length for every sample, choosing the burn-in and the sampling interval from online mixing diagnostics (see
+ * {@link ConvergenceMonitor}) rather than from the command line.
+ *
+ * <ul>
+ * <li>Burn-in: the chains take values every interval steps in windows of doubling length; a window ends the
+ * burn-in if the Gelman-Rubin factor of its values is below {@link #MAX_PSRF}, otherwise it is discarded and
+ * the next window is twice as long. The burn-in stops anyway, with a warning, before exceeding
+ * {@link #setMaxBurnIn(long) a maximum number of steps}.
+ * <li>Sampling: the values are counted; when the integrated autocorrelation time at the current interval exceeds
+ * 2, the interval is doubled, up to {@value #MAX_INTERVAL} steps, and when it falls below 1.2 the interval is
+ * halved, hence consecutive samples are nearly independent while few steps are spent between them.
+ * </ul>
+ *
+ * AdaptiveWalkSampler.java - created on 19 ott 2026
+ * @author anon
+ */
+public class AdaptiveWalkSampler {
+	/** Gelman-Rubin factor below which the chains are considered mixed */
+	public static final double MAX_PSRF = 1.1;
+	/** Default maximum number of steps per chain spent in the burn-in */
+	public static final long DEFAULT_MAX_BURN_IN = 1L << 24;
+	/** Maximum number of steps between two values of a chain, reached by doubling the interval */
+	public static final int MAX_INTERVAL = 1 << 16;
+	/** Values per chain between two adaptations of the interval */
+	private static final int ADAPTATION_ROUNDS = 256;
+	/** Maximum number of values per chain computed in one go */
+	private static final int BATCH_ROUNDS = 1024;
+	private static final int MAX_LAG = 16;
+
+	private final int numChains;
+	private final FullGraphletRandomWalk[] chains;
+	private final ImmutableGraph[] graphs; // the copy of the host graph used by each chain
+	private final BaseGraphIsomorphisms isomorphisms;
+	private final int numThreads;
+	private final ConvergenceMonitor monitor;
+	private final ProgressLogger pl = new ProgressLogger();
+	private int interval;
+	private long maxBurnIn = DEFAULT_MAX_BURN_IN;
+	private long burnInSteps, virtualSteps;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param G
+	 *            the host graph
+	 * @param seeder
+	 *            for the starting graphlets of the chains
+	 * @param k
+	 *            the size of the graphlets
+	 * @param degreeBound
+	 *            a bound on the degree of the graphlets of G (see {@link FullGraphletRandomWalk#degreeBound(ImmutableGraph, int)})
+	 * @param smart
+	 *            whether the chains are {@link SmartGraphletRandomWalk}s
+	 * @param numChains
+	 *            at least 2, for the Gelman-Rubin diagnostic
+	 * @param numThreads
+	 * @param interval
+	 *            the initial number of steps between two values of a chain
+	 * @param seed
+	 *            chain c uses the seed plus c
+	 * @param isomorphisms
+	 */
+	public AdaptiveWalkSampler(ImmutableGraph G, GraphletSeeder seeder, int k, double degreeBound, boolean smart,
+			int numChains, int numThreads, int interval, long seed, BaseGraphIsomorphisms isomorphisms) {
+		if (numChains < 2)
+			throw new IllegalArgumentException("At least two chains are needed");
+		this.numChains = numChains;
+		this.numThreads = Math.min(numThreads, numChains);
+		this.interval = interval;
+		this.isomorphisms = isomorphisms;
+		this.chains = new FullGraphletRandomWalk[numChains];
+		this.graphs = new ImmutableGraph[numChains];
+		int[] start = new int[k];
+		for (int c = 0; c < numChains; c++) {
+			// the chains of a thread share a copy of the graph
+			graphs[c] = c < this.numThreads ? G.copy() : graphs[c % this.numThreads];
+			Well19937c random = new Well19937c(seed + c);
+			seeder.seed(random, start);
+			if (smart)
+				chains[c] = new SmartGraphletRandomWalk(graphs[c], start, 1, random);
+			else {
+				chains[c] = new FullGraphletRandomWalk(graphs[c], start, 1, random);
+				chains[c].setDegreeBound(degreeBound);
+			}
+		}
+		this.monitor = new ConvergenceMonitor(numChains, MAX_LAG);
+	}
+
+	/**
+	 * Advances all the chains by the given number of intervals, feeding the monitor with their values.
+	 *
+	 * @param rounds
+	 * @param hashCount
+	 *            if not null, the values are also counted here
+	 * @throws RuntimeException
+	 *             if a chain fails, or if the chains are interrupted
+	 */
+	private void advance(int rounds, Long2LongOpenHashMap hashCount) {
+		long[][] values = new long[numChains][rounds];
+		Thread[] threads = new Thread[numThreads];
+		Throwable[] errors = new Throwable[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final int first = t;
+			threads[t] = new Thread(() -> {
+				try {
+					for (int c = first; c < numChains; c += numThreads)
+						for (int r = 0; r < rounds; r++) {
+							chains[c].walk(interval);
+							values[c][r] = isomorphisms.long_signature(new CompactGraphlet(graphs[c], chains[c].getNodes()).adjacencyMask());
+						}
+				} catch (RuntimeException | Error e) {
+					errors[first] = e;
+				}
+			}, "chains" + t);
+			threads[t].start();
+		}
+		try {
+			for (Thread t : threads)
+				t.join();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		// the values of a failed chain are not there
+		for (Throwable e : errors) {
+			if (e instanceof Error)
+				throw (Error) e;
+			if (e != null)
+				throw (RuntimeException) e;
+		}
+		for (int r = 0; r < rounds; r++)
+			for (int c = 0; c < numChains; c++) {
+				monitor.add(c, values[c][r]);
+				if (hashCount != null)
+					hashCount.addTo(values[c][r], 1);
+			}
+		virtualSteps += (long) rounds * interval * numChains;
+	}
+
+	/**
+	 * Sets the maximum number of steps per chain spent in the burn-in (by default {@value #DEFAULT_MAX_BURN_IN}).
+	 *
+	 * @param maxBurnIn
+	 */
+	public void setMaxBurnIn(long maxBurnIn) {
+		this.maxBurnIn = maxBurnIn;
+	}
+
+	/**
+	 * Runs the chains until the Gelman-Rubin factor of a window of values falls below {@link #MAX_PSRF}, or until the
+	 * next window would exceed the maximum burn-in.
+	 */
+	private void burnIn() {
+		int window = 16;
+		while (true) {
+			monitor.reset();
+			for (int done = 0; done < window; done += BATCH_ROUNDS)
+				advance(Math.min(BATCH_ROUNDS, window - done), null);
+			burnInSteps += (long) window * interval;
+			double psrf = monitor.potentialScaleReduction();
+			pl.logger().info("Burn-in: " + burnInSteps + " steps per chain, Gelman-Rubin factor " + String.format("%.3f", psrf)
+					+ ", autocorrelation time " + String.format("%.2f", monitor.autocorrelationTime()));
+			if (psrf < MAX_PSRF)
+				return;
+			window *= 2;
+			if (burnInSteps + (long) window * interval > maxBurnIn) {
+				pl.logger().warn("The chains did not mix within the maximum burn-in of " + maxBurnIn
+						+ " steps per chain: sampling anyway");
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Adapts the interval to the autocorrelation time of the values since the last change of the interval.
+	 *
+	 * @return whether the interval changed (and the monitor was reset)
+	 */
+	private boolean adapt() {
+		double tau = monitor.autocorrelationTime();
+		if (tau > 2 && interval < MAX_INTERVAL)
+			interval = Math.min(2 * interval, MAX_INTERVAL);
+		else if (tau < 1.2 && interval > 1)
+			interval /= 2;
+		else
+			return false;
+		pl.logger().info("Autocorrelation time " + String.format("%.2f", tau) + ", sampling every " + interval + " steps");
+		monitor.reset();
+		return true;
+	}
+
+	/**
+	 * Takes samples, after the burn-in.
+	 *
+	 * @param numSamples
+	 *            the number of samples over all the chains, rounded up to a multiple of the number of chains
+	 * @return the number of samples of each graphlet class
+	 * @throws RuntimeException
+	 *             if a chain fails
+	 */
+	public Long2LongOpenHashMap sample(long numSamples) {
+		burnIn();
+		monitor.reset();
+		Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
+		long samples = 0;
+		double ess = 0; // of the values before the last change of the interval
+		while (samples < numSamples) {
+			int rounds = (int) Math.min(ADAPTATION_ROUNDS, (numSamples - samples + numChains - 1) / numChains);
+			advance(rounds, hashCount);
+			samples += (long) rounds * numChains;
+			if (monitor.size() >= (long) ADAPTATION_ROUNDS * numChains) {
+				double current = monitor.effectiveSampleSize();
+				if (adapt())
+					ess += current;
+			}
+		}
+		ess += monitor.effectiveSampleSize();
+		pl.logger().info("Effective sample size: " + String.format("%.0f", ess) + " of " + samples
+				+ " samples, final sampling interval: " + interval + " steps");
+		return hashCount;
+	}
+
+	/**
+	 * Returns the number of steps per chain spent in the burn-in.
+	 *
+	 * @return
+	 */
+	public long burnInSteps() {
+		return burnInSteps;
+	}
+
+	/**
+	 * Returns the number of steps taken so far, over all chains.
+	 *
+	 * @return
+	 */
+	public long virtualSteps() {
+		return virtualSteps;
+	}
+
+	/**
+	 * Returns the number of transitions between different graphlets taken so far, over all chains.
+	 *
+	 * @return
+	 */
+	public long realSteps() {
+		long real = 0;
+		for (FullGraphletRandomWalk chain : chains)
+			real += chain.realSteps();
+		return real;
+	}
+
+	/**
+	 * Returns the current number of steps between two samples of a chain.
+	 *
+	 * @return
+	 */
+	public int interval() {
+		return interval;
+	}
+}
@@ -0,0 +1,220 @@
+package wsdm16.motifs.randomwalks;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Online mixing diagnostics for a set of parallel chains, each producing a sequence of graphlet signatures.
+ * Every graphlet class s is turned into the indicator sequence [x_t = s], and the statistics of the indicators
+ * are kept incrementally: the number of occurrences of s in each chain, and the number of times s occurs at
+ * distance L in the same chain, for L up to a maximum lag. From these:
+ * <ul>
+ * <li>the autocorrelation of the indicators at each lag, and the integrated autocorrelation time
+ * tau = 1 + 2 (rho_1 + rho_2 + ...), summed up to the first non-positive autocorrelation;
+ * <li>the effective sample size, that is, the number of values divided by tau;
+ * <li>the Gelman-Rubin potential scale reduction factor, comparing the variance of the indicators between the
+ * chains and within each chain.
+ * </ul>
+ * Each diagnostic is the worst one over the classes with frequency at least {@link #MIN_FREQUENCY}, since rarer
+ * classes have too few occurrences to be estimated.
+ *
+ * ConvergenceMonitor.java - created on 19 ott 2026
+ * @author anon
+ */
+public class ConvergenceMonitor {
+	/** Classes rarer than this are not looked at by the diagnostics */
+	public static final double MIN_FREQUENCY = 0.01;
+
+	private final int numChains;
+	private final int maxLag;
+	private final long[][] last; // the last maxLag values of each chain, in a circular buffer
+	private final long[] length; // the number of values of each chain
+	private final Long2LongOpenHashMap[] counts; // the occurrences of each class in each chain
+	private final Long2LongOpenHashMap total = new Long2LongOpenHashMap(); // the occurrences of each class
+	private final Long2ObjectOpenHashMap<long[]> pairs = new Long2ObjectOpenHashMap<>(); // pairs.get(s)[L-1]: occurrences of s at distance L
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numChains
+	 * @param maxLag
+	 *            the maximum lag of the autocorrelations
+	 */
+	public ConvergenceMonitor(int numChains, int maxLag) {
+		this.numChains = numChains;
+		this.maxLag = maxLag;
+		this.last = new long[numChains][maxLag];
+		this.length = new long[numChains];
+		this.counts = new Long2LongOpenHashMap[numChains];
+		for (int c = 0; c < numChains; c++)
+			counts[c] = new Long2LongOpenHashMap();
+	}
+
+	/**
+	 * Forgets all the values seen so far.
+	 */
+	public void reset() {
+		for (int c = 0; c < numChains; c++) {
+			length[c] = 0;
+			counts[c].clear();
+		}
+		total.clear();
+		pairs.clear();
+	}
+
+	/**
+	 * Appends a value to a chain.
+	 *
+	 * @param chain
+	 * @param signature
+	 */
+	public void add(int chain, long signature) {
+		long[] buffer = last[chain];
+		long n = length[chain];
+		long[] p = pairs.get(signature);
+		if (p == null)
+			pairs.put(signature, p = new long[maxLag]);
+		for (int lag = 1; lag <= maxLag && lag <= n; lag++)
+			if (buffer[(int) ((n - lag) % maxLag)] == signature)
+				p[lag - 1]++;
+		buffer[(int) (n % maxLag)] = signature;
+		length[chain] = n + 1;
+		counts[chain].addTo(signature, 1);
+		total.addTo(signature, 1);
+	}
+
+	/**
+	 * Returns the number of values seen, over all chains.
+	 *
+	 * @return
+	 */
+	public long size() {
+		long n = 0;
+		for (int c = 0; c < numChains; c++)
+			n += length[c];
+		return n;
+	}
+
+	/**
+	 * Returns the number of occurrences of each class, over all chains.
+	 *
+	 * @return
+	 */
+	public Long2LongOpenHashMap histogram() {
+		return total;
+	}
+
+	private boolean tracked(long occurrences, long n) {
+		double p = (double) occurrences / n;
+		return p >= MIN_FREQUENCY && p <= 1 - MIN_FREQUENCY;
+	}
+
+	/**
+	 * Returns the autocorrelation at the given lag of the indicator of a class.
+	 */
+	private double autocorrelation(long signature, int lag, long n) {
+		double p = (double) total.get(signature) / n;
+		long numPairs = 0;
+		for (int c = 0; c < numChains; c++)
+			numPairs += Math.max(0, length[c] - lag);
+		if (numPairs == 0)
+			return 0;
+		double joint = (double) pairs.get(signature)[lag - 1] / numPairs;
+		return (joint - p * p) / (p * (1 - p));
+	}
+
+	/**
+	 * Returns the largest autocorrelation at the given lag, over the classes that are tracked.
+	 *
+	 * @param lag
+	 *            between 1 and the maximum lag
+	 * @return
+	 */
+	public double autocorrelation(int lag) {
+		long n = size();
+		double worst = 0;
+		for (Long2LongMap.Entry e : total.long2LongEntrySet())
+			if (tracked(e.getLongValue(), n))
+				worst = Math.max(worst, autocorrelation(e.getLongKey(), lag, n));
+		return worst;
+	}
+
+	/**
+	 * Returns the largest integrated autocorrelation time over the classes that are tracked (1 for independent
+	 * values).
+	 *
+	 * @return
+	 */
+	public double autocorrelationTime() {
+		long n = size();
+		double worst = 1;
+		for (Long2LongMap.Entry e : total.long2LongEntrySet()) {
+			if (!tracked(e.getLongValue(), n))
+				continue;
+			double tau = 1;
+			for (int lag = 1; lag <= maxLag; lag++) {
+				double rho = autocorrelation(e.getLongKey(), lag, n);
+				if (rho <= 0)
+					break;
+				tau += 2 * rho;
+			}
+			worst = Math.max(worst, tau);
+		}
+		return worst;
+	}
+
+	/**
+	 * Returns the effective sample size, i.e. the number of values divided by the autocorrelation time.
+	 *
+	 * @return
+	 */
+	public double effectiveSampleSize() {
+		return size() / autocorrelationTime();
+	}
+
+	/**
+	 * Returns the largest Gelman-Rubin potential scale reduction factor over the classes that are tracked; values
+	 * close to 1 mean that the chains have forgotten their starting points. It is NaN with fewer than two chains or
+	 * two values per chain.
+	 *
+	 * @return
+	 */
+	public double potentialScaleReduction() {
+		if (numChains < 2)
+			return Double.NaN;
+		double n = 0;
+		for (int c = 0; c < numChains; c++) {
+			if (length[c] < 2)
+				return Double.NaN;
+			n += length[c];
+		}
+		n /= numChains;
+		double worst = 1;
+		for (Long2LongMap.Entry e : total.long2LongEntrySet()) {
+			if (!tracked(e.getLongValue(), size()))
+				continue;
+			// the mean and variance of the indicator in each chain
+			double mean = 0, within = 0;
+			double[] means = new double[numChains];
+			for (int c = 0; c < numChains; c++) {
+				means[c] = (double) counts[c].get(e.getLongKey()) / length[c];
+				mean += means[c];
+				within += means[c] * (1 - means[c]) * length[c] / (length[c] - 1);
+			}
+			mean /= numChains;
+			within /= numChains;
+			double between = 0; // B/n
+			for (int c = 0; c < numChains; c++)
+				between += (means[c] - mean) * (means[c] - mean);
+			between /= numChains - 1;
+			if (within == 0) {
+				if (between > 0)
+					return Double.POSITIVE_INFINITY;
+				continue;
+			}
+			worst = Math.max(worst, Math.sqrt(((n - 1) / n * within + between) / within));
+		}
+		return worst;
+	}
+}
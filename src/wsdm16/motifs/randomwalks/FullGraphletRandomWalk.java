@@ -1,54 +1,76 @@
 package wsdm16.motifs.randomwalks;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-/** 
+import java.util.Arrays;
+/**
  * A random walk on the space of graphlets of a host graph.
  * This walk is "full", in the sense that it can step from graphlet A to graphlet B if the
  * two graphlets differ by exactly one node, even if their intersection does not induce a connected subgraph of G.
+ *
+ * The nodes that can be switched with those of the current graphlet are maintained incrementally. Every node
+ * of the host graph outside the graphlet but adjacent to it (the frontier) is labelled by the set of graphlet
+ * nodes it is adjacent to, as a bitmask over the k slots of the graphlet, and the frontier nodes are grouped
+ * by label. A node v can replace the node in slot j iff its label hits every connected component of the
+ * graphlet without slot j: this only depends on the label, hence the number of switchable nodes of every slot
+ * is obtained from the group sizes. Replacing u with v only relabels the neighbors of u and v.
  * @author anon
  */
-import java.util.Set;
 
-import org.apache.commons.math3.distribution.GeometricDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 
-import it.unimi.dsi.fastutil.ints.IntArraySet;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.webgraph.ImmutableGraph;
-import it.unimi.dsi.webgraph.LazyIntIterator;
 import it.unimi.dsi.webgraph.NodeIterator;
 import wsdm16.graphutils.BreadthFirstSearch;
 import wsdm16.motifs.Graphlet;
-import wsdm16.motifs.distributions.EnumeratedIntegerDistribution;
+import wsdm16.motifs.NeighborhoodIndex;
 
 public class FullGraphletRandomWalk extends GraphletRandomWalk {
 	public class InvalidStartingNodeException extends Exception {
 
 		/**
-		 * 
+		 *
 		 */
 		private static final long serialVersionUID = 1L;
 
-	}   
+	}
+
+	/** Labels are bitmasks over the slots of the graphlet, stored in an int and used as array indices */
+	public static final int MAX_K = 16;
 
 	private int realSteps;
-	private Map<Integer, Set<Integer>> neighCache; // store neighbors of each graphlet node
-	private Map<Integer, Set<Integer>> switchables; // store nodes that can be swapped with H's nodes
-	private Map<Set<Integer>, Set<Integer>> neighUnionCache; // store union of nodes neighbors
+	protected double degreeBound; // no state has a larger degree; the walk leaves a state of degree d w.p. d/degreeBound
+	private NeighborhoodIndex index; // G itself, if it is an index
+	private NeighborCache neighborCache; // otherwise, the successors of the last nodes used
+
+	private int[] slots; // the nodes of the graphlet; a switch replaces the content of one slot
+	private long[] rows; // rows[j] has bit i set iff the nodes in slots i and j are adjacent
+	private boolean graphletChanged; // H does not reflect slots any more
+
+	private Int2LongOpenHashMap frontier; // label of each frontier node in the high 32 bits, its position in its group in the low ones
+	protected IntArrayList[] groups; // the frontier nodes with each label
+	protected int[] activeLabels; // the labels of the non-empty groups
+	private int[] activePosition; // position of each label in activeLabels
+	protected int numActive;
+
+	private long[][] components; // components[j] are the connected components of the graphlet without slot j
+	private int[] numComponents;
+	private int[] switchables; // number of nodes that can be switched with each slot
+	private int stateDegree;
+
+	// the successor list being scanned
+	private int[] succ;
+	private int succFrom, succTo;
 
 	/** Constructor.
-	 * 
+	 *
 	 * @param G host graph
 	 * @param k size of the graphlet (number of nodes)
 	 * @param u a node to start from to search for a graphlet
 	 * @param maxDeg the maximum degree of G
-	 * @throws InvalidStartingNodeException 
+	 * @throws InvalidStartingNodeException
 	 */
 	public FullGraphletRandomWalk(ImmutableGraph G, int k, int u, int maxDeg, RandomGenerator random) throws InvalidStartingNodeException
 	{
@@ -65,6 +87,26 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 		init();
 	}
 
+	/** Constructor, starting from a given graphlet (see {@link GraphletSeeder}).
+	 *
+	 * @param G host graph
+	 * @param nodes the nodes of a connected graphlet of G; its size is the size of the graphlets of the walk
+	 * @param maxDeg the maximum degree of G
+	 */
+	public FullGraphletRandomWalk(ImmutableGraph G, int[] nodes, int maxDeg, RandomGenerator random)
+	{
+		this.G = G;
+		this.k = nodes.length;
+		this.random = random;
+		this.maxDegree = maxDeg;
+		Integer[] boxed = new Integer[k];
+		for (int j = 0; j < k; j++)
+			boxed[j] = nodes[j];
+		this.H = new Graphlet(G, Arrays.asList(boxed));
+		this.realSteps=0;
+		init();
+	}
+
 	public FullGraphletRandomWalk(ImmutableGraph G, int k)
 	{
 		this.G = G;
@@ -74,25 +116,30 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 		init();
 	}
 
-	/** Tries to build a graphlet around the given node through a breadth-first search. 
-	 * 
+	/** Tries to build a graphlet around the given node through a breadth-first search.
+	 *
 	 * @param u the starting node
 	 * @return
 	 */
 	protected Graphlet buildGraphlet(int u)
-	{	
-		BreadthFirstSearch.Result result = new BreadthFirstSearch(G, u).setMaxNodes(k).visit();
-		if (result.getReachedNodes() == k)
-			return new Graphlet(G, result.getDistanceMap().keySet());
-		else
+	{
+		BreadthFirstSearch.Context bfs = BreadthFirstSearch.context();
+		if (bfs.search(G, u, Integer.MAX_VALUE, k) < k)
 			return null;
+		Integer[] nodes = new Integer[k];
+		for (int i = 0; i < k; i++)
+			nodes[i] = bfs.node(i);
+		return new Graphlet(G, Arrays.asList(nodes));
 	}
 
 	/** Initialize the random walk.
-	 * 
+	 *
 	 */
-	protected void init() 
+	protected void init()
 	{
+		if(k>MAX_K)
+			throw new IllegalArgumentException("Graphlets can have at most " + MAX_K + " nodes");
+
 		if(maxDegree==-1) // then compute by ourselves
 		{
 			NodeIterator it = G.nodeIterator();
@@ -103,6 +150,8 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 					maxDegree=G.outdegree(u);
 			}
 		}
+		// each slot can be replaced by at most (k-1) * maxDeg nodes
+		degreeBound = (double) (k-1)*k*maxDegree;
 
 		// find a first graphlet to start from
 		int u = 0;
@@ -112,58 +161,226 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 		}
 		steps = 0;
 
-		// initialize the neighbor cache
-		neighCache = new LRUCache<Integer, Set<Integer>>(10 * k);
-		for (Integer x : H.getNodes())
-			updateNeighCache(x);
-		neighUnionCache = new LRUCache<Set<Integer>, Set<Integer>>(10 * k);
+		index = G instanceof NeighborhoodIndex ? (NeighborhoodIndex) G : null;
+		if (index == null)
+			neighborCache = new NeighborCache(G, 10 * k);
+		slots = new int[k];
+		int i = 0;
+		for (int v : H.getNodes())
+			slots[i++] = v;
+		rows = new long[k];
+		frontier = new Int2LongOpenHashMap();
+		groups = new IntArrayList[1 << k];
+		activeLabels = new int[1 << k];
+		activePosition = new int[1 << k];
+		numActive = 0;
+		components = new long[k][k];
+		numComponents = new int[k];
+		switchables = new int[k];
+
+		// label the frontier, and compute the adjacency among the slots
+		for (int j = 0; j < k; j++) {
+			loadSuccessors(slots[j]);
+			for (int p = succFrom; p < succTo; p++) {
+				int w = succ[p];
+				int slot = slotOf(w);
+				if (slot >= 0) {
+					rows[j] |= 1L << slot;
+					rows[slot] |= 1L << j;
+				} else
+					relabel(w, labelOf(w) | (1 << j));
+			}
+		}
+		countSwitchables();
 	}
 
-	/**
-	 * Insert in cache the neighbors of a given node.
-	 * @param u
+	/** Makes succ[succFrom], ..., succ[succTo-1] the successors of u.
 	 */
-	protected void updateNeighCache(int u) {
-		Set<Integer> neighs = new IntOpenHashSet(G.outdegree(u));
-		LazyIntIterator succ = G.successors(u);
-		for (int d = G.outdegree(u); d > 0; d--)
-			neighs.add(succ.nextInt());
-		neighCache.put(u, neighs);
+	private void loadSuccessors(int u) {
+		if (index != null) { // no need to copy the successors
+			succ = index.getSuccessors();
+			succFrom = index.getOffset(u);
+			succTo = succFrom + G.outdegree(u);
+		} else {
+			succ = neighborCache.successors(u);
+			succFrom = 0;
+			succTo = succ.length;
+		}
 	}
 
-	/**
-	 * Return the union of the sets of neighbours of multiple nodes.
-	 * 
-	 * The method is optimized in that it searches in the cache of neighbors union before recomputing the union,
-	 * and in the cache of neighbors before retrieving the neighbors from the graph.
-	 * @param who
+	/** Set the number of successor lists cached by the walk, when G is not a {@link NeighborhoodIndex}.
+	 *
+	 * @param size
+	 */
+	public void setNeighborCacheSize(int size)
+	{
+		if (index == null)
+			neighborCache = new NeighborCache(G, size);
+	}
+
+	/** Set the upper bound on the degree of the states that is used to follow self-loops (see
+	 * {@link #degreeBound(ImmutableGraph, int)}); by default it is (k-1)*k times the maximum degree of G.
+	 * The bound must be the same for all states, or the walk would not be uniform over the graphlets.
+	 *
+	 * @param bound
+	 */
+	public void setDegreeBound(double bound)
+	{
+		this.degreeBound = bound;
+	}
+
+	/** Computes an upper bound on the degree of the graphlets of G in the walk, tighter than (k-1)*k times the
+	 * maximum degree of G. The nodes that can replace a slot are adjacent to the other k-1 nodes of the graphlet,
+	 * each of which also has a neighbor in the graphlet; hence they are at most the sum of the k-1 largest degrees
+	 * of G, minus k-1, and at most the number of nodes outside the graphlet.
+	 *
+	 * @param G the host graph
+	 * @param k the size of the graphlets
 	 * @return
 	 */
-	protected Set<Integer> neighborUnion(Collection<Integer> who)
+	public static double degreeBound(ImmutableGraph G, int k)
 	{
-		who = new IntArraySet(who);
-		// is it cached?
-		if (neighUnionCache.containsKey(who))
-			return new IntOpenHashSet(neighUnionCache.get(who));
-		// if no, compute it
-		Set<Integer> union;
-		if (who.size() == 1)
-			union = new IntOpenHashSet(neighCache.get(who.iterator().next()));
-		else {
-			int neigh_estimate = 0;
-			// trivial upper estimate of the resulting union's size
-			for (int u : who)
-				neigh_estimate += G.outdegree(u);
-			union = new IntOpenHashSet(neigh_estimate);	
-			for (int u : who)
-				union.addAll(neighCache.get(u));
+		int[] top = new int[k]; // the k-1 largest degrees, in increasing order from top[1]
+		IntIterator degrees = G.outdegrees();
+		for (int i = G.numNodes(); i > 0; i--) {
+			int d = degrees.nextInt();
+			int j = 0;
+			while (j + 1 < k && top[j + 1] < d) {
+				top[j] = top[j + 1];
+				j++;
+			}
+			if (j > 0)
+				top[j] = d;
 		}
-		neighUnionCache.put((Set<Integer>)who, union);
-		return union;
+		long sum = 0;
+		for (int j = 1; j < k; j++)
+			sum += top[j];
+		return Math.max(1, (double) k * Math.min(G.numNodes() - k, sum - (k - 1)));
+	}
+
+	/** Return the cache of successor lists, or null if G is a {@link NeighborhoodIndex}.
+	 *
+	 * @return
+	 */
+	public NeighborCache getNeighborCache()
+	{
+		return neighborCache;
+	}
+
+	/** Returns the slot holding u, or -1 if u is not in the graphlet.
+	 */
+	private int slotOf(int u) {
+		for (int j = 0; j < k; j++)
+			if (slots[j] == u)
+				return j;
+		return -1;
+	}
+
+	/** Returns the label of a node of the host graph (0 if not in the frontier).
+	 */
+	private int labelOf(int w) {
+		return (int) (frontier.get(w) >>> 32);
+	}
+
+	/** Moves a node of the host graph to the group of the given label (0 removes it from the frontier).
+	 */
+	private void relabel(int w, int label) {
+		long entry = frontier.get(w);
+		int old = (int) (entry >>> 32);
+		if (old == label)
+			return;
+		if (old != 0) { // remove w from its group, moving the last node of the group in its place
+			IntArrayList group = groups[old];
+			int pos = (int) entry;
+			int last = group.popInt();
+			if (last != w) {
+				group.set(pos, last);
+				frontier.put(last, ((long) old << 32) | pos);
+			}
+			if (group.isEmpty()) {
+				int p = activePosition[old];
+				activeLabels[p] = activeLabels[--numActive];
+				activePosition[activeLabels[p]] = p;
+			}
+		}
+		if (label == 0) {
+			frontier.remove(w);
+			return;
+		}
+		if (groups[label] == null)
+			groups[label] = new IntArrayList();
+		IntArrayList group = groups[label];
+		if (group.isEmpty()) {
+			activePosition[label] = numActive;
+			activeLabels[numActive++] = label;
+		}
+		frontier.put(w, ((long) label << 32) | group.size());
+		group.add(w);
+	}
+
+	/**
+	 * Replaces the node in slot j with v, a frontier node, relabelling the neighbors of both.
+	 */
+	protected void replace(int j, int v) {
+		int u = slots[j];
+		int bit = 1 << j;
+		int labelOfV = labelOf(v);
+		relabel(v, 0);
+		slots[j] = v;
+
+		// the neighbors of u lose it; u joins the frontier if it is adjacent to the rest of the graphlet
+		loadSuccessors(u);
+		for (int p = succFrom; p < succTo; p++) {
+			int w = succ[p];
+			if (slotOf(w) < 0)
+				relabel(w, labelOf(w) & ~bit);
+		}
+		relabel(u, (int) rows[j] & ~bit);
+
+		// the neighbors of v gain it (including u, if adjacent)
+		loadSuccessors(v);
+		for (int p = succFrom; p < succTo; p++) {
+			int w = succ[p];
+			if (slotOf(w) < 0)
+				relabel(w, labelOf(w) | bit);
+		}
+
+		// the neighbors of v in the graphlet are given by its label
+		for (int i = 0; i < k; i++)
+			rows[i] &= ~(long) bit;
+		rows[j] = labelOfV & ~bit;
+		for (long r = rows[j]; r != 0; r &= r - 1)
+			rows[Long.numberOfTrailingZeros(r)] |= bit;
+		graphletChanged = true;
+	}
+
+	/** Return the current graphlet.
+	 *
+	 * @return
+	 */
+	@Override
+	public Graphlet getGraphlet() {
+		if (graphletChanged) {
+			Integer[] nodes = new Integer[k];
+			for (int j = 0; j < k; j++)
+				nodes[j] = slots[j];
+			H = new Graphlet(G, Arrays.asList(nodes));
+			graphletChanged = false;
+		}
+		return H;
+	}
+
+	/** Return the nodes of the current graphlet, in no particular order, without building a {@link Graphlet}.
+	 * The array is not copied and must not be modified.
+	 *
+	 * @return
+	 */
+	public int[] getNodes() {
+		return slots;
 	}
 
 	/** Perform one step of the walk.
-	 * 
+	 *
 	 */
 	@Override
 	public boolean step()
@@ -178,158 +395,102 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 	 */
 	public boolean stepReally()
 	{
-		int[] uv = drawSwitch(switchables);
-		H.removeNode(uv[0]);
-		H.addNode(uv[1]);
-		updateNeighCache(uv[1]);
-		assert(H.size()==k);
-		assert(H.isConnected());
+		countSwitchables();
+		drawSwitch();
 		return true;
 	}
 
 	/**
-	 * A fast BFS implementation for very small graphs.
-	 * @param graph
-	 * @param from
-	 * @param discovered
-	 * @return
+	 * Updates the number of nodes that can be switched with the graphlet's nodes.
 	 */
-	private static int[] BFS(ImmutableGraph graph, int from, boolean[] discovered)
-	{
-		int[] queue = new int[graph.numNodes()+1];
-		int end = 1; //One after the last element
-		int top = 0; //The next element to pop
-		queue[0]=from;
-		discovered[from]=true;
+	public void updateSwitchables() {
+		countSwitchables();
+	}
 
-		while(top<end)
-		{
-			int u = queue[top++];
-			LazyIntIterator it = graph.successors(u);
-			int v;
-			while( (v = it.nextInt())!=-1 )
-			{
-				if(!discovered[v])
-				{
-					discovered[v]=true;
-					queue[end++]=v;
+	/**
+	 * Counts the nodes that can be switched with each slot. Only the labels of the frontier are looked at, not
+	 * the host graph.
+	 */
+	protected void countSwitchables() {
+		long all = (1L << k) - 1;
+		for (int j = 0; j < k; j++) {
+			// the connected components of the graphlet without slot j
+			numComponents[j] = 0;
+			long left = all & ~(1L << j);
+			while (left != 0) {
+				long reached = Long.lowestOneBit(left), frontier = reached;
+				while (frontier != 0) {
+					int i = Long.numberOfTrailingZeros(frontier);
+					frontier &= frontier - 1;
+					long next = rows[i] & left & ~reached;
+					reached |= next;
+					frontier |= next;
 				}
+				components[j][numComponents[j]++] = reached;
+				left &= ~reached;
 			}
+			switchables[j] = 0;
 		}
-		queue[end]=-1;
-		return queue;
-	}
 
-	protected static int[][] connectedComponents(ImmutableGraph graph)
-	{
-		int[][] components = new int[graph.numNodes()+1][];
-		boolean[] discovered = new boolean[graph.numNodes()];
-
-		int numComponents=0;
-		for(int u=graph.numNodes()-1; u>=0; u--)
-		{
-			if(!discovered[u])
-				components[numComponents++] = BFS(graph, u, discovered);
+		stateDegree = 0;
+		for (int a = 0; a < numActive; a++) {
+			int label = activeLabels[a];
+			int size = groups[label].size();
+			for (int j = 0; j < k; j++)
+				if (canReplace(label, j)) {
+					switchables[j] += size;
+					stateDegree += size;
+				}
 		}
-
-		//components[numComponents] = null;
-		return components;
 	}
 
-	/**
-	 * Updates the nodes that can be switched with the graphlet's nodes.
+	/** Checks if the nodes with the given label can replace the node in slot j, that is, if they are adjacent to
+	 * every connected component of the graphlet without slot j.
 	 */
-	public void updateSwitchables() {
-		List<Integer> nodes = new ArrayList<>(H.getNodes());
-		switchables = new HashMap<>(nodes.size());
-		for (int u : H.getNodes()) { // see what can be done with H\{u}
-			Graphlet H1 = new Graphlet(H);
-			H1.removeNode(u);
-			List<Integer> nodes1 = new ArrayList<>(H1.getNodes());
-
-			// get the connected components of H \ {u}
-			int[][] connComps = connectedComponents(H1.asGraph());
-			@SuppressWarnings("unchecked")
-			ArrayList<Integer>[] comps = (ArrayList<Integer>[]) new ArrayList[k - 1];
-			int ncomps = 0;
-			while (connComps[ncomps] != null) {
-				comps[ncomps] = new ArrayList<Integer>();
-				for (int i = 0; connComps[ncomps][i] != -1; i++) {
-					comps[ncomps].add(nodes1.get(connComps[ncomps][i]));
-				}
-				ncomps++;
-			}
-
-			// compute the intersection of the neighbors of the components, excluding the nodes of H itself
-			Set<Integer> intersNeigh = neighborUnion(comps[0]);
-			intersNeigh.removeAll(H.getNodes());
-			for (int c = 1; c < ncomps; c++)
-			{
-				// intersect with each component's neighbours
-				if (comps[c].size() == 1)
-					intersNeigh.retainAll(neighCache.get(comps[c].get(0)));
-				else
-					intersNeigh.retainAll(neighborUnion(comps[c]));
-				if (intersNeigh.isEmpty()) // "fast" fail
-					break;
-			}
-			// the survivors can be switched with u to obtain a new graphlet
-			if (intersNeigh.size() > 0)
-				switchables.put(u, intersNeigh);
-		}
+	protected boolean canReplace(int label, int j) {
+		if (numComponents[j] == 0) // a single node has no switchables
+			return false;
+		for (int c = 0; c < numComponents[j]; c++)
+			if ((components[j][c] & label) == 0)
+				return false;
+		return true;
 	}
 
 	/**
 	 * Return the current state's degree (number of neighboring graphlets in the random walk).
-	 * @return just the sum of the sizes of the sets in this.switchables
+	 * @return the number of pairs of nodes (u,v) that can be switched, as of the last update
 	 */
 	public int stateDegree() {
-		int totalSize = 0;
-		for (Integer u : switchables.keySet())
-			totalSize += switchables.get(u).size();
-		return totalSize;
+		return stateDegree;
 	}
 
 	/**
-	 * Draw a pair of nodes to be switched.
+	 * Draw a pair of nodes to be switched, and switch them.
 	 * Draw a pair (u,v) u.a.r. from all the pairs of nodes in G where u is in H and v is in G\H and
 	 * such that replacing u with v gives again a graphlet. In other words, replacing u with v makes
-	 * the walk transition to a neighboring state u.a.r. 
-	 * @param switchables a map from the nodes in H to the nodes that can replace them
-	 * @return a 2-element array with entries [u, v]
+	 * the walk transition to a neighboring state u.a.r.
 	 */
-	private int[] drawSwitch(Map<Integer, Set<Integer>> switchables) {
-		// compute the probability that u will be removed -- proportional to its number of switchables
-		int[] vNodes = new int[k];
-		double[] vProbs = new double[k];
-		int i = 0;
-		for (Integer u : switchables.keySet()) {
-			vNodes[i] = u;
-			vProbs[i] = switchables.get(u).size();
-			i++;
-		}
-
-		// draw the pair of nodes to be switched
-		EnumeratedIntegerDistribution dist = new EnumeratedIntegerDistribution(vNodes, vProbs, false);
-		// pick the node u to be removed
-		int u = dist.sample(random);
-		int v = -1;
-		Set<Integer> switches = switchables.get(u);
-		if (switches.size() > 100) {
-			// pick v by iterating over the switchables (avoids converting the set to a list)
-			int pos = random.nextInt(switches.size());
-			Iterator<Integer> itr = switches.iterator();
-			for (int j = 0; j < pos+1; j++)
-				v = itr.next();	
-		} else {
-			// probably faster to just convert into a list
-			List<Integer> uList = new ArrayList<>(switches);
-			v = uList.get(random.nextInt(switches.size()));
+	private void drawSwitch() {
+		int r = random.nextInt(stateDegree);
+		// pick the slot j whose node will be removed
+		int j = 0;
+		while (r >= switchables[j])
+			r -= switchables[j++];
+		// then the group, and the node v within the group
+		for (int a = 0; a < numActive; a++) {
+			int label = activeLabels[a];
+			if (!canReplace(label, j))
+				continue;
+			IntArrayList group = groups[label];
+			if (r < group.size()) {
+				replace(j, group.getInt(r));
+				assert(getGraphlet().size()==k);
+				assert(getGraphlet().isConnected());
+				return;
+			}
+			r -= group.size();
 		}
-		int[] uv = new int[2];
-		uv[0] = u;
-		uv[1] = v;
-		return uv;
+		throw new IllegalStateException("Switchables are out of date");
 	}
 
 	/**
@@ -340,15 +501,10 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 	private int stepMany(int howMany)
 	{
 		// get the switchables
-		updateSwitchables();
+		countSwitchables();
 		// follow a number X~Geom(..) of self-loops
-		int numFailures = Integer.MAX_VALUE;
-		if (!switchables.isEmpty())
-		{
-			int ub = (k-1)*k*maxDegree; //For each vertex of the motif, we have at most (k-1) * maxDeg possible candidates
-			GeometricDistribution geometric = new GeometricDistribution(random, ((double)stateDegree())/ub);
-			numFailures = geometric.sample();
-		}
+		assert stateDegree <= degreeBound;
+		int numFailures = GeometricSampler.sample(random, stateDegree / degreeBound);
 
 		if (numFailures>=howMany)
 		{
@@ -360,17 +516,12 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 		realSteps += 1;
 
 		// switch!
-		int[] uv = drawSwitch(switchables);
-		H.removeNode(uv[0]);
-		H.addNode(uv[1]);
-		updateNeighCache(uv[1]);
-		assert(H.size()==k);
-		assert(H.isConnected());
+		drawSwitch();
 		return numFailures+1;
 	}
 
 	/** Perform multiple steps of the walk.
-	 * 
+	 *
 	 */
 	@Override
 	public int walk(int steps)
@@ -379,7 +530,7 @@ public class FullGraphletRandomWalk extends GraphletRandomWalk {
 		while (this.steps < end)
 			stepMany(end-this.steps);
 
-		return steps; 
+		return steps;
 	}
 
 	public int realSteps()
@@ -0,0 +1,38 @@
+package wsdm16.motifs.randomwalks;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * Samples geometric random variables by inverting their cumulative distribution on a single uniform draw,
+ * without allocating a distribution object per sample: if U is uniform in (0,1], the number of failures before
+ * the first success of independent trials with success probability p is floor(log(U) / log(1-p)).
+ *
+ * The random walks use it to skip the self-loops around a state at once (see
+ * {@link FullGraphletRandomWalk#walk(int)}).
+ *
+ * GeometricSampler.java - created on 19 ott 2026
+ * @author anon
+ */
+public final class GeometricSampler {
+
+	private GeometricSampler() {}
+
+	/**
+	 * Returns the number of failures before the first success of independent trials.
+	 *
+	 * @param random
+	 * @param p
+	 *            the probability of success of each trial
+	 * @return the number of failures, or {@link Integer#MAX_VALUE} if it is at least as large (in particular, if p
+	 *         is 0)
+	 */
+	public static int sample(RandomGenerator random, double p) {
+		if (p >= 1)
+			return 0;
+		if (p <= 0)
+			return Integer.MAX_VALUE;
+		// 1 - nextDouble() is in (0,1]; log1p keeps the precision when p is tiny
+		double failures = Math.floor(Math.log(1 - random.nextDouble()) / Math.log1p(-p));
+		return failures >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) failures;
+	}
+}
@@ -0,0 +1,215 @@
+package wsdm16.motifs.randomwalks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.algo.ConnectedComponents;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.motifs.NeighborhoodIndex;
+
+/**
+ * Picks starting graphlets for random walks. The connected components of the (symmetric) host graph are computed
+ * once, and only the nodes in components with at least k nodes are kept as possible seeds, so that drawing a seed
+ * u.a.r. among them never fails, and is the same as drawing a node u.a.r. and retrying until a graphlet is found.
+ * A graphlet is then grown around the seed with a breadth-first search stopping at k nodes, using the node array of
+ * the graphlet as the queue.
+ *
+ * The seeder can be shared by walkers of different threads through {@link #copy()}, and can produce many starting
+ * graphlets at once with multiple threads (see {@link #seeds(int, int, long)}).
+ *
+ * GraphletSeeder.java - created on 19 ott 2026
+ * @author anon
+ */
+public class GraphletSeeder {
+	private final ImmutableGraph G;
+	private final NeighborhoodIndex index; // G itself, if it is an index
+	private final int k;
+	private final int[] eligible; // the nodes in components with at least k nodes
+
+	/**
+	 * Constructor.
+	 *
+	 * @param G
+	 *            the host graph, which must be symmetric
+	 * @param k
+	 *            the size of the graphlets
+	 * @param numThreads
+	 *            the number of threads used to compute the connected components
+	 */
+	public GraphletSeeder(ImmutableGraph G, int k, int numThreads) {
+		this(G, k, componentSizes(G, numThreads));
+	}
+
+	/**
+	 * Constructor, from precomputed component sizes.
+	 *
+	 * @param G
+	 *            the host graph, which must be symmetric
+	 * @param k
+	 *            the size of the graphlets
+	 * @param componentSize
+	 *            the size of the connected component of each node
+	 */
+	public GraphletSeeder(ImmutableGraph G, int k, int[] componentSize) {
+		this.G = G;
+		this.index = G instanceof NeighborhoodIndex ? (NeighborhoodIndex) G : null;
+		this.k = k;
+		IntArrayList nodes = new IntArrayList();
+		for (int u = 0; u < componentSize.length; u++)
+			if (componentSize[u] >= k)
+				nodes.add(u);
+		this.eligible = nodes.toIntArray();
+	}
+
+	private GraphletSeeder(GraphletSeeder copy) {
+		G = copy.G.copy();
+		index = copy.index;
+		k = copy.k;
+		eligible = copy.eligible;
+	}
+
+	/**
+	 * Returns a seeder sharing the eligible nodes of this one, which can be used by another thread.
+	 *
+	 * @return
+	 */
+	public GraphletSeeder copy() {
+		return new GraphletSeeder(this);
+	}
+
+	/**
+	 * Returns the size of the connected component of each node.
+	 *
+	 * @param G
+	 *            a symmetric graph
+	 * @param numThreads
+	 * @return
+	 */
+	public static int[] componentSizes(ImmutableGraph G, int numThreads) {
+		ProgressLogger pl = new ProgressLogger();
+		pl.logger().info("Computing connected components...");
+		ConnectedComponents components = ConnectedComponents.compute(G, numThreads, null);
+		int[] sizes = components.computeSizes();
+		int[] componentSize = new int[G.numNodes()];
+		for (int u = 0; u < componentSize.length; u++)
+			componentSize[u] = sizes[components.component[u]];
+		return componentSize;
+	}
+
+	/**
+	 * Returns the number of nodes that can be drawn as seeds.
+	 *
+	 * @return
+	 */
+	public int numEligible() {
+		return eligible.length;
+	}
+
+	/**
+	 * Grows a graphlet around u, by a breadth-first search that stops as soon as k nodes are reached.
+	 *
+	 * @param u
+	 * @param nodes
+	 *            an array of at least k elements, where the nodes of the graphlet are stored in visit order
+	 * @return the number of nodes reached, which is k unless the component of u is smaller
+	 */
+	public int grow(int u, int[] nodes) {
+		nodes[0] = u;
+		int reached = 1;
+		for (int head = 0; head < reached && reached < k; head++) {
+			int v = nodes[head];
+			int[] succ;
+			int from, to;
+			if (index != null) {
+				succ = index.getSuccessors();
+				from = index.getOffset(v);
+			} else {
+				succ = G.successorArray(v);
+				from = 0;
+			}
+			to = from + G.outdegree(v);
+			for (int p = from; p < to && reached < k; p++) {
+				int w = succ[p];
+				boolean seen = false;
+				for (int i = 0; i < reached && !seen; i++)
+					seen = nodes[i] == w;
+				if (!seen)
+					nodes[reached++] = w;
+			}
+		}
+		return reached;
+	}
+
+	/**
+	 * Draws a starting graphlet, around a node chosen u.a.r. among those in components with at least k nodes.
+	 *
+	 * @param random
+	 * @param nodes
+	 *            an array of at least k elements, where the nodes of the graphlet are stored
+	 */
+	public void seed(RandomGenerator random, int[] nodes) {
+		if (eligible.length == 0)
+			throw new IllegalStateException("No connected component has " + k + " nodes");
+		int reached = grow(eligible[random.nextInt(eligible.length)], nodes);
+		assert reached == k;
+	}
+
+	/**
+	 * Draws many starting graphlets with multiple threads. Thread t draws the graphlets t, t+numThreads, ... with a
+	 * random generator seeded with the t-th seed derived from seed (see {@link GraphGenerator#random(long, long)}),
+	 * hence the result only depends on the seed and the number of threads.
+	 *
+	 * @param count
+	 *            the number of graphlets
+	 * @param numThreads
+	 * @param seed
+	 * @return the nodes of the graphlets, the i-th graphlet being at positions i*k, ..., i*k+k-1
+	 * @throws IllegalStateException
+	 *             if no connected component has k nodes
+	 * @throws IllegalArgumentException
+	 *             if the nodes of the graphlets do not fit in an array
+	 */
+	public int[] seeds(int count, int numThreads, long seed) {
+		if ((long) count * k > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Too many graphlets: " + count + " of size " + k);
+		if (count > 0 && eligible.length == 0)
+			throw new IllegalStateException("No connected component has " + k + " nodes");
+		int[] seeds = new int[count * k];
+		List<Thread> threads = new ArrayList<>();
+		RuntimeException[] errors = new RuntimeException[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			final int first = t;
+			final GraphletSeeder seeder = copy();
+			Thread thread = new Thread(() -> {
+				try {
+					RandomGenerator random = new Well19937c(GraphGenerator.random(seed, first));
+					int[] nodes = new int[k];
+					for (int i = first; i < count; i += numThreads) {
+						seeder.seed(random, nodes);
+						System.arraycopy(nodes, 0, seeds, i * k, k);
+					}
+				} catch (RuntimeException e) {
+					errors[first] = e;
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		for (RuntimeException e : errors)
+			if (e != null)
+				throw e;
+		return seeds;
+	}
+}
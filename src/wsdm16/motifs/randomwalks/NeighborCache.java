@@ -0,0 +1,95 @@
+package wsdm16.motifs.randomwalks;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+
+/**
+ * A cache of the successor lists of the most recently used nodes of a graph, for walks on graphs that are not
+ * indexed in memory (see {@link wsdm16.motifs.NeighborhoodIndex}, which needs no cache). Successor lists are
+ * stored as sorted int arrays of length equal to the outdegree, shared with the caller, and the least recently
+ * used one is evicted when the cache holds more than its capacity. Hits and misses are counted, so that the
+ * capacity can be tuned for each graph.
+ *
+ * NeighborCache.java - created on 19 ott 2026
+ * @author anon
+ */
+public class NeighborCache {
+	private final ImmutableGraph G;
+	private final int capacity;
+	private final Int2ObjectLinkedOpenHashMap<int[]> cache;
+	private long hits, misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param G
+	 *            the graph
+	 * @param capacity
+	 *            the maximum number of successor lists to keep
+	 */
+	public NeighborCache(ImmutableGraph G, int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be positive");
+		this.G = G;
+		this.capacity = capacity;
+		this.cache = new Int2ObjectLinkedOpenHashMap<>(capacity + 1);
+	}
+
+	/**
+	 * Returns the successors of u, sorted. The array must not be modified.
+	 *
+	 * @param u
+	 * @return
+	 */
+	public int[] successors(int u) {
+		int[] succ = cache.getAndMoveToLast(u);
+		if (succ != null) {
+			hits++;
+			return succ;
+		}
+		misses++;
+		succ = Arrays.copyOf(G.successorArray(u), G.outdegree(u));
+		Arrays.sort(succ);
+		cache.putAndMoveToLast(u, succ);
+		if (cache.size() > capacity)
+			cache.removeFirst();
+		return succ;
+	}
+
+	/**
+	 * Returns the maximum number of successor lists kept.
+	 *
+	 * @return
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of successor lists currently kept.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return cache.size();
+	}
+
+	public long hits() {
+		return hits;
+	}
+
+	public long misses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the fraction of requests served from the cache, or 0 if there were none.
+	 *
+	 * @return
+	 */
+	public double hitRate() {
+		return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+	}
+}
@@ -0,0 +1,89 @@
+package wsdm16.motifs.randomwalks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/** Writes the text produced by multiple threads in the order of its index, regardless of the order in which
+ * it is submitted. Each index from 0 on must be submitted exactly once.
+ *
+ * At most maxPending pieces of text wait for a missing one; a thread submitting an index further ahead waits
+ * until the missing ones are written. The thread that submits the first missing index never waits, hence
+ * memory stays bounded without risking deadlocks.
+ *
+ * OrderedWriter.java - created on 19 ott 2026
+ * @author anon
+ */
+public class OrderedWriter implements Closeable {
+	private final Writer out;
+	private final int maxPending;
+	private final Int2ObjectOpenHashMap<String> pending = new Int2ObjectOpenHashMap<>();
+	private int next;
+	private boolean aborted;
+
+	/**
+	 * @param out where the text is written
+	 * @param maxPending how many pieces of text can wait for a missing one
+	 */
+	public OrderedWriter(Writer out, int maxPending) {
+		this(out, maxPending, 0);
+	}
+
+	/**
+	 * @param out where the text is written
+	 * @param maxPending how many pieces of text can wait for a missing one
+	 * @param first the first index to be written, e.g. when appending to a previous output
+	 */
+	public OrderedWriter(Writer out, int maxPending, int first) {
+		this.out = out;
+		this.maxPending = maxPending;
+		this.next = first;
+	}
+
+	/** Writes the text with the given index, after all the text with smaller indices.
+	 *
+	 * @param index
+	 * @param text
+	 * @throws IOException
+	 *             also if writing was aborted
+	 * @throws InterruptedException
+	 */
+	public synchronized void write(int index, String text) throws IOException, InterruptedException {
+		while (!aborted && index - next >= maxPending)
+			wait();
+		if (aborted)
+			throw new IOException("Writing was aborted before index " + next);
+		pending.put(index, text);
+		String s;
+		while ((s = pending.remove(next)) != null) {
+			out.write(s);
+			next++;
+		}
+		notifyAll();
+	}
+
+	/** Flushes the text written so far, i.e. all the text with indices smaller than the first missing one.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	/** Gives up on the missing text, e.g. when the thread that should submit it has failed: the threads waiting
+	 * for it, and the later ones, get an exception, and the text waiting for it is dropped on close.
+	 */
+	public synchronized void abort() {
+		aborted = true;
+		notifyAll();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!aborted && !pending.isEmpty())
+			throw new IllegalStateException("Text with index " + next + " was never written");
+		out.close();
+	}
+}
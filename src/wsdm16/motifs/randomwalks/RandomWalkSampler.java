@@ -1,19 +1,20 @@
 package wsdm16.motifs.randomwalks;
 
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -21,19 +22,21 @@ import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
-import org.apache.commons.math3.distribution.GeometricDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
 import wsdm16.motifs.BaseGraphIsomorphisms;
+import wsdm16.motifs.CompactGraphlet;
 import wsdm16.motifs.Graphlet;
 import wsdm16.motifs.LazyGraphIsomorphisms;
 import wsdm16.motifs.MapUtil;
-import wsdm16.motifs.randomwalks.FullGraphletRandomWalk.InvalidStartingNodeException;
+import wsdm16.motifs.NeighborhoodIndex;
 
 /**
  * A random-walk based sampler for graphlets in a graph.
@@ -57,7 +60,9 @@ public class RandomWalkSampler
 		String sampleFile = null; // for printing out samples
 		String saveFinalStateFile = null; // for saving and then restoring the random walk state
 		boolean graphletWalk = false; // no self-loops?
+		boolean compressHistory = false; // compress the walk history?
 		boolean smart = false; // smart random walk i.e. reweight transitions?
+		boolean adaptive = false; // detect the burn-in and the sampling interval from the walk itself?
 		int k = -1;
 		int numSamples = -1;
 		int numSteps = -1;
@@ -65,6 +70,13 @@ public class RandomWalkSampler
 		int timingInterval = 1000; // print a log line each timingInterval graphlets (active with -g)
 		int discard = 0;
 		int samplingInterval = 0; // print a graphlet each samplingInterval steps
+		int numThreads = 1; // number of concurrent walkers (ordinary random walk only)
+		int cacheSize = 0; // if positive, the walks cache this many successor lists instead of indexing the graph
+		String checkpointFile = null; // for resuming an interrupted run
+		int checkpointPeriod = 5 * 60; // seconds between checkpoints
+		boolean resume = false;
+		long seed = 0; // of the ordinary, adaptive and graphlet (-g) walks
+		long maxBurnIn = AdaptiveWalkSampler.DEFAULT_MAX_BURN_IN;
 		
 		// 1. PARSE THE COMMAND LINE OPTIONS
 		Options options = new Options();
@@ -75,11 +87,21 @@ public class RandomWalkSampler
 		options.addOption("g", false,"no self-loops, each step takes to a new graphlet");
 		options.addOption("O", true, "record the walk history to this file");
 		options.addOption("S", true, "simulate a walk (including self-loops) from a walk history file");
+		options.addOption("z", false, "compress the walk history (delta and variable-length coding of the nodes)");
 		options.addOption("d", true, "discard a given number of samples at the beginning");
 		options.addOption("i", true, "sampling interval (print out the graphlet each given number of steps)");
 		options.addOption("o", true, "save samples (hash codes of graphlets) to this text file");
 		options.addOption("s", true, "save the final set of vertices of each walk to this text file");
 		options.addOption("m", false, "smart -- reweight transitions to converge faster");
+		options.addOption("a", false, "adaptive -- sample from a few long walks, detecting the burn-in and adapting the sampling interval (initially -t)");
+		options.addOption("p", true, "number of walkers (or replays, with -S) to run in parallel or -1 to use all available cores");
+		options.addOption("c", true, "do not index the graph in memory, let each walk cache the successors of this many nodes instead");
+		options.addOption("C", true, "periodically save the state of the walkers to this checkpoint file");
+		options.addOption("P", true, "seconds between two checkpoints (default: 300)");
+		options.addOption(null, "resume", false, "resume the run saved in the checkpoint file given with -C");
+		options.addOption(null, "seed", true, "seed of the random walks, unless resumed (default: 0)");
+		options.addOption(null, "max-burn-in", true, "maximum number of steps per walk spent in the burn-in, with -a (default: "
+				+ AdaptiveWalkSampler.DEFAULT_MAX_BURN_IN + ")");
 		
 		CommandLineParser parser = new PosixParser();
 		try
@@ -101,11 +123,46 @@ public class RandomWalkSampler
 			historyFile = cmd.hasOption("S") ? cmd.getOptionValue("S")
 					: historyFile;
 			graphletWalk = cmd.hasOption("g");
+			compressHistory = cmd.hasOption("z");
 			discard = cmd.hasOption("d") ? Integer.parseInt(cmd.getOptionValue("d")) : discard;
 			samplingInterval = cmd.hasOption("i") ? Integer.parseInt(cmd.getOptionValue("i")) : numSteps;
 			sampleFile = cmd.hasOption("o") ? cmd.getOptionValue("o") : sampleFile;
 			saveFinalStateFile = cmd.hasOption("s") ? cmd.getOptionValue("s") : saveFinalStateFile;
 			smart = cmd.hasOption("m");
+			adaptive = cmd.hasOption("a");
+			cacheSize = cmd.hasOption("c") ? Integer.parseInt(cmd.getOptionValue("c")) : cacheSize;
+			checkpointFile = cmd.hasOption("C") ? cmd.getOptionValue("C") : checkpointFile;
+			checkpointPeriod = cmd.hasOption("P") ? Integer.parseInt(cmd.getOptionValue("P")) : checkpointPeriod;
+			resume = cmd.hasOption("resume");
+			seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : seed;
+			maxBurnIn = cmd.hasOption("max-burn-in") ? Long.parseLong(cmd.getOptionValue("max-burn-in")) : maxBurnIn;
+			numThreads = cmd.hasOption("p") ? Integer.parseInt(cmd.getOptionValue("p")) : numThreads;
+			if (numThreads == -1)
+				numThreads = Runtime.getRuntime().availableProcessors();
+			if (adaptive)
+			{
+				// the adaptive walks have neither histories, nor output files, nor checkpoints, and work on the index
+				String[][] unsupported = { { "g", "-g" }, { "S", "-S" }, { "o", "-o" }, { "s", "-s" }, { "C", "-C" },
+						{ "resume", "--resume" }, { "c", "-c" } };
+				for (String[] option : unsupported)
+					if (cmd.hasOption(option[0]))
+					{
+						System.err.println("Option " + option[1] + " cannot be used with -a");
+						System.exit(1);
+					}
+			}
+			// only the ordinary walks are checkpointed
+			for (String[] walk : new String[][] { { "g", "-g" }, { "S", "-S" } })
+				if (cmd.hasOption(walk[0]) && (cmd.hasOption("C") || resume))
+				{
+					System.err.println("Options -C and --resume cannot be used with " + walk[1]);
+					System.exit(1);
+				}
+			if (resume && checkpointFile == null)
+			{
+				System.err.println("Option --resume requires -C");
+				System.exit(1);
+			}
 		}
 		catch (ParseException e)
 		{
@@ -148,63 +205,68 @@ public class RandomWalkSampler
 		pl.logger().info("Graph " + basename + " has " + G.numNodes()
 				+ " nodes, " + G.numArcs() / 2
 				+ " undirected edges, and maximum degree: " + maxDegree);
+		// the walk leaves each graphlet with probability proportional to its degree, relative to a common bound
+		double degreeBound = FullGraphletRandomWalk.degreeBound(G, k);
+		pl.logger().info("Bound on the degree of the graphlets: " + (long) degreeBound + " (instead of " + (long) k * (k-1) * maxDegree + ")");
 		pl.logger.info("Sampling motifs of size " + k);
 
+		// the walks only need fast access to neighborhoods, thus they work on an in-memory index of G
+		if (cacheSize <= 0)
+		{
+			pl.logger().info("Indexing neighborhoods...");
+			G = new NeighborhoodIndex(G, -1);
+		}
+
 		// 3. SAMPLE
 		pl.logger().info("Sampling...");
 		BaseGraphIsomorphisms isomorphisms = new LazyGraphIsomorphisms(k);
 		long start = new Date().getTime();
-		RandomGenerator rnd = new Well19937c(0); // this is for starting from random nodes
+		RandomGenerator rnd = new Well19937c(0); // this is for the replays of -S
 		Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
 		long realSteps = 0;
+		long cacheHits = 0, cacheMisses = 0;
 
 		/**
 		 * Simulation mode: load data from a previous graphlet walk, and use it to do a walk with self-loops
 		 */
 		if (historyFile != null)
 		{ 
-			String degHistoryFile = historyFile + ".degs";
 			try {
-				// read state degree list
-				FileInputStream degFis = new FileInputStream(degHistoryFile);
-				ObjectInputStream degOis = new ObjectInputStream(degFis);
-				
-				@SuppressWarnings("unchecked")
-				List<Integer> degs = (List<Integer>)degOis.readObject();
-				pl.logger().info("Loaded degree history of length " + degs.size());
-				
-				// prepare to read states i.e. (graphlets)
-				FileInputStream stateFis = new FileInputStream(historyFile);
-				ObjectInputStream stateOis = new ObjectInputStream(stateFis);
-				Set<Integer> vH = null;				
-				double ub = 1.0 + Collections.max(degs); // normalization constant for self-loops
-				int g = -1; // graphlet step count
-				//Number of samples taken.
-				//Might be less than numSamples if there is not enough data in the history file
-				int realSamples = 0; 
-				for (int i = 0; i < numSamples; i++)
+				VirtualRandomWalk replay = new VirtualRandomWalk(historyFile, rnd);
+				pl.logger().info("Loaded walk history of length " + replay.size());
+				if (replay.k() != k)
+					throw new IOException("The walk history has graphlets of size " + replay.k());
+
+				// each replay walks over its own range of the history, taking its share of the samples
+				if (numThreads > 1)
+					pl.logger().info("Replaying with " + numThreads + " threads...");
+				List<Thread> threads = new ArrayList<>();
+				List<Replay> replays = new ArrayList<>();
+				for (int w = 0; w < numThreads; w++)
 				{
-					int s = 0; // virtual step count
-					
-					while (s < numSteps && g < degs.size()-1)  // do the virtual walk!
-					{ 
-						g++;
-						vH = (Set<Integer>) stateOis.readObject();
-						s += new GeometricDistribution(rnd, degs.get(g)/ub).sample();
-					}
-					
-					if (g >= degs.size()-1) // we don't have enough data to take the last sample
-					{
-						pl.logger().warn("Not enough data to take all the requested samples. Requested: "+ numSamples + " Took:" + realSamples);
-						break;
-					}
-					
-					realSamples++;
-					if (realSamples > discard)
-						hashCount.addTo(isomorphisms.long_signature(new Graphlet(G, vH).asGraph()),	1);
+					VirtualRandomWalk walk = w == 0 ? replay : replay.copy(new Well19937c(w));
+					walk.setRange(replay.size() * w / numThreads, replay.size() * (w + 1) / numThreads);
+					Replay r = new Replay(G, walk, numSamples / numThreads + (w < numSamples % numThreads ? 1 : 0),
+							w == 0 ? discard : 0, numSteps, isomorphisms);
+					Thread t = new Thread(r, "replay" + w);
+					replays.add(r);
+					threads.add(t);
+					t.start();
+				}
+				int realSamples = 0;
+				for (int w = 0; w < numThreads; w++)
+				{
+					threads.get(w).join();
+					Replay r = replays.get(w);
+					for (Long2LongMap.Entry e : r.hashCount.long2LongEntrySet())
+						hashCount.addTo(e.getLongKey(), e.getLongValue());
+					realSamples += r.samplesTaken;
+					realSteps += r.statesVisited;
 				}
-				realSteps = g;
-			} catch (IOException | ClassNotFoundException e) {
+				//Might be less than numSamples if there is not enough data in the history file
+				if (realSamples < numSamples)
+					pl.logger().warn("Not enough data to take all the requested samples. Requested: "+ numSamples + " Took:" + realSamples);
+			} catch (IOException | VirtualRandomWalk.DataOverException | InterruptedException e) {
 				e.printStackTrace();
 			}
 		}
@@ -215,42 +277,34 @@ public class RandomWalkSampler
 		if (graphletWalk && historyFile == null)
 		{
 			// prepare for output
-			FileOutputStream fos = null;
-			ObjectOutputStream oos = null;
+			WalkHistoryWriter history = null;
 			if (outFile != null) {
     			try {
-					fos = new FileOutputStream(outFile);
-					oos = new ObjectOutputStream(fos);
+    				history = new WalkHistoryWriter(outFile, k, compressHistory);
 				} catch (IOException e1) {
 					e1.printStackTrace();
 				}
 			}
-			List<Integer> stateDegs = new ArrayList<>(numSamples * numSteps);
+			// draw all the starting graphlets at once; the seeding and the walks use distinct streams derived from the seed
+			int[] seeds = new GraphletSeeder(G, k, numThreads).seeds(numSamples, numThreads, GraphGenerator.random(seed, 0));
+			RandomGenerator walkRandom = new Well19937c(GraphGenerator.random(seed, 1));
 			for (int i = 0; i < numSamples; i++) // random walk!
 			{
-				int u = rnd.nextInt(G.numNodes());
-				FullGraphletRandomWalk randomWalk = null;
-				try {
-					randomWalk = new FullGraphletRandomWalk(G, k, u, maxDegree, rnd);
-				} catch (InvalidStartingNodeException c) {
-					continue;
-				}
+				FullGraphletRandomWalk randomWalk = new FullGraphletRandomWalk(G,
+						Arrays.copyOfRange(seeds, i * k, (i + 1) * k), maxDegree, walkRandom);
+				if (cacheSize > 0)
+					randomWalk.setNeighborCacheSize(cacheSize);
 				double startTime = System.nanoTime();
 				double lastTime = startTime;
 				for (int step = 0; step < numSteps; step++)
 				{
-					Graphlet H = randomWalk.getGraphlet();
-					try {
-						oos.writeObject(H.getNodes());
-						oos.reset();
-					} catch (IOException e1) {
-						// TODO Auto-generated catch block
-						e1.printStackTrace();
-					}
 					randomWalk.updateSwitchables();
-					stateDegs.add(randomWalk.stateDegree());
-					// System.out.println(H.getNodes()+ " : " +
-					// randomWalk.stateDegree());
+					if (history != null)
+						try {
+							history.write(randomWalk.getNodes(), randomWalk.stateDegree());
+						} catch (IOException e1) {
+							e1.printStackTrace();
+						}
 					randomWalk.stepReally();
 					realSteps++;
 					if (((step + 1) % timingInterval) == 0) { // update the log
@@ -264,152 +318,192 @@ public class RandomWalkSampler
 						lastTime = System.nanoTime();
 					}
 				}
+				if (randomWalk.getNeighborCache() != null)
+				{
+					cacheHits += randomWalk.getNeighborCache().hits();
+					cacheMisses += randomWalk.getNeighborCache().misses();
+				}
 			}
-			if (outFile != null) { // close output files
+			if (history != null) { // close output files
 				try {
-					oos.close();
-					fos.close();
+					history.close();
+					pl.logger().info("Walk history of length " + history.size() + " written to " + outFile);
 				} catch (IOException e1) {
 					e1.printStackTrace();
 				}
 			}
-			// now write out the state degree list
-			try {
-				fos = new FileOutputStream(outFile + ".degs");
-				oos = new ObjectOutputStream(fos);
-				oos.writeObject(stateDegs);
-				oos.close();
-				fos.close();
-			} catch (IOException e1) {
-				e1.printStackTrace();
-			}
 		}
 		
+		/**
+		 * Adaptive random walk: a few long walks in parallel, sampled once they have mixed
+		 */
+		if (adaptive)
+		{
+			AdaptiveWalkSampler sampler = new AdaptiveWalkSampler(G, new GraphletSeeder(G, k, numThreads), k, degreeBound,
+					smart, Math.max(4, numThreads), numThreads, numSteps, seed, isomorphisms);
+			sampler.setMaxBurnIn(maxBurnIn);
+			hashCount = sampler.sample(numSamples);
+			realSteps = sampler.realSteps();
+			pl.logger().info("Burn-in: " + sampler.burnInSteps() + " steps per walk, total steps: " + sampler.virtualSteps());
+		}
+
 		/**
 		 * Ordinary (i.e. with self-loops) random walk, done from scratch
 		 */
-		if (!graphletWalk && historyFile == null)
+		if (!adaptive && !graphletWalk && historyFile == null)
 		{
-	        BufferedWriter writer = null;
+			WalkCheckpoint resumed = null;
+			if (resume)
+			{
+				try {
+					resumed = WalkCheckpoint.read(checkpointFile);
+					resumed.checkParameters(basename, k, numSamples, numSteps, samplingInterval, numThreads, smart);
+					pl.logger().info("Resuming from " + checkpointFile + ": " + resumed.nextSample + " samples already taken");
+				} catch (IOException | IllegalArgumentException e) {
+					System.err.println("Cannot resume from the checkpoint file " + checkpointFile + ": " + e.getMessage());
+					return;
+				}
+			}
+
+			OrderedWriter writer = null;
 			if (sampleFile != null) 
 			{
 				try {
-					writer = new BufferedWriter(new FileWriter(sampleFile));
+					writer = resumed == null ? new OrderedWriter(new BufferedWriter(new FileWriter(sampleFile)), 1024 * numThreads)
+							: openForResume(sampleFile, resumed.sampleFileLength, resumed.nextSample, 1024 * numThreads);
 				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					System.err.println("Cannot write the samples to " + sampleFile + ": " + e.getMessage());
+					return;
 				}
 			}
 			
-			BufferedWriter finalStateWriter = null;
+			OrderedWriter finalStateWriter = null;
 			if (saveFinalStateFile != null)
 			{
 				try
 				{
-					finalStateWriter = new BufferedWriter(new FileWriter(saveFinalStateFile));
+					finalStateWriter = resumed == null ? new OrderedWriter(new BufferedWriter(new FileWriter(saveFinalStateFile)), 1024 * numThreads)
+							: openForResume(saveFinalStateFile, resumed.finalStateFileLength, resumed.nextSample, 1024 * numThreads);
 				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					System.err.println("Cannot write the final states to " + saveFinalStateFile + ": " + e.getMessage());
+					return;
 				}
 			}
-			
-			long virtualSteps=0; //The number of steps taken so far
-			double startTime = System.nanoTime()/1e9;
-			double lastTime = startTime;
-			int i = 0;
-			Graphlet H = null;
-			while (i < numSamples)
-			{
-				int u = rnd.nextInt(G.numNodes());
-				FullGraphletRandomWalk randomWalk = null;
-				try {
-					if (smart) {
-						randomWalk = new SmartGraphletRandomWalk(G, k, u, 2, rnd);
-					}
-					else
-						randomWalk = new FullGraphletRandomWalk(G, k, u, maxDegree,	rnd);
-				} catch (InvalidStartingNodeException c) {
-					continue;
-				}
 
-				int numIntervals = (int) Math.ceil(1.0 * numSteps / samplingInterval);
-				for (int t = 0; t < numIntervals; t++)
-				{
-					randomWalk.walk(samplingInterval);	
-					virtualSteps += samplingInterval;
-					H = randomWalk.getGraphlet();
-					long sign = isomorphisms.long_signature(H.asGraph());
-					if (sampleFile != null) 
-						try {
-    						writer.write(sign + " ");
-    					} catch (IOException e) {
-    						e.printStackTrace();
-    					}
-//					else
-//						System.out.print(sign + " ");
-				}
-				
-				if (sampleFile != null) 
-					try {
-						writer.newLine();
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-//				else
-//					System.out.println();
-				
-				if(saveFinalStateFile != null)
-				{
-					try
+			if (numThreads > 1)
+				pl.logger().info("Walking with " + numThreads + " threads...");
+			// each walker has its own random stream
+			Walkers walkers = new Walkers(G, k, maxDegree, degreeBound, smart, cacheSize, numSamples, numSteps, samplingInterval,
+					numThreads, seed, isomorphisms, writer, finalStateWriter, resumed);
+			AtomicInteger samplesTaken = walkers.samplesTaken;
+			AtomicLong virtualSteps = walkers.virtualSteps; // the number of steps taken so far
+			AtomicLong realStepsTaken = walkers.realSteps;
+			AtomicBoolean pauseRequested = walkers.pauseRequested;
+			Phaser pause = walkers.pause;
+			walkers.start();
+
+			double startTime = System.nanoTime()/1e9;
+			double lastReport = startTime, lastCheckpoint = startTime;
+			long startVirtualSteps = virtualSteps.get();
+			int tick = checkpointFile == null ? 60 * 5 : Math.min(60 * 5, checkpointPeriod);
+			try {
+				for (Thread t : walkers.threads)
+					while (t.isAlive())
 					{
-						for(int v : H.getNodes())
-							finalStateWriter.write(v + " ");
-						finalStateWriter.newLine();
-					} catch (IOException e) {
-						// TODO Auto-generated catch block
-						e.printStackTrace();
+						t.join(1000L * tick);
+						if (!t.isAlive())
+							break;
+						double now = System.nanoTime()/1e9;
+						if (checkpointFile != null && now - lastCheckpoint >= checkpointPeriod)
+						{
+							// wait for the walkers to stop between two samples, then save their state
+							pauseRequested.set(true);
+							pause.arriveAndAwaitAdvance();
+							try {
+								WalkCheckpoint checkpoint = new WalkCheckpoint();
+								checkpoint.basename = basename;
+								checkpoint.k = k;
+								checkpoint.numSamples = numSamples;
+								checkpoint.numSteps = numSteps;
+								checkpoint.samplingInterval = samplingInterval;
+								checkpoint.numThreads = numThreads;
+								checkpoint.smart = smart;
+								checkpoint.nextSample = Math.min(samplesTaken.get(), numSamples);
+								checkpoint.virtualSteps = virtualSteps.get();
+								checkpoint.realSteps = realStepsTaken.get();
+								if (writer != null)
+								{
+									writer.flush();
+									checkpoint.sampleFileLength = new File(sampleFile).length();
+								}
+								if (finalStateWriter != null)
+								{
+									finalStateWriter.flush();
+									checkpoint.finalStateFileLength = new File(saveFinalStateFile).length();
+								}
+								checkpoint.random = new RandomGenerator[numThreads];
+								checkpoint.hashCount = new Long2LongOpenHashMap[numThreads];
+								checkpoint.cacheHits = new long[numThreads];
+								checkpoint.cacheMisses = new long[numThreads];
+								for (int w = 0; w < numThreads; w++)
+								{
+									Walker walker = walkers.walkers.get(w);
+									checkpoint.random[w] = walker.rnd;
+									checkpoint.hashCount[w] = walker.hashCount;
+									checkpoint.cacheHits[w] = walker.cacheHits;
+									checkpoint.cacheMisses[w] = walker.cacheMisses;
+								}
+								checkpoint.write(checkpointFile);
+								pl.logger().info("Checkpoint saved to " + checkpointFile + " after " + checkpoint.nextSample + " samples");
+							} catch (IOException e) {
+								e.printStackTrace();
+							}
+							pauseRequested.set(false);
+							pause.arriveAndAwaitAdvance();
+							lastCheckpoint = now;
+						}
+						if (now - lastReport < 60 * 5)
+							continue;
+						lastReport = now;
+						//Print speed and ETA every 5 minutes
+						double elapsed = now - startTime;
+						double virtualSpeed = elapsed/(virtualSteps.get() - startVirtualSteps);
+						double secsLeft = (((long) numSamples)*numSteps-virtualSteps.get())*virtualSpeed;
+						int d = (int)(secsLeft/86400);
+						secsLeft%=86400;
+						int h=(int)(secsLeft/3600);
+						secsLeft%=3600;
+						int m=(int)(secsLeft/60);
+						secsLeft%=60;
+						int sec=(int)(secsLeft);
+						
+						DecimalFormat fmt3d = new DecimalFormat("#.###");
+						DecimalFormat fmtInt = new DecimalFormat("00");
+						System.out.println("TIME: " + fmt3d.format(elapsed) + "s. Virtual steps: "
+								+ virtualSteps.get() + " (" + fmt3d.format(1000*virtualSpeed)  + "ms/step) Real steps: " 
+								+ realStepsTaken.get() +  " (" + fmt3d.format(1000*elapsed/realStepsTaken.get())  + "ms/step). ETA: "
+								+ d+"d "+ h+":"+ fmtInt.format(m)+":"+ fmtInt.format(sec));
 					}
-				}
-				
-				realSteps += randomWalk.realSteps(); 
-				i++;
-
-				hashCount.addTo(isomorphisms.long_signature(H.asGraph()), 1);
-				
-				//Print speed and ETA
-				double currTime =  System.nanoTime()/1e9;
-				if(currTime >= lastTime+60*5) //5 minutes
-				{
-					double elapsed = currTime - startTime;
-					double virtualSpeed = elapsed/virtualSteps;
-					double secsLeft = (numSamples*numSteps-virtualSteps)*virtualSpeed;
-					int d = (int)(secsLeft/86400);
-					secsLeft%=86400;
-					int h=(int)(secsLeft/3600);
-					secsLeft%=3600;
-					int m=(int)(secsLeft/60);
-					secsLeft%=60;
-					int s=(int)(secsLeft);
-					
-					DecimalFormat fmt3d = new DecimalFormat("#.###");
-					DecimalFormat fmtInt = new DecimalFormat("00");
-					System.out.println("TIME: " + fmt3d.format(elapsed) + "s. Virtual steps: "
-							+ virtualSteps + " (" + fmt3d.format(1000*virtualSpeed)  + "ms/step) Real steps: " 
-							+ realSteps +  " (" + fmt3d.format(1000*elapsed/realSteps)  + "ms/step). ETA: "
-							+ d+"d "+ h+":"+ fmtInt.format(m)+":"+ fmtInt.format(s));
-					
-					lastTime = currTime;
-				}
-
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
 
+			// merge the results of the walkers
+			Exception error = walkers.firstError();
+			walkers.merge(hashCount);
+			for (Walker walker : walkers.walkers)
+			{
+				cacheHits += walker.cacheHits;
+				cacheMisses += walker.cacheMisses;
 			}
+			realSteps = realStepsTaken.get();
 			
 			if (sampleFile != null)
 			{
 				try {
-					writer.flush();
 					writer.close();
-					pl.logger.info("Samples written to " + sampleFile);
+					if (error == null)
+						pl.logger.info("Samples written to " + sampleFile);
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
@@ -419,15 +513,19 @@ public class RandomWalkSampler
 			{
 				try
 				{
-					finalStateWriter.flush();
 					finalStateWriter.close();
-					pl.logger.info("Final states written to " + saveFinalStateFile);
+					if (error == null)
+						pl.logger.info("Final states written to " + saveFinalStateFile);
 				} catch (IOException e) {
 					e.printStackTrace();
 				}
 			}
+			if (error != null)
+			{
+				System.err.println("A walker failed: " + error);
+				System.exit(1);
+			}
 		}
-
 		
 		numSamples = 0;
 		for (Long count : hashCount.values())
@@ -452,6 +550,10 @@ public class RandomWalkSampler
 		pl.logger()
 				.info("Average transitions between different graphlets, per sample taken: "
 						+ ((double) realSteps) / numSamples);
+		if (cacheHits + cacheMisses > 0)
+			pl.logger().info("Successor cache hit rate: "
+					+ String.format("%5.2f", 100.0 * cacheHits / (cacheHits + cacheMisses)) + "% ("
+					+ cacheHits + " hits, " + cacheMisses + " misses)");
 
 		/*
 		 * System.out.println("Vertex occurrences vector: "); for(int u=0;
@@ -473,4 +575,314 @@ public class RandomWalkSampler
 		}
 	}
 
+	/**
+	 * Takes samples from ordinary random walks (i.e. with self-loops) started at random graphlets, as the default
+	 * mode of the command line, without output files or checkpoints.
+	 * @param G a symmetric, loop-free graph, better if a {@link NeighborhoodIndex}
+	 * @param k graphlet size
+	 * @param numSamples
+	 * @param numSteps number of steps per sample
+	 * @param smart whether to reweight transitions to converge faster
+	 * @param numThreads number of concurrent walkers
+	 * @param seed walker w uses the w-th seed derived from it by {@link GraphGenerator#random(long, long)}, as the
+	 * command line does
+	 * @param isomorphisms
+	 * @return the number of samples of each graphlet, by signature
+	 * @throws InterruptedException
+	 * @throws RuntimeException
+	 *             the first failure of a walker, which stops all of them
+	 */
+	public static Long2LongOpenHashMap sample(ImmutableGraph G, int k, int numSamples, int numSteps, boolean smart,
+			int numThreads, long seed, BaseGraphIsomorphisms isomorphisms) throws InterruptedException
+	{
+		int maxDegree = 0;
+		IntIterator odegs = G.outdegrees();
+		for (int i = G.numNodes() - 1; i >= 0; i--)
+			maxDegree = Math.max(maxDegree, odegs.nextInt());
+		double degreeBound = FullGraphletRandomWalk.degreeBound(G, k);
+
+		Walkers walkers = new Walkers(G, k, maxDegree, degreeBound, smart, 0, numSamples, numSteps, numSteps, numThreads,
+				seed, isomorphisms, null, null, null);
+		walkers.start();
+		for (Thread t : walkers.threads)
+			t.join();
+		Exception error = walkers.firstError();
+		if (error instanceof InterruptedException)
+			throw (InterruptedException) error;
+		if (error != null) // without output files, nothing else is checked
+			throw error instanceof RuntimeException ? (RuntimeException) error : new IllegalStateException(error);
+
+		Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
+		walkers.merge(hashCount);
+		return hashCount;
+	}
+
+	/**
+	 * Opens an output file of a resumed run, dropping whatever was written after the checkpoint.
+	 * @param filename
+	 * @param length the length of the file at the checkpoint, or -1 if the checkpointed run did not write it
+	 * @param first the index of the first sample to be written
+	 * @param maxPending
+	 * @return
+	 * @throws IOException
+	 */
+	private static OrderedWriter openForResume(String filename, long length, int first, int maxPending) throws IOException
+	{
+		if (length < 0)
+			throw new IOException("The checkpointed run did not write " + filename);
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw"))
+		{
+			if (file.length() < length)
+				throw new IOException(filename + " is shorter than at the checkpoint");
+			file.setLength(length);
+		}
+		return new OrderedWriter(new BufferedWriter(new FileWriter(filename, true)), maxPending, first);
+	}
+
+	/**
+	 * A group of walkers taking samples together, with shared counters and output files, used by the command line
+	 * and by {@link #sample(ImmutableGraph, int, int, int, boolean, int, long, BaseGraphIsomorphisms)}.
+	 */
+	private static class Walkers
+	{
+		final AtomicInteger samplesTaken;
+		final AtomicLong virtualSteps, realSteps;
+		// the walkers stop between two samples when a checkpoint is requested, and for good when one of them fails
+		final AtomicBoolean pauseRequested = new AtomicBoolean(false), stop = new AtomicBoolean(false);
+		final Phaser pause;
+		final List<Walker> walkers = new ArrayList<>();
+		final List<Thread> threads = new ArrayList<>();
+
+		/**
+		 * Creates the walkers, without starting them.
+		 * @param seed walker w uses the w-th seed derived from it, unless it is resumed
+		 * @param writer where the samples are written, or null
+		 * @param finalStateWriter where the final states are written, or null
+		 * @param resumed the checkpoint of the run to be resumed, or null
+		 */
+		Walkers(ImmutableGraph G, int k, int maxDegree, double degreeBound, boolean smart, int cacheSize, int numSamples,
+				int numSteps, int samplingInterval, int numThreads, long seed, BaseGraphIsomorphisms isomorphisms,
+				OrderedWriter writer, OrderedWriter finalStateWriter, WalkCheckpoint resumed)
+		{
+			samplesTaken = new AtomicInteger(resumed == null ? 0 : resumed.nextSample);
+			virtualSteps = new AtomicLong(resumed == null ? 0 : resumed.virtualSteps);
+			realSteps = new AtomicLong(resumed == null ? 0 : resumed.realSteps);
+			pause = new Phaser(numThreads + 1);
+			GraphletSeeder seeder = new GraphletSeeder(G, k, numThreads);
+			for (int w = 0; w < numThreads; w++)
+			{
+				Walker walker = new Walker(G.copy(), seeder.copy(), k, maxDegree, degreeBound, smart, cacheSize, numSamples,
+						numSteps, samplingInterval, isomorphisms, resumed == null ? new Well19937c(GraphGenerator.random(seed, w)) : resumed.random[w],
+						samplesTaken, virtualSteps, realSteps, writer, finalStateWriter, pause, pauseRequested, stop);
+				if (resumed != null)
+				{
+					walker.hashCount.putAll(resumed.hashCount[w]);
+					walker.cacheHits = resumed.cacheHits[w];
+					walker.cacheMisses = resumed.cacheMisses[w];
+				}
+				walkers.add(walker);
+				threads.add(new Thread(walker, "walker" + w));
+			}
+		}
+
+		void start()
+		{
+			for (Thread t : threads)
+				t.start();
+		}
+
+		/**
+		 * Returns the failure that stopped the walkers, if any.
+		 * @return the error of the walker that failed first, or null
+		 */
+		Exception firstError()
+		{
+			for (Walker walker : walkers)
+				if (walker.error != null)
+					return walker.error;
+			return null;
+		}
+
+		/**
+		 * Adds the samples of all the walkers to the given counts.
+		 * @param hashCount
+		 */
+		void merge(Long2LongOpenHashMap hashCount)
+		{
+			for (Walker walker : walkers)
+				for (Long2LongMap.Entry e : walker.hashCount.long2LongEntrySet())
+					hashCount.addTo(e.getLongKey(), e.getLongValue());
+		}
+	}
+
+	/**
+	 * Takes samples with ordinary random walks (i.e. with self-loops), until numSamples samples have been taken
+	 * by all the walkers together.
+	 */
+	private static class Walker implements Runnable
+	{
+		private final ImmutableGraph G;
+		private final GraphletSeeder seeder;
+		private final int k, maxDegree, cacheSize, numSamples, numSteps, samplingInterval;
+		private final double degreeBound;
+		private final boolean smart;
+		private final BaseGraphIsomorphisms isomorphisms;
+		private final RandomGenerator rnd;
+		private final AtomicInteger samplesTaken;
+		private final AtomicLong virtualSteps, realSteps;
+		private final OrderedWriter writer, finalStateWriter;
+		private final Phaser pause;
+		private final AtomicBoolean pauseRequested, stop;
+		final Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
+		long cacheHits = 0, cacheMisses = 0;
+		Exception error = null;
+
+		Walker(ImmutableGraph G, GraphletSeeder seeder, int k, int maxDegree, double degreeBound, boolean smart, int cacheSize, int numSamples, int numSteps,
+				int samplingInterval, BaseGraphIsomorphisms isomorphisms, RandomGenerator rnd,
+				AtomicInteger samplesTaken, AtomicLong virtualSteps, AtomicLong realSteps, OrderedWriter writer,
+				OrderedWriter finalStateWriter, Phaser pause, AtomicBoolean pauseRequested, AtomicBoolean stop)
+		{
+			this.G = G;
+			this.seeder = seeder;
+			this.k = k;
+			this.maxDegree = maxDegree;
+			this.degreeBound = degreeBound;
+			this.smart = smart;
+			this.cacheSize = cacheSize;
+			this.numSamples = numSamples;
+			this.numSteps = numSteps;
+			this.samplingInterval = samplingInterval;
+			this.isomorphisms = isomorphisms;
+			this.rnd = rnd;
+			this.samplesTaken = samplesTaken;
+			this.virtualSteps = virtualSteps;
+			this.realSteps = realSteps;
+			this.writer = writer;
+			this.finalStateWriter = finalStateWriter;
+			this.pause = pause;
+			this.pauseRequested = pauseRequested;
+			this.stop = stop;
+		}
+
+		@Override
+		public void run()
+		{
+			try {
+				walk();
+			} catch (IOException | InterruptedException | RuntimeException e) {
+				// only the first failure is an error, the others follow from stopping the walkers
+				if (!stop.getAndSet(true))
+				{
+					error = e;
+					// the other walkers may be waiting to write after a sample of this one
+					if (writer != null)
+						writer.abort();
+					if (finalStateWriter != null)
+						finalStateWriter.abort();
+				}
+			} finally {
+				pause.arriveAndDeregister(); // checkpoints do not wait for this walker any more
+			}
+		}
+
+		private void walk() throws IOException, InterruptedException
+		{
+			StringBuilder line = new StringBuilder();
+			int numIntervals = (int) Math.ceil(1.0 * numSteps / samplingInterval);
+			int[] start = new int[k];
+			while (true)
+			{
+				if (pauseRequested.get())
+				{
+					pause.arriveAndAwaitAdvance(); // the checkpoint is being taken
+					pause.arriveAndAwaitAdvance(); // and it is done
+				}
+				int i = samplesTaken.getAndIncrement();
+				if (i >= numSamples || stop.get())
+					return;
+
+				seeder.seed(rnd, start);
+				// the weights of the smart walk add up to at most k-1 per slot, hence maxDeg=1 gives a bound
+				FullGraphletRandomWalk randomWalk = smart ? new SmartGraphletRandomWalk(G, start, 1, rnd)
+						: new FullGraphletRandomWalk(G, start, maxDegree, rnd);
+				if (!smart)
+					randomWalk.setDegreeBound(degreeBound);
+				if (cacheSize > 0)
+					randomWalk.setNeighborCacheSize(cacheSize);
+
+				line.setLength(0);
+				Graphlet H = null;
+				for (int t = 0; t < numIntervals; t++)
+				{
+					randomWalk.walk(samplingInterval);
+					virtualSteps.addAndGet(samplingInterval);
+					H = randomWalk.getGraphlet();
+					if (writer != null)
+						line.append(isomorphisms.long_signature(new CompactGraphlet(G, H.getNodes()).adjacencyMask())).append(' ');
+				}
+				if (writer != null)
+					writer.write(i, line.append(System.lineSeparator()).toString());
+
+				if (finalStateWriter != null)
+				{
+					line.setLength(0);
+					for (int v : H.getNodes())
+						line.append(v).append(' ');
+					finalStateWriter.write(i, line.append(System.lineSeparator()).toString());
+				}
+
+				realSteps.addAndGet(randomWalk.realSteps());
+				if (randomWalk.getNeighborCache() != null)
+				{
+					cacheHits += randomWalk.getNeighborCache().hits();
+					cacheMisses += randomWalk.getNeighborCache().misses();
+				}
+				hashCount.addTo(isomorphisms.long_signature(new CompactGraphlet(G, H.getNodes()).adjacencyMask()), 1);
+			}
+		}
+	}
+
+	/**
+	 * Takes samples from a virtual walk over a range of a walk history, until the requested number of samples has
+	 * been taken or the range is over.
+	 */
+	private static class Replay implements Runnable
+	{
+		private final ImmutableGraph G;
+		private final VirtualRandomWalk walk;
+		private final int numSamples, discard, numSteps;
+		private final BaseGraphIsomorphisms isomorphisms;
+		final Long2LongOpenHashMap hashCount = new Long2LongOpenHashMap();
+		int samplesTaken = 0;
+		long statesVisited = 0;
+
+		Replay(ImmutableGraph G, VirtualRandomWalk walk, int numSamples, int discard, int numSteps,
+				BaseGraphIsomorphisms isomorphisms)
+		{
+			this.G = G.copy();
+			this.walk = walk;
+			this.numSamples = numSamples;
+			this.discard = discard;
+			this.numSteps = numSteps;
+			this.isomorphisms = isomorphisms;
+		}
+
+		@Override
+		public void run()
+		{
+			long start = walk.position();
+			try {
+				for (; samplesTaken < numSamples; samplesTaken++)
+				{
+					walk.walk(numSteps);
+					if (samplesTaken >= discard)
+						hashCount.addTo(isomorphisms.long_signature(new CompactGraphlet(G, walk.getNodes()).adjacencyMask()), 1);
+				}
+			} catch (VirtualRandomWalk.DataOverException e) {
+				// the range is over, keep the samples taken so far
+			}
+			statesVisited = walk.position() - start;
+		}
+	}
+
 }
@@ -1,57 +1,51 @@
 package wsdm16.motifs.randomwalks;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-/** 
+import java.util.Arrays;
+/**
  * A random walk on the space of graphlets of a host graph.
  * This walk is similar to @FullGraphletRandomWalk. The possible transitions from each graphlet are the
  * same as in @FullGraphletRandomWalk, but the weights are different. In particular, this walk reduces the
  * probability of walking towards graphlets that have many "twins", such as towards stars centered in
  * high-degree nodes. This should speed up the walk in terms of actual graphlets transitions (i.e. if one
  * does not count transitions along self-loops, it should converge faster).
+ *
+ * Replacing the node in slot j with w has weight 1/c, where c is the largest, over the other graphlet nodes v
+ * adjacent to w, of the number of nodes adjacent to v that can replace slot j. Like switchability, this only
+ * depends on the label of w (see {@link FullGraphletRandomWalk}), hence the transitions are grouped by slot and
+ * label, and drawn from a running prefix sum of their weights.
  * @author anon
  */
-import java.util.Set;
 
-import org.apache.commons.math3.distribution.GeometricDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.random.Well19937c;
 
-import it.unimi.dsi.fastutil.ints.IntArraySet;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.webgraph.ImmutableGraph;
-import it.unimi.dsi.webgraph.LazyIntIterator;
-import it.unimi.dsi.webgraph.NodeIterator;
-import it.unimi.dsi.fastutil.ints.Int2FloatArrayMap;
-import wsdm16.graphutils.BreadthFirstSearch;
-import wsdm16.motifs.BaseGraphIsomorphisms;
-import wsdm16.motifs.Graphlet;
-import wsdm16.motifs.LazyGraphIsomorphisms;
-import wsdm16.motifs.distributions.EnumeratedIntegerDistribution;
 
 public class SmartGraphletRandomWalk extends FullGraphletRandomWalk {
 	private int realSteps;
-	private Map<Integer, Set<Integer>> neighCache; // store neighbors of each graphlet node
-	private Map<Integer, Set<Integer>> switchables; // store nodes that can be swapped with H's nodes
-	private Map<Integer, Map<Integer, Float>> arcWeights; // store nodes that can be swapped with H's nodes
-	private Map<Set<Integer>, Set<Integer>> neighUnionCache; // store union of nodes neighbors
+	private int[] replacing; // replacing[j*k+i] is the number of nodes adjacent to slot i that can replace slot j
+	// the transitions, one for each slot j and label whose nodes can replace slot j
+	private int[] candidateSlot = new int[0];
+	private int[] candidateLabel = new int[0];
+	private double[] cumulativeWeight = new double[0]; // running prefix sum of the weights of the transitions
+	private int numCandidates;
 
 	/** Constructor.
-	 * 
+	 *
 	 * @param G host graph
 	 * @param k size of the graphlet (number of nodes)
 	 * @param u a node to start from to search for a graphlet
 	 * @param maxDeg the maximum degree of G
-	 * @throws wsdm16.motifs.randomwalks.FullGraphletRandomWalk.InvalidStartingNodeException 
+	 * @throws wsdm16.motifs.randomwalks.FullGraphletRandomWalk.InvalidStartingNodeException
 	 */
 	public SmartGraphletRandomWalk(ImmutableGraph G, int k, int u, int maxDeg, RandomGenerator random) throws FullGraphletRandomWalk.InvalidStartingNodeException
 	{
-		super(G, k, u, maxDeg, random);		
+		super(G, k, u, maxDeg, random);
+	}
+
+	public SmartGraphletRandomWalk(ImmutableGraph G, int[] nodes, int maxDeg, RandomGenerator random)
+	{
+		super(G, nodes, maxDeg, random);
 	}
 
 	public SmartGraphletRandomWalk(ImmutableGraph G, int k)
@@ -62,46 +56,43 @@ public class SmartGraphletRandomWalk extends FullGraphletRandomWalk {
 	/**
 	 * Updates the nodes that can be switched with the graphlet's nodes, and their weights.
 	 */
+	@Override
 	public void updateSwitchables() {
-		List<Integer> nodes = new ArrayList<>(H.getNodes());
-		switchables = new HashMap<>(nodes.size());
-		arcWeights = new HashMap<Integer, Map<Integer, Float>>(H.size());
-		for (int u : H.getNodes()) { // see what can be done with H\{u}
-			Int2FloatArrayMap map = new Int2FloatArrayMap();
-			map.defaultReturnValue(1f);
-			Graphlet H1 = new Graphlet(H);
-			H1.removeNode(u);
-			Set<Integer> nodes1 = new HashSet<Integer>(H1.getNodes());
-			for (int v : nodes1) {
-				int c = 0;
-				Set<Integer> keepConn = new IntArraySet(); // neighbors w of v such that (H-u+w) is a graphlet 
-				for (int w : G.successorArray(v)) {
-					if (!H.getNodes().contains(w)) {
-    					H1.addNode(w);
-    					if (H1.isConnected()) {
-    						c += 1;
-    						keepConn.add(w);
-    					}
-    					H1.removeNode(w);
-					}
+		countSwitchables();
+		if (replacing == null)
+			replacing = new int[k * k];
+		Arrays.fill(replacing, 0);
+		if (candidateSlot.length < numActive * k) {
+			int size = Math.max(numActive * k, 2 * candidateSlot.length);
+			candidateSlot = new int[size];
+			candidateLabel = new int[size];
+			cumulativeWeight = new double[size];
+		}
+
+		// the transitions, and how many nodes can replace each slot from the neighborhood of each other slot
+		numCandidates = 0;
+		for (int a = 0; a < numActive; a++) {
+			int label = activeLabels[a];
+			int size = groups[label].size();
+			for (int j = 0; j < k; j++)
+				if (canReplace(label, j)) {
+					candidateSlot[numCandidates] = j;
+					candidateLabel[numCandidates++] = label;
+					for (int l = label & ~(1 << j); l != 0; l &= l - 1)
+						replacing[j * k + Integer.numberOfTrailingZeros(l)] += size;
 				}
-				for (int w : keepConn)
-					map.put(w, (float)Math.min(map.get(w), 1.0/c));
-			}
-			switchables.put(u, map.keySet());
-			arcWeights.put(u, map);
-		}	
-	}
+		}
 
-	/**
-	 * Return the current state's degree (number of neighboring graphlets in the random walk).
-	 * @return just the sum of the sizes of the sets in this.switchables
-	 */
-	public int stateDegree() {
-		int totalSize = 0;
-		for (Integer u : switchables.keySet())
-			totalSize += switchables.get(u).size();
-		return totalSize;
+		// the weights
+		double sum = 0;
+		for (int c = 0; c < numCandidates; c++) {
+			int j = candidateSlot[c], label = candidateLabel[c];
+			int max = 0;
+			for (int l = label & ~(1 << j); l != 0; l &= l - 1)
+				max = Math.max(max, replacing[j * k + Integer.numberOfTrailingZeros(l)]);
+			sum += (double) groups[label].size() / max;
+			cumulativeWeight[c] = sum;
+		}
 	}
 
 	/**
@@ -109,63 +100,26 @@ public class SmartGraphletRandomWalk extends FullGraphletRandomWalk {
 	 * @return the sum of the edge weights.
 	 */
 	public float stateWeight() {
-		float wgt = 0;
-		for (Integer u : arcWeights.keySet())
-			for (Map.Entry<Integer, Float> e : arcWeights.get(u).entrySet())
-				wgt += e.getValue();
-		return wgt;
+		return numCandidates == 0 ? 0f : (float) cumulativeWeight[numCandidates - 1];
 	}
 
 	/**
-	 * Draw a pair of nodes to be switched, i.e. a neighboring graphlet, according to the weights.
+	 * Draw a pair of nodes to be switched, i.e. a neighboring graphlet, according to the weights, and switch them.
 	 * Draw a pair (u,v). from all the pairs of nodes in G where u is in H and v is in G\H and
 	 * such that replacing u with v gives again a graphlet. The pair (u,v) is chosen with probability
 	 * proportional to the weight assigned to (u,v) -- see {@link SmartGraphletRandomWalk#updateSwitchables()}.
-	 * @param switchables a map from the nodes in H to the nodes that can replace them
-	 * @param weights a two-level map; for each node u of H, a weight map from each node that can replace u to its weight
-	 * @return a 2-element array with entries [u, v]
+	 * Since all the nodes with the same label have the same weight, this picks a (slot, label) transition by its
+	 * total weight, and then a node with that label u.a.r.
 	 */
-	private int[] drawSwitch(Map<Integer, Set<Integer>> switchables, Map<Integer, Map<Integer, Float>> weights) {
-		int[] uv = new int[2];
-		
-		// first, select the node u to be removed from H
-		int[] vNodes = new int[k];
-		double[] vProbs = new double[k];
-		int i = 0;
-		float totW = 0f;
-		for (Integer u : switchables.keySet()) {
-			vNodes[i] = u;
-			vProbs[i] = 0;
-			for (Map.Entry<Integer, Float> e : arcWeights.get(u).entrySet()) {
-				vProbs[i] += e.getValue();
-//				System.out.print(e.getKey() + ":" + e.getValue() + "; ");
-			}
-			totW += vProbs[i];
-			i++;
-		}
-		for (int j = 0; j < i; j++) {
-			vProbs[j] /= totW;
-			// System.out.print(vNodes[j] + ":" + vProbs[j] + "; ");
-		}
-		//System.out.println();
-		uv[0] = new EnumeratedIntegerDistribution(vNodes, vProbs, false).sample(random);
-
-		// then, pick the node v to replace u, chosen among u's switches
-		Set<Integer> switches = switchables.get(uv[0]);
-		Integer[] swI = switches.toArray(new Integer[switches.size()]);
-		int[] sw = new int[swI.length];
-		Float[] probsF = arcWeights.get(uv[0]).values().toArray(new Float[switches.size()]);
-		double[] probs = new double[probsF.length];
-		totW = 0;
-		for (int j = 0; j < sw.length; j++) {
-			sw[j] = swI[j];
-			probs[j] = probsF[j];
-			totW += probs[j];
-		}
-		for (int j = 0; j < sw.length; j++) // normalize the probs
-			probs[j] /= totW;
-		uv[1] = (new EnumeratedIntegerDistribution(sw, probs, false)).sample(random);
-		return uv;
+	private void drawSwitch() {
+		double r = random.nextDouble() * cumulativeWeight[numCandidates - 1];
+		// the first transition whose prefix sum exceeds r
+		int c = Arrays.binarySearch(cumulativeWeight, 0, numCandidates, r);
+		c = c < 0 ? -c - 1 : c + 1;
+		if (c == numCandidates) // only if r rounds up to the total
+			c--;
+		IntArrayList group = groups[candidateLabel[c]];
+		replace(candidateSlot[c], group.getInt(random.nextInt(group.size())));
 	}
 
 	/**
@@ -178,14 +132,8 @@ public class SmartGraphletRandomWalk extends FullGraphletRandomWalk {
 		// get the switchables
 		updateSwitchables();
 		// follow a number X~Geom(..) of self-loops
-		int numFailures = Integer.MAX_VALUE;
-		if (!switchables.isEmpty())
-		{
-			int ub = (k-1)*k*maxDegree; //For each vertex of the motif, we have at most (k-1) * maxDeg possible candidates
-//			System.out.println("State weight = "+ stateWeight());
-			GeometricDistribution geometric = new GeometricDistribution(random, ((double)stateWeight())/ub);
-			numFailures = geometric.sample();
-		}
+		assert stateWeight() <= degreeBound;
+		int numFailures = GeometricSampler.sample(random, stateWeight() / degreeBound);
 
 		if (numFailures>=howMany)
 		{
@@ -197,22 +145,14 @@ public class SmartGraphletRandomWalk extends FullGraphletRandomWalk {
 		realSteps += 1;
 
 		// switch!
-		int[] uv = drawSwitch(switchables, arcWeights);
-//		System.out.println("replacing " + uv[0] + " -> " + uv[1]);
-		H.removeNode(uv[0]);
-		H.addNode(uv[1]);
-//		System.out.println(H.getNodes());
-//		System.out.println(H.getNodes().size());
-//		updateNeighCache(uv[1]);
-		assert(H.size()==k);
-		assert(H.isConnected());
-//		BaseGraphIsomorphisms isomorphisms = new LazyGraphIsomorphisms(k);
-//		isomorphisms.long_signature(H.asGraph());
+		drawSwitch();
+		assert(getGraphlet().size()==k);
+		assert(getGraphlet().isConnected());
 		return numFailures+1;
 	}
 
 	/** Perform multiple steps of the walk.
-	 * 
+	 *
 	 */
 	@Override
 	public int walk(int steps)
@@ -221,7 +161,7 @@ public class SmartGraphletRandomWalk extends FullGraphletRandomWalk {
 		while (this.steps < end)
 			stepMany(end-this.steps);
 
-		return steps; 
+		return steps;
 	}
 
 	public int realSteps()
@@ -1,162 +1,242 @@
 package wsdm16.motifs.randomwalks;
 
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
-import org.apache.commons.math3.distribution.GeometricDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 
+import it.unimi.dsi.fastutil.ints.IntArraySet;
 import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ImmutableGraph;
 
 /**
  * A virtual random walk performed using a sequence of pre-computed graphlet transitions and emulating self-loops.
- * It takes care of loading data from two sequences of files:
- *    each file in the first sequence is a "state" file storing serialized Set<Integer> representing graphlet nodes
- *    each file in the second sequence is a "degree" file storing a List<Integer> of corresponding state degrees
+ * It takes care of loading data from a sequence of walk history files (see {@link WalkHistoryWriter}), each
+ * storing graphlet nodes along with the corresponding state degrees, and memory-mapped by a {@link WalkHistoryReader}.
  * The file names are in the form
- * 	  basename.0, basename.1, ...		for the states
- *    basename.0.degs, basename.1.degs, ...			for the degrees
- * 
+ * 	  basename.0, basename.1, ...
+ * or just basename, if the history is a single file.
+ *
+ * The files are seen as a single sequence of states, which can be accessed at random: a walk can be restricted to
+ * any range of states (see {@link #setRange(long, long)}), and multiple walks can replay the same data in
+ * parallel (see {@link #copy(RandomGenerator)}). Walking only reads the degrees of the states it goes through;
+ * the nodes are decoded only when asked for.
+ *
  * VirtualRandomWalk.java - created on 30 lug 2016
  * @author anon
  */
 public class VirtualRandomWalk {
-    private Set<Integer> nodes; // the current set of nodes
-    private String walkBasename; // basename of the files where to pick the pre-stored walk
-    private String degBasename; // basename of the files where to pick the pre-stored walk
-    private List<Integer> degs; // the list of degrees
-    private int regularDegree; // the degree that all states should have in the chain 
-    private int chunkCount;
-    private int stateCount;
-    private ProgressLogger pl;
-	private FileInputStream degFis;
-	private ObjectInputStream degOis;
-	private FileInputStream stateFis;
-	private ObjectInputStream stateOis;
+    private int[] nodes; // the current set of nodes
+    private final WalkHistoryReader[] histories; // the files
+    private final long[] firstState; // the index of the first state of each file, plus the total number of states
+    private final int regularDegree; // the degree that all states should have in the chain
+    private int chunk; // the file holding the current state
+    private long stateCount; // the current state, across all files
+    private long endState; // the first state that the walk cannot reach
 	private RandomGenerator rnd;
 
-	private class DataOverException extends Exception {
+	public class DataOverException extends Exception {
 		/**
-		 * 
+		 *
 		 */
 		private static final long serialVersionUID = 1L;
 	};
-	
+
 	/**
 	 * Constructor.
 	 * @param basename the basename of the files (e.g. "ljournal-2008" or "walks/mygraph-ABC")
 	 * @param G the graph where the graphlets were taken
-	 * @param degree the degree of the graphlets in the virtual Markov Chain. This must be no smaller than the maximum degree encountered in the degree files.
-	 * @throws ClassNotFoundException
-	 * @throws IOException
-	 * @throws DataOverException in case the walk gets over the end of the available data files.
+	 * @param degree the degree of the graphlets in the virtual Markov Chain. This must be no smaller than the maximum degree encountered in the history files.
+	 * @throws DataOverException in case no history file is found.
 	 */
-	public VirtualRandomWalk(String basename, ImmutableGraph G, int degree) throws ClassNotFoundException, IOException, DataOverException {
-    	chunkCount = 0;
-    	walkBasename = basename;
-    	regularDegree = degree;
-    	pl = new ProgressLogger();
-    	initInputStreams();
-		rnd = new Well19937c();
+	public VirtualRandomWalk(String basename, ImmutableGraph G, int degree) throws DataOverException {
+		this(basename, degree, new Well19937c());
     }
-    
+
 	/**
-	 * Return the name of the current file holding states.
-	 * @return
+	 * Constructor, using one more than the maximum degree in the history files as the degree of the chain.
+	 * @param basename the basename of the files
+	 * @param rnd the random generator for the self-loops
+	 * @throws DataOverException in case no history file is found.
 	 */
-    public String getCurrentWalkFilename() {
-    	return walkBasename + "." + chunkCount;
-    }
-
-    /**
-     * Return the name of the current file holding state degreess.
-     * @return
-     */
-    public String getCurrentDegFilename() {
-    	return degBasename + "." + chunkCount + ".degs";
-    }
+	public VirtualRandomWalk(String basename, RandomGenerator rnd) throws DataOverException {
+		this(basename, 0, rnd);
+	}
 
-    /**
-     * Init the input streams on the current files. This gets called before reading any new state.
-     * @throws DataOverException
-     */
-    @SuppressWarnings("unchecked")
-	private void initInputStreams() throws DataOverException {
+	/**
+	 * Constructor.
+	 * @param basename the basename of the files
+	 * @param degree the degree of the graphlets in the virtual Markov Chain, or 0 to use one more than the maximum degree in the history files.
+	 * @param rnd the random generator for the self-loops
+	 * @throws DataOverException in case no history file is found.
+	 */
+	public VirtualRandomWalk(String basename, int degree, RandomGenerator rnd) throws DataOverException {
+		ProgressLogger pl = new ProgressLogger();
+		List<WalkHistoryReader> loaded = new ArrayList<>();
 		try {
-			stateFis = new FileInputStream(getCurrentWalkFilename());
-			stateOis = new ObjectInputStream(stateFis);
-			pl.logger().info("Loaded " + getCurrentWalkFilename());
-			degFis = new FileInputStream(getCurrentDegFilename());
-			degOis = new ObjectInputStream(degFis);
-			pl.logger().info("Loaded " + getCurrentDegFilename());
-			degs = (List<Integer>)degOis.readObject();
-		} catch (ClassNotFoundException e) {
-			e.printStackTrace();
+			if (new File(basename).isFile())
+				loaded.add(new WalkHistoryReader(basename));
+			else
+				for (int c = 0; new File(basename + "." + c).isFile(); c++) {
+					loaded.add(new WalkHistoryReader(basename + "." + c));
+					pl.logger().info("Loaded " + basename + "." + c);
+				}
 		} catch (IOException e) {
-			pl.logger().info("Failed to load "+ getCurrentWalkFilename() + " or " + getCurrentDegFilename() + ". Assuming data is over, thus exiting.");
+			pl.logger().info("Failed to load " + basename + ": " + e.getMessage());
 			throw new DataOverException();
 		}
-    }
+		if (loaded.isEmpty()) {
+			pl.logger().info("No walk history found at " + basename);
+			throw new DataOverException();
+		}
+
+		histories = loaded.toArray(new WalkHistoryReader[loaded.size()]);
+		firstState = new long[histories.length + 1];
+		int maxDegree = 0;
+		for (int c = 0; c < histories.length; c++) {
+			if (histories[c].k() != histories[0].k())
+				throw new IllegalArgumentException("The history files have graphlets of different sizes");
+			firstState[c + 1] = firstState[c] + histories[c].size();
+			maxDegree = Math.max(maxDegree, histories[c].maxDegree());
+		}
+		if (degree == 0)
+			degree = maxDegree + 1;
+		else if (maxDegree > degree)
+			throw new IllegalArgumentException("The degree of the chain is smaller than the maximum degree in the history (" + maxDegree + ")");
+		regularDegree = degree;
+		this.rnd = rnd;
+		nodes = new int[histories[0].k()];
+		setRange(0, size());
+	}
+
+	private VirtualRandomWalk(VirtualRandomWalk copy, RandomGenerator rnd) {
+		histories = new WalkHistoryReader[copy.histories.length];
+		for (int c = 0; c < histories.length; c++)
+			histories[c] = copy.histories[c].copy();
+		firstState = copy.firstState;
+		regularDegree = copy.regularDegree;
+		this.rnd = rnd;
+		nodes = new int[copy.nodes.length];
+		setRange(0, size());
+	}
+
+	/**
+	 * Return a new walk over the same history, sharing the memory-mapped data with this one, that can be used by
+	 * another thread. The new walk starts before the first state.
+	 * @param rnd the random generator for the self-loops of the new walk
+	 * @return
+	 */
+	public VirtualRandomWalk copy(RandomGenerator rnd) {
+		return new VirtualRandomWalk(this, rnd);
+	}
+
+	/**
+	 * Restrict the walk to the states from, ..., to-1, and restart it just before state from.
+	 * @param from
+	 * @param to
+	 */
+	public void setRange(long from, long to) {
+		if (from < 0 || to > size() || from > to)
+			throw new IndexOutOfBoundsException("Invalid range [" + from + ", " + to + ") of " + size() + " states");
+		stateCount = from - 1;
+		endState = to;
+		chunk = 0;
+	}
+
+	/**
+	 * Return the number of states in the history.
+	 * @return
+	 */
+	public long size() {
+		return firstState[histories.length];
+	}
+
+	/**
+	 * Return the size of the graphlets.
+	 * @return
+	 */
+	public int k() {
+		return nodes.length;
+	}
+
+	/**
+	 * Return the degree of the virtual Markov Chain.
+	 * @return
+	 */
+	public int degree() {
+		return regularDegree;
+	}
+
+	/**
+	 * Return the index of the current state in the whole history (-1 before the first state).
+	 * @return
+	 */
+	public long position() {
+		return stateCount;
+	}
 
     /**
-     * Close the input streams.
+     * Make sure that chunk is the file holding the current state.
      */
-    private void closeInputStreams() {
-    	try {
-			degOis.close();
-	    	degFis.close();
-	    	stateOis.close();
-	    	stateFis.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+    private void locate() {
+    	if (stateCount >= firstState[chunk] && stateCount < firstState[chunk + 1])
+    		return;
+    	int c = Arrays.binarySearch(firstState, stateCount);
+    	chunk = c < 0 ? -c - 2 : c;
+    	while (histories[chunk].size() == 0) // skip empty files
+    		chunk++;
     }
-    
+
     /**
-     * Read from file the next state in the walk, throwing an exception if no more states are available.
-     * @return
-     * @throws ClassNotFoundException
-     * @throws IOException
-     * @throws DataOverException if the current file is over and no next file is found.
+     * Move to the next state in the walk, throwing an exception if no more states are available.
+     * @throws DataOverException if the range of the walk is over.
      */
-    @SuppressWarnings("unchecked")
-    private Set<Integer> readNextState() throws ClassNotFoundException, IOException, DataOverException {
-    	if (stateOis.available() == 0) {
-    		closeInputStreams();
-    		chunkCount++;
-    		initInputStreams();
-    	}
-		return (Set<Integer>) stateOis.readObject();
+    private void nextState() throws DataOverException {
+    	if (stateCount + 1 >= endState)
+    		throw new DataOverException();
+    	stateCount++;
+    	locate();
     }
-    
+
     /**
      * Return the current state.
      * @return
      */
     public Set<Integer> getState() {
+    	return new IntArraySet(getNodes());
+    }
+
+    /**
+     * Return the nodes of the current state, sorted. The array is reused by the walk.
+     * @return
+     */
+    public int[] getNodes() {
+    	if (stateCount < 0)
+    		throw new IllegalStateException("The walk has not started yet");
+    	histories[chunk].state(stateCount - firstState[chunk], nodes);
     	return nodes;
     }
-    
+
     /**
      * Perform a given number of steps in the virtual walk, throwing an exception if not enough data was available.
+     * Only the degrees of the states along the way are read.
      * @param steps
      * @return
-     * @throws ClassNotFoundException
-     * @throws IOException
-     * @throws DataOverException if the walk need more data, but the current file is over and no next file is found.
+     * @throws DataOverException if the walk needs more data, but its range is over.
      */
-    public int walk(int steps) throws ClassNotFoundException, IOException, DataOverException {
+    public int walk(int steps) throws DataOverException {
 		int s = 0;
 		while (s < steps) {
-			nodes = readNextState();
-			s += new GeometricDistribution(rnd, degs.get(stateCount)/regularDegree).sample();
+			nextState();
+			// the self-loops around the state, plus the step that leads to it
+			s += GeometricSampler.sample(rnd, ((double) histories[chunk].degree(stateCount - firstState[chunk]))/regularDegree) + 1;
 		}
 		return steps < s ? steps : s;
     }
-    
+
 }
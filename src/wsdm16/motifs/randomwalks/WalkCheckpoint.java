@@ -0,0 +1,157 @@
+package wsdm16.motifs.randomwalks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+
+/**
+ * The state of a {@link RandomWalkSampler} run taking samples with multiple walkers, saved between two samples so
+ * that the run can be resumed: the parameters of the run, the index of the next sample, the step counters, the
+ * length of the output files, and for each walker its random generator and partial histogram of graphlets.
+ *
+ * The file holds a magic number and then the fields in order, as written by a {@link DataOutputStream}; random
+ * generators are stored in their serialized form. It is written to a temporary file, which then replaces the
+ * previous checkpoint with an atomic rename, hence a crash never leaves a partial checkpoint behind.
+ *
+ * WalkCheckpoint.java - created on 19 ott 2026
+ * @author anon
+ */
+public class WalkCheckpoint {
+	private static final int MAGIC = 0x47574331; // "GWC1"
+
+	// the parameters of the run, which must match when resuming
+	int k, numSamples, numSteps, samplingInterval, numThreads;
+	boolean smart;
+	String basename;
+
+	int nextSample; // all the samples before this one have been taken and written
+	long virtualSteps, realSteps;
+	long sampleFileLength = -1, finalStateFileLength = -1; // -1 if there is no such file
+
+	RandomGenerator[] random;
+	Long2LongOpenHashMap[] hashCount;
+	long[] cacheHits, cacheMisses;
+
+	/**
+	 * Writes the checkpoint to a temporary file, and then renames it to the given one.
+	 *
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void write(String filename) throws IOException {
+		Path target = Paths.get(filename);
+		Path temp = Paths.get(filename + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+			out.writeInt(MAGIC);
+			out.writeUTF(basename);
+			out.writeInt(k);
+			out.writeInt(numSamples);
+			out.writeInt(numSteps);
+			out.writeInt(samplingInterval);
+			out.writeInt(numThreads);
+			out.writeBoolean(smart);
+			out.writeInt(nextSample);
+			out.writeLong(virtualSteps);
+			out.writeLong(realSteps);
+			out.writeLong(sampleFileLength);
+			out.writeLong(finalStateFileLength);
+			for (int w = 0; w < numThreads; w++) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+					oos.writeObject(random[w]);
+				}
+				out.writeInt(bytes.size());
+				bytes.writeTo(out);
+				out.writeInt(hashCount[w].size());
+				for (Long2LongMap.Entry e : hashCount[w].long2LongEntrySet()) {
+					out.writeLong(e.getLongKey());
+					out.writeLong(e.getLongValue());
+				}
+				out.writeLong(cacheHits[w]);
+				out.writeLong(cacheMisses[w]);
+			}
+		}
+		Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a checkpoint.
+	 *
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 *             if the file cannot be read or is not a checkpoint
+	 */
+	public static WalkCheckpoint read(String filename) throws IOException {
+		WalkCheckpoint c = new WalkCheckpoint();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(filename + " is not a checkpoint");
+			c.basename = in.readUTF();
+			c.k = in.readInt();
+			c.numSamples = in.readInt();
+			c.numSteps = in.readInt();
+			c.samplingInterval = in.readInt();
+			c.numThreads = in.readInt();
+			c.smart = in.readBoolean();
+			c.nextSample = in.readInt();
+			c.virtualSteps = in.readLong();
+			c.realSteps = in.readLong();
+			c.sampleFileLength = in.readLong();
+			c.finalStateFileLength = in.readLong();
+			c.random = new RandomGenerator[c.numThreads];
+			c.hashCount = new Long2LongOpenHashMap[c.numThreads];
+			c.cacheHits = new long[c.numThreads];
+			c.cacheMisses = new long[c.numThreads];
+			for (int w = 0; w < c.numThreads; w++) {
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+					c.random[w] = (RandomGenerator) ois.readObject();
+				} catch (ClassNotFoundException e) {
+					throw new IOException(e);
+				}
+				int size = in.readInt();
+				c.hashCount[w] = new Long2LongOpenHashMap(size);
+				for (int i = 0; i < size; i++)
+					c.hashCount[w].put(in.readLong(), in.readLong());
+				c.cacheHits[w] = in.readLong();
+				c.cacheMisses[w] = in.readLong();
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Checks that a run with the given parameters can be resumed from this checkpoint.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a parameter differs from that of the checkpointed run
+	 */
+	public void checkParameters(String basename, int k, int numSamples, int numSteps, int samplingInterval,
+			int numThreads, boolean smart) {
+		if (!this.basename.equals(basename) || this.k != k || this.numSamples != numSamples
+				|| this.numSteps != numSteps || this.samplingInterval != samplingInterval
+				|| this.numThreads != numThreads || this.smart != smart)
+			throw new IllegalArgumentException("The checkpoint was taken by a run with different parameters: -b "
+					+ this.basename + " -k " + this.k + " -n " + this.numSamples + " -t " + this.numSteps + " -i "
+					+ this.samplingInterval + " -p " + this.numThreads + (this.smart ? " -m" : ""));
+	}
+}
@@ -0,0 +1,282 @@
+package wsdm16.motifs.randomwalks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Reads a walk history written by {@link WalkHistoryWriter}, by memory-mapping the file. Any state can be
+ * accessed directly. Fixed records are read in place; for compressed records, the block holding the last accessed
+ * state is kept decoded, hence scanning the states in order decodes each block only once. Asking for degrees only
+ * (e.g. to skip over self-loops) does not decode the nodes.
+ *
+ * The mappings can be shared by multiple threads through {@link #copy()}, while each copy has its own decoded
+ * block.
+ *
+ * WalkHistoryReader.java - created on 19 ott 2026
+ * @author anon
+ */
+public class WalkHistoryReader {
+	/** Default maximum size of a single mapping; blocks never straddle two mappings */
+	public static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+	private final int k;
+	private final boolean compressed;
+	private final int blockSize;
+	private final long numStates;
+	private final int maxDegree;
+	private final long numBlocks;
+	private final long dataEnd; // the offset right after the last record
+	private final long[] blockOffsets; // for compressed files only
+	private final MappedByteBuffer[] segments;
+	private final long[] segmentOffset; // offset in the file of each segment
+	private final long[] segmentFirstBlock; // first block in each segment
+
+	private int lastSegment = 0; // the segment of the last accessed state
+	private long degreesBlock = -1, nodesBlock = -1; // the compressed blocks whose degrees or nodes are decoded
+	private final int[] blockNodes;
+	private final int[] blockDegrees;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param filename
+	 *            a file written by {@link WalkHistoryWriter}
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a complete walk history
+	 */
+	public WalkHistoryReader(String filename) throws IOException {
+		this(filename, MAX_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param filename
+	 *            a file written by {@link WalkHistoryWriter}
+	 * @param maxSegmentSize
+	 *            the maximum size in bytes of a single mapping (a larger block gets a mapping of its own)
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a complete walk history
+	 */
+	public WalkHistoryReader(String filename, long maxSegmentSize) throws IOException {
+		if (maxSegmentSize <= 0 || maxSegmentSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid segment size: " + maxSegmentSize);
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < WalkHistoryWriter.HEADER_SIZE + WalkHistoryWriter.TRAILER_SIZE)
+				throw new IOException(filename + " is not a walk history");
+			ByteBuffer header = read(channel, 0, WalkHistoryWriter.HEADER_SIZE);
+			ByteBuffer trailer = read(channel, size - WalkHistoryWriter.TRAILER_SIZE, WalkHistoryWriter.TRAILER_SIZE);
+			if (header.getInt() != WalkHistoryWriter.MAGIC || trailer.getInt(WalkHistoryWriter.TRAILER_SIZE - Integer.BYTES) != WalkHistoryWriter.MAGIC)
+				throw new IOException(filename + " is not a walk history, or it is truncated");
+			k = header.getInt();
+			compressed = (header.getInt() & WalkHistoryWriter.COMPRESSED) != 0;
+			blockSize = header.getInt();
+			numStates = trailer.getLong();
+			dataEnd = trailer.getLong();
+			maxDegree = trailer.getInt();
+			numBlocks = (numStates + blockSize - 1) / blockSize;
+
+			if (compressed) {
+				if (numBlocks > Integer.MAX_VALUE)
+					throw new IOException(filename + " has too many blocks");
+				blockOffsets = new long[(int) numBlocks];
+				ByteBuffer index = read(channel, dataEnd, (int) numBlocks * Long.BYTES);
+				for (int b = 0; b < numBlocks; b++)
+					blockOffsets[b] = index.getLong();
+			} else
+				blockOffsets = null;
+
+			// map groups of whole blocks
+			List<MappedByteBuffer> mapped = new ArrayList<>();
+			LongArrayList offsets = new LongArrayList(), firstBlocks = new LongArrayList();
+			long b = 0;
+			while (b < numBlocks) {
+				long start = blockOffset(b), end = blockOffset(b + 1);
+				long first = b;
+				while (b + 1 < numBlocks && blockOffset(b + 2) - start <= maxSegmentSize)
+					end = blockOffset(++b + 1);
+				b++;
+				mapped.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+				offsets.add(start);
+				firstBlocks.add(first);
+			}
+			segments = mapped.toArray(new MappedByteBuffer[mapped.size()]);
+			segmentOffset = offsets.toLongArray();
+			segmentFirstBlock = firstBlocks.toLongArray();
+		}
+		blockNodes = compressed ? new int[blockSize * k] : null;
+		blockDegrees = compressed ? new int[blockSize] : null;
+	}
+
+	private WalkHistoryReader(WalkHistoryReader copy) {
+		k = copy.k;
+		compressed = copy.compressed;
+		blockSize = copy.blockSize;
+		numStates = copy.numStates;
+		maxDegree = copy.maxDegree;
+		numBlocks = copy.numBlocks;
+		dataEnd = copy.dataEnd;
+		blockOffsets = copy.blockOffsets;
+		segments = copy.segments;
+		segmentOffset = copy.segmentOffset;
+		segmentFirstBlock = copy.segmentFirstBlock;
+		blockNodes = compressed ? new int[blockSize * k] : null;
+		blockDegrees = compressed ? new int[blockSize] : null;
+	}
+
+	/**
+	 * Returns a reader of the same history sharing the mappings of this one, which can be used by another thread.
+	 *
+	 * @return
+	 */
+	public WalkHistoryReader copy() {
+		return new WalkHistoryReader(this);
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException("Unexpected end of file");
+		buffer.flip();
+		return buffer;
+	}
+
+	/** The offset of the first record of block b, or of the end of the records if b is the number of blocks. */
+	private long blockOffset(long b) {
+		if (b >= numBlocks)
+			return dataEnd;
+		if (compressed)
+			return blockOffsets[(int) b];
+		return WalkHistoryWriter.HEADER_SIZE + b * blockSize * (long) (k + 1) * Integer.BYTES;
+	}
+
+	/** The segment holding block b. */
+	private int segment(long b) {
+		long next = lastSegment + 1 < segments.length ? segmentFirstBlock[lastSegment + 1] : Long.MAX_VALUE;
+		if (b >= segmentFirstBlock[lastSegment] && b < next)
+			return lastSegment;
+		int s = Arrays.binarySearch(segmentFirstBlock, b);
+		return lastSegment = s < 0 ? -s - 2 : s;
+	}
+
+	/** The position of the i-th fixed record in its segment. */
+	private int fixedPosition(long i) {
+		long b = i / blockSize;
+		int s = segment(b);
+		return (int) (blockOffset(b) - segmentOffset[s] + (i % blockSize) * (k + 1) * Integer.BYTES);
+	}
+
+	private void check(long i) {
+		if (i < 0 || i >= numStates)
+			throw new IndexOutOfBoundsException("State " + i + " is out of range (" + numStates + " states)");
+	}
+
+	/**
+	 * Decodes the compressed block holding state i, unless it is already decoded. The nodes are decoded only if
+	 * requested, otherwise their bytes are just skipped.
+	 */
+	private void decode(long i, boolean withNodes) {
+		long b = i / blockSize;
+		if (b == nodesBlock || b == degreesBlock && !withNodes)
+			return;
+		int s = segment(b);
+		MappedByteBuffer segment = segments[s];
+		int pos = (int) (blockOffset(b) - segmentOffset[s]);
+		int count = (int) Math.min(blockSize, numStates - b * blockSize);
+		for (int j = 0; j < count; j++) {
+			// the degree, then the first node and the gaps between nodes, all as variable-length integers
+			for (int h = -1; h < k; h++) {
+				if (h >= 0 && !withNodes) {
+					while (segment.get(pos++) < 0);
+					continue;
+				}
+				int x = 0, shift = 0;
+				byte y;
+				do {
+					y = segment.get(pos++);
+					x |= (y & 0x7F) << shift;
+					shift += 7;
+				} while (y < 0);
+				if (h == -1)
+					blockDegrees[j] = x;
+				else
+					blockNodes[j * k + h] = h == 0 ? x : blockNodes[j * k + h - 1] + x;
+			}
+		}
+		degreesBlock = b;
+		nodesBlock = withNodes ? b : -1;
+	}
+
+	/**
+	 * Returns the graphlet size.
+	 *
+	 * @return
+	 */
+	public int k() {
+		return k;
+	}
+
+	/**
+	 * Returns the number of states in the history.
+	 *
+	 * @return
+	 */
+	public long size() {
+		return numStates;
+	}
+
+	/**
+	 * Returns the maximum degree of a state in the history.
+	 *
+	 * @return
+	 */
+	public int maxDegree() {
+		return maxDegree;
+	}
+
+	/**
+	 * Returns the degree of the i-th state.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public int degree(long i) {
+		check(i);
+		if (!compressed) {
+			int pos = fixedPosition(i); // selects the segment
+			return segments[lastSegment].getInt(pos + k * Integer.BYTES);
+		}
+		decode(i, false);
+		return blockDegrees[(int) (i % blockSize)];
+	}
+
+	/**
+	 * Copies the nodes of the i-th state, sorted in increasing order.
+	 *
+	 * @param i
+	 * @param nodes
+	 *            an array of size at least k
+	 */
+	public void state(long i, int[] nodes) {
+		check(i);
+		if (!compressed) {
+			int pos = fixedPosition(i);
+			for (int h = 0; h < k; h++, pos += Integer.BYTES)
+				nodes[h] = segments[lastSegment].getInt(pos);
+			return;
+		}
+		decode(i, true);
+		System.arraycopy(blockNodes, (int) (i % blockSize) * k, nodes, 0, k);
+	}
+}
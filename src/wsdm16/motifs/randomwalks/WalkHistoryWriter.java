@@ -0,0 +1,152 @@
+package wsdm16.motifs.randomwalks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+/**
+ * Writes the history of a graphlet walk, i.e. the sequence of visited graphlets along with their degree in the
+ * walk, in a compact binary format that can be read back with {@link WalkHistoryReader}.
+ *
+ * The file starts with a header of four ints: a magic number, the graphlet size k, the flags and the number of
+ * states per block. Then comes one record per state, holding the nodes of the graphlet sorted in increasing
+ * order and the state degree. Records are either fixed, i.e. k+1 ints, or compressed: the degree, the first node
+ * and the gaps between consecutive nodes, all as variable-length integers (7 bits per byte). Records are grouped
+ * in blocks; compressed files end with the offset of each block, so that any state can be reached without
+ * decoding the previous blocks. Finally, a trailer holds the number of states, the offset of the block index,
+ * the maximum degree and the magic number again.
+ *
+ * WalkHistoryWriter.java - created on 19 ott 2026
+ * @author anon
+ */
+public class WalkHistoryWriter implements Closeable {
+	public static final int MAGIC = 0x47574831; // "GWH1"
+	/** Flag for compressed records */
+	public static final int COMPRESSED = 1;
+	static final int HEADER_SIZE = 4 * Integer.BYTES;
+	static final int TRAILER_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int k;
+	private final boolean compressed;
+	private final int blockSize;
+	private final int maxRecordSize;
+	private final int[] sorted;
+	private final LongArrayList blockOffsets = new LongArrayList();
+	private long flushed = 0; // bytes written to the channel so far
+	private long numStates = 0;
+	private int maxDegree = 0;
+
+	public WalkHistoryWriter(String filename, int k, boolean compressed) throws IOException {
+		this(filename, k, compressed, 1024);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param filename
+	 *            the file to write; it is overwritten if it exists
+	 * @param k
+	 *            the size of the graphlets
+	 * @param compressed
+	 *            whether records are compressed
+	 * @param blockSize
+	 *            the number of states in each block
+	 * @throws IOException
+	 */
+	public WalkHistoryWriter(String filename, int k, boolean compressed, int blockSize) throws IOException {
+		this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.buffer = ByteBuffer.allocateDirect(1 << 20);
+		this.k = k;
+		this.compressed = compressed;
+		this.blockSize = blockSize;
+		this.maxRecordSize = compressed ? 5 * (k + 1) : 4 * (k + 1);
+		this.sorted = new int[k];
+		buffer.putInt(MAGIC).putInt(k).putInt(compressed ? COMPRESSED : 0).putInt(blockSize);
+	}
+
+	/**
+	 * Appends a state to the history.
+	 *
+	 * @param nodes
+	 *            the k nodes of the graphlet, in any order
+	 * @param degree
+	 *            the degree of the state
+	 * @throws IOException
+	 */
+	public void write(int[] nodes, int degree) throws IOException {
+		if (nodes.length != k)
+			throw new IllegalArgumentException("Expected " + k + " nodes, got " + nodes.length);
+		if (buffer.remaining() < maxRecordSize)
+			flush();
+		if (numStates % blockSize == 0)
+			blockOffsets.add(flushed + buffer.position());
+		System.arraycopy(nodes, 0, sorted, 0, k);
+		Arrays.sort(sorted);
+		if (compressed) {
+			writeVarInt(degree);
+			int previous = 0;
+			for (int u : sorted) {
+				writeVarInt(u - previous);
+				previous = u;
+			}
+		} else {
+			for (int u : sorted)
+				buffer.putInt(u);
+			buffer.putInt(degree);
+		}
+		numStates++;
+		maxDegree = Math.max(maxDegree, degree);
+	}
+
+	private void writeVarInt(int x) {
+		while ((x & ~0x7F) != 0) {
+			buffer.put((byte) ((x & 0x7F) | 0x80));
+			x >>>= 7;
+		}
+		buffer.put((byte) x);
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			flushed += channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Return the number of states written so far.
+	 *
+	 * @return
+	 */
+	public long size() {
+		return numStates;
+	}
+
+	/**
+	 * Writes the block index and the trailer, and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		long indexOffset = flushed + buffer.position();
+		if (compressed)
+			for (int b = 0; b < blockOffsets.size(); b++) {
+				if (buffer.remaining() < Long.BYTES)
+					flush();
+				buffer.putLong(blockOffsets.getLong(b));
+			}
+		if (buffer.remaining() < TRAILER_SIZE)
+			flush();
+		buffer.putLong(numStates).putLong(indexOffset).putInt(maxDegree).putInt(MAGIC);
+		flush();
+		channel.close();
+	}
+}
@@ -0,0 +1,64 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.Transform;
+import wsdm16.motifs.BenchmarkRunner;
+import wsdm16.motifs.BenchmarkRunner.Sampler;
+import wsdm16.motifs.BenchmarkRunner.Trial;
+
+public class TestBenchmarkRunner {
+
+	@Test
+	public void test() throws Exception {
+		ImmutableGraph G = new ArrayListMutableGraph(Transform
+				.removeSelfLoops(Transform.symmetrize(GraphGenerator.erdosRenyiGraph(300, 1500)).immutableView()))
+						.immutableView();
+		int k = 4, numSamples = 2000;
+		BenchmarkRunner runner = new BenchmarkRunner(G, k, numSamples, 50, false, 1);
+		Long2LongOpenHashMap exact = runner.exactCounts();
+		List<Trial> trials = new ArrayList<>();
+		for (Sampler sampler : Sampler.values()) {
+			Trial t = runner.run(sampler, 0, 42);
+			BenchmarkRunner.compare(t, exact);
+			trials.add(t);
+			assertTrue(t.peakHeap > 0);
+			assertTrue(t.samplesPerSecond > 0);
+			assertTrue(sampler.toString(), t.tvDistance < 0.1);
+			if (sampler == Sampler.EXHAUSTIVE) {
+				assertEquals(0, t.tvDistance, 1E-12);
+				assertEquals(2, t.phases.size());
+			} else
+				assertEquals(numSamples, t.samples);
+		}
+		assertEquals(4, trials.get(Sampler.CC.ordinal()).phases.size());
+
+		// random walks with the same seed take the same samples
+		Trial a = runner.run(Sampler.RW, 0, 7), b = runner.run(Sampler.RW, 1, 7);
+		BenchmarkRunner.compare(a, exact);
+		BenchmarkRunner.compare(b, exact);
+		assertEquals(a.tvDistance, b.tvDistance, 0);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		runner.writeCSV(new PrintStream(bytes, true), "er", trials);
+		String[] lines = bytes.toString().split("\n");
+		assertEquals(trials.size() + 1, lines.length);
+		for (String line : lines)
+			assertEquals(lines[0].split(",").length, line.split(",", -1).length);
+		bytes.reset();
+		runner.writeJSON(new PrintStream(bytes, true), "er", trials);
+		assertTrue(bytes.toString().contains("\"sampler\": \"exhaustive\""));
+	}
+}
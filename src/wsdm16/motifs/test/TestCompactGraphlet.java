@@ -0,0 +1,110 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.BreadthFirstSearch;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.Transform;
+import wsdm16.motifs.BaseGraphIsomorphisms;
+import wsdm16.motifs.CompactGraphlet;
+import wsdm16.motifs.Graphlet;
+import wsdm16.motifs.LazyGraphIsomorphisms;
+import wsdm16.motifs.NeighborhoodIndex;
+
+public class TestCompactGraphlet {
+
+	@Test
+	public void testAgainstGraphlet()
+	{
+		int n = 200;
+		ImmutableGraph G = Transform.removeSelfLoops(
+				Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 3 * n)).immutableView());
+		checkAgainstGraphlet(G);
+		// same, on an index where most nodes are hubs
+		checkAgainstGraphlet(new NeighborhoodIndex(G, 1, 4));
+	}
+
+	private void checkAgainstGraphlet(ImmutableGraph G)
+	{
+		int n = G.numNodes(), k = 5;
+		Random r = new Random(0);
+		BaseGraphIsomorphisms isomorphisms = new LazyGraphIsomorphisms(k);
+		int[] buffer = new int[k * n];
+
+		for (int t = 0; t < 500; t++) {
+			Set<Integer> nodes = new HashSet<>(new BreadthFirstSearch(G, r.nextInt(n)).setMaxNodes(k).visit()
+					.getDistanceMap().keySet());
+			if (nodes.size() < k)
+				continue;
+			Graphlet H = new Graphlet(G, nodes);
+			CompactGraphlet C = new CompactGraphlet(G, nodes);
+			assertTrue(C.isConnected());
+			assertEquals(isomorphisms.long_signature(H.asGraph()), isomorphisms.long_signature(C.adjacencyMask()));
+			assertEquals(isomorphisms.long_signature(H.asGraph()), isomorphisms.long_signature(C.asGraph()));
+
+			Set<Integer> removables = new HashSet<>();
+			long mask = C.removableNodes();
+			for (int i = 0; i < k; i++)
+				if ((mask & (1L << i)) != 0)
+					removables.add(C.getNode(i));
+			assertEquals(H.removableNodes(), removables);
+
+			Map<Integer, Set<Integer>> switchables = H.switchableNodes();
+			for (int i = 0; i < k; i++) {
+				int count = C.switchableNodes(i, buffer);
+				Set<Integer> expected = new HashSet<>();
+				if (switchables.containsKey(C.getNode(i)))
+					expected = switchables.get(C.getNode(i));
+				else // not removable: check by brute force
+					for (int v : H.neighbors()) {
+						Graphlet H1 = new Graphlet(H);
+						H1.removeNode(C.getNode(i));
+						H1.addNode(v);
+						if (H1.isConnected())
+							expected.add(v);
+					}
+				Set<Integer> actual = new HashSet<>();
+				for (int j = 0; j < count; j++)
+					actual.add(buffer[j]);
+				assertEquals(expected, actual);
+			}
+
+			// switch a node and compare with a graphlet built from scratch
+			int i = r.nextInt(k);
+			int count = C.switchableNodes(i, buffer);
+			if (count > 0) {
+				C.replaceNode(i, buffer[r.nextInt(count)]);
+				CompactGraphlet D = new CompactGraphlet(G, C.getNodes());
+				assertTrue(C.isConnected());
+				assertEquals(D.adjacencyMask(), C.adjacencyMask());
+				for (int j = 0; j < k; j++)
+					assertEquals(D.neighborMask(j), C.neighborMask(j));
+			}
+		}
+	}
+
+	@Test
+	public void testDisconnected()
+	{
+		ImmutableGraph G = Transform.symmetrize(GraphGenerator.circleGraph(10)).immutableView();
+		CompactGraphlet C = new CompactGraphlet(G, new int[] { 5, 0, 1, 3 });
+		assertArrayEquals(new int[] { 0, 1, 3, 5 }, C.getNodes());
+		assertTrue(!C.isConnected());
+		C.replaceNode(C.indexOf(5), 2);
+		assertTrue(C.isConnected());
+		assertEquals(Arrays.toString(new int[] { 0, 1, 2, 3 }), Arrays.toString(C.getNodes()));
+		// a path: only the endpoints are removable
+		assertEquals((1L << 0) | (1L << 3), C.removableNodes());
+	}
+}
@@ -0,0 +1,71 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import wsdm16.motifs.randomwalks.ConvergenceMonitor;
+
+public class TestConvergenceMonitor {
+
+	@Test
+	public void testIndependent()
+	{
+		Well19937c random = new Well19937c(0);
+		ConvergenceMonitor monitor = new ConvergenceMonitor(4, 16);
+		for (int i = 0; i < 10000; i++)
+			for (int c = 0; c < 4; c++)
+				monitor.add(c, random.nextInt(3));
+		assertEquals(40000, monitor.size());
+		assertEquals(3, monitor.histogram().size());
+		assertEquals(1, monitor.autocorrelationTime(), 0.1);
+		assertEquals(1, monitor.potentialScaleReduction(), 0.01);
+		assertTrue(monitor.effectiveSampleSize() > 36000);
+	}
+
+	@Test
+	public void testSticky()
+	{
+		// each value is repeated 8 times on average
+		Well19937c random = new Well19937c(0);
+		ConvergenceMonitor monitor = new ConvergenceMonitor(4, 64);
+		long[] value = new long[4];
+		for (int i = 0; i < 10000; i++)
+			for (int c = 0; c < 4; c++) {
+				if (random.nextDouble() < 1 / 8.)
+					value[c] = random.nextInt(2);
+				monitor.add(c, value[c]);
+			}
+		// rho_L = (7/8)^L, hence tau = 1 + 2 * 7 = 15
+		assertEquals(15, monitor.autocorrelationTime(), 2);
+		assertEquals(0.875 * 0.875, monitor.autocorrelation(2), 0.05);
+		assertEquals(monitor.size() / monitor.autocorrelationTime(), monitor.effectiveSampleSize(), 1e-9);
+
+		monitor.reset();
+		assertEquals(0, monitor.size());
+		assertEquals(0, monitor.histogram().size());
+	}
+
+	@Test
+	public void testNotMixed()
+	{
+		Well19937c random = new Well19937c(0);
+		ConvergenceMonitor monitor = new ConvergenceMonitor(2, 16);
+		assertTrue(Double.isNaN(monitor.potentialScaleReduction()));
+		// each chain is stuck on its own value
+		for (int i = 0; i < 100; i++) {
+			monitor.add(0, 1);
+			monitor.add(1, 2);
+		}
+		assertEquals(Double.POSITIVE_INFINITY, monitor.potentialScaleReduction(), 0);
+		// the chains visit the same values in different proportions
+		monitor.reset();
+		for (int i = 0; i < 1000; i++) {
+			monitor.add(0, random.nextDouble() < 0.8 ? 1 : 2);
+			monitor.add(1, random.nextDouble() < 0.2 ? 1 : 2);
+		}
+		assertTrue(monitor.potentialScaleReduction() > 1.1);
+	}
+}
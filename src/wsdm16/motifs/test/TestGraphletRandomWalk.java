@@ -4,21 +4,33 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.math3.distribution.GeometricDistribution;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
 import org.junit.Test;
 import org.junit.runners.Parameterized.Parameters;
 
 import it.unimi.dsi.webgraph.ArrayListMutableGraph;
 import it.unimi.dsi.webgraph.ImmutableGraph;
 import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.Transform;
+import wsdm16.motifs.CompactGraphlet;
 import wsdm16.motifs.Graphlet;
+import wsdm16.motifs.NeighborhoodIndex;
 import wsdm16.motifs.randomwalks.FullGraphletRandomWalk;
+import wsdm16.motifs.randomwalks.FullGraphletRandomWalk.InvalidStartingNodeException;
+import wsdm16.motifs.randomwalks.GeometricSampler;
 import wsdm16.motifs.randomwalks.GraphletRandomWalk;
 import wsdm16.motifs.randomwalks.SimpleGraphletRandomWalk;
+import wsdm16.motifs.randomwalks.SmartGraphletRandomWalk;
 
 public class TestGraphletRandomWalk {
     
@@ -96,4 +108,203 @@ public class TestGraphletRandomWalk {
 	assertTrue(H.isConnected());
     }
     
+    /**
+     *  Check the switchables maintained by the walk against those computed from scratch, at every step
+     */
+    @Test
+    public void testSwitchables() throws InvalidStartingNodeException {
+	int n = 200, k = 5;
+	ImmutableGraph G = Transform.removeSelfLoops(
+		Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 2*n)).immutableView());
+	int[] buffer = new int[k*n];
+
+	for (ImmutableGraph host : new ImmutableGraph[] { G, new NeighborhoodIndex(G) }) {
+	    FullGraphletRandomWalk walk = null;
+	    for (int u = 0; walk == null; u++)
+		try {
+		    walk = new FullGraphletRandomWalk(host, k, u, -1, new Well19937c(0));
+		} catch (InvalidStartingNodeException e) {
+		}
+	    for (int step = 0; step < 2000; step++) {
+		Graphlet H = walk.getGraphlet();
+		assertEquals(k, H.size());
+		assertTrue(H.isConnected());
+		CompactGraphlet C = new CompactGraphlet(G, H.getNodes());
+		int expected = 0;
+		for (int i = 0; i < k; i++)
+		    expected += C.switchableNodes(i, buffer);
+		walk.updateSwitchables();
+		assertEquals(expected, walk.stateDegree());
+		walk.stepReally();
+	    }
+	}
+    }
+
+    /**
+     *  Check the weights of the smart walk against those computed from scratch on the graphlet
+     */
+    @Test
+    public void testSmartWeights() throws InvalidStartingNodeException {
+	int n = 200, k = 4;
+	ImmutableGraph G = Transform.removeSelfLoops(
+		Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 2*n)).immutableView());
+
+	SmartGraphletRandomWalk walk = null;
+	for (int u = 0; walk == null; u++)
+	    try {
+		// the weights of the transitions out of each slot add up to at most k-1, hence maxDeg=1 is an upper bound
+		walk = new SmartGraphletRandomWalk(new NeighborhoodIndex(G), k, u, 1, new Well19937c(0));
+	    } catch (InvalidStartingNodeException e) {
+	    }
+	for (int step = 0; step < 500; step++) {
+	    Graphlet H = walk.getGraphlet();
+	    assertTrue(H.isConnected());
+	    // the weight of replacing u with w is the minimum of 1/c over the nodes v adjacent to w in H-u,
+	    // where c is the number of nodes adjacent to v that can replace u
+	    double expected = 0;
+	    for (int u : H.getNodes()) {
+		Graphlet H1 = new Graphlet(H);
+		H1.removeNode(u);
+		Map<Integer, Double> weights = new HashMap<>();
+		for (int v : new ArrayList<>(H1.getNodes())) {
+		    List<Integer> keepConn = new ArrayList<>();
+		    for (int w : G.successorArray(v))
+			if (!H.getNodes().contains(w)) {
+			    H1.addNode(w);
+			    if (H1.isConnected())
+				keepConn.add(w);
+			    H1.removeNode(w);
+			}
+		    for (int w : keepConn)
+			weights.merge(w, 1.0 / keepConn.size(), Math::min);
+		}
+		for (double w : weights.values())
+		    expected += w;
+	    }
+	    walk.updateSwitchables();
+	    assertEquals(expected, walk.stateWeight(), 1e-4 * expected);
+	    walk.walk(10);
+	}
+	assertTrue(walk.realSteps() > 100);
+    }
+
+    /**
+     *  Check the inverse-CDF geometric sampler against the distribution of commons-math, with a chi-square test
+     */
+    @Test
+    public void testGeometricSampler() {
+	Well19937c random = new Well19937c(0);
+	for (double p : new double[] { 0.5, 0.1, 1e-3 }) {
+	    GeometricDistribution geometric = new GeometricDistribution(p);
+	    // up to 20 bins of about equal probability, the last one being the tail
+	    List<Integer> upper = new ArrayList<>();
+	    for (int b = 1; b < 20; b++) {
+		int x = geometric.inverseCumulativeProbability(b / 20.0);
+		if (upper.isEmpty() || x > upper.get(upper.size() - 1))
+		    upper.add(x);
+	    }
+	    upper.add(Integer.MAX_VALUE);
+	    int bins = upper.size();
+	    double[] expected = new double[bins];
+	    for (int b = 0; b < bins; b++)
+		expected[b] = (b == bins - 1 ? 1 : geometric.cumulativeProbability(upper.get(b)))
+			- (b == 0 ? 0 : geometric.cumulativeProbability(upper.get(b - 1)));
+	    long[] observed = new long[bins];
+	    for (int i = 0; i < 100000; i++) {
+		int x = GeometricSampler.sample(random, p);
+		int b = 0;
+		while (x > upper.get(b))
+		    b++;
+		observed[b]++;
+	    }
+	    assertTrue("p=" + p, new ChiSquareTest().chiSquareTest(expected, observed) > 1e-3);
+	}
+	assertEquals(0, GeometricSampler.sample(random, 1));
+	assertEquals(Integer.MAX_VALUE, GeometricSampler.sample(random, 0));
+    }
+
+    /** Small connected test graphs: a circle with random chords, and a star */
+    private static ImmutableGraph[] smallGraphs() {
+	ImmutableGraph circle = Transform.removeSelfLoops(Transform.symmetrize(
+		Transform.merge(GraphGenerator.circleGraph(12), GraphGenerator.erdosRenyiGraph(12, 8)).immutableView()).immutableView());
+	ImmutableGraph star = Transform.removeSelfLoops(
+		Transform.symmetrize(GraphGenerator.starGraph(10)).immutableView());
+	return new ImmutableGraph[] { circle, star };
+    }
+
+    /**
+     *  Check that the bound on the degree of the graphlets holds, and is tighter than the old one
+     */
+    @Test
+    public void testDegreeBound() throws InvalidStartingNodeException {
+	int k = 4;
+	ImmutableGraph ER = Transform.removeSelfLoops(
+		Transform.symmetrize(GraphGenerator.erdosRenyiGraph(200, 400)).immutableView());
+	ImmutableGraph star = Transform.removeSelfLoops(
+		Transform.symmetrize(GraphGenerator.starGraph(50)).immutableView());
+	for (ImmutableGraph G : new ImmutableGraph[] { ER, star, smallGraphs()[0] }) {
+	    FullGraphletRandomWalk walk = null;
+	    for (int u = 0; walk == null; u++)
+		try {
+		    walk = new FullGraphletRandomWalk(G, k, u, -1, new Well19937c(0));
+		} catch (InvalidStartingNodeException e) {
+		}
+	    int maxDegree = 0;
+	    for (int u = 0; u < G.numNodes(); u++)
+		maxDegree = Math.max(maxDegree, G.outdegree(u));
+	    double bound = FullGraphletRandomWalk.degreeBound(G, k);
+	    assertTrue(bound <= (k - 1) * k * maxDegree);
+	    for (int step = 0; step < 2000; step++) {
+		walk.updateSwitchables();
+		assertTrue(walk.stateDegree() <= bound);
+		walk.stepReally();
+	    }
+	}
+	// one hub: the bound is k*(n-k) rather than (k-1)*k*(n-1)
+	assertEquals(k * (50 - k), FullGraphletRandomWalk.degreeBound(star, k), 0);
+    }
+
+    /**
+     *  Check with a chi-square test that the walk with self-loops is uniform over the graphlets, with both the
+     *  tighter bound on the degree and the old one
+     */
+    @Test
+    public void testUniformity() throws InvalidStartingNodeException {
+	int k = 3, numSamples = 20000, interval = 200;
+	for (ImmutableGraph G : smallGraphs()) {
+	    // all the connected graphlets
+	    Map<Set<Integer>, Integer> graphlets = new HashMap<>();
+	    int n = G.numNodes();
+	    for (int a = 0; a < n; a++)
+		for (int b = a + 1; b < n; b++)
+		    for (int c = b + 1; c < n; c++) {
+			Graphlet H = new Graphlet(G, Arrays.asList(a, b, c));
+			if (H.isConnected())
+			    graphlets.put(new HashSet<>(H.getNodes()), graphlets.size());
+		    }
+	    int maxDegree = 0;
+	    for (int u = 0; u < n; u++)
+		maxDegree = Math.max(maxDegree, G.outdegree(u));
+
+	    long[] realSteps = new long[2];
+	    for (int tight = 0; tight < 2; tight++) {
+		FullGraphletRandomWalk walk = new FullGraphletRandomWalk(G, k, 0, maxDegree, new Well19937c(tight));
+		if (tight == 1)
+		    walk.setDegreeBound(FullGraphletRandomWalk.degreeBound(G, k));
+		long[] observed = new long[graphlets.size()];
+		walk.walk(10 * interval);
+		for (int i = 0; i < numSamples; i++) {
+		    walk.walk(interval);
+		    observed[graphlets.get(new HashSet<>(walk.getGraphlet().getNodes()))]++;
+		}
+		double[] expected = new double[graphlets.size()];
+		Arrays.fill(expected, 1);
+		assertTrue(new ChiSquareTest().chiSquareTest(expected, observed) > 1e-3);
+		realSteps[tight] = walk.realSteps();
+	    }
+	    // the same number of steps goes through more graphlets
+	    assertTrue(realSteps[1] > realSteps[0]);
+	}
+    }
+
 }
@@ -0,0 +1,89 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.motifs.Graphlet;
+import wsdm16.motifs.NeighborhoodIndex;
+import wsdm16.motifs.randomwalks.GraphletSeeder;
+
+public class TestGraphletSeeder {
+
+	/** A path on nodes 0..9, plus isolated edges (10,11), (12,13), ... */
+	private static ImmutableGraph pathAndEdges(int n)
+	{
+		ArrayListMutableGraph G = new ArrayListMutableGraph(n);
+		for (int u = 0; u < 9; u++) {
+			G.addArc(u, u + 1);
+			G.addArc(u + 1, u);
+		}
+		for (int u = 10; u + 1 < n; u += 2) {
+			G.addArc(u, u + 1);
+			G.addArc(u + 1, u);
+		}
+		return G.immutableView();
+	}
+
+	@Test
+	public void testSeeds()
+	{
+		int n = 100, k = 4;
+		ImmutableGraph G = pathAndEdges(n);
+		for (ImmutableGraph host : new ImmutableGraph[] { G, new NeighborhoodIndex(G) }) {
+			GraphletSeeder seeder = new GraphletSeeder(host, k, 2);
+			// only the nodes of the path can be seeds
+			assertEquals(10, seeder.numEligible());
+			int[] nodes = new int[k];
+			assertEquals(2, seeder.grow(50, nodes));
+			assertEquals(4, seeder.grow(9, nodes));
+			assertArrayEquals(new int[] { 9, 8, 7, 6 }, nodes);
+
+			int count = 1000;
+			int[] seeds = seeder.seeds(count, 3, 42);
+			for (int i = 0; i < count; i++) {
+				List<Integer> graphlet = new ArrayList<>();
+				for (int j = 0; j < k; j++) {
+					assertTrue(seeds[i * k + j] < 10);
+					graphlet.add(seeds[i * k + j]);
+				}
+				Graphlet H = new Graphlet(G, graphlet);
+				assertEquals(k, H.size());
+				assertTrue(H.isConnected());
+			}
+			// the seeds only depend on the seed and the number of threads
+			assertTrue(Arrays.equals(seeds, seeder.seeds(count, 3, 42)));
+
+			seeder.seed(new Well19937c(0), nodes);
+			assertTrue(nodes[0] < 10);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoSeeds()
+	{
+		new GraphletSeeder(pathAndEdges(100), 11, 1).seed(new Well19937c(0), new int[11]);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testNoSeedsInParallel()
+	{
+		new GraphletSeeder(pathAndEdges(100), 11, 1).seeds(10, 2, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManySeeds()
+	{
+		// count * k overflows an int
+		new GraphletSeeder(pathAndEdges(100), 3, 1).seeds(Integer.MAX_VALUE / 2, 2, 0);
+	}
+}
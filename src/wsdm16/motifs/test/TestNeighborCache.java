@@ -0,0 +1,67 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.motifs.NeighborhoodIndex;
+import wsdm16.motifs.randomwalks.FullGraphletRandomWalk;
+import wsdm16.motifs.randomwalks.FullGraphletRandomWalk.InvalidStartingNodeException;
+import wsdm16.motifs.randomwalks.NeighborCache;
+
+public class TestNeighborCache {
+
+	@Test
+	public void testEviction()
+	{
+		ImmutableGraph G = ArrayListMutableGraph.newCompleteGraph(10, false).immutableView();
+		NeighborCache cache = new NeighborCache(G, 3);
+		int[] s0 = cache.successors(0);
+		assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, s0);
+		cache.successors(1);
+		cache.successors(2);
+		// the cache holds as many lists as its capacity
+		assertEquals(3, cache.size());
+		assertSame(s0, cache.successors(0));
+		assertEquals(1, cache.hits());
+		// 1 is now the least recently used
+		cache.successors(3);
+		assertEquals(3, cache.size());
+		assertSame(s0, cache.successors(0));
+		cache.successors(2);
+		cache.successors(1);
+		assertEquals(3, cache.hits());
+		assertEquals(5, cache.misses());
+		assertEquals(3.0 / 8, cache.hitRate(), 1e-9);
+	}
+
+	@Test
+	public void testWalkWithCache() throws InvalidStartingNodeException
+	{
+		// a walk with a tiny cache goes through the same graphlets as one on the index
+		int n = 300, k = 5;
+		ImmutableGraph G = wsdm16.graphutils.Transform.removeSelfLoops(
+				wsdm16.graphutils.Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 3 * n)).immutableView());
+		FullGraphletRandomWalk cached = null, indexed = null;
+		for (int u = 0; cached == null; u++)
+			try {
+				cached = new FullGraphletRandomWalk(G, k, u, -1, new Well19937c(0));
+				indexed = new FullGraphletRandomWalk(new NeighborhoodIndex(G), k, u, -1, new Well19937c(0));
+			} catch (InvalidStartingNodeException e) {
+			}
+		cached.setNeighborCacheSize(2);
+		for (int step = 0; step < 1000; step++) {
+			assertArrayEquals(indexed.getNodes(), cached.getNodes());
+			cached.stepReally();
+			indexed.stepReally();
+		}
+		assertEquals(null, indexed.getNeighborCache());
+		assertEquals(2, cached.getNeighborCache().size());
+	}
+}
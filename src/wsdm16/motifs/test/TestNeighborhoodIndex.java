@@ -0,0 +1,91 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.Transform;
+import wsdm16.motifs.NeighborhoodIndex;
+
+public class TestNeighborhoodIndex {
+
+    @Test
+    public void test() {
+	int n = 2000;
+	// a random graph plus a few hubs
+	ImmutableGraph G = Transform.merge(GraphGenerator.erdosRenyiGraph(n, 5 * n),
+		Transform.merge(GraphGenerator.starGraph(n), GraphGenerator.starGraph(n / 2, true)).immutableView())
+		.immutableView();
+	G = Transform.symmetrize(G).immutableView();
+
+	NeighborhoodIndex I = new NeighborhoodIndex(G, 1, 16);
+	NeighborhoodIndex P = new NeighborhoodIndex(G, 4, 16);
+	assertEquals(G.numNodes(), I.numNodes());
+	assertEquals(G.numArcs(), I.numArcs());
+	for (int u = 0; u < n; u++) {
+	    int[] succ = Arrays.copyOf(G.successorArray(u), G.outdegree(u));
+	    assertArrayEquals(succ, I.successorArray(u));
+	    assertArrayEquals(succ, P.successorArray(u));
+	    assertArrayEquals(succ, Arrays.copyOfRange(I.getSuccessors(), I.getOffset(u), I.getOffset(u) + I.outdegree(u)));
+	}
+
+	Random r = new Random(0);
+	for (int t = 0; t < 100000; t++) {
+	    int u = r.nextInt(n);
+	    int v = r.nextInt(10) == 0 ? 0 : r.nextInt(n);
+	    boolean expected = Arrays.binarySearch(G.successorArray(u), 0, G.outdegree(u), v) >= 0;
+	    assertEquals(expected, I.isArc(u, v));
+	    assertEquals(expected, P.isArc(u, v));
+	    assertEquals(expected, I.areNeighbors(v, u));
+	}
+	for (int u = 0; u < n; u++)
+	    for (int v : I.successorArray(u))
+		assertEquals(true, I.isArc(u, v));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailure() {
+	ImmutableGraph G = Transform.symmetrize(GraphGenerator.erdosRenyiGraph(2000, 4000)).immutableView();
+	// the successors of a node in the range of the last thread cannot be read
+	ImmutableGraph failing = new ImmutableGraph() {
+	    @Override
+	    public int numNodes() {
+		return G.numNodes();
+	    }
+
+	    @Override
+	    public long numArcs() {
+		return G.numArcs();
+	    }
+
+	    @Override
+	    public boolean randomAccess() {
+		return true;
+	    }
+
+	    @Override
+	    public int outdegree(int u) {
+		return G.outdegree(u);
+	    }
+
+	    @Override
+	    public int[] successorArray(int u) {
+		if (u == 1500)
+		    throw new IllegalStateException();
+		return G.successorArray(u);
+	    }
+
+	    @Override
+	    public ImmutableGraph copy() {
+		return this;
+	    }
+	};
+	new NeighborhoodIndex(failing, 2, 16);
+    }
+}
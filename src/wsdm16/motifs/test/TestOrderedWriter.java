@@ -0,0 +1,85 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import wsdm16.motifs.randomwalks.OrderedWriter;
+
+public class TestOrderedWriter {
+
+	@Test
+	public void testConcurrentWriters() throws InterruptedException, IOException
+	{
+		int n = 20000, numThreads = 4;
+		StringWriter out = new StringWriter();
+		// a small bound makes the threads that are ahead wait
+		OrderedWriter writer = new OrderedWriter(out, 3);
+		AtomicInteger next = new AtomicInteger();
+
+		Thread[] threads = new Thread[numThreads];
+		for (int t = 0; t < numThreads; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					for (int i = next.getAndIncrement(); i < n; i = next.getAndIncrement())
+						writer.write(i, i + "\n");
+				} catch (IOException | InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		writer.close();
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < n; i++)
+			expected.append(i).append('\n');
+		assertEquals(expected.toString(), out.toString());
+	}
+
+	@Test
+	public void testAppend() throws InterruptedException, IOException
+	{
+		StringWriter out = new StringWriter();
+		out.write("0\n1\n");
+		// a resumed run goes on from index 2
+		OrderedWriter writer = new OrderedWriter(out, 4, 2);
+		writer.write(3, "3\n");
+		writer.flush();
+		assertEquals("0\n1\n", out.toString());
+		writer.write(2, "2\n");
+		writer.close();
+		assertEquals("0\n1\n2\n3\n", out.toString());
+	}
+
+	@Test
+	public void testAbort() throws InterruptedException, IOException
+	{
+		StringWriter out = new StringWriter();
+		OrderedWriter writer = new OrderedWriter(out, 2);
+		writer.write(1, "1\n");
+		// index 0 never comes: the thread writing index 2 waits until the writer is aborted
+		AtomicInteger failures = new AtomicInteger();
+		Thread waiting = new Thread(() -> {
+			try {
+				writer.write(2, "2\n");
+			} catch (IOException e) {
+				failures.incrementAndGet();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		});
+		waiting.start();
+		writer.abort();
+		waiting.join();
+		assertEquals(1, failures.get());
+		writer.close();
+		assertEquals("", out.toString());
+	}
+}
@@ -0,0 +1,121 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.Transform;
+import wsdm16.motifs.BaseGraphIsomorphisms;
+import wsdm16.motifs.CompactGraphlet;
+import wsdm16.motifs.Graphlet;
+import wsdm16.motifs.LazyGraphIsomorphisms;
+import wsdm16.motifs.NeighborhoodIndex;
+import wsdm16.motifs.ParallelSubgraphEnumerator;
+import wsdm16.motifs.ParallelSubgraphEnumerator.SubgraphConsumer;
+import wsdm16.motifs.SubgraphEnumerator;
+
+public class TestParallelSubgraphEnumerator {
+
+	/** Collects the sorted node sets and the signatures of the enumerated subgraphs */
+	private static class Collector implements SubgraphConsumer
+	{
+		final BaseGraphIsomorphisms isomorphisms;
+		final NeighborhoodIndex G;
+		final Set<IntArrayList> subgraphs = new HashSet<>();
+		final Long2LongOpenHashMap counts = new Long2LongOpenHashMap();
+
+		Collector(NeighborhoodIndex G, BaseGraphIsomorphisms isomorphisms)
+		{
+			this.G = G;
+			this.isomorphisms = isomorphisms;
+		}
+
+		@Override
+		public void accept(int[] nodes, long adjacency)
+		{
+			int[] sorted = nodes.clone();
+			Arrays.sort(sorted);
+			assertTrue(subgraphs.add(IntArrayList.wrap(sorted)));
+			// the adjacency matrix follows the order of the nodes, and must be isomorphic to the induced subgraph
+			assertEquals(isomorphisms.long_signature(new CompactGraphlet(G, sorted).adjacencyMask()),
+					isomorphisms.long_signature(adjacency));
+			counts.addTo(isomorphisms.long_signature(adjacency), 1);
+		}
+	}
+
+	@Test
+	public void testAgainstSubgraphEnumerator()
+	{
+		int n = 60;
+		ImmutableGraph er = Transform.removeSelfLoops(
+				Transform.symmetrize(GraphGenerator.erdosRenyiGraph(n, 3 * n)).immutableView());
+		ImmutableGraph star = Transform.symmetrize(GraphGenerator.starGraph(n)).immutableView();
+		ImmutableGraph clique = ArrayListMutableGraph.newCompleteGraph(12, false).immutableView();
+		ImmutableGraph cycle = Transform.symmetrize(GraphGenerator.circleGraph(n)).immutableView();
+
+		for (ImmutableGraph G : Arrays.asList(er, star, clique, cycle))
+			for (int k = 1; k <= 5; k++)
+				check(G, k);
+	}
+
+	private void check(ImmutableGraph G, int k)
+	{
+		NeighborhoodIndex W = new NeighborhoodIndex(G);
+		BaseGraphIsomorphisms isomorphisms = new LazyGraphIsomorphisms(k);
+
+		Set<IntArrayList> expected = new HashSet<>();
+		Long2LongOpenHashMap expectedCounts = new Long2LongOpenHashMap();
+		SubgraphEnumerator enumerator = new SubgraphEnumerator(G, k);
+		Graphlet H;
+		while ((H = enumerator.nextSubgraph()) != null) {
+			int[] nodes = H.getNodes().stream().mapToInt(Integer::intValue).toArray();
+			Arrays.sort(nodes);
+			expected.add(IntArrayList.wrap(nodes));
+			expectedCounts.addTo(isomorphisms.long_signature(H.asGraph()), 1);
+		}
+
+		// a low hub threshold makes most roots be split among multiple tasks
+		for (int hubThreshold : new int[] { 1000, 2 })
+			for (int numThreads : new int[] { 1, 4 }) {
+				ParallelSubgraphEnumerator parallel = new ParallelSubgraphEnumerator(W, k).setHubThreshold(hubThreshold);
+				List<Collector> collectors = parallel.enumerate(numThreads, () -> new Collector(W, isomorphisms));
+
+				Set<IntArrayList> actual = new HashSet<>();
+				Long2LongOpenHashMap actualCounts = new Long2LongOpenHashMap();
+				long total = 0;
+				for (Collector c : collectors) {
+					total += c.subgraphs.size();
+					actual.addAll(c.subgraphs);
+					for (Long2LongOpenHashMap.Entry e : c.counts.long2LongEntrySet())
+						actualCounts.addTo(e.getLongKey(), e.getLongValue());
+				}
+				assertEquals(expected.size(), total);
+				assertEquals(expected.size(), parallel.getEnumerated());
+				assertEquals(expected, actual);
+				assertEquals(expectedCounts, actualCounts);
+			}
+	}
+
+	@Test
+	public void testMaxSubgraphs()
+	{
+		NeighborhoodIndex W = new NeighborhoodIndex(ArrayListMutableGraph.newCompleteGraph(30, false).immutableView());
+		ParallelSubgraphEnumerator parallel = new ParallelSubgraphEnumerator(W, 4).setMaxSubgraphs(5000);
+		parallel.enumerate(1, () -> (nodes, adjacency) -> {
+		});
+		// C(30,4) = 27405 subgraphs, the enumeration stops at the first check after 5000
+		assertTrue(parallel.getEnumerated() >= 5000);
+		assertTrue(parallel.getEnumerated() < 27405);
+	}
+}
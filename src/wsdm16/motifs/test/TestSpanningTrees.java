@@ -0,0 +1,112 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import wsdm16.graphutils.BreadthFirstSearch;
+import wsdm16.graphutils.GraphGenerator;
+import wsdm16.graphutils.Transform;
+import wsdm16.motifs.EagerGraphIsomorphisms;
+import wsdm16.motifs.SpanningTrees;
+
+public class TestSpanningTrees {
+
+	@Test
+	public void testClosedForms()
+	{
+		for(int n=3; n<=11; n++)
+		{
+			ImmutableGraph tree = Transform.symmetrize(GraphGenerator.starGraph(n)).immutableView();
+			assertEquals(1, SpanningTrees.KirchhoffCount(tree));
+
+			ImmutableGraph cycle = Transform.symmetrize(GraphGenerator.circleGraph(n)).immutableView();
+			assertEquals(n, SpanningTrees.KirchhoffCount(cycle));
+
+			ImmutableGraph clique = ArrayListMutableGraph.newCompleteGraph(n, false).immutableView();
+			long expected = 1;
+			for(int i=0; i<n-2; i++)
+				expected *= n;
+			assertEquals(expected, SpanningTrees.KirchhoffCount(clique));
+		}
+		// from 18 nodes on, Cayley's formula overflows and the count falls back to the LU decomposition
+		ImmutableGraph clique = ArrayListMutableGraph.newCompleteGraph(18, false).immutableView();
+		assertEquals(SpanningTrees.KirchhoffCountLU(clique), SpanningTrees.KirchhoffCount(clique));
+
+		// two disjoint triangles are 2-regular, but have no spanning tree
+		ArrayListMutableGraph G = new ArrayListMutableGraph(6);
+		for(int c=0; c<6; c+=3)
+			for(int i=0; i<3; i++)
+			{
+				G.addArc(c+i, c+(i+1)%3);
+				G.addArc(c+(i+1)%3, c+i);
+			}
+		assertEquals(0, SpanningTrees.KirchhoffCount(G.immutableView()));
+	}
+
+	/**
+	 * Compares the exact count against the LU-based one on all the connected graphs with up to 8 nodes, and
+	 * reports the time spent by each method.
+	 */
+	@Test
+	public void testAllConnectedGraphs()
+	{
+		List<ImmutableGraph> graphs = new ArrayList<>();
+		for(int k=2; k<=6; k++)
+		{
+			EagerGraphIsomorphisms gi = new EagerGraphIsomorphisms(k);
+			for(int i=0; i<gi.getNumberOfClasses(); i++)
+				graphs.add(gi.getRepresentantForClass(i));
+		}
+
+		// every connected graph on 8 nodes has a node whose removal leaves a connected graph on 7 nodes,
+		// hence attaching a new node in all possible ways to the 7-node classes covers all the 8-node ones
+		EagerGraphIsomorphisms gi7 = new EagerGraphIsomorphisms(7);
+		for(int i=0; i<gi7.getNumberOfClasses(); i++)
+		{
+			ImmutableGraph H = gi7.getRepresentantForClass(i);
+			graphs.add(H);
+			for(int mask=1; mask<(1<<7); mask++)
+			{
+				ArrayListMutableGraph G = new ArrayListMutableGraph(H);
+				G.addNodes(1);
+				for(int u=0; u<7; u++)
+					if((mask & (1<<u))!=0)
+					{
+						G.addArc(u, 7);
+						G.addArc(7, u);
+					}
+				graphs.add(G.immutableView());
+			}
+		}
+
+		for(ImmutableGraph G : graphs)
+		{
+			assertEquals(G.numNodes(), new BreadthFirstSearch(G, 0).count().getReachedNodes());
+			assertEquals(SpanningTrees.KirchhoffCountLU(G), SpanningTrees.KirchhoffCount(G));
+		}
+
+		long[][] scratch = new long[7][7];
+		long start = System.nanoTime();
+		long sum = 0;
+		for(ImmutableGraph G : graphs)
+			sum += SpanningTrees.KirchhoffCountLU(G);
+		double lu = (System.nanoTime() - start)/1e9;
+
+		start = System.nanoTime();
+		for(ImmutableGraph G : graphs)
+			sum -= SpanningTrees.KirchhoffCount(G, scratch);
+		double bareiss = (System.nanoTime() - start)/1e9;
+		assertEquals(0, sum);
+
+		DecimalFormat fmt = new DecimalFormat("#.###");
+		System.out.println("Spanning trees of " + graphs.size() + " graphs: LU " + fmt.format(lu) + "s, Bareiss "
+				+ fmt.format(bareiss) + "s");
+	}
+}
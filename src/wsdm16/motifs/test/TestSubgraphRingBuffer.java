@@ -0,0 +1,70 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import wsdm16.motifs.SubgraphRingBuffer;
+
+public class TestSubgraphRingBuffer {
+
+	@Test
+	public void testProducerConsumer() throws InterruptedException
+	{
+		int k = 3, total = 1000000;
+		// a small capacity makes the producer wait for the consumer many times
+		SubgraphRingBuffer ring = new SubgraphRingBuffer(k, 100);
+
+		Thread producer = new Thread(() -> {
+			int[] sub = new int[k];
+			for (int i = 0; i < total; i++) {
+				for (int j = 0; j < k; j++)
+					sub[j] = i + j;
+				ring.put(sub, i);
+			}
+			ring.close();
+		});
+		producer.start();
+
+		long[] received = new long[1];
+		int r;
+		while ((r = ring.drainTo((nodes, adjacency) -> {
+			// subgraphs come out in the same order they were put
+			assertEquals(received[0], adjacency);
+			for (int j = 0; j < k; j++)
+				assertEquals(received[0] + j, nodes[j]);
+			received[0]++;
+		}, 1000)) != -1)
+			if (r == 0)
+				Thread.yield();
+
+		producer.join();
+		assertEquals(total, received[0]);
+	}
+
+	@Test
+	public void testFailedConsumer() throws InterruptedException
+	{
+		AtomicBoolean failed = new AtomicBoolean();
+		SubgraphRingBuffer ring = new SubgraphRingBuffer(3, 100, failed);
+		AtomicReference<Throwable> thrown = new AtomicReference<>();
+		// nobody drains the ring, hence the producer waits once it is full
+		Thread producer = new Thread(() -> {
+			try {
+				for (int i = 0; ; i++)
+					ring.put(new int[] { i, i + 1, i + 2 }, i);
+			} catch (IllegalStateException e) {
+				thrown.set(e);
+			}
+		});
+		producer.start();
+		failed.set(true);
+		producer.join();
+		assertTrue(thrown.get() instanceof IllegalStateException);
+		assertEquals(-1, ring.drainTo((nodes, adjacency) -> {}, 1000));
+	}
+}
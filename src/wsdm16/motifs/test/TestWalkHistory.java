@@ -0,0 +1,176 @@
+package wsdm16.motifs.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.apache.commons.math3.random.Well19937c;
+
+import wsdm16.motifs.randomwalks.VirtualRandomWalk;
+import wsdm16.motifs.randomwalks.WalkHistoryReader;
+import wsdm16.motifs.randomwalks.WalkHistoryWriter;
+
+public class TestWalkHistory {
+
+	private static int[][] randomStates(int n, int k, Random random)
+	{
+		int[][] states = new int[n][k];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < k; j++)
+				states[i][j] = random.nextInt(j % 2 == 0 ? 100 : Integer.MAX_VALUE);
+			// keep the nodes distinct, as in a graphlet
+			Arrays.sort(states[i]);
+			for (int j = 1; j < k; j++)
+				if (states[i][j] <= states[i][j - 1])
+					states[i][j] = states[i][j - 1] + 1;
+		}
+		return states;
+	}
+
+	private static void roundTrip(boolean compressed) throws IOException
+	{
+		int n = 5000, k = 5, blockSize = 7;
+		Random random = new Random(compressed ? 1 : 0);
+		int[][] states = randomStates(n, k, random);
+		int[] degrees = new int[n];
+		File file = File.createTempFile("history", ".gwh");
+		file.deleteOnExit();
+
+		int maxDegree = 0;
+		try (WalkHistoryWriter writer = new WalkHistoryWriter(file.getPath(), k, compressed, blockSize)) {
+			for (int i = 0; i < n; i++) {
+				degrees[i] = random.nextInt(1 << (i % 30));
+				maxDegree = Math.max(maxDegree, degrees[i]);
+				int[] shuffled = states[i].clone();
+				for (int j = k - 1; j > 0; j--) {
+					int h = random.nextInt(j + 1), t = shuffled[j];
+					shuffled[j] = shuffled[h];
+					shuffled[h] = t;
+				}
+				writer.write(shuffled, degrees[i]);
+			}
+			assertEquals(n, writer.size());
+		}
+
+		WalkHistoryReader reader = new WalkHistoryReader(file.getPath());
+		assertEquals(k, reader.k());
+		assertEquals(n, reader.size());
+		assertEquals(maxDegree, reader.maxDegree());
+		int[] nodes = new int[k];
+		// in order
+		for (int i = 0; i < n; i++) {
+			reader.state(i, nodes);
+			assertArrayEquals(states[i], nodes);
+			assertEquals(degrees[i], reader.degree(i));
+		}
+		// at random, on a copy
+		WalkHistoryReader copy = reader.copy();
+		for (int t = 0; t < 1000; t++) {
+			int i = random.nextInt(n);
+			copy.state(i, nodes);
+			assertArrayEquals(states[i], nodes);
+			assertEquals(degrees[i], copy.degree(i));
+		}
+	}
+
+	@Test
+	public void testFixed() throws IOException
+	{
+		roundTrip(false);
+	}
+
+	@Test
+	public void testCompressed() throws IOException
+	{
+		roundTrip(true);
+	}
+
+	@Test
+	public void testSegments() throws IOException
+	{
+		// records of 4 ints in blocks of 4, mapped 2 blocks at a time: the state i is {i, i+1, i+2} with degree 7i
+		int n = 100, blockSize = 4;
+		File file = File.createTempFile("history", ".gwh");
+		file.deleteOnExit();
+		try (WalkHistoryWriter writer = new WalkHistoryWriter(file.getPath(), 3, false, blockSize)) {
+			for (int i = 0; i < n; i++)
+				writer.write(new int[] { i + 1, i + 2, i }, 7 * i);
+		}
+		WalkHistoryReader reader = new WalkHistoryReader(file.getPath(), 2 * blockSize * 4 * Integer.BYTES);
+		int[] nodes = new int[3];
+		// every read lands on a different segment than the previous one
+		for (int t = 0; t < n; t++) {
+			int i = t % 2 == 0 ? t / 2 : n - 1 - t / 2;
+			assertEquals(7 * i, reader.degree(i));
+			int j = (i + 3 * blockSize) % n;
+			reader.state(j, nodes);
+			assertArrayEquals(new int[] { j, j + 1, j + 2 }, nodes);
+		}
+	}
+
+	@Test
+	public void testVirtualWalkOverChunks() throws IOException, VirtualRandomWalk.DataOverException
+	{
+		// three chunks (one of them empty) holding states {i, i+1, i+2} with degree 1, i.e. no self-loops
+		File dir = File.createTempFile("history", "");
+		dir.delete();
+		dir.mkdir();
+		dir.deleteOnExit();
+		String basename = new File(dir, "walk").getPath();
+		int[] sizes = { 10, 0, 25 };
+		int i = 0;
+		for (int c = 0; c < sizes.length; c++) {
+			new File(basename + "." + c).deleteOnExit();
+			try (WalkHistoryWriter writer = new WalkHistoryWriter(basename + "." + c, 3, c == 0, 4)) {
+				for (int j = 0; j < sizes[c]; j++, i++)
+					writer.write(new int[] { i + 2, i, i + 1 }, 1);
+			}
+		}
+
+		VirtualRandomWalk walk = new VirtualRandomWalk(basename, 1, new Well19937c(0));
+		assertEquals(35, walk.size());
+		assertEquals(1, walk.walk(1));
+		assertArrayEquals(new int[] { 0, 1, 2 }, walk.getNodes());
+		walk.walk(12);
+		assertEquals(12, walk.position());
+		assertArrayEquals(new int[] { 12, 13, 14 }, walk.getNodes());
+
+		// a copy over a range crossing the chunks
+		VirtualRandomWalk copy = walk.copy(new Well19937c(1));
+		copy.setRange(8, 12);
+		copy.walk(3);
+		assertArrayEquals(new int[] { 10, 11, 12 }, copy.getNodes());
+		try {
+			copy.walk(2);
+			fail("The walk went beyond its range");
+		} catch (VirtualRandomWalk.DataOverException e) {
+			assertEquals(11, copy.position());
+		}
+		// the original walk is not affected
+		walk.walk(1);
+		assertArrayEquals(new int[] { 13, 14, 15 }, walk.getNodes());
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException
+	{
+		File file = File.createTempFile("history", ".gwh");
+		file.deleteOnExit();
+		try (WalkHistoryWriter writer = new WalkHistoryWriter(file.getPath(), 3, true)) {
+			for (int i = 0; i < 100; i++)
+				writer.write(new int[] { i, i + 1, i + 2 }, i);
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 1);
+		}
+		new WalkHistoryReader(file.getPath());
+	}
+}